@@ -32,6 +32,8 @@ public class VariantQueryResult<T> extends QueryResult<T> {
     private String source;
     private Boolean approximateCount;
     private Integer approximateCountSamplingSize;
+    /** Opaque token to resume the query after the last returned result. Null if not available. */
+    private String resumeToken;
 
     public VariantQueryResult() {
         this.samples = null;
@@ -102,4 +104,13 @@ public class VariantQueryResult<T> extends QueryResult<T> {
         this.source = source;
         return this;
     }
+
+    public String getResumeToken() {
+        return resumeToken;
+    }
+
+    public VariantQueryResult<T> setResumeToken(String resumeToken) {
+        this.resumeToken = resumeToken;
+        return this;
+    }
 }
@@ -25,14 +25,31 @@ import org.opencb.biodata.tools.alignment.iterators.BamIterator;
 public class ProtoAlignmentIterator extends AlignmentIterator<Reads.ReadAlignment> {
 
     private BamIterator<Reads.ReadAlignment> protoIterator;
+    private Runnable onClose;
 
     public ProtoAlignmentIterator(BamIterator<Reads.ReadAlignment> protoIterator) {
+        this(protoIterator, null);
+    }
+
+    /**
+     * @param protoIterator Alignment iterator
+     * @param onClose       Action to run after closing the iterator. e.g. release the reader
+     */
+    public ProtoAlignmentIterator(BamIterator<Reads.ReadAlignment> protoIterator, Runnable onClose) {
         this.protoIterator = protoIterator;
+        this.onClose = onClose;
     }
 
     @Override
     public void close() throws Exception {
-        protoIterator.close();
+        try {
+            protoIterator.close();
+        } finally {
+            if (onClose != null) {
+                onClose.run();
+                onClose = null;
+            }
+        }
     }
 
     @Override
@@ -25,14 +25,31 @@ import org.opencb.biodata.tools.alignment.iterators.BamIterator;
 public class SamRecordAlignmentIterator extends AlignmentIterator<SAMRecord> {
 
     private BamIterator<SAMRecord> bamIterator;
+    private Runnable onClose;
 
     public SamRecordAlignmentIterator(BamIterator<SAMRecord> bamIterator) {
+        this(bamIterator, null);
+    }
+
+    /**
+     * @param bamIterator   Alignment iterator
+     * @param onClose       Action to run after closing the iterator. e.g. release the reader
+     */
+    public SamRecordAlignmentIterator(BamIterator<SAMRecord> bamIterator, Runnable onClose) {
         this.bamIterator = bamIterator;
+        this.onClose = onClose;
     }
 
     @Override
     public void close() throws Exception {
-        bamIterator.close();
+        try {
+            bamIterator.close();
+        } finally {
+            if (onClose != null) {
+                onClose.run();
+                onClose = null;
+            }
+        }
     }
 
     @Override
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.alignment.local;
+
+import org.opencb.biodata.tools.alignment.BamManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of open {@link BamManager}, by file.
+ *
+ * Opening a BamManager opens the file and, with the first query, loads its index. Reusing the same BamManager for
+ * consecutive queries over the same file avoids reading again the header and the index.
+ *
+ * A BamManager is not thread safe, so each borrowed BamManager is used only by one caller until it is released.
+ * Only the idle BamManagers are kept in the pool, bounded per file and in total, and closed after some idle time.
+ * If the file is modified, the idle BamManagers are discarded.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class BamManagerPool implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_IDLE_PER_FILE = 4;
+    public static final int DEFAULT_MAX_IDLE = 64;
+    public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    private final int maxIdlePerFile;
+    private final int maxIdle;
+    private final long idleTimeout;
+
+    // Idle BamManagers by file. Most recently used first
+    private final Map<Path, Deque<PooledBamManager>> idle = new HashMap<>();
+    private int numIdle = 0;
+    private long numCreated = 0;
+    private long numReused = 0;
+    private boolean closed = false;
+
+    private final Logger logger = LoggerFactory.getLogger(BamManagerPool.class);
+
+    @FunctionalInterface
+    public interface BamManagerFunction<T> {
+        T apply(BamManager bamManager) throws IOException;
+    }
+
+    public BamManagerPool() {
+        this(DEFAULT_MAX_IDLE_PER_FILE, DEFAULT_MAX_IDLE, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * @param maxIdlePerFile    Max number of idle BamManagers for each file
+     * @param maxIdle           Max number of idle BamManagers
+     * @param idleTimeout       Time in milliseconds after which an idle BamManager is closed
+     */
+    public BamManagerPool(int maxIdlePerFile, int maxIdle, long idleTimeout) {
+        this.maxIdlePerFile = maxIdlePerFile;
+        this.maxIdle = maxIdle;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Borrow a BamManager for the given file. Must be released with {@link PooledBamManager#close()}.
+     *
+     * @param path  BAM or CRAM file
+     * @return      An open BamManager, only for this caller until released
+     * @throws IOException if the file can not be opened
+     */
+    public PooledBamManager borrow(Path path) throws IOException {
+        Path file = path.toAbsolutePath().normalize();
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("BamManagerPool closed");
+            }
+            evictIdle(System.currentTimeMillis());
+            Deque<PooledBamManager> deque = idle.get(file);
+            while (deque != null && !deque.isEmpty()) {
+                PooledBamManager pooled = deque.pollFirst();
+                numIdle--;
+                if (deque.isEmpty()) {
+                    idle.remove(file);
+                }
+                if (pooled.lastModified == lastModified) {
+                    pooled.borrowed = true;
+                    numReused++;
+                    return pooled;
+                } else {
+                    logger.debug("File {} modified. Discard BamManager", file);
+                    closeQuietly(pooled);
+                }
+            }
+            numCreated++;
+        }
+        return new PooledBamManager(file, lastModified, new BamManager(file));
+    }
+
+    /**
+     * Borrow a BamManager for the given file, apply the function, and release it.
+     * If the function fails, the BamManager is closed instead of returned to the pool.
+     *
+     * @param path      BAM or CRAM file
+     * @param function  Function to apply
+     * @param <T>       Result type
+     * @return          Result of the function
+     * @throws IOException if the file can not be opened, or the function fails
+     */
+    public <T> T apply(Path path, BamManagerFunction<T> function) throws IOException {
+        PooledBamManager pooled = borrow(path);
+        T result;
+        try {
+            result = function.apply(pooled.getBamManager());
+        } catch (IOException | RuntimeException e) {
+            pooled.discard();
+            throw e;
+        }
+        pooled.close();
+        return result;
+    }
+
+    /**
+     * Close the BamManagers idle for longer than the idle timeout.
+     */
+    public synchronized void evictIdle() {
+        evictIdle(System.currentTimeMillis());
+    }
+
+    private void evictIdle(long now) {
+        Iterator<Deque<PooledBamManager>> iterator = idle.values().iterator();
+        while (iterator.hasNext()) {
+            Deque<PooledBamManager> deque = iterator.next();
+            // Least recently used are at the end
+            while (!deque.isEmpty() && now - deque.peekLast().lastUsed > idleTimeout) {
+                closeQuietly(deque.pollLast());
+                numIdle--;
+            }
+            if (deque.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private synchronized void release(PooledBamManager pooled) {
+        pooled.borrowed = false;
+        Deque<PooledBamManager> deque = idle.computeIfAbsent(pooled.path, p -> new ArrayDeque<>());
+        if (closed || deque.size() >= maxIdlePerFile) {
+            if (deque.isEmpty()) {
+                idle.remove(pooled.path);
+            }
+            closeQuietly(pooled);
+            return;
+        }
+        pooled.lastUsed = System.currentTimeMillis();
+        deque.addFirst(pooled);
+        numIdle++;
+        if (numIdle > maxIdle) {
+            evictLeastRecentlyUsed();
+        }
+    }
+
+    private void evictLeastRecentlyUsed() {
+        Path lruPath = null;
+        long lruTime = Long.MAX_VALUE;
+        for (Map.Entry<Path, Deque<PooledBamManager>> entry : idle.entrySet()) {
+            long lastUsed = entry.getValue().peekLast().lastUsed;
+            if (lastUsed < lruTime) {
+                lruTime = lastUsed;
+                lruPath = entry.getKey();
+            }
+        }
+        if (lruPath != null) {
+            Deque<PooledBamManager> deque = idle.get(lruPath);
+            closeQuietly(deque.pollLast());
+            numIdle--;
+            if (deque.isEmpty()) {
+                idle.remove(lruPath);
+            }
+        }
+    }
+
+    private void closeQuietly(PooledBamManager pooled) {
+        try {
+            pooled.bamManager.close();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Error closing BamManager for file " + pooled.path, e);
+        }
+    }
+
+    public synchronized int getNumIdle() {
+        return numIdle;
+    }
+
+    public synchronized long getNumCreated() {
+        return numCreated;
+    }
+
+    public synchronized long getNumReused() {
+        return numReused;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Deque<PooledBamManager> deque : idle.values()) {
+            deque.forEach(this::closeQuietly);
+        }
+        idle.clear();
+        numIdle = 0;
+    }
+
+    /**
+     * BamManager borrowed from the pool. Closing it returns the BamManager to the pool.
+     */
+    public final class PooledBamManager implements AutoCloseable {
+        private final Path path;
+        private final long lastModified;
+        private final BamManager bamManager;
+        private long lastUsed;
+        private boolean borrowed = true;
+
+        private PooledBamManager(Path path, long lastModified, BamManager bamManager) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.bamManager = bamManager;
+        }
+
+        public BamManager getBamManager() {
+            return bamManager;
+        }
+
+        /**
+         * Close the BamManager instead of returning it to the pool. Use if the BamManager might be in an inconsistent state.
+         */
+        public void discard() {
+            synchronized (BamManagerPool.this) {
+                if (!borrowed) {
+                    return;
+                }
+                borrowed = false;
+            }
+            closeQuietly(this);
+        }
+
+        @Override
+        public void close() {
+            synchronized (BamManagerPool.this) {
+                if (borrowed) {
+                    release(this);
+                }
+            }
+        }
+    }
+}
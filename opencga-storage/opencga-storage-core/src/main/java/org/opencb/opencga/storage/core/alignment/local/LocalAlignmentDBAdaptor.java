@@ -39,6 +39,7 @@ import org.opencb.opencga.storage.core.alignment.iterators.AlignmentIterator;
 import org.opencb.opencga.storage.core.alignment.iterators.ProtoAlignmentIterator;
 import org.opencb.opencga.storage.core.alignment.iterators.SamRecordAlignmentIterator;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
@@ -50,6 +51,7 @@ import java.util.List;
 public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
 
     private int chunkSize;
+    private final BamManagerPool bamManagerPool;
 
     private static final int MINOR_CHUNK_SIZE = 1000;
     private static final int DEFAULT_CHUNK_SIZE = 1000;
@@ -64,7 +66,16 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
     }
 
     public LocalAlignmentDBAdaptor(int chunkSize) {
+        this(chunkSize, new BamManagerPool());
+    }
+
+    public LocalAlignmentDBAdaptor(int chunkSize, BamManagerPool bamManagerPool) {
         this.chunkSize = chunkSize;
+        this.bamManagerPool = bamManagerPool;
+    }
+
+    public BamManagerPool getBamManagerPool() {
+        return bamManagerPool;
     }
 
 
@@ -75,7 +86,6 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
 
             StopWatch watch = StopWatch.createStarted();
 
-            BamManager bamManager = new BamManager(path);
             Region region = parseRegion(query);
             AlignmentFilters<SAMRecord> alignmentFilters = parseQuery(query);
             AlignmentOptions alignmentOptions = parseQueryOptions(options);
@@ -83,14 +93,15 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
             String queryResultId;
             List<ReadAlignment> readAlignmentList;
             if (region != null) {
-                readAlignmentList = bamManager.query(region, alignmentFilters, alignmentOptions, ReadAlignment.class);
+                readAlignmentList = bamManagerPool.apply(path,
+                        bamManager -> bamManager.query(region, alignmentFilters, alignmentOptions, ReadAlignment.class));
                 queryResultId = region.toString();
             } else {
-                readAlignmentList = bamManager.query(alignmentFilters, alignmentOptions, ReadAlignment.class);
+                readAlignmentList = bamManagerPool.apply(path,
+                        bamManager -> bamManager.query(alignmentFilters, alignmentOptions, ReadAlignment.class));
                 queryResultId = "Get alignments";
             }
 
-            bamManager.close();
             watch.stop();
             return new QueryResult<>(queryResultId, ((int) watch.getTime()), readAlignmentList.size(), readAlignmentList.size(), null, null,
                     readAlignmentList);
@@ -115,27 +126,38 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
         try {
             FileUtils.checkFile(path);
 
-            BamManager bamManager = new BamManager(path);
             Region region = parseRegion(query);
             AlignmentFilters<SAMRecord> alignmentFilters = parseQuery(query);
             AlignmentOptions alignmentOptions = parseQueryOptions(options);
 
-            if (region != null) {
-                if (Reads.ReadAlignment.class == clazz) {
-                    return (AlignmentIterator<T>) new ProtoAlignmentIterator(bamManager.iterator(region,
-                            alignmentFilters, alignmentOptions, Reads.ReadAlignment.class));
-                } else if (SAMRecord.class == clazz) {
-                    return (AlignmentIterator<T>) new SamRecordAlignmentIterator(bamManager.iterator(region,
-                            alignmentFilters, alignmentOptions, SAMRecord.class));
-                }
-            } else {
-                if (Reads.ReadAlignment.class == clazz) {
-                    return (AlignmentIterator<T>) new ProtoAlignmentIterator(bamManager.iterator(alignmentFilters,
-                            alignmentOptions, Reads.ReadAlignment.class));
-                } else if (SAMRecord.class == clazz) {
-                    return (AlignmentIterator<T>) new SamRecordAlignmentIterator(bamManager.iterator(alignmentFilters,
-                            alignmentOptions, SAMRecord.class));
+            if (Reads.ReadAlignment.class != clazz && SAMRecord.class != clazz) {
+                return null;
+            }
+
+            // The BamManager is returned to the pool when the iterator is closed
+            BamManagerPool.PooledBamManager pooled = bamManagerPool.borrow(path);
+            try {
+                BamManager bamManager = pooled.getBamManager();
+                if (region != null) {
+                    if (Reads.ReadAlignment.class == clazz) {
+                        return (AlignmentIterator<T>) new ProtoAlignmentIterator(bamManager.iterator(region,
+                                alignmentFilters, alignmentOptions, Reads.ReadAlignment.class), pooled::close);
+                    } else {
+                        return (AlignmentIterator<T>) new SamRecordAlignmentIterator(bamManager.iterator(region,
+                                alignmentFilters, alignmentOptions, SAMRecord.class), pooled::close);
+                    }
+                } else {
+                    if (Reads.ReadAlignment.class == clazz) {
+                        return (AlignmentIterator<T>) new ProtoAlignmentIterator(bamManager.iterator(alignmentFilters,
+                                alignmentOptions, Reads.ReadAlignment.class), pooled::close);
+                    } else {
+                        return (AlignmentIterator<T>) new SamRecordAlignmentIterator(bamManager.iterator(alignmentFilters,
+                                alignmentOptions, SAMRecord.class), pooled::close);
+                    }
                 }
+            } catch (IOException | RuntimeException e) {
+                pooled.discard();
+                throw e;
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -155,9 +177,7 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
 
         RegionCoverage regionCoverage;
         if (path.toFile().getName().endsWith(".bam")) {
-            BamManager bamManager = new BamManager(path);
-            regionCoverage = bamManager.coverage(region, windowSize);
-            bamManager.close();
+            regionCoverage = bamManagerPool.apply(path, bamManager -> bamManager.coverage(region, windowSize));
         } else {
             BamManager bamManager = new BamManager();
             regionCoverage = bamManager.coverage(region, windowSize, path);
@@ -171,11 +191,14 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
     public QueryResult<Long> count(Path path, Query query, QueryOptions options) {
         StopWatch watch = StopWatch.createStarted();
 
-        ProtoAlignmentIterator iterator = iterator(path, query, options);
         long count = 0;
-        while (iterator.hasNext()) {
-            iterator.next();
-            count++;
+        try (ProtoAlignmentIterator iterator = iterator(path, query, options)) {
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Error counting alignments from " + path, e);
         }
 
         watch.stop();
@@ -197,8 +220,7 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
             ObjectMapper objectMapper = new ObjectMapper();
             alignmentGlobalStats = objectMapper.readValue(statsPath.toFile(), AlignmentGlobalStats.class);
         } else {
-            BamManager alignmentManager = new BamManager(path);
-            alignmentGlobalStats = alignmentManager.stats();
+            alignmentGlobalStats = bamManagerPool.apply(path, BamManager::stats);
             ObjectMapper objectMapper = new ObjectMapper();
             ObjectWriter objectWriter = objectMapper.typedWriter(AlignmentGlobalStats.class);
             objectWriter.writeValue(statsPath.toFile(), alignmentGlobalStats);
@@ -226,8 +248,8 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
         AlignmentFilters alignmentFilters = parseQuery(query);
         AlignmentOptions alignmentOptions = parseQueryOptions(options);
 
-        BamManager alignmentManager = new BamManager(path);
-        AlignmentGlobalStats alignmentGlobalStats = alignmentManager.stats(region, alignmentFilters, alignmentOptions);
+        AlignmentGlobalStats alignmentGlobalStats = bamManagerPool.apply(path,
+                bamManager -> bamManager.stats(region, alignmentFilters, alignmentOptions));
 
         watch.stop();
         return new QueryResult<>("Get stats", (int) watch.getTime(), 1, 1, "", "", Arrays.asList(alignmentGlobalStats));
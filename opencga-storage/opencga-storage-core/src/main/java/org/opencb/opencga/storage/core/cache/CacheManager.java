@@ -16,8 +16,11 @@
 
 package org.opencb.opencga.storage.core.cache;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.opencb.biodata.models.variant.Variant;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.core.QueryResult;
@@ -31,17 +34,27 @@ import org.redisson.codec.JsonJacksonCodec;
 import org.redisson.codec.KryoCodec;
 import org.redisson.core.RKeys;
 import org.redisson.core.RMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.regex.Pattern;
 
 /**
+ * Two levels cache for query results.
+ *
+ * The first level (L1) is an in-memory cache, bounded by the estimated size in bytes of the results, with LRU eviction.
+ * The second level (L2) is an optional Redis server, shared between processes.
+ *
  * Created by wasim on 26/10/16.
  */
 public class CacheManager {
 
+    private final Logger logger = LoggerFactory.getLogger(CacheManager.class);
     private StorageConfiguration storageConfiguration;
 
+    private Cache<String, QueryResult> memoryCache;
+
     private Config redissonConfig;
     private Set<String> allowedTypesSet;
     private RedissonClient redissonClient;
@@ -75,6 +88,13 @@ public class CacheManager {
 
             this.allowedTypesSet = new HashSet<>(Arrays.asList(cache.getAllowedTypes().split(",")));
 
+            if (cache.getMemoryMaxSize() > 0) {
+                memoryCache = CacheBuilder.newBuilder()
+                        .maximumWeight(cache.getMemoryMaxSize())
+                        .weigher((String key, QueryResult value) -> estimateSize(key, value))
+                        .build();
+            }
+
 
             if (StringUtils.isNotEmpty(cache.getPassword())) {
                 redissonConfig.useSingleServer().setPassword(cache.getPassword());
@@ -86,7 +106,7 @@ public class CacheManager {
                 redissonConfig.setCodec(new JsonJacksonCodec());
             }
 
-            redisState = true;
+            redisState = cache.isRedisActive();
 
 //            redissonClient = Redisson.create(redissonConfig);
             redissonClient = null;
@@ -94,10 +114,23 @@ public class CacheManager {
     }
 
 
+    /**
+     * Get a cached result. Look first in the in-memory cache, and then in Redis.
+     *
+     * @param key   Cache key. See {@link #createKey}
+     * @param <T>   Result type
+     * @return      Cached result, or null if not found
+     */
     public <T> QueryResult<T> get(String key) {
 
-        QueryResult<T> queryResult = new QueryResult<>();
-        if (isActive()) {
+        QueryResult<T> queryResult = null;
+        if (memoryCache != null && storageConfiguration.getCache().isActive()) {
+            QueryResult<T> cached = memoryCache.getIfPresent(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        if (isRedisActive()) {
             long start = System.currentTimeMillis();
             RMap<Integer, Map<String, Object>> map = getRedissonClient().getMap(key);
 
@@ -109,31 +142,47 @@ public class CacheManager {
                     Object resultMap = result.get(0).get("result");
                     queryResult = (QueryResult<T>) resultMap;
                     queryResult.setDbTime((int) (System.currentTimeMillis() - start));
+                    if (memoryCache != null) {
+                        memoryCache.put(key, queryResult);
+                    }
                 }
             } catch (RedisConnectionException e) {
                 redisState = false;
-                queryResult.setWarningMsg("Unable to connect to Redis Cache, Please query WITHOUT Cache (Falling back to Database)");
-                return queryResult;
+                logger.warn("Unable to connect to Redis Cache. Falling back to Database", e);
+                return null;
             }
         }
         return queryResult;
     }
 
+    /**
+     * Store a result in the cache, if the query was slower than the slowThreshold, and
+     * the result is not larger than the maxResultSize.
+     *
+     * @param key           Cache key. See {@link #createKey}
+     * @param query         Executed query
+     * @param queryResult   Result to store
+     */
     public void set(String key, Query query, QueryResult queryResult) {
 
-        if (isActive()) {
-            if (queryResult.getDbTime() >= storageConfiguration.getCache().getSlowThreshold()
-                    && queryResult.getResult().size() >= storageConfiguration.getCache().getMaxResultSize()) {
-                RMap<Integer, Map<String, Object>> map = getRedissonClient().getMap(key);
-                Map<String, Object> record = new HashMap<>();
-                record.put("query", query);
-                record.put("result", queryResult);
-                try {
-                    map.fastPut(0, record);
-                } catch (RedisConnectionException e) {
-                    redisState = false;
-                    queryResult.setWarningMsg("Unable to connect to Redis Cache, Please query WITHOUT Cache (Falling back to Database)");
-                }
+        if (!isActive() || queryResult.getResult() == null
+                || queryResult.getDbTime() < storageConfiguration.getCache().getSlowThreshold()
+                || queryResult.getResult().size() > storageConfiguration.getCache().getMaxResultSize()) {
+            return;
+        }
+        if (memoryCache != null) {
+            memoryCache.put(key, queryResult);
+        }
+        if (isRedisActive()) {
+            RMap<Integer, Map<String, Object>> map = getRedissonClient().getMap(key);
+            Map<String, Object> record = new HashMap<>();
+            record.put("query", query);
+            record.put("result", queryResult);
+            try {
+                map.fastPut(0, record);
+            } catch (RedisConnectionException e) {
+                redisState = false;
+                queryResult.setWarningMsg("Unable to connect to Redis Cache, Please query WITHOUT Cache (Falling back to Database)");
             }
         }
     }
@@ -163,7 +212,11 @@ public class CacheManager {
     }
 
     public boolean isActive() {
-        return storageConfiguration.getCache().isActive() && redisState;
+        return storageConfiguration != null && storageConfiguration.getCache().isActive() && (memoryCache != null || redisState);
+    }
+
+    public boolean isRedisActive() {
+        return storageConfiguration != null && storageConfiguration.getCache().isActive() && redisState;
     }
 
     public boolean isTypeAllowed(String type) {
@@ -171,13 +224,39 @@ public class CacheManager {
     }
 
     public void clear() {
-        RKeys redisKeys = getRedissonClient().getKeys();
-        redisKeys.deleteByPattern(PREFIX_DATABASE_KEY + "*");
+        if (memoryCache != null) {
+            memoryCache.invalidateAll();
+        }
+        if (isRedisActive()) {
+            RKeys redisKeys = getRedissonClient().getKeys();
+            redisKeys.deleteByPattern(PREFIX_DATABASE_KEY + "*");
+        }
     }
 
     public void clear(Pattern pattern) {
-        RKeys redisKeys = getRedissonClient().getKeys();
-        redisKeys.deleteByPattern(pattern.toString());
+        if (memoryCache != null) {
+            memoryCache.asMap().keySet().removeIf(key -> pattern.matcher(key).matches());
+        }
+        if (isRedisActive()) {
+            RKeys redisKeys = getRedissonClient().getKeys();
+            redisKeys.deleteByPattern(pattern.toString());
+        }
+    }
+
+    /**
+     * Remove all the cached results from a given study.
+     *
+     * @param studyId   Study, as used in {@link #createKey}
+     */
+    public void clearStudy(String studyId) {
+        String prefix = PREFIX_DATABASE_KEY + studyId + ":";
+        if (memoryCache != null) {
+            memoryCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+        }
+        if (isRedisActive()) {
+            RKeys redisKeys = getRedissonClient().getKeys();
+            redisKeys.deleteByPattern(prefix + "*");
+        }
     }
 
     public void close() {
@@ -187,6 +266,27 @@ public class CacheManager {
         }
     }
 
+    /**
+     * Estimate the size in bytes of a cached result, as the length of its JSON representation.
+     *
+     * @param key           Cache key
+     * @param queryResult   Cached result
+     * @return              Estimated size
+     */
+    static int estimateSize(String key, QueryResult queryResult) {
+        long size = key.length();
+        if (queryResult.getResult() != null) {
+            for (Object o : queryResult.getResult()) {
+                if (o instanceof Variant) {
+                    size += ((Variant) o).getImpl().toString().length();
+                } else {
+                    size += String.valueOf(o).length();
+                }
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
     private synchronized RedissonClient getRedissonClient() {
         if (redissonClient == null) {
             redissonClient = Redisson.create(redissonConfig);
@@ -40,12 +40,24 @@ public class CacheConfiguration {
      */
     private String allowedTypes;
 
-    public static final boolean DEFAULT_ACTVE = true;
+    /**
+     * Max size in bytes of the in-memory (L1) cache. Zero to disable.
+     */
+    private long memoryMaxSize;
+
+    /**
+     * Use a Redis server as second level (L2) cache.
+     */
+    private boolean redisActive;
+
+    public static final boolean DEFAULT_ACTVE = false;
     public static final String DEFAULT_SERIALIZATION = "json";
     public static final String DEFAULT_ALLOWED_TYPE = "aln,var";
     public static final String DEFAULT_HOST = "localhost:6379";
     public static final String DEFAULT_PASSWORD = "";
     public static final int DEFAULT_MAX_FILE_SIZE = 500;
+    public static final long DEFAULT_MEMORY_MAX_SIZE = 64L * 1024 * 1024;
+    public static final boolean DEFAULT_REDIS_ACTIVE = false;
 
     public CacheConfiguration() {
         this(DEFAULT_HOST, DEFAULT_ACTVE, DEFAULT_SERIALIZATION, 50, DEFAULT_MAX_FILE_SIZE, DEFAULT_PASSWORD,
@@ -61,6 +73,8 @@ public class CacheConfiguration {
         this.maxResultSize = maxFileSize;
         this.password = password;
         this.allowedTypes = allowedTypes;
+        this.memoryMaxSize = DEFAULT_MEMORY_MAX_SIZE;
+        this.redisActive = DEFAULT_REDIS_ACTIVE;
     }
 
     @Override
@@ -72,6 +86,8 @@ public class CacheConfiguration {
                 + ", slowThreshold=" + slowThreshold
                 + ", maxResultSize=" + maxResultSize
                 + ", allowedTypes='" + allowedTypes + '\''
+                + ", memoryMaxSize=" + memoryMaxSize
+                + ", redisActive=" + redisActive
                 + '}');
         return sb.toString();
     }
@@ -138,4 +154,22 @@ public class CacheConfiguration {
         this.allowedTypes = allowedTypes;
         return this;
     }
+
+    public long getMemoryMaxSize() {
+        return memoryMaxSize;
+    }
+
+    public CacheConfiguration setMemoryMaxSize(long memoryMaxSize) {
+        this.memoryMaxSize = memoryMaxSize;
+        return this;
+    }
+
+    public boolean isRedisActive() {
+        return redisActive;
+    }
+
+    public CacheConfiguration setRedisActive(boolean redisActive) {
+        this.redisActive = redisActive;
+        return this;
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.io.avro;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.opencb.commons.io.DataReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the records from the blocks of an Avro data file starting within a byte range.
+ *
+ * A block belongs to the range where its preceding sync marker is. Reading a set of contiguous ranges
+ * covering the whole file returns all the records exactly once, so the file can be read in parallel.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class AvroRangeDataReader<T extends GenericRecord> implements DataReader<T> {
+
+    private final File file;
+    private final Schema schema;
+    private final long start;
+    private final long end;
+    private DataFileReader<T> dataFileReader;
+
+    /**
+     * @param file      Avro data file
+     * @param schema    Reader schema. If null, use the schema from the file
+     * @param start     First byte of the range
+     * @param end       Last byte (exclusive) of the range
+     */
+    public AvroRangeDataReader(File file, Schema schema, long start, long end) {
+        this.file = file;
+        this.schema = schema;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Split the file in, at most, the given number of ranges with the same size.
+     *
+     * @param file      Avro data file
+     * @param schema    Reader schema. If null, use the schema from the file
+     * @param numRanges Number of ranges
+     * @param <T>       Record type
+     * @return          List of readers covering the whole file
+     */
+    public static <T extends GenericRecord> List<AvroRangeDataReader<T>> split(File file, Schema schema, int numRanges) {
+        long length = file.length();
+        numRanges = (int) Math.max(1, Math.min(numRanges, length));
+        List<AvroRangeDataReader<T>> readers = new ArrayList<>(numRanges);
+        for (int i = 0; i < numRanges; i++) {
+            readers.add(new AvroRangeDataReader<>(file, schema, length * i / numRanges, length * (i + 1) / numRanges));
+        }
+        return readers;
+    }
+
+    /**
+     * Count the records of the file, reading only the header of each block.
+     *
+     * @param file      Avro data file
+     * @return          Number of records in the file
+     * @throws IOException if there is an error reading the file
+     */
+    public static long count(File file) throws IOException {
+        long count = 0;
+        try (DataFileReader<Object> reader = new DataFileReader<>(file, new GenericDatumReader<>())) {
+            while (reader.hasNext()) {
+                count += reader.getBlockCount();
+                reader.nextBlock();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean open() {
+        SpecificDatumReader<T> datumReader = schema == null ? new SpecificDatumReader<>() : new SpecificDatumReader<>(schema);
+        try {
+            dataFileReader = new DataFileReader<>(file, datumReader);
+            // Sync even if the start is within the header, as the header sync marker may belong to the next range
+            if (start > 0) {
+                dataFileReader.sync(start);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean close() {
+        try {
+            dataFileReader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public List<T> read(int batchSize) {
+        List<T> batch = new ArrayList<>(batchSize);
+        try {
+            while (batch.size() < batchSize && dataFileReader.hasNext() && !dataFileReader.pastSync(end)) {
+                batch.add(dataFileReader.next());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return batch;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.io.bgzf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Contiguous range of BGZF blocks of a file. Ranges always start and end at block boundaries.
+ *
+ * A line belongs to the range where its first byte is stored. To determine if the first line of a range
+ * starts within a previous range, keeps the offset of the last non empty block before the range.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class BgzfRange {
+
+    private final int index;
+    private final long start;
+    private final long end;
+    private final long previousBlock;
+    private final long lastBlock;
+    private final boolean last;
+
+    /**
+     * @param index         Index of the range in the file.
+     * @param start         Offset of the first block of the range.
+     * @param end           Offset of the first block after the range.
+     * @param previousBlock Offset of the last non empty block before the start of the range. -1 if none.
+     * @param lastBlock     Offset of the last non empty block before the end of the range. -1 if none.
+     * @param last          If this is the last range of the file.
+     */
+    public BgzfRange(int index, long start, long end, long previousBlock, long lastBlock, boolean last) {
+        this.index = index;
+        this.start = start;
+        this.end = end;
+        this.previousBlock = previousBlock;
+        this.lastBlock = lastBlock;
+        this.last = last;
+    }
+
+    /**
+     * Split a BGZF file in, at most, the given number of ranges, with approximately the same compressed size.
+     *
+     * Only the headers and footers of the blocks are read from the file.
+     *
+     * @param path      BGZF file
+     * @param numRanges Max number of ranges
+     * @return          List of ranges covering the whole file
+     * @throws IOException if there is an error reading the file, or the file is not BGZF
+     */
+    public static List<BgzfRange> split(Path path, int numRanges) throws IOException {
+        List<BgzfRange> ranges = new ArrayList<>(numRanges);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long rangeSize = fileSize / Math.max(numRanges, 1);
+
+            ByteBuffer header = ByteBuffer.allocate(ParallelBgzfInputStream.BLOCK_HEADER_LENGTH);
+            ByteBuffer footer = ByteBuffer.allocate(4);
+            long rangeStart = 0;
+            long previousBlock = -1;
+            long lastNonEmptyBlock = -1;
+            long position = 0;
+            while (position < fileSize) {
+                if (position - rangeStart >= rangeSize && ranges.size() < numRanges - 1) {
+                    ranges.add(new BgzfRange(ranges.size(), rangeStart, position, previousBlock, lastNonEmptyBlock, false));
+                    rangeStart = position;
+                    previousBlock = lastNonEmptyBlock;
+                }
+                header.clear();
+                readFully(channel, header, position);
+                if (!ParallelBgzfInputStream.isBgzfHeader(header.array())) {
+                    throw new IOException("Invalid BGZF block header at offset " + position + " of file " + path);
+                }
+                int blockSize = ParallelBgzfInputStream.unpackShort(header.array(), 16) + 1;
+                footer.clear();
+                readFully(channel, footer, position + blockSize - footer.capacity());
+                int uncompressedSize = ParallelBgzfInputStream.unpackInt(footer.array(), 0);
+                if (uncompressedSize > 0) {
+                    lastNonEmptyBlock = position;
+                }
+                position += blockSize;
+            }
+            ranges.add(new BgzfRange(ranges.size(), rangeStart, fileSize, previousBlock, lastNonEmptyBlock, true));
+        }
+        return ranges;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file reading BGZF block");
+            }
+        }
+    }
+
+    /**
+     * Check if the last byte of the given block is a line break.
+     *
+     * @param path          BGZF file
+     * @param blockOffset   Offset of a non empty block
+     * @return              If the block ends with a line break
+     * @throws IOException  if there is an error reading the block
+     */
+    static boolean endsWithLineBreak(Path path, long blockOffset) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.position(blockOffset);
+            byte[] block = ParallelBgzfInputStream.inflateBlock(
+                    ParallelBgzfInputStream.readCompressedBlock(Channels.newInputStream(channel)));
+            return block.length > 0 && block[block.length - 1] == '\n';
+        }
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long length() {
+        return end - start;
+    }
+
+    public long getPreviousBlock() {
+        return previousBlock;
+    }
+
+    public long getLastBlock() {
+        return lastBlock;
+    }
+
+    public boolean isFirst() {
+        return start == 0;
+    }
+
+    public boolean isLast() {
+        return last;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("BgzfRange{");
+        sb.append("index=").append(index);
+        sb.append(", start=").append(start);
+        sb.append(", end=").append(end);
+        sb.append(", previousBlock=").append(previousBlock);
+        sb.append(", lastBlock=").append(lastBlock);
+        sb.append(", last=").append(last);
+        sb.append('}');
+        return sb.toString();
+    }
+}
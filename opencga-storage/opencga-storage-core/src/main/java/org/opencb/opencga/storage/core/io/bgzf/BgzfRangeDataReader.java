@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.io.bgzf;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.input.CountingInputStream;
+import org.opencb.commons.io.DataReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads the lines from a {@link BgzfRange} of a BGZF file.
+ *
+ * Reading all the ranges from a file returns all the lines of the file exactly once.
+ * Lines starting in a previous range are skipped, and the last line of the range
+ * is completed reading from the next blocks.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class BgzfRangeDataReader implements DataReader<String> {
+
+    private final Path path;
+    private final BgzfRange range;
+    private final int decompressionThreads;
+    private BufferedReader reader;
+    private CountingInputStream countingInputStream;
+    private long lastRead = 0;
+    private BiConsumer<Long, Long> readBytesListener;
+    private static Logger logger = LoggerFactory.getLogger(BgzfRangeDataReader.class);
+
+    public BgzfRangeDataReader(Path path, BgzfRange range) {
+        this(path, range, 1);
+    }
+
+    public BgzfRangeDataReader(Path path, BgzfRange range, int decompressionThreads) {
+        this.path = path;
+        this.range = range;
+        this.decompressionThreads = decompressionThreads;
+    }
+
+    @Override
+    public boolean open() {
+        try {
+            FileInputStream fileInputStream = new FileInputStream(path.toFile());
+            fileInputStream.getChannel().position(range.getStart());
+            countingInputStream = new CountingInputStream(new BoundedInputStream(fileInputStream, range.length()));
+            InputStream is = new ParallelBgzfInputStream(new BufferedInputStream(countingInputStream), decompressionThreads);
+
+            if (!range.isLast() && range.getLastBlock() >= 0 && !BgzfRange.endsWithLineBreak(path, range.getLastBlock())) {
+                // Last line of the range continues in the next range
+                FileInputStream tailInputStream = new FileInputStream(path.toFile());
+                tailInputStream.getChannel().position(range.getEnd());
+                is = new SequenceInputStream(is,
+                        new FirstLineInputStream(new ParallelBgzfInputStream(new BufferedInputStream(tailInputStream), 1)));
+            }
+            reader = new BufferedReader(new InputStreamReader(is));
+
+            if (!range.isFirst() && range.getPreviousBlock() >= 0 && !BgzfRange.endsWithLineBreak(path, range.getPreviousBlock())) {
+                // First line belongs to the previous range
+                String skipped = reader.readLine();
+                logger.debug("Skip partial line from range {} : {} chars", range.getIndex(), skipped == null ? 0 : skipped.length());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public List<String> read(int batchSize) {
+        List<String> batch = new ArrayList<>(batchSize);
+        try {
+            for (int i = 0; i < batchSize; i++) {
+                String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                batch.add(line);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        onReadBytes();
+        return batch;
+    }
+
+    private void onReadBytes() {
+        long read = countingInputStream.getByteCount();
+        if (readBytesListener != null) {
+            readBytesListener.accept(read, read - lastRead);
+        }
+        lastRead = read;
+    }
+
+    public BgzfRangeDataReader setReadBytesListener(BiConsumer<Long, Long> readBytesListener) {
+        this.readBytesListener = readBytesListener;
+        return this;
+    }
+
+    public BgzfRange getRange() {
+        return range;
+    }
+
+    /**
+     * Returns the bytes of the underlying input stream up to, and including, the first line break.
+     */
+    private static class FirstLineInputStream extends InputStream {
+        private final InputStream in;
+        private boolean finished = false;
+
+        FirstLineInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (finished) {
+                return -1;
+            }
+            int b = in.read();
+            if (b == '\n' || b == -1) {
+                finished = true;
+            }
+            return b;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
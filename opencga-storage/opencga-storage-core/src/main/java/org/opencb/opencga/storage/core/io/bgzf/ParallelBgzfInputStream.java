@@ -0,0 +1,307 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.io.bgzf;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * InputStream over a BGZF (Blocked GNU Zip Format) compressed stream that inflates the blocks in parallel.
+ *
+ * The raw blocks are read sequentially from the underlying stream by the consumer thread, and then
+ * inflated by a pool of workers. Inflated blocks are returned in the same order they were read,
+ * so the output is exactly the same as the one produced by a {@link java.util.zip.GZIPInputStream}.
+ * See section 4.1 of the SAM specification for a description of the BGZF format.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class ParallelBgzfInputStream extends InputStream {
+
+    public static final int BLOCK_HEADER_LENGTH = 18;
+    public static final int BLOCK_FOOTER_LENGTH = 8;
+    public static final int MAX_BLOCK_SIZE = 64 * 1024;
+
+    private static final int GZIP_ID1 = 31;
+    private static final int GZIP_ID2 = 139;
+    private static final int GZIP_CM_DEFLATE = 8;
+    private static final int GZIP_FLG_EXTRA = 4;
+    private static final int BGZF_XLEN = 6;
+    private static final int BGZF_ID1 = 66;
+    private static final int BGZF_ID2 = 67;
+    private static final int BGZF_SLEN = 2;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final InputStream in;
+    private final ExecutorService executorService;
+    private final int maxBlocksInFlight;
+    private final Deque<Future<byte[]>> pendingBlocks;
+
+    private byte[] currentBlock = EMPTY;
+    private int currentBlockOffset = 0;
+    private boolean inputFinished = false;
+    private boolean closed = false;
+
+    /**
+     * @param in            Compressed input stream. Must be BGZF compressed.
+     * @param numThreads    Number of threads used to inflate blocks.
+     */
+    public ParallelBgzfInputStream(InputStream in, int numThreads) {
+        this(in, numThreads, numThreads * 4);
+    }
+
+    /**
+     * @param in                Compressed input stream. Must be BGZF compressed.
+     * @param numThreads        Number of threads used to inflate blocks.
+     * @param maxBlocksInFlight Max number of blocks read from the input and not consumed yet.
+     */
+    public ParallelBgzfInputStream(InputStream in, int numThreads, int maxBlocksInFlight) {
+        if (numThreads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive. Got " + numThreads);
+        }
+        this.in = in;
+        this.maxBlocksInFlight = Math.max(maxBlocksInFlight, numThreads);
+        this.pendingBlocks = new ArrayDeque<>(this.maxBlocksInFlight);
+        this.executorService = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread t = new Thread(r, "bgzf-inflater");
+            t.setDaemon(true);
+            return t;
+        }); // Set Daemon for quick shutdown !!!
+    }
+
+    /**
+     * Checks if the given stream starts with a valid BGZF block header.
+     * The stream must support {@link InputStream#mark(int)}. The position of the stream is not modified.
+     *
+     * @param in    Input stream
+     * @return      If the stream is BGZF compressed
+     * @throws IOException if there is an error reading from the stream
+     */
+    public static boolean isBgzf(InputStream in) throws IOException {
+        if (!in.markSupported()) {
+            throw new IllegalArgumentException("Mark not supported by " + in.getClass());
+        }
+        byte[] header = new byte[BLOCK_HEADER_LENGTH];
+        in.mark(BLOCK_HEADER_LENGTH);
+        try {
+            int read = readFully(in, header, 0, BLOCK_HEADER_LENGTH);
+            return read == BLOCK_HEADER_LENGTH && isBgzfHeader(header);
+        } finally {
+            in.reset();
+        }
+    }
+
+    static boolean isBgzfHeader(byte[] header) {
+        return (header[0] & 0xFF) == GZIP_ID1
+                && (header[1] & 0xFF) == GZIP_ID2
+                && (header[2] & 0xFF) == GZIP_CM_DEFLATE
+                && (header[3] & GZIP_FLG_EXTRA) != 0
+                && unpackShort(header, 10) == BGZF_XLEN
+                && (header[12] & 0xFF) == BGZF_ID1
+                && (header[13] & 0xFF) == BGZF_ID2
+                && unpackShort(header, 14) == BGZF_SLEN;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        return currentBlock[currentBlockOffset++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureData()) {
+            return -1;
+        }
+        int read = 0;
+        while (read < len) {
+            int length = Math.min(len - read, currentBlock.length - currentBlockOffset);
+            System.arraycopy(currentBlock, currentBlockOffset, b, off + read, length);
+            currentBlockOffset += length;
+            read += length;
+            // Do not block waiting for more blocks if some data was already read
+            if (currentBlockOffset == currentBlock.length && (pendingBlocks.isEmpty() || !pendingBlocks.peekFirst().isDone())) {
+                break;
+            }
+            if (read < len && !ensureData()) {
+                break;
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return currentBlock.length - currentBlockOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            for (Future<byte[]> future : pendingBlocks) {
+                future.cancel(true);
+            }
+            pendingBlocks.clear();
+            executorService.shutdownNow();
+            in.close();
+        }
+    }
+
+    /**
+     * Ensure there is data available in the current block.
+     *
+     * @return false if there is no more data to read
+     * @throws IOException if there is any error reading or inflating the blocks
+     */
+    private boolean ensureData() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (currentBlockOffset == currentBlock.length) {
+            fillPendingBlocks();
+            Future<byte[]> future = pendingBlocks.pollFirst();
+            if (future == null) {
+                return false;
+            }
+            try {
+                currentBlock = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                } else {
+                    throw new IOException(e.getCause());
+                }
+            }
+            currentBlockOffset = 0;
+        }
+        return true;
+    }
+
+    private void fillPendingBlocks() throws IOException {
+        while (!inputFinished && pendingBlocks.size() < maxBlocksInFlight) {
+            byte[] compressedBlock = readCompressedBlock(in);
+            if (compressedBlock == null) {
+                inputFinished = true;
+            } else {
+                pendingBlocks.add(executorService.submit(() -> inflateBlock(compressedBlock)));
+            }
+        }
+    }
+
+    /**
+     * Read the next complete BGZF block from the input stream.
+     *
+     * @param in Compressed input stream
+     * @return The raw block, including header and footer, or null if there are no more blocks.
+     * @throws IOException if the block is truncated or is not a valid BGZF block
+     */
+    static byte[] readCompressedBlock(InputStream in) throws IOException {
+        byte[] header = new byte[BLOCK_HEADER_LENGTH];
+        int read = readFully(in, header, 0, BLOCK_HEADER_LENGTH);
+        if (read == 0) {
+            return null;
+        } else if (read < BLOCK_HEADER_LENGTH) {
+            throw new EOFException("Unexpected end of file reading BGZF block header");
+        } else if (!isBgzfHeader(header)) {
+            throw new IOException("Invalid BGZF block header");
+        }
+        int blockSize = unpackShort(header, 16) + 1;
+        if (blockSize < BLOCK_HEADER_LENGTH + BLOCK_FOOTER_LENGTH || blockSize > MAX_BLOCK_SIZE) {
+            throw new IOException("Invalid BGZF block size " + blockSize);
+        }
+        byte[] block = new byte[blockSize];
+        System.arraycopy(header, 0, block, 0, BLOCK_HEADER_LENGTH);
+        read = readFully(in, block, BLOCK_HEADER_LENGTH, blockSize - BLOCK_HEADER_LENGTH);
+        if (read < blockSize - BLOCK_HEADER_LENGTH) {
+            throw new EOFException("Unexpected end of file reading BGZF block");
+        }
+        return block;
+    }
+
+    static byte[] inflateBlock(byte[] block) throws IOException {
+        int uncompressedSize = unpackInt(block, block.length - 4);
+        if (uncompressedSize == 0) {
+            // Empty block. Usually, the EOF marker
+            return EMPTY;
+        } else if (uncompressedSize < 0 || uncompressedSize > MAX_BLOCK_SIZE) {
+            throw new IOException("Invalid BGZF uncompressed block size " + uncompressedSize);
+        }
+        byte[] uncompressed = new byte[uncompressedSize];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(block, BLOCK_HEADER_LENGTH, block.length - BLOCK_HEADER_LENGTH - BLOCK_FOOTER_LENGTH);
+            int inflated = inflater.inflate(uncompressed, 0, uncompressedSize);
+            if (inflated != uncompressedSize) {
+                throw new IOException("Corrupted BGZF block. Expected " + uncompressedSize + " bytes, got " + inflated);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted BGZF block", e);
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(uncompressed, 0, uncompressedSize);
+        if ((int) crc32.getValue() != unpackInt(block, block.length - BLOCK_FOOTER_LENGTH)) {
+            throw new IOException("Corrupted BGZF block. CRC32 mismatch");
+        }
+        return uncompressed;
+    }
+
+    static int readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int read = in.read(buffer, offset + total, length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    static int unpackShort(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF) | ((buffer[offset + 1] & 0xFF) << 8);
+    }
+
+    static int unpackInt(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF)
+                | ((buffer[offset + 1] & 0xFF) << 8)
+                | ((buffer[offset + 2] & 0xFF) << 16)
+                | ((buffer[offset + 3] & 0xFF) << 24);
+    }
+}
@@ -17,6 +17,7 @@
 package org.opencb.opencga.storage.core.io.plain;
 
 import org.opencb.commons.io.DataReader;
+import org.opencb.opencga.storage.core.io.bgzf.ParallelBgzfInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xerial.snappy.SnappyInputStream;
@@ -43,6 +44,7 @@ public class StringDataReader implements DataReader<String> {
     private SizeInputStream sizeInputStream;
     private BiConsumer<Long, Long> readBytesListener;
     private BiConsumer<Long, Long> readLinesListener;
+    private int decompressionThreads = 1;
 
     public StringDataReader(Path path) {
         this.path = path;
@@ -55,8 +57,14 @@ public class StringDataReader implements DataReader<String> {
             lastAvailable = getFileSize();
             sizeInputStream = new SizeInputStream(new FileInputStream(path.toFile()), lastAvailable);
             if (fileName.endsWith(".gz")) {
-                logger.debug("Gzip input compress");
-                this.reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(sizeInputStream)));
+                InputStream is = new BufferedInputStream(sizeInputStream);
+                if (decompressionThreads > 1 && ParallelBgzfInputStream.isBgzf(is)) {
+                    logger.debug("BGZF input compress. Decompress using {} threads", decompressionThreads);
+                    this.reader = new BufferedReader(new InputStreamReader(new ParallelBgzfInputStream(is, decompressionThreads)));
+                } else {
+                    logger.debug("Gzip input compress");
+                    this.reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(is)));
+                }
             } else if (fileName.endsWith(".snappy") || fileName.endsWith(".snz")) {
                 logger.info("Snappy input compress");
                 this.reader = new BufferedReader(new InputStreamReader(new SnappyInputStream(sizeInputStream)));
@@ -145,6 +153,18 @@ public class StringDataReader implements DataReader<String> {
         return this;
     }
 
+    /**
+     * Number of threads to use for decompressing the input file.
+     * Only BGZF compressed files can be decompressed in parallel. Other files will be read with one single thread.
+     *
+     * @param decompressionThreads Number of threads
+     * @return this
+     */
+    public StringDataReader setDecompressionThreads(int decompressionThreads) {
+        this.decompressionThreads = decompressionThreads;
+        return this;
+    }
+
     public long getFileSize() throws IOException {
         return Files.size(path);
     }
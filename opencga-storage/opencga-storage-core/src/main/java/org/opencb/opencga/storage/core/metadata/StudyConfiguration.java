@@ -21,6 +21,7 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.google.common.collect.Maps;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
@@ -37,9 +38,16 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
+ * Study metadata.
+ *
+ * A StudyConfiguration can be turned into an immutable snapshot with {@link #asSnapshot()}. Snapshots can be shared between
+ * threads, and precompute the derived indices (indexed samples, samples positions, ...) only once.
+ * Use {@link #newInstance()} to get a modifiable copy of a snapshot.
+ *
  * @author Jacobo Coll <jacobo167@gmail.com>
  */
 public class StudyConfiguration {
@@ -73,6 +81,11 @@ public class StudyConfiguration {
 
     private ObjectMap attributes;
 
+    private volatile boolean snapshot;
+    // Derived indices. Only cached for snapshots
+    private volatile BiMap<String, Integer> indexedSamplesCache;
+    private volatile BiMap<String, Integer> indexedSamplesPositionCache;
+
     private Logger logger = LoggerFactory.getLogger(StudyConfiguration.class);
 
     protected StudyConfiguration() {
@@ -88,10 +101,12 @@ public class StudyConfiguration {
         this.fileIds = HashBiMap.create(other.fileIds == null ? Collections.emptyMap() : other.fileIds);
         this.sampleIds = HashBiMap.create(other.sampleIds == null ? Collections.emptyMap() : other.sampleIds);
         this.cohortIds = HashBiMap.create(other.cohortIds == null ? Collections.emptyMap() : other.cohortIds);
-        this.cohorts = new HashMap<>(other.cohorts);
+        this.cohorts = new HashMap<>(other.cohorts.size());
+        other.cohorts.forEach((cohortId, samples) -> this.cohorts.put(cohortId, new LinkedHashSet<>(samples)));
         this.indexedFiles = new LinkedHashSet<>(other.indexedFiles);
         this.headers = new HashMap<>(other.headers);
-        this.samplesInFiles = new HashMap<>(other.samplesInFiles);
+        this.samplesInFiles = new HashMap<>(other.samplesInFiles.size());
+        other.samplesInFiles.forEach((fileId, samples) -> this.samplesInFiles.put(fileId, new LinkedHashSet<>(samples)));
         this.calculatedStats = new LinkedHashSet<>(other.calculatedStats);
         this.invalidStats = new LinkedHashSet<>(other.invalidStats);
         this.batches = new ArrayList<>(other.batches.size());
@@ -109,10 +124,54 @@ public class StudyConfiguration {
         this.attributes = new ObjectMap(other.attributes);
     }
 
+    /**
+     * @return a new modifiable copy of this StudyConfiguration
+     */
     public StudyConfiguration newInstance() {
         return new StudyConfiguration(this);
     }
 
+    /**
+     * Turn this StudyConfiguration into an immutable snapshot, that can be shared between threads.
+     *
+     * Setters, and the collections returned by the getters, will fail with an {@link UnsupportedOperationException}.
+     * The attributes and the variantHeader can not be wrapped, so they must be treated as read only.
+     *
+     * @return this StudyConfiguration
+     */
+    public StudyConfiguration asSnapshot() {
+        if (!snapshot) {
+            fileIds = Maps.unmodifiableBiMap(fileIds);
+            sampleIds = Maps.unmodifiableBiMap(sampleIds);
+            cohortIds = Maps.unmodifiableBiMap(cohortIds);
+            Map<Integer, Set<Integer>> unmodifiableCohorts = new HashMap<>(cohorts.size());
+            cohorts.forEach((cohortId, samples) -> unmodifiableCohorts.put(cohortId, Collections.unmodifiableSet(samples)));
+            cohorts = Collections.unmodifiableMap(unmodifiableCohorts);
+            headers = Collections.unmodifiableMap(headers);
+            indexedFiles = new ReadOnlyLinkedHashSet<>(indexedFiles);
+            Map<Integer, LinkedHashSet<Integer>> unmodifiableSamplesInFiles = new HashMap<>(samplesInFiles.size());
+            samplesInFiles.forEach((fileId, samples) -> unmodifiableSamplesInFiles.put(fileId, new ReadOnlyLinkedHashSet<>(samples)));
+            samplesInFiles = Collections.unmodifiableMap(unmodifiableSamplesInFiles);
+            calculatedStats = Collections.unmodifiableSet(calculatedStats);
+            invalidStats = Collections.unmodifiableSet(invalidStats);
+            batches = Collections.unmodifiableList(batches);
+            snapshot = true;
+        }
+        return this;
+    }
+
+    @JsonIgnore
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    private void checkModifiable() {
+        if (snapshot) {
+            throw new UnsupportedOperationException("Unable to modify snapshot of StudyConfiguration " + studyName
+                    + " with timeStamp " + timeStamp + ". Use newInstance() to get a modifiable copy");
+        }
+    }
+
     public StudyConfiguration(int studyId, String studyName) {
         this(studyId, studyName, null, null, null, null);
     }
@@ -189,6 +248,7 @@ public class StudyConfiguration {
     }
 
     public void setStudyId(int studyId) {
+        checkModifiable();
         this.studyId = studyId;
     }
 
@@ -197,6 +257,7 @@ public class StudyConfiguration {
     }
 
     public void setStudyName(String studyName) {
+        checkModifiable();
         this.studyName = studyName;
     }
 
@@ -205,6 +266,7 @@ public class StudyConfiguration {
     }
 
     public void setFileIds(Map<String, Integer> fileIds) {
+        checkModifiable();
         this.fileIds = fileIds == null ? null : HashBiMap.create(fileIds);
     }
 
@@ -213,6 +275,7 @@ public class StudyConfiguration {
     }
 
     public void setSampleIds(Map<String, Integer> sampleIds) {
+        checkModifiable();
         this.sampleIds = sampleIds == null ? null : HashBiMap.create(sampleIds);
     }
 
@@ -221,6 +284,7 @@ public class StudyConfiguration {
     }
 
     public void setCohortIds(Map<String, Integer> cohortIds) {
+        checkModifiable();
         this.cohortIds = cohortIds == null ? null : HashBiMap.create(cohortIds);
     }
 
@@ -229,6 +293,7 @@ public class StudyConfiguration {
     }
 
     public void setCohorts(Map<Integer, Set<Integer>> cohorts) {
+        checkModifiable();
         this.cohorts = cohorts;
     }
 
@@ -237,6 +302,7 @@ public class StudyConfiguration {
     }
 
     public void setIndexedFiles(LinkedHashSet<Integer> indexedFiles) {
+        checkModifiable();
         this.indexedFiles = indexedFiles;
     }
 
@@ -247,6 +313,7 @@ public class StudyConfiguration {
 
     @Deprecated
     public void setHeaders(Map<Integer, String> headers) {
+        checkModifiable();
         this.headers = headers;
     }
 
@@ -255,6 +322,7 @@ public class StudyConfiguration {
     }
 
     public void setSamplesInFiles(Map<Integer, LinkedHashSet<Integer>> samplesInFiles) {
+        checkModifiable();
         this.samplesInFiles = samplesInFiles;
     }
 
@@ -263,6 +331,7 @@ public class StudyConfiguration {
     }
 
     public void setCalculatedStats(Set<Integer> calculatedStats) {
+        checkModifiable();
         this.calculatedStats = calculatedStats;
     }
 
@@ -271,6 +340,7 @@ public class StudyConfiguration {
     }
 
     public void setInvalidStats(Set<Integer> invalidStats) {
+        checkModifiable();
         this.invalidStats = invalidStats;
     }
 
@@ -279,6 +349,7 @@ public class StudyConfiguration {
     }
 
     public StudyConfiguration setBatches(List<BatchFileOperation> batches) {
+        checkModifiable();
         this.batches = batches;
         return this;
     }
@@ -292,10 +363,12 @@ public class StudyConfiguration {
     }
 
     public void setAggregation(Aggregation aggregation) {
+        checkModifiable();
         this.aggregation = aggregation;
     }
 
     public void setAggregationStr(String aggregation) {
+        checkModifiable();
         this.aggregation = AggregationUtils.valueOf(aggregation);
     }
 
@@ -309,6 +382,7 @@ public class StudyConfiguration {
     }
 
     public void setTimeStamp(Long timeStamp) {
+        checkModifiable();
         this.timeStamp = timeStamp;
     }
 
@@ -324,6 +398,7 @@ public class StudyConfiguration {
     }
 
     public StudyConfiguration setVariantHeader(VariantFileHeader header) {
+        checkModifiable();
         this.variantHeader = header;
         return this;
     }
@@ -333,6 +408,7 @@ public class StudyConfiguration {
     }
 
     public void setAttributes(ObjectMap attributes) {
+        checkModifiable();
         this.attributes = attributes;
     }
 
@@ -389,6 +465,18 @@ public class StudyConfiguration {
      * @return  Map between the indexed sample name and its identifier
      */
     public static BiMap<String, Integer> getIndexedSamples(StudyConfiguration studyConfiguration) {
+        if (studyConfiguration.snapshot) {
+            BiMap<String, Integer> indexedSamples = studyConfiguration.indexedSamplesCache;
+            if (indexedSamples == null) {
+                indexedSamples = Maps.unmodifiableBiMap(buildIndexedSamples(studyConfiguration));
+                studyConfiguration.indexedSamplesCache = indexedSamples;
+            }
+            return indexedSamples;
+        }
+        return buildIndexedSamples(studyConfiguration);
+    }
+
+    private static BiMap<String, Integer> buildIndexedSamples(StudyConfiguration studyConfiguration) {
         BiMap<Integer, String> idSample = StudyConfiguration.inverseMap(studyConfiguration.getSampleIds());
         BiMap<String, Integer> sampleIds = HashBiMap.create();
         for (BiMap.Entry<Integer, LinkedHashSet<Integer>> entry : studyConfiguration.getSamplesInFiles().entrySet()) {
@@ -411,6 +499,18 @@ public class StudyConfiguration {
      */
     public static BiMap<String, Integer> getIndexedSamplesPosition(StudyConfiguration studyConfiguration, int... fileIds) {
         Objects.requireNonNull(studyConfiguration, "StudyConfiguration is required");
+        if (studyConfiguration.snapshot && fileIds.length == 0) {
+            BiMap<String, Integer> samplesPosition = studyConfiguration.indexedSamplesPositionCache;
+            if (samplesPosition == null) {
+                samplesPosition = Maps.unmodifiableBiMap(buildIndexedSamplesPosition(studyConfiguration));
+                studyConfiguration.indexedSamplesPositionCache = samplesPosition;
+            }
+            return samplesPosition;
+        }
+        return buildIndexedSamplesPosition(studyConfiguration, fileIds);
+    }
+
+    private static BiMap<String, Integer> buildIndexedSamplesPosition(StudyConfiguration studyConfiguration, int... fileIds) {
         BiMap<String, Integer> samplesPosition = HashBiMap.create(studyConfiguration.getSampleIds().size());
         BiMap<Integer, String> idSamples = studyConfiguration.sampleIds.inverse();
         for (Integer indexedFileId : studyConfiguration.getIndexedFiles()) {
@@ -491,6 +591,7 @@ public class StudyConfiguration {
     }
 
     public void addVariantFileHeader(VariantFileHeader header, List<String> formats) {
+        checkModifiable();
         Map<String, Map<String, VariantFileHeaderComplexLine>> map = new HashMap<>();
         for (VariantFileHeaderComplexLine line : this.variantHeader.getComplexLines()) {
             Map<String, VariantFileHeaderComplexLine> keyMap = map.computeIfAbsent(line.getKey(), key -> new HashMap<>());
@@ -527,4 +628,83 @@ public class StudyConfiguration {
                 .map(e -> new VariantFileHeaderSimpleLine(e.getKey(), e.getValue()))
                 .collect(Collectors.toList()));
     }
+
+    /**
+     * Read only LinkedHashSet, to keep the type of the fields indexedFiles and samplesInFiles in the snapshots.
+     */
+    private static final class ReadOnlyLinkedHashSet<E> extends LinkedHashSet<E> {
+        private final boolean readOnly;
+
+        private ReadOnlyLinkedHashSet(Collection<? extends E> c) {
+            super(c);
+            readOnly = true;
+        }
+
+        private void checkModifiable() {
+            if (readOnly) {
+                throw new UnsupportedOperationException();
+            }
+        }
+
+        @Override
+        public boolean add(E e) {
+            checkModifiable();
+            return super.add(e);
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends E> c) {
+            checkModifiable();
+            return super.addAll(c);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            checkModifiable();
+            return super.remove(o);
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c) {
+            checkModifiable();
+            return super.removeAll(c);
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c) {
+            checkModifiable();
+            return super.retainAll(c);
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super E> filter) {
+            checkModifiable();
+            return super.removeIf(filter);
+        }
+
+        @Override
+        public void clear() {
+            checkModifiable();
+            super.clear();
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            Iterator<E> iterator = super.iterator();
+            if (!readOnly) {
+                return iterator;
+            }
+            return new Iterator<E>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public E next() {
+                    return iterator.next();
+                }
+            };
+        }
+    }
 }
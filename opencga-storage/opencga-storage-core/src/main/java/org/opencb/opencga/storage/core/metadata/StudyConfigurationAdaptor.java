@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeoutException;
@@ -50,6 +51,21 @@ public abstract class StudyConfigurationAdaptor implements AutoCloseable {
 
     protected abstract QueryResult updateStudyConfiguration(StudyConfiguration studyConfiguration, QueryOptions options);
 
+    /**
+     * Update the StudyConfiguration, knowing the last version read or written.
+     * Adaptors may use the previous version to store only the sections that changed.
+     * If the stored version does not match the previous version, the whole StudyConfiguration must be written.
+     *
+     * @param studyConfiguration    StudyConfiguration to store
+     * @param previous              Last known version of the StudyConfiguration. May be null.
+     * @param options               Options
+     * @return                      Update result
+     */
+    protected QueryResult updateStudyConfiguration(StudyConfiguration studyConfiguration, StudyConfiguration previous,
+                                                   QueryOptions options) {
+        return updateStudyConfiguration(studyConfiguration, options);
+    }
+
     protected abstract Map<String, Integer> getStudies(QueryOptions options);
 
     protected List<String> getStudyNames(QueryOptions options) {
@@ -60,6 +76,24 @@ public abstract class StudyConfigurationAdaptor implements AutoCloseable {
         return new ArrayList<>(getStudies(options).values());
     }
 
+    /**
+     * Get the timeStamp of the last version of each StudyConfiguration.
+     * Adaptors should override this method to avoid reading the whole StudyConfigurations.
+     *
+     * @param options   Options
+     * @return          Map from studyId to timeStamp
+     */
+    protected Map<Integer, Long> getStudyTimeStamps(QueryOptions options) {
+        Map<Integer, Long> timeStamps = new HashMap<>();
+        for (Integer studyId : getStudyIds(options)) {
+            StudyConfiguration studyConfiguration = getStudyConfiguration(studyId, null, options).first();
+            if (studyConfiguration != null && studyConfiguration.getTimeStamp() != null) {
+                timeStamps.put(studyId, studyConfiguration.getTimeStamp());
+            }
+        }
+        return timeStamps;
+    }
+
     @Override
     public void close() throws IOException {
 
@@ -34,6 +34,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Predicate;
 
@@ -50,8 +51,9 @@ public class StudyConfigurationManager implements AutoCloseable {
 
     protected StudyConfigurationAdaptor adaptor;
 
-    private final Map<String, StudyConfiguration> stringStudyConfigurationMap = new HashMap<>();
-    private final Map<Integer, StudyConfiguration> intStudyConfigurationMap = new HashMap<>();
+    // Cached immutable snapshots of the last read or written StudyConfigurations. See StudyConfiguration#asSnapshot
+    private final Map<String, StudyConfiguration> stringStudyConfigurationMap = new ConcurrentHashMap<>();
+    private final Map<Integer, StudyConfiguration> intStudyConfigurationMap = new ConcurrentHashMap<>();
 
     public StudyConfigurationManager(StudyConfigurationAdaptor adaptor) {
         this.adaptor = adaptor;
@@ -116,17 +118,18 @@ public class StudyConfigurationManager implements AutoCloseable {
         QueryResult<StudyConfiguration> result;
         final boolean cached = options != null && options.getBoolean(CACHED, false);
         final boolean readOnly = options != null && options.getBoolean(READ_ONLY, false);
-        if (stringStudyConfigurationMap.containsKey(studyName)) {
+        StudyConfiguration cachedStudyConfiguration = studyName == null ? null : stringStudyConfigurationMap.get(studyName);
+        if (cachedStudyConfiguration != null) {
             if (cached) {
-                StudyConfiguration studyConfiguration = stringStudyConfigurationMap.get(studyName);
+                StudyConfiguration studyConfiguration = cachedStudyConfiguration;
                 if (!readOnly) {
                     studyConfiguration = studyConfiguration.newInstance();
                 }
                 return new QueryResult<>(studyConfiguration.getStudyName(), 0, 1, 1, "", "", Collections.singletonList(studyConfiguration));
             }
-            result = adaptor.getStudyConfiguration(studyName, stringStudyConfigurationMap.get(studyName).getTimeStamp(), options);
+            result = adaptor.getStudyConfiguration(studyName, cachedStudyConfiguration.getTimeStamp(), options);
             if (result.getNumTotalResults() == 0) { //No changes. Return old value
-                StudyConfiguration studyConfiguration = stringStudyConfigurationMap.get(studyName);
+                StudyConfiguration studyConfiguration = cachedStudyConfiguration;
                 if (!readOnly) {
                     studyConfiguration = studyConfiguration.newInstance();
                 }
@@ -138,12 +141,13 @@ public class StudyConfigurationManager implements AutoCloseable {
 
         StudyConfiguration studyConfiguration = result.first();
         if (studyConfiguration != null) {
-            intStudyConfigurationMap.put(studyConfiguration.getStudyId(), studyConfiguration);
-            stringStudyConfigurationMap.put(studyConfiguration.getStudyName(), studyConfiguration);
+            studyConfiguration = publishSnapshot(studyConfiguration);
             if (studyName != null && !studyName.equals(studyConfiguration.getStudyName())) {
                 stringStudyConfigurationMap.put(studyName, studyConfiguration);
             }
-            if (!readOnly) {
+            if (readOnly) {
+                result.setResult(Collections.singletonList(studyConfiguration));
+            } else {
                 result.setResult(Collections.singletonList(studyConfiguration.newInstance()));
             }
         }
@@ -155,17 +159,18 @@ public class StudyConfigurationManager implements AutoCloseable {
         QueryResult<StudyConfiguration> result;
         final boolean cached = options != null && options.getBoolean(CACHED, false);
         final boolean readOnly = options != null && options.getBoolean(READ_ONLY, false);
-        if (intStudyConfigurationMap.containsKey(studyId)) {
+        StudyConfiguration cachedStudyConfiguration = intStudyConfigurationMap.get(studyId);
+        if (cachedStudyConfiguration != null) {
             if (cached) {
-                StudyConfiguration studyConfiguration = intStudyConfigurationMap.get(studyId);
+                StudyConfiguration studyConfiguration = cachedStudyConfiguration;
                 if (!readOnly) {
                     studyConfiguration = studyConfiguration.newInstance();
                 }
                 return new QueryResult<>(studyConfiguration.getStudyName(), 0, 1, 1, "", "", Collections.singletonList(studyConfiguration));
             }
-            result = adaptor.getStudyConfiguration(studyId, intStudyConfigurationMap.get(studyId).getTimeStamp(), options);
+            result = adaptor.getStudyConfiguration(studyId, cachedStudyConfiguration.getTimeStamp(), options);
             if (result.getNumTotalResults() == 0) { //No changes. Return old value
-                StudyConfiguration studyConfiguration = intStudyConfigurationMap.get(studyId);
+                StudyConfiguration studyConfiguration = cachedStudyConfiguration;
                 if (!readOnly) {
                     studyConfiguration = studyConfiguration.newInstance();
                 }
@@ -177,9 +182,10 @@ public class StudyConfigurationManager implements AutoCloseable {
 
         StudyConfiguration studyConfiguration = result.first();
         if (studyConfiguration != null) {
-            intStudyConfigurationMap.put(studyConfiguration.getStudyId(), studyConfiguration);
-            stringStudyConfigurationMap.put(studyConfiguration.getStudyName(), studyConfiguration);
-            if (!readOnly) {
+            studyConfiguration = publishSnapshot(studyConfiguration);
+            if (readOnly) {
+                result.setResult(Collections.singletonList(studyConfiguration));
+            } else {
                 result.setResult(Collections.singletonList(studyConfiguration.newInstance()));
             }
         }
@@ -215,8 +221,24 @@ public class StudyConfigurationManager implements AutoCloseable {
         return adaptor.getStudies(options);
     }
 
+    /**
+     * Get the timeStamp of the last version of each StudyConfiguration, without reading the whole StudyConfigurations.
+     * Any modification of a StudyConfiguration changes its timeStamp.
+     *
+     * @param options   Options
+     * @return          Map from studyId to timeStamp
+     */
+    public Map<Integer, Long> getStudyTimeStamps(QueryOptions options) {
+        return adaptor.getStudyTimeStamps(options);
+    }
+
     public final QueryResult updateStudyConfiguration(StudyConfiguration studyConfiguration, QueryOptions options) {
-        long timeStamp = System.currentTimeMillis();
+        StudyConfiguration previous = intStudyConfigurationMap.get(studyConfiguration.getStudyId());
+        // TimeStamps must be strictly increasing, even if the updates happen within the same millisecond.
+        long lastTimeStamp = Math.max(
+                studyConfiguration.getTimeStamp() == null ? 0 : studyConfiguration.getTimeStamp(),
+                previous == null || previous.getTimeStamp() == null ? 0 : previous.getTimeStamp());
+        long timeStamp = Math.max(System.currentTimeMillis(), lastTimeStamp + 1);
         logger.debug("Timestamp : {} -> {}", studyConfiguration.getTimeStamp(), timeStamp);
         studyConfiguration.setTimeStamp(timeStamp);
         Map<Integer, String> headers = studyConfiguration.getHeaders();
@@ -229,9 +251,27 @@ public class StudyConfigurationManager implements AutoCloseable {
 
         // Store a copy of the StudyConfiguration.
         StudyConfiguration copy = studyConfiguration.newInstance();
-        stringStudyConfigurationMap.put(copy.getStudyName(), copy);
-        intStudyConfigurationMap.put(copy.getStudyId(), copy);
-        return adaptor.updateStudyConfiguration(copy, options);
+        QueryResult queryResult = adaptor.updateStudyConfiguration(copy, previous, options);
+        publishSnapshot(copy);
+        return queryResult;
+    }
+
+    /**
+     * Publish a new version of a StudyConfiguration, as an immutable snapshot shared by all the readers.
+     * Older versions are never replaced by the new ones.
+     *
+     * @param studyConfiguration StudyConfiguration to publish. Should not be modified after this call
+     * @return The published snapshot
+     */
+    private StudyConfiguration publishSnapshot(StudyConfiguration studyConfiguration) {
+        StudyConfiguration snapshot = studyConfiguration.asSnapshot();
+        StudyConfiguration published = intStudyConfigurationMap.merge(snapshot.getStudyId(), snapshot, (oldValue, newValue) -> {
+            long oldTimeStamp = oldValue.getTimeStamp() == null ? 0 : oldValue.getTimeStamp();
+            long newTimeStamp = newValue.getTimeStamp() == null ? 0 : newValue.getTimeStamp();
+            return newTimeStamp >= oldTimeStamp ? newValue : oldValue;
+        });
+        stringStudyConfigurationMap.put(published.getStudyName(), published);
+        return published;
     }
 
 
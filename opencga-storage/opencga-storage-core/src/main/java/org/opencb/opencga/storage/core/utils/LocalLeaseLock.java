@@ -0,0 +1,255 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.utils;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process fair lock with leases, used in front of the distributed locks.
+ *
+ * Threads from the same JVM competing for the same distributed lock are queued here in FIFO order, so only one of them
+ * contends for the distributed lock. Waiters are notified on release, instead of polling.
+ * The lease of the holder expires after the lock duration, unless renewed. Expired leases are taken by the next waiter,
+ * the same as the distributed lock.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public final class LocalLeaseLock {
+
+    /** Token of a holder that has not won the distributed lock yet. */
+    public static final long NO_TOKEN = Long.MIN_VALUE;
+    private static final Map<String, LocalLeaseLock> LOCKS = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final LinkedList<Thread> waiters = new LinkedList<>();
+    private boolean held = false;
+    private Thread owner;
+    private long token = NO_TOKEN;
+    private long leaseExpiration;
+
+    // Contention metrics
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong contended = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong expiredLeases = new AtomicLong();
+    private final AtomicLong remoteRetries = new AtomicLong();
+
+    private LocalLeaseLock(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Get the local lock for a distributed lock.
+     *
+     * @param key   Unique identifier of the distributed lock
+     * @return      Local lock shared by all the threads of this JVM
+     */
+    public static LocalLeaseLock get(String key) {
+        return LOCKS.computeIfAbsent(key, LocalLeaseLock::new);
+    }
+
+    /**
+     * @return All the local locks, by key. Useful to inspect the contention metrics.
+     */
+    public static Map<String, LocalLeaseLock> getLocks() {
+        return Collections.unmodifiableMap(LOCKS);
+    }
+
+    /**
+     * Wait until this thread is the first in the queue, and the lock is free or its lease has expired.
+     *
+     * @param lockDuration  Duration of the lease in milliseconds
+     * @param timeout       Max time in milliseconds to wait
+     * @throws InterruptedException if any thread has interrupted the current thread.
+     * @throws TimeoutException     if the lock is not acquired before the timeout.
+     */
+    public synchronized void lock(long lockDuration, long timeout) throws InterruptedException, TimeoutException {
+        long start = System.currentTimeMillis();
+        long deadline = start + timeout;
+        Thread thread = Thread.currentThread();
+        waiters.add(thread);
+        boolean waited = false;
+        try {
+            while (waiters.getFirst() != thread || (held && !isLeaseExpired())) {
+                waited = true;
+                long now = System.currentTimeMillis();
+                if (now >= deadline) {
+                    timeouts.incrementAndGet();
+                    throw new TimeoutException("Unable to get the lock " + key);
+                }
+                long wait = deadline - now;
+                if (held && waiters.getFirst() == thread) {
+                    // Wake up when the lease expires
+                    wait = Math.min(wait, leaseExpiration - now + 1);
+                }
+                wait(wait);
+            }
+        } catch (InterruptedException | TimeoutException | RuntimeException e) {
+            waiters.remove(thread);
+            notifyAll();
+            throw e;
+        }
+        waiters.removeFirst();
+        if (held) {
+            expiredLeases.incrementAndGet();
+        }
+        if (waited) {
+            contended.incrementAndGet();
+            waitTime.addAndGet(System.currentTimeMillis() - start);
+        }
+        acquired.incrementAndGet();
+        held = true;
+        owner = thread;
+        token = NO_TOKEN;
+        leaseExpiration = System.currentTimeMillis() + lockDuration;
+        // Next waiter may wait for the lease expiration
+        notifyAll();
+    }
+
+    /**
+     * Register the token of the distributed lock won by the holder of this lock.
+     *
+     * @param token         Token of the distributed lock
+     * @param lockDuration  Duration of the lease in milliseconds
+     */
+    public synchronized void setToken(long token, long lockDuration) {
+        this.token = token;
+        leaseExpiration = System.currentTimeMillis() + lockDuration;
+    }
+
+    /**
+     * Extend the lease of the holder.
+     *
+     * @param token         Current token
+     * @param newToken      New token, if the distributed lock changed it
+     * @param lockDuration  New duration of the lease in milliseconds, from now
+     */
+    public synchronized void renew(long token, long newToken, long lockDuration) {
+        if (held && this.token == token) {
+            this.token = newToken;
+            leaseExpiration = System.currentTimeMillis() + lockDuration;
+        }
+    }
+
+    /**
+     * Release the lock, if it is held with the given token.
+     *
+     * @param token Token of the distributed lock
+     */
+    public synchronized void unlock(long token) {
+        if (held && this.token == token) {
+            release0();
+        }
+    }
+
+    /**
+     * Release the lock, if it is held by the current thread and the distributed lock was not won yet.
+     * Used when the holder fails to acquire the distributed lock.
+     */
+    public synchronized void release() {
+        if (held && owner == Thread.currentThread() && token == NO_TOKEN) {
+            release0();
+        }
+    }
+
+    private void release0() {
+        held = false;
+        owner = null;
+        token = NO_TOKEN;
+        notifyAll();
+    }
+
+    /**
+     * Count a failed attempt to acquire the distributed lock.
+     */
+    public void remoteRetry() {
+        remoteRetries.incrementAndGet();
+    }
+
+    private boolean isLeaseExpired() {
+        return leaseExpiration < System.currentTimeMillis();
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public synchronized int getQueueLength() {
+        return waiters.size();
+    }
+
+    /**
+     * @return Number of times the lock was acquired
+     */
+    public long getAcquired() {
+        return acquired.get();
+    }
+
+    /**
+     * @return Number of times the lock was acquired after waiting
+     */
+    public long getContended() {
+        return contended.get();
+    }
+
+    /**
+     * @return Total time in milliseconds spent waiting for the lock
+     */
+    public long getWaitTime() {
+        return waitTime.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * @return Number of times the lock was taken from a holder with an expired lease
+     */
+    public long getExpiredLeases() {
+        return expiredLeases.get();
+    }
+
+    /**
+     * @return Number of failed attempts to acquire the distributed lock
+     */
+    public long getRemoteRetries() {
+        return remoteRetries.get();
+    }
+
+    @Override
+    public String toString() {
+        return "LocalLeaseLock{"
+                + "key='" + key + '\''
+                + ", queueLength=" + getQueueLength()
+                + ", acquired=" + acquired
+                + ", contended=" + contended
+                + ", waitTime=" + waitTime
+                + ", timeouts=" + timeouts
+                + ", expiredLeases=" + expiredLeases
+                + ", remoteRetries=" + remoteRetries
+                + '}';
+    }
+}
@@ -18,12 +18,14 @@ package org.opencb.opencga.storage.core.variant;
 
 import com.google.common.base.Throwables;
 import com.google.common.collect.Iterators;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.opencb.biodata.models.core.Region;
 import org.opencb.biodata.models.metadata.SampleSetType;
 import org.opencb.biodata.models.variant.StudyEntry;
 import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.VariantAvro;
 import org.opencb.biodata.models.variant.metadata.Aggregation;
 import org.opencb.biodata.models.variant.metadata.VariantMetadata;
 import org.opencb.cellbase.client.config.ClientConfiguration;
@@ -38,6 +40,7 @@ import org.opencb.opencga.core.common.TimeUtils;
 import org.opencb.opencga.core.results.VariantQueryResult;
 import org.opencb.opencga.storage.core.StorageEngine;
 import org.opencb.opencga.storage.core.StoragePipelineResult;
+import org.opencb.opencga.storage.core.cache.CacheManager;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.exceptions.StoragePipelineException;
@@ -70,6 +73,7 @@ import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static org.opencb.opencga.storage.core.variant.VariantStorageEngine.Options.*;
@@ -83,7 +87,9 @@ import static org.opencb.opencga.storage.core.variant.search.solr.VariantSearchU
 public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdaptor> {
 
     public static final String REMOVE_OPERATION_NAME = BatchFileOperation.Type.REMOVE.name().toLowerCase();
+    public static final String VARIANT_CACHE_TYPE = "var";
     private final AtomicReference<VariantSearchManager> variantSearchManager = new AtomicReference<>();
+    private final AtomicReference<CacheManager> cacheManager = new AtomicReference<>();
     private Logger logger = LoggerFactory.getLogger(VariantStorageEngine.class);
     private CellBaseUtils cellBaseUtils;
 
@@ -130,6 +136,8 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         TRANSFORM_BATCH_SIZE("transform.batch.size", 200),
         TRANSFORM_THREADS("transform.threads", 4),
         TRANSFORM_FORMAT("transform.format", "avro"),
+        TRANSFORM_DECOMPRESS_THREADS("transform.decompress.threads", -1), // Threads to decompress BGZF inputs. Defaults to 1/4 of threads
+        TRANSFORM_PARALLEL_READERS("transform.parallel.readers", 1), // Split BGZF inputs in ranges to be transformed in parallel
         LOAD_BATCH_SIZE("load.batch.size", 100),
         LOAD_THREADS("load.threads", 6),
         LOAD_SPLIT_DATA("load.split-data", false),
@@ -152,6 +160,17 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         INTERSECT_ACTIVE("search.intersect.active", true),                       // Allow intersect queries with the SearchEngine (Solr)
         INTERSECT_ALWAYS("search.intersect.always", false),                      // Force intersect queries
         INTERSECT_PARAMS_THRESHOLD("search.intersect.params.threshold", 3),      // Minimum number of QueryParams in the query to intersect
+        INTERSECT_PREFETCH("search.intersect.prefetch", 4),                      // Number of intersect sub-queries executed in background
+
+        // Only index the variants modified since their last synchronization with the search engine, if tracked by the DBAdaptor
+        SEARCH_INDEX_INCREMENTAL("search.index.incremental", true),
+        // Study attribute. Start time of the last full synchronization with the search engine
+        SEARCH_INDEX_LAST_TIMESTAMP("search.index.last.timestamp", 0),
+
+        // Export options
+        EXPORT_THREADS("export.threads", 4),                     // Genomic partitions exported in parallel into a bgzip VCF. 1 to disable
+        EXPORT_PARTITION_SIZE("export.partition.size", 1000000), // Size in bases of each genomic partition
+        EXPORT_PARQUET_ROW_GROUP_SIZE("export.parquet.row_group.size", 128 * 1024 * 1024), // Size in bytes of each parquet row group
 
         APPROXIMATE_COUNT_SAMPLING_SIZE("approximateCountSamplingSize", 1000),
         APPROXIMATE_COUNT("approximateCount", false);
@@ -313,7 +332,29 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
     public void annotate(Query query, ObjectMap params) throws VariantAnnotatorException, StorageEngineException, IOException {
         VariantAnnotator annotator = VariantAnnotatorFactory.buildVariantAnnotator(configuration, getStorageEngineId(), params);
         VariantAnnotationManager annotationManager = newVariantAnnotationManager(annotator);
-        annotationManager.annotate(query, params);
+        try {
+            annotationManager.annotate(query, params);
+        } finally {
+            invalidateCachedResults();
+        }
+    }
+
+    /**
+     * Invalidate the cached query results of this database, from this and any other process.
+     *
+     * Changes in the variants that are not tracked by the StudyConfigurations (e.g. annotation) need to update
+     * the timeStamp of all the studies, as it is used to build the cache keys. See {@link #getCacheStudyId()}.
+     *
+     * @throws StorageEngineException if the StudyConfigurations can not be updated
+     */
+    protected void invalidateCachedResults() throws StorageEngineException {
+        StudyConfigurationManager studyConfigurationManager = getStudyConfigurationManager();
+        for (Integer studyId : studyConfigurationManager.getStudyIds(null)) {
+            // Store the StudyConfiguration without changes, just to update the timeStamp
+            studyConfigurationManager.lockAndUpdate(studyId, studyConfiguration -> studyConfiguration);
+        }
+        // Release the memory used by the old entries
+        getCacheManager().clearStudy(dbName);
     }
 
     /**
@@ -472,6 +513,21 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         searchIndex(new Query(), new QueryOptions());
     }
 
+    /**
+     * Load variants into the search engine.
+     *
+     * If the DBAdaptor tracks the synchronization with the search engine, and {@link Options#SEARCH_INDEX_INCREMENTAL} is set,
+     * only the variants modified since their last synchronization are loaded.
+     * The loaded variants are marked as synchronized.
+     * Variants loaded before the synchronization was tracked are not flagged, so the first synchronization of each study
+     * is always a full load. See {@link Options#SEARCH_INDEX_LAST_TIMESTAMP}.
+     *
+     * @param query         Query to select the variants to load
+     * @param queryOptions  Query options, also used as load options
+     * @throws StorageEngineException  if there is any error
+     * @throws IOException             if there is any IO error
+     * @throws VariantSearchException  if there is an error loading the variants into the search engine
+     */
     public void searchIndex(Query query, QueryOptions queryOptions) throws StorageEngineException, IOException, VariantSearchException {
         VariantDBAdaptor dbAdaptor = getDBAdaptor();
 
@@ -482,15 +538,80 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
             // then, load variants
             queryOptions = queryOptions == null ? new QueryOptions() : new QueryOptions(queryOptions);
             queryOptions.put(QueryOptions.EXCLUDE, Arrays.asList(VariantField.STUDIES_SAMPLES_DATA, VariantField.STUDIES_FILES));
-            VariantDBIterator iterator = dbAdaptor.iterator(query, queryOptions);
-            ProgressLogger progressLogger = new ProgressLogger("Variants loaded in Solr:", () -> dbAdaptor.count(query).first(), 200);
-            variantSearchManager.load(dbName, iterator, progressLogger);
+            Query loadQuery = query == null ? new Query() : new Query(query);
+
+            Consumer<List<Variant>> onLoad = null;
+            boolean fullSync = false;
+            // Variants modified after this point have to be loaded again
+            long timestamp = System.currentTimeMillis();
+            if (dbAdaptor.isSearchIndexSyncTracked()) {
+                if (queryOptions.getBoolean(SEARCH_INDEX_INCREMENTAL.key(), SEARCH_INDEX_INCREMENTAL.defaultValue())
+                        && isSearchIndexFullySynchronized(dbAdaptor.getStudyConfigurationManager())) {
+                    loadQuery.put(VariantQueryUtils.VARIANTS_TO_INDEX.key(), true);
+                } else {
+                    fullSync = query == null || query.isEmpty();
+                }
+                onLoad = variants -> dbAdaptor.updateSearchIndexSync(variants, timestamp, QueryOptions.empty());
+            }
+
+            VariantDBIterator iterator = dbAdaptor.iterator(loadQuery, queryOptions);
+            ProgressLogger progressLogger = new ProgressLogger("Variants loaded in Solr:", () -> dbAdaptor.count(loadQuery).first(), 200);
+            variantSearchManager.load(dbName, iterator, progressLogger, queryOptions, onLoad);
+            if (fullSync) {
+                StudyConfigurationManager studyConfigurationManager = dbAdaptor.getStudyConfigurationManager();
+                for (Integer studyId : studyConfigurationManager.getStudyIds(null)) {
+                    studyConfigurationManager.lockAndUpdate(studyId, studyConfiguration -> {
+                        studyConfiguration.getAttributes().put(SEARCH_INDEX_LAST_TIMESTAMP.key(), timestamp);
+                        return studyConfiguration;
+                    });
+                }
+            }
+            logger.info("Search index freshness: {}", searchIndexFreshness(dbAdaptor));
         } else {
             throw new StorageEngineException("Solr is not alive!");
         }
         dbAdaptor.close();
     }
 
+    /**
+     * Check if all the studies were fully loaded into the search engine at least once since the synchronization is tracked.
+     *
+     * @param studyConfigurationManager StudyConfigurationManager
+     * @return If the pending variants can be loaded incrementally
+     */
+    private boolean isSearchIndexFullySynchronized(StudyConfigurationManager studyConfigurationManager) {
+        List<Integer> studyIds = studyConfigurationManager.getStudyIds(null);
+        for (Integer studyId : studyIds) {
+            StudyConfiguration studyConfiguration = studyConfigurationManager.getStudyConfiguration(studyId, null).first();
+            if (studyConfiguration.getAttributes().getLong(SEARCH_INDEX_LAST_TIMESTAMP.key()) <= 0) {
+                return false;
+            }
+        }
+        return !studyIds.isEmpty();
+    }
+
+    /**
+     * Report how up to date is the search engine.
+     *
+     * @return ObjectMap with the total number of variants, and, if tracked, the number of variants pending to be synchronized
+     * @throws StorageEngineException  if there is any error
+     */
+    public ObjectMap searchIndexFreshness() throws StorageEngineException {
+        return searchIndexFreshness(getDBAdaptor());
+    }
+
+    private ObjectMap searchIndexFreshness(VariantDBAdaptor dbAdaptor) {
+        long variants = dbAdaptor.count(new Query()).first();
+        ObjectMap freshness = new ObjectMap("variants", variants);
+        freshness.put("tracked", dbAdaptor.isSearchIndexSyncTracked());
+        if (dbAdaptor.isSearchIndexSyncTracked()) {
+            long pending = dbAdaptor.count(new Query(VariantQueryUtils.VARIANTS_TO_INDEX.key(), true)).first();
+            freshness.put("pendingVariants", pending);
+            freshness.put("synchronizedRatio", variants == 0 ? 1.0 : (variants - pending) / (double) variants);
+        }
+        return freshness;
+    }
+
     /**
      * Removes a file from the Variant Storage.
      *
@@ -662,6 +783,17 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         return variantSearchManager.get();
     }
 
+    public CacheManager getCacheManager() {
+        if (cacheManager.get() == null) {
+            synchronized (cacheManager) {
+                if (cacheManager.get() == null) {
+                    cacheManager.set(new CacheManager(configuration));
+                }
+            }
+        }
+        return cacheManager.get();
+    }
+
     public VariantQueryResult<Variant> getPhased(String variant, String studyName, String sampleName, QueryOptions options, int windowsSize)
             throws StorageEngineException {
         setDefaultTimeout(options);
@@ -679,7 +811,60 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
     }
 
     public VariantQueryResult<Variant> get(Query query, QueryOptions options) throws StorageEngineException {
-        return (VariantQueryResult<Variant>) getOrIterator(query, options, false);
+        CacheManager cacheManager = getCacheManager();
+        if (!cacheManager.isActive() || !cacheManager.isTypeAllowed(VARIANT_CACHE_TYPE)) {
+            return (VariantQueryResult<Variant>) getOrIterator(query, options, false);
+        }
+        Query cacheQuery = query == null ? new Query() : query;
+        QueryOptions cacheOptions = options == null ? new QueryOptions() : new QueryOptions(options);
+        String key = cacheManager.createKey(getCacheStudyId(), VARIANT_CACHE_TYPE, cacheQuery, cacheOptions);
+
+        QueryResult<Variant> cachedResult = cacheManager.get(key);
+        if (cachedResult instanceof VariantQueryResult) {
+            logger.debug("Variant query result found in cache");
+            return copyQueryResult((VariantQueryResult<Variant>) cachedResult);
+        }
+
+        VariantQueryResult<Variant> result = (VariantQueryResult<Variant>) getOrIterator(query, options, false);
+        cacheManager.set(key, cacheQuery, copyQueryResult(result));
+        return result;
+    }
+
+    /**
+     * Build the study identifier used in the cache keys. Includes the timestamp of all the StudyConfigurations,
+     * so the cached results are invalidated every time that any study is modified (load, stats, remove, annotation ...),
+     * from any process. Only the timestamps are read, not the whole StudyConfigurations.
+     *
+     * @return Study identifier for the cache
+     * @throws StorageEngineException StorageEngineException
+     */
+    protected String getCacheStudyId() throws StorageEngineException {
+        Map<Integer, Long> timeStamps = new TreeMap<>(getStudyConfigurationManager().getStudyTimeStamps(null));
+        return dbName + ':' + DigestUtils.sha1Hex(timeStamps.toString()).substring(0, 8);
+    }
+
+    /**
+     * Deep copy of a query result, so the cached results can not be modified by the callers.
+     *
+     * @param result    Query result to copy
+     * @return          Copy of the query result
+     */
+    private static VariantQueryResult<Variant> copyQueryResult(VariantQueryResult<Variant> result) {
+        List<Variant> variants = new ArrayList<>(result.getResult().size());
+        for (Variant variant : result.getResult()) {
+            variants.add(new Variant(VariantAvro.newBuilder(variant.getImpl()).build()));
+        }
+        Map<String, List<String>> samples = null;
+        if (result.getSamples() != null) {
+            samples = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> entry : result.getSamples().entrySet()) {
+                samples.put(entry.getKey(), entry.getValue() == null ? null : new ArrayList<>(entry.getValue()));
+            }
+        }
+        return new VariantQueryResult<>(result.getId(), result.getDbTime(), result.getNumResults(), result.getNumTotalResults(),
+                result.getWarningMsg(), result.getErrorMsg(), variants, samples, result.getSource(),
+                result.getApproximateCount(), result.getApproximateCountSamplingSize())
+                .setResumeToken(result.getResumeToken());
     }
 
     public VariantDBIterator iterator(Query query, QueryOptions options) throws StorageEngineException {
@@ -690,7 +875,6 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         if (options == null) {
             options = QueryOptions.empty();
         }
-        // TODO: Use CacheManager ?
         query = preProcessQuery(query, getStudyConfigurationManager());
         if (doQuerySearchManager(query, options)) {
             try {
@@ -754,6 +938,11 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
                 Query engineQuery = getEngineQuery(query, options, getStudyConfigurationManager());
 
                 VariantDBAdaptor dbAdaptor = getDBAdaptor();
+                if (!options.containsKey(MultiVariantDBIterator.PREFETCH)) {
+                    options = new QueryOptions(options)
+                            .append(MultiVariantDBIterator.PREFETCH, getOptions().getInt(INTERSECT_PREFETCH.key(),
+                                    INTERSECT_PREFETCH.defaultValue()));
+                }
                 logger.debug("Intersect query " + engineQuery.toJson() + " options " + options.toJson());
                 if (iterator) {
                     return dbAdaptor.iterator(variantsIterator, engineQuery, options);
@@ -1001,6 +1190,9 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
     @Override
     public void close() throws IOException {
         cellBaseUtils = null;
+        if (cacheManager.get() != null) {
+            cacheManager.getAndSet(null).close();
+        }
         if (variantSearchManager.get() != null) {
             try {
                 variantSearchManager.get().close();
@@ -22,6 +22,13 @@ import htsjdk.variant.vcf.VCFConstants;
 import htsjdk.variant.vcf.VCFHeader;
 import htsjdk.variant.vcf.VCFHeaderLineType;
 import htsjdk.variant.vcf.VCFHeaderVersion;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -45,6 +52,9 @@ import org.opencb.hpg.bigdata.core.io.avro.AvroFileWriter;
 import org.opencb.opencga.storage.core.StoragePipeline;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.io.bgzf.BgzfRange;
+import org.opencb.opencga.storage.core.io.bgzf.BgzfRangeDataReader;
+import org.opencb.opencga.storage.core.io.bgzf.ParallelBgzfInputStream;
 import org.opencb.opencga.storage.core.io.plain.StringDataReader;
 import org.opencb.opencga.storage.core.io.plain.StringDataWriter;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
@@ -63,6 +73,7 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -70,7 +81,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
@@ -242,6 +257,12 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
         String extension = "";
         int numTasks = options.getInt(Options.TRANSFORM_THREADS.key(), Options.TRANSFORM_THREADS.defaultValue());
         int capacity = options.getInt("blockingQueueCapacity", numTasks * 2);
+        int decompressionThreads = options.getInt(Options.TRANSFORM_DECOMPRESS_THREADS.key(),
+                Options.TRANSFORM_DECOMPRESS_THREADS.defaultValue());
+        if (decompressionThreads < 1) {
+            decompressionThreads = Math.max(1, numTasks / 4);
+        }
+        int numReaders = options.getInt(Options.TRANSFORM_PARALLEL_READERS.key(), Options.TRANSFORM_PARALLEL_READERS.defaultValue());
 
         if ("gzip".equalsIgnoreCase(compression) || "gz".equalsIgnoreCase(compression)) {
             extension = ".gz";
@@ -256,6 +277,15 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
         Path outputVariantsFile = output.resolve(fileName + '.' + VariantReaderUtils.VARIANTS_FILE + '.' + format + extension);
         Path outputMetaFile = VariantReaderUtils.getMetaFromTransformedFile(outputVariantsFile);
 
+        List<BgzfRange> ranges = null;
+        if (numReaders > 1) {
+            if ("json".equals(format) && ".snappy".equals(extension)) {
+                logger.info("Unable to split transform output in multiple parts with snappy compression. Use one single reader.");
+            } else {
+                ranges = splitInput(input, numReaders);
+            }
+        }
+
         // Close at the end!
         final MalformedVariantHandler malformedHandler;
         try {
@@ -312,7 +342,7 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
         if ("avro".equals(format)) {
 
             //Reader
-            StringDataReader dataReader = new StringDataReader(input);
+            StringDataReader dataReader = new StringDataReader(input).setDecompressionThreads(decompressionThreads);
             long fileSize = 0;
             try {
                 fileSize = dataReader.getFileSize();
@@ -322,20 +352,12 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
             ProgressLogger progressLogger = new ProgressLogger("Transforming file:", fileSize, 200);
             dataReader.setReadBytesListener((totalRead, delta) -> progressLogger.increment(delta, "Bytes"));
 
-            //Writer
-            DataWriter<ByteBuffer> dataWriter;
-            try {
-                dataWriter = new AvroFileWriter<>(VariantAvro.getClassSchema(), compression, new FileOutputStream(outputVariantsFile
-                        .toFile()));
-            } catch (FileNotFoundException e) {
-                throw new StorageEngineException("Fail init writer", e);
-            }
             Supplier<VariantTransformTask<ByteBuffer>> taskSupplier;
+            VariantSetStatsCalculator statsCalculator = new VariantSetStatsCalculator(studyId, metadata);
 
             if (parser.equalsIgnoreCase(HTSJDK_PARSER)) {
                 logger.info("Using HTSJDK to read variants.");
                 Pair<VCFHeader, VCFHeaderVersion> header = readHtsHeader(input);
-                VariantSetStatsCalculator statsCalculator = new VariantSetStatsCalculator(studyId, metadata);
                 taskSupplier = () -> new VariantAvroTransformTask(header.getKey(), header.getValue(), studyId, metadata, outputMetaFile,
                         statsCalculator, includeSrc, generateReferenceBlocks)
                         .setFailOnError(failOnError)
@@ -345,7 +367,6 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
                 // TODO Create a utility to determine which extensions are variants files
                 final VariantVcfFactory factory = createVariantVcfFactory(fileName);
                 logger.info("Using Biodata to read variants.");
-                VariantSetStatsCalculator statsCalculator = new VariantSetStatsCalculator(studyId, metadata);
                 taskSupplier = () -> new VariantAvroTransformTask(factory, studyId, metadata, outputMetaFile, statsCalculator,
                         includeSrc, generateReferenceBlocks)
                         .setFailOnError(failOnError)
@@ -355,28 +376,52 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
 
             logger.info("Generating output file {}", outputVariantsFile);
 
-            ParallelTaskRunner<String, ByteBuffer> ptr;
-            try {
-                ptr = new ParallelTaskRunner<>(
-                        dataReader,
-                        taskSupplier,
-                        dataWriter,
-                        config
-                );
-            } catch (Exception e) {
-                throw new StorageEngineException("Error while creating ParallelTaskRunner", e);
-            }
-            logger.info("Multi thread transform... [1 reading, {} transforming, 1 writing]", numTasks);
-            start = System.currentTimeMillis();
-            try {
-                ptr.run();
-            } catch (ExecutionException e) {
-                throw new StorageEngineException("Error while executing TransformVariants in ParallelTaskRunner", e);
+            if (ranges != null) {
+                start = System.currentTimeMillis();
+                transformRanges(input, ranges, taskSupplier, part -> {
+                    try {
+                        return new AvroFileWriter<>(VariantAvro.getClassSchema(), compression, new FileOutputStream(part.toFile()));
+                    } catch (FileNotFoundException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, this::concatAvroFiles, outputVariantsFile, progressLogger, numTasks, batchSize, decompressionThreads);
+                // Ensure the metadata contains the stats from all the ranges
+                statsCalculator.post();
+                VariantTransformTask.writeVariantFileMetadata(metadata, outputMetaFile);
+                end = System.currentTimeMillis();
+            } else {
+                //Writer
+                DataWriter<ByteBuffer> dataWriter;
+                try {
+                    dataWriter = new AvroFileWriter<>(VariantAvro.getClassSchema(), compression, new FileOutputStream(outputVariantsFile
+                            .toFile()));
+                } catch (FileNotFoundException e) {
+                    throw new StorageEngineException("Fail init writer", e);
+                }
+
+                ParallelTaskRunner<String, ByteBuffer> ptr;
+                try {
+                    ptr = new ParallelTaskRunner<>(
+                            dataReader,
+                            taskSupplier,
+                            dataWriter,
+                            config
+                    );
+                } catch (Exception e) {
+                    throw new StorageEngineException("Error while creating ParallelTaskRunner", e);
+                }
+                logger.info("Multi thread transform... [1 reading, {} transforming, 1 writing]", numTasks);
+                start = System.currentTimeMillis();
+                try {
+                    ptr.run();
+                } catch (ExecutionException e) {
+                    throw new StorageEngineException("Error while executing TransformVariants in ParallelTaskRunner", e);
+                }
+                end = System.currentTimeMillis();
             }
-            end = System.currentTimeMillis();
         } else if ("json".equals(format)) {
             //Reader
-            StringDataReader dataReader = new StringDataReader(input);
+            StringDataReader dataReader = new StringDataReader(input).setDecompressionThreads(decompressionThreads);
             long fileSize = 0;
             try {
                 fileSize = dataReader.getFileSize();
@@ -386,16 +431,11 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
             ProgressLogger progressLogger = new ProgressLogger("Transforming file:", fileSize, 200);
             dataReader.setReadBytesListener((totalRead, delta) -> progressLogger.increment(delta, "Bytes"));
 
-            //Writers
-            StringDataWriter dataWriter = new StringDataWriter(outputVariantsFile, true);
-
-            ParallelTaskRunner<String, String> ptr;
-
             Supplier<VariantTransformTask<String>> taskSupplier;
+            VariantSetStatsCalculator statsCalculator = new VariantSetStatsCalculator(studyId, metadata);
             if (parser.equalsIgnoreCase(HTSJDK_PARSER)) {
                 logger.info("Using HTSJDK to read variants.");
                 Pair<VCFHeader, VCFHeaderVersion> header = readHtsHeader(input);
-                VariantSetStatsCalculator statsCalculator = new VariantSetStatsCalculator(studyId, metadata);
                 taskSupplier = () -> new VariantJsonTransformTask(header.getKey(), header.getValue(), studyId, metadata,
                         outputMetaFile, statsCalculator, includeSrc, generateReferenceBlocks)
                         .setFailOnError(failOnError)
@@ -405,7 +445,6 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
                 // TODO Create a utility to determine which extensions are variants files
                 final VariantVcfFactory factory = createVariantVcfFactory(fileName);
                 logger.info("Using Biodata to read variants.");
-                VariantSetStatsCalculator statsCalculator = new VariantSetStatsCalculator(studyId, metadata);
                 taskSupplier = () -> new VariantJsonTransformTask(factory, studyId, metadata, outputMetaFile, statsCalculator,
                         includeSrc, generateReferenceBlocks)
                         .setFailOnError(failOnError)
@@ -415,25 +454,39 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
 
             logger.info("Generating output file {}", outputVariantsFile);
 
-            try {
-                ptr = new ParallelTaskRunner<>(
-                        dataReader,
-                        taskSupplier,
-                        dataWriter,
-                        config
-                );
-            } catch (Exception e) {
-                throw new StorageEngineException("Error while creating ParallelTaskRunner", e);
-            }
+            if (ranges != null) {
+                start = System.currentTimeMillis();
+                transformRanges(input, ranges, taskSupplier, part -> new StringDataWriter(part, true),
+                        this::concatFiles, outputVariantsFile, progressLogger, numTasks, batchSize, decompressionThreads);
+                // Ensure the metadata contains the stats from all the ranges
+                statsCalculator.post();
+                VariantTransformTask.writeVariantFileMetadata(metadata, outputMetaFile);
+                end = System.currentTimeMillis();
+            } else {
+                //Writers
+                StringDataWriter dataWriter = new StringDataWriter(outputVariantsFile, true);
+
+                ParallelTaskRunner<String, String> ptr;
+                try {
+                    ptr = new ParallelTaskRunner<>(
+                            dataReader,
+                            taskSupplier,
+                            dataWriter,
+                            config
+                    );
+                } catch (Exception e) {
+                    throw new StorageEngineException("Error while creating ParallelTaskRunner", e);
+                }
 
-            logger.info("Multi thread transform... [1 reading, {} transforming, 1 writing]", numTasks);
-            start = System.currentTimeMillis();
-            try {
-                ptr.run();
-            } catch (ExecutionException e) {
-                throw new StorageEngineException("Error while executing TransformVariants in ParallelTaskRunner", e);
+                logger.info("Multi thread transform... [1 reading, {} transforming, 1 writing]", numTasks);
+                start = System.currentTimeMillis();
+                try {
+                    ptr.run();
+                } catch (ExecutionException e) {
+                    throw new StorageEngineException("Error while executing TransformVariants in ParallelTaskRunner", e);
+                }
+                end = System.currentTimeMillis();
             }
-            end = System.currentTimeMillis();
         } else if ("proto".equals(format)) {
             Pair<Long, Long> times = processProto(input, fileName, output, metadata, outputVariantsFile, outputMetaFile,
                     includeSrc, parser, generateReferenceBlocks, batchSize, extension, compression, malformedHandler, failOnError);
@@ -464,6 +517,135 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
         return factory;
     }
 
+    /**
+     * Split the input file in ranges to be transformed in parallel. Only BGZF files can be split.
+     *
+     * @param input     Input file
+     * @param numRanges Number of ranges
+     * @return          List of ranges, or null if the file can not be split
+     * @throws StorageEngineException if there is an error reading the file
+     */
+    protected List<BgzfRange> splitInput(Path input, int numRanges) throws StorageEngineException {
+        if (!input.toString().endsWith(".gz")) {
+            logger.info("Unable to split input file {}. Only BGZF files can be split", input.getFileName());
+            return null;
+        }
+        try {
+            try (InputStream is = new BufferedInputStream(new FileInputStream(input.toFile()))) {
+                if (!ParallelBgzfInputStream.isBgzf(is)) {
+                    logger.info("Unable to split input file {}. Only BGZF files can be split", input.getFileName());
+                    return null;
+                }
+            }
+            List<BgzfRange> ranges = BgzfRange.split(input, numRanges);
+            logger.info("Split input file {} in {} ranges", input.getFileName(), ranges.size());
+            return ranges.size() > 1 ? ranges : null;
+        } catch (IOException e) {
+            throw new StorageEngineException("Error reading file " + input, e);
+        }
+    }
+
+    /**
+     * Transform the input file running one independent reader-transform-writer pipeline for each range.
+     * Each pipeline writes a part file. Once all the pipelines are finished, the parts are concatenated
+     * in order into the output file.
+     */
+    private <T> void transformRanges(Path input, List<BgzfRange> ranges, Supplier<VariantTransformTask<T>> taskSupplier,
+                                     Function<Path, DataWriter<T>> partWriterFactory, PartsConcatenator concatenator,
+                                     Path outputVariantsFile, ProgressLogger progressLogger,
+                                     int numTasks, int batchSize, int decompressionThreads)
+            throws StorageEngineException {
+        int tasksPerRange = Math.max(1, numTasks / ranges.size());
+        int decompressionThreadsPerRange = Math.max(1, decompressionThreads / ranges.size());
+        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
+                .setNumTasks(tasksPerRange)
+                .setBatchSize(batchSize)
+                .setCapacity(tasksPerRange * 2)
+                .setSorted(true)
+                .build();
+
+        logger.info("Multi thread transform... [{} ranges x [1 reading, {} transforming, 1 writing]]", ranges.size(), tasksPerRange);
+        ExecutorService executorService = Executors.newFixedThreadPool(ranges.size(), r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        }); // Set Daemon for quick shutdown !!!
+        List<Path> parts = new ArrayList<>(ranges.size());
+        List<Future<?>> futures = new ArrayList<>(ranges.size());
+        for (BgzfRange range : ranges) {
+            Path part = outputVariantsFile.resolveSibling(outputVariantsFile.getFileName() + ".part" + range.getIndex());
+            parts.add(part);
+            futures.add(executorService.submit(() -> {
+                BgzfRangeDataReader dataReader = new BgzfRangeDataReader(input, range, decompressionThreadsPerRange)
+                        .setReadBytesListener((totalRead, delta) -> progressLogger.increment(delta, "Bytes"));
+                new ParallelTaskRunner<>(dataReader, taskSupplier, partWriterFactory.apply(part), config).run();
+                return null;
+            }));
+        }
+        executorService.shutdown();
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            logger.info("Concatenate {} parts into {}", parts.size(), outputVariantsFile.getFileName());
+            concatenator.concat(parts, outputVariantsFile);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageEngineException("Interrupted while executing TransformVariants", e);
+        } catch (ExecutionException e) {
+            throw new StorageEngineException("Error while executing TransformVariants in ParallelTaskRunner", e.getCause());
+        } catch (IOException e) {
+            throw new StorageEngineException("Error concatenating transformed files", e);
+        } finally {
+            executorService.shutdownNow();
+            // Remove the parts also on error, so failed transformations do not leave partial files behind
+            for (Path part : parts) {
+                try {
+                    Files.deleteIfExists(part);
+                } catch (IOException e) {
+                    logger.warn("Unable to delete part file " + part, e);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface PartsConcatenator {
+        void concat(List<Path> parts, Path output) throws IOException;
+    }
+
+    /**
+     * Concatenate plain files, or gzip files. Concatenated gzip members are a valid gzip file.
+     */
+    private void concatFiles(List<Path> parts, Path output) throws IOException {
+        try (OutputStream os = new FileOutputStream(output.toFile())) {
+            for (Path part : parts) {
+                Files.copy(part, os);
+            }
+        }
+    }
+
+    /**
+     * Concatenate avro files with the same schema and codec. Data blocks are copied without decoding.
+     */
+    private void concatAvroFiles(List<Path> parts, Path output) throws IOException {
+        try (DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<>())) {
+            boolean created = false;
+            for (Path part : parts) {
+                try (DataFileStream<GenericRecord> stream = new DataFileStream<>(
+                        new BufferedInputStream(new FileInputStream(part.toFile())), new GenericDatumReader<>())) {
+                    if (!created) {
+                        String codec = stream.getMetaString(DataFileConstants.CODEC);
+                        writer.setCodec(CodecFactory.fromString(codec == null ? DataFileConstants.NULL_CODEC : codec));
+                        writer.create(stream.getSchema(), new FileOutputStream(output.toFile()));
+                        created = true;
+                    }
+                    writer.appendAllFrom(stream, false);
+                }
+            }
+        }
+    }
+
     protected Pair<Long, Long> processProto(
             Path input, String fileName, Path output, VariantFileMetadata metadata, Path outputVariantsFile,
             Path outputMetaFile, boolean includeSrc, String parser, boolean generateReferenceBlocks,
@@ -24,17 +24,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.BiFunction;
 
 /**
  * Iterates multiple variant iterators. Every time that voids one iterator, creates a new one using the iteratorFactory.
  *
+ * If {@link #PREFETCH} is given, up to "prefetch" sub-queries are executed concurrently in the background, ahead of the
+ * current iterator. The order of the queries is preserved.
+ *
  * Created on 04/07/17.
  *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
  */
 public class MultiVariantDBIterator extends VariantDBIterator {
 
+    /** Number of sub-queries to execute in the background. Zero or negative to execute them one by one when required. */
+    public static final String PREFETCH = "multiIterator.prefetch";
+
     private final Iterator<Query> queryIterator;
     private final QueryOptions options;
     private final BiFunction<Query, QueryOptions, VariantDBIterator> iteratorFactory;
@@ -46,6 +53,10 @@ public class MultiVariantDBIterator extends VariantDBIterator {
     private boolean pendingSkip;
     // Count of returned results.
     private int numResults;
+    private final int prefetch;
+    // Prefetched iterators, in the same order as the queries
+    private final Queue<Future<VariantDBIterator>> pendingIterators = new LinkedList<>();
+    private ThreadPoolExecutor executor;
     private Logger logger = LoggerFactory.getLogger(MultiVariantDBIterator.class);
 
     /**
@@ -91,6 +102,8 @@ public class MultiVariantDBIterator extends VariantDBIterator {
         this.options.remove(QueryOptions.LIMIT);
         this.options.remove(QueryOptions.SKIP);
 
+        prefetch = this.options.getInt(PREFETCH, 0);
+        this.options.remove(PREFETCH);
     }
 
     @Override
@@ -98,6 +111,7 @@ public class MultiVariantDBIterator extends VariantDBIterator {
         init();
         if (numResults >= maxResults) {
             terminateIterator();
+            terminatePendingIterators();
             return false;
         } else if (!fetch(variantDBIterator::hasNext)) {
             nextVariantIterator();
@@ -111,21 +125,96 @@ public class MultiVariantDBIterator extends VariantDBIterator {
      * Get the next non-empty valid {@link #variantDBIterator}. If none, use {@link #emptyIterator()}
      */
     private void nextVariantIterator() {
-        while (!fetch(variantDBIterator::hasNext) && fetch(queryIterator::hasNext)) {
+        while (!fetch(variantDBIterator::hasNext) && (!pendingIterators.isEmpty() || fetch(queryIterator::hasNext))) {
             terminateIterator();
-            Query query = fetch(queryIterator::next);
-            QueryOptions options;
-            if (maxResults != Integer.MAX_VALUE) {
-                // We are expecting no more than maxResults - numResults
-                // Modify the limit in the query
-                options = new QueryOptions(this.options).append(QueryOptions.LIMIT, maxResults - numResults);
+            if (prefetch > 0) {
+                submitQueries();
+                Future<VariantDBIterator> future = pendingIterators.poll();
+                variantDBIterator = fetch(() -> getIterator(future));
+                submitQueries();
             } else {
-                options = this.options;
+                Query query = fetch(queryIterator::next);
+                QueryOptions options = getSubQueryOptions();
+                variantDBIterator = fetch(() -> iteratorFactory.apply(query, options));
             }
-            variantDBIterator = fetch(() -> iteratorFactory.apply(query, options));
         }
         if (!fetch(variantDBIterator::hasNext)) {
             terminateIterator();
+            terminatePendingIterators();
+        }
+    }
+
+    /**
+     * Each sub-query gets its own copy of the options, as they may be modified by the iterator factory,
+     * even from a different thread.
+     */
+    private QueryOptions getSubQueryOptions() {
+        QueryOptions subQueryOptions = new QueryOptions(this.options);
+        if (maxResults != Integer.MAX_VALUE) {
+            // We are expecting no more than maxResults - numResults
+            // Modify the limit in the query
+            subQueryOptions.append(QueryOptions.LIMIT, maxResults - numResults);
+        }
+        return subQueryOptions;
+    }
+
+    /**
+     * Fill the queue of pending iterators, up to {@link #prefetch} elements.
+     * The queries are read in this thread, as the query iterator may not be thread safe.
+     */
+    private void submitQueries() {
+        while (pendingIterators.size() < prefetch && fetch(queryIterator::hasNext)) {
+            Query query = fetch(queryIterator::next);
+            QueryOptions options = getSubQueryOptions();
+            if (executor == null) {
+                executor = new ThreadPoolExecutor(prefetch, prefetch, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r);
+                    t.setDaemon(true);
+                    return t;
+                }); // Set Daemon for quick shutdown !!!
+            }
+            pendingIterators.add(executor.submit(() -> {
+                VariantDBIterator iterator = iteratorFactory.apply(query, options);
+                // Fetch the first batch of results in background
+                iterator.hasNext();
+                return iterator;
+            }));
+        }
+    }
+
+    private VariantDBIterator getIterator(Future<VariantDBIterator> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw VariantQueryException.internalException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw VariantQueryException.internalException((Exception) e.getCause());
+        }
+    }
+
+    private void terminatePendingIterators() {
+        for (Future<VariantDBIterator> future : pendingIterators) {
+            // Discard the queries not started yet. Wait for the running ones, and close them.
+            if (!executor.remove((Runnable) future)) {
+                try {
+                    future.get().close();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    logger.debug("Ignore error from discarded iterator", e);
+                }
+            }
+        }
+        pendingIterators.clear();
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
         }
     }
 
@@ -153,6 +242,16 @@ public class MultiVariantDBIterator extends VariantDBIterator {
         }
     }
 
+    @Override
+    public void close() throws Exception {
+        try {
+            terminateIterator();
+            terminatePendingIterators();
+        } finally {
+            super.close();
+        }
+    }
+
     @Override
     public long getTimeConverting() {
         return timeConverting + variantDBIterator.getTimeConverting();
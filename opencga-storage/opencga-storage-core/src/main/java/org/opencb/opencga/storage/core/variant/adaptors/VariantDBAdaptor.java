@@ -84,11 +84,16 @@ public interface VariantDBAdaptor extends VariantIterable, AutoCloseable {
      * Fetch all variants resulting of executing all the queries in the database. Returned fields are taken from
      * the 'include' and 'exclude' fields at options.
      *
+     * The queries are executed concurrently. See {@link VariantQueryBatchExecutor}.
+     *
      * @param queries List of queries to be executed in the database to filter variants
-     * @param options Query modifiers, accepted values are: include, exclude, limit, skip, sort and count.
+     * @param options Query modifiers, accepted values are: include, exclude, limit, skip, sort, count,
+     *                {@link VariantQueryBatchExecutor#BATCH_THREADS} and {@link VariantQueryBatchExecutor#BATCH_TIMEOUT}.
      * @return A list of QueryResult with the result of the queries
      */
-    List<VariantQueryResult<Variant>> get(List<Query> queries, QueryOptions options);
+    default List<VariantQueryResult<Variant>> get(List<Query> queries, QueryOptions options) {
+        return VariantQueryBatchExecutor.get(this, queries, options);
+    }
 
     /**
      * Return all the variants in the same phase set for a given sample in a given variant.
@@ -182,6 +187,47 @@ public interface VariantDBAdaptor extends VariantIterable, AutoCloseable {
      */
     QueryResult updateCustomAnnotations(Query query, String name, AdditionalAttribute attribute, QueryOptions options);
 
+    /**
+     * Update custom annotation for a batch of variants.
+     *
+     * @param attributes  Custom annotation for each variant
+     * @param name        Custom annotation name.
+     * @param options     Other options
+     * @return            Result of the insertion
+     */
+    default QueryResult updateCustomAnnotations(Map<Variant, AdditionalAttribute> attributes, String name, QueryOptions options) {
+        for (Map.Entry<Variant, AdditionalAttribute> entry : attributes.entrySet()) {
+            Query query = new Query(VariantQueryParam.ID.key(), entry.getKey().toString());
+            updateCustomAnnotations(query, name, entry.getValue(), options);
+        }
+        return new QueryResult();
+    }
+
+    /**
+     * Check if this DBAdaptor keeps track of the variants modified since their last synchronization with the search index.
+     * If so, the {@link VariantQueryUtils#VARIANTS_TO_INDEX} filter is supported.
+     *
+     * @return If the synchronization with the search index is tracked
+     */
+    default boolean isSearchIndexSyncTracked() {
+        return false;
+    }
+
+    /**
+     * Mark a batch of variants as synchronized with the search index.
+     *
+     * Variants modified after the given timestamp are not marked, as the loaded version might be outdated.
+     * Does nothing if the synchronization is not tracked. See {@link #isSearchIndexSyncTracked()}.
+     *
+     * @param variants  Variants loaded into the search index
+     * @param timestamp Time when the synchronization started
+     * @param options   Other options
+     * @return          Result of the update
+     */
+    default QueryResult updateSearchIndexSync(List<Variant> variants, long timestamp, QueryOptions options) {
+        return new QueryResult();
+    }
+
     VariantFileMetadataDBAdaptor getVariantFileMetadataDBAdaptor();
 
     StudyConfigurationManager getStudyConfigurationManager();
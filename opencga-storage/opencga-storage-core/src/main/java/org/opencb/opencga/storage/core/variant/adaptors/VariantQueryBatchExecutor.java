@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.adaptors;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.core.results.VariantQueryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Executes a batch of queries over a {@link VariantDBAdaptor} concurrently.
+ *
+ * The queries are executed in a bounded pool of threads. The "dbTime" of each result is the time spent executing that query.
+ * If a deadline is given, the queries not finished in time are cancelled, and returned as empty results with an error message.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public final class VariantQueryBatchExecutor {
+
+    /** Max number of queries to execute at the same time. */
+    public static final String BATCH_THREADS = "batch.threads";
+    public static final int BATCH_THREADS_DEFAULT = 8;
+    /** Max time in milliseconds to execute the whole batch. Zero or negative for no deadline. */
+    public static final String BATCH_TIMEOUT = "batch.timeout";
+    public static final long BATCH_TIMEOUT_DEFAULT = -1;
+
+    private static Logger logger = LoggerFactory.getLogger(VariantQueryBatchExecutor.class);
+
+    private VariantQueryBatchExecutor() {
+    }
+
+    /**
+     * Execute all the queries, and return the results in the same order.
+     *
+     * @param dbAdaptor VariantDBAdaptor
+     * @param queries   List of queries to execute
+     * @param options   Query modifiers. Accepts {@link #BATCH_THREADS} and {@link #BATCH_TIMEOUT}
+     * @return          List of results
+     */
+    public static List<VariantQueryResult<Variant>> get(VariantDBAdaptor dbAdaptor, List<Query> queries, QueryOptions options) {
+        if (queries.isEmpty()) {
+            return Collections.emptyList();
+        }
+        QueryOptions queryOptions = options == null ? new QueryOptions() : options;
+        int numThreads = Math.max(1, Math.min(queries.size(), queryOptions.getInt(BATCH_THREADS, BATCH_THREADS_DEFAULT)));
+        long timeout = queryOptions.getLong(BATCH_TIMEOUT, BATCH_TIMEOUT_DEFAULT);
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        }); // Set Daemon for quick shutdown !!!
+        List<Callable<VariantQueryResult<Variant>>> tasks = new ArrayList<>(queries.size());
+        for (Query query : queries) {
+            tasks.add(() -> {
+                StopWatch stopWatch = StopWatch.createStarted();
+                VariantQueryResult<Variant> result = dbAdaptor.get(query, new QueryOptions(queryOptions));
+                result.setDbTime((int) stopWatch.getTime(TimeUnit.MILLISECONDS));
+                return result;
+            });
+        }
+
+        StopWatch batchStopWatch = StopWatch.createStarted();
+        List<VariantQueryResult<Variant>> results = new ArrayList<>(queries.size());
+        try {
+            List<Future<VariantQueryResult<Variant>>> futures;
+            if (timeout > 0) {
+                futures = executor.invokeAll(tasks, timeout, TimeUnit.MILLISECONDS);
+            } else {
+                futures = executor.invokeAll(tasks);
+            }
+            for (Future<VariantQueryResult<Variant>> future : futures) {
+                if (future.isCancelled()) {
+                    results.add(new VariantQueryResult<>("getVariants", (int) batchStopWatch.getTime(TimeUnit.MILLISECONDS), 0, -1, "",
+                            "Query not finished before the batch deadline of " + timeout + "ms", Collections.emptyList(), null, null));
+                } else {
+                    results.add(future.get());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw VariantQueryException.internalException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw VariantQueryException.internalException((Exception) e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.debug("Executed {} queries with {} threads in {}ms", queries.size(), numThreads,
+                batchStopWatch.getTime(TimeUnit.MILLISECONDS));
+        return results;
+    }
+}
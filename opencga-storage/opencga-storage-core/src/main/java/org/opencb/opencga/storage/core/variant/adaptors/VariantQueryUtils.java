@@ -46,6 +46,8 @@ import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam
  */
 public class VariantQueryUtils {
 
+    // Query paths only read the StudyConfiguration. Use the shared snapshots
+    private static final QueryOptions STUDY_CONFIGURATION_READ_ONLY = new QueryOptions(StudyConfigurationManager.READ_ONLY, true);
     private static final Pattern OPERATION_PATTERN = Pattern.compile("^([^=<>~!]*)(<=?|>=?|!=?|!?=?~|==?)([^=<>~!]+.*)$");
     private static final Pattern GENOTYPE_FILTER_PATTERN = Pattern.compile("(?<sample>[^,;]+):(?<gts>([^:;,]+,?)+)(?<op>[;,.])");
 
@@ -65,6 +67,8 @@ public class VariantQueryUtils {
 
     public static final QueryParam ANNOT_EXPRESSION_GENES = QueryParam.create("annot_expression_genes", "", QueryParam.Type.TEXT_ARRAY);
     public static final QueryParam ANNOT_GO_GENES = QueryParam.create("annot_go_genes", "", QueryParam.Type.TEXT_ARRAY);
+    public static final QueryParam VARIANTS_TO_INDEX = QueryParam.create("variantsToIndex",
+            "Select variants modified since their last synchronization with the search index", QueryParam.Type.BOOLEAN);
 
     private static Logger logger = LoggerFactory.getLogger(VariantQueryUtils.class);
 
@@ -376,7 +380,7 @@ public class VariantQueryUtils {
         Map<Integer, StudyConfiguration> studyConfigurations = new HashMap<>();
 
         for (Integer studyId : includeStudies) {
-            StudyConfiguration sc = studyConfigurationManager.getStudyConfiguration(studyId, options).first();
+            StudyConfiguration sc = studyConfigurationManager.getStudyConfiguration(studyId, STUDY_CONFIGURATION_READ_ONLY).first();
             if (sc == null) {
                 throw VariantQueryException.studyNotFound(studyId, studyConfigurationManager.getStudyNames(options));
             }
@@ -413,7 +417,8 @@ public class VariantQueryUtils {
 
 
             if (studyIds.size() == 1) {
-                defaultStudyConfiguration = studyConfigurationManager.getStudyConfiguration(studyIds.get(0), null).first();
+                defaultStudyConfiguration = studyConfigurationManager
+                        .getStudyConfiguration(studyIds.get(0), STUDY_CONFIGURATION_READ_ONLY).first();
             } else {
                 defaultStudyConfiguration = null;
             }
@@ -421,7 +426,8 @@ public class VariantQueryUtils {
         } else {
             List<String> studyNames = studyConfigurationManager.getStudyNames(null);
             if (studyNames != null && studyNames.size() == 1) {
-                defaultStudyConfiguration = studyConfigurationManager.getStudyConfiguration(studyNames.get(0), new QueryOptions()).first();
+                defaultStudyConfiguration = studyConfigurationManager
+                        .getStudyConfiguration(studyNames.get(0), STUDY_CONFIGURATION_READ_ONLY).first();
             } else {
                 defaultStudyConfiguration = null;
             }
@@ -627,7 +633,7 @@ public class VariantQueryUtils {
     public static Map<String, List<String>> getSamplesMetadata(Query query, StudyConfigurationManager studyConfigurationManager) {
         List<Integer> includeStudies = getIncludeStudies(query, null, studyConfigurationManager);
         Function<Integer, StudyConfiguration> studyProvider = studyId ->
-                studyConfigurationManager.getStudyConfiguration(studyId, null).first();
+                studyConfigurationManager.getStudyConfiguration(studyId, STUDY_CONFIGURATION_READ_ONLY).first();
         return getIncludeSamples(query, null, includeStudies, studyProvider, (sc, s) -> s, StudyConfiguration::getStudyName);
     }
 
@@ -643,7 +649,7 @@ public class VariantQueryUtils {
             if (VariantField.getIncludeFields(options).contains(VariantField.STUDIES)) {
                 List<Integer> includeStudies = getIncludeStudies(query, options, studyConfigurationManager);
                 Function<Integer, StudyConfiguration> studyProvider = studyId ->
-                        studyConfigurationManager.getStudyConfiguration(studyId, options).first();
+                        studyConfigurationManager.getStudyConfiguration(studyId, STUDY_CONFIGURATION_READ_ONLY).first();
                 return getIncludeSamples(query, options, includeStudies, studyProvider, (sc, s) -> s, StudyConfiguration::getStudyName);
             } else {
                 return Collections.emptyMap();
@@ -657,7 +663,7 @@ public class VariantQueryUtils {
                                                                 StudyConfigurationManager studyConfigurationManager) {
         List<Integer> includeStudies = getIncludeStudies(query, options, studyConfigurationManager);
         return getIncludeSamples(query, options, includeStudies, studyId ->
-                studyConfigurationManager.getStudyConfiguration(studyId, options).first());
+                studyConfigurationManager.getStudyConfiguration(studyId, STUDY_CONFIGURATION_READ_ONLY).first());
     }
 
     public static Map<Integer, List<Integer>> getIncludeSamples(Query query, QueryOptions options,
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.annotation;
+
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.AdditionalAttribute;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantField.*;
+
+/**
+ * Loads custom annotations defined by genomic intervals, e.g. from a BED, GFF or VCF file.
+ *
+ * Instead of updating the variants of each interval with a different query, the intervals are sorted by chromosome and start,
+ * and the overlapping ones are merged into regions. The variants of each chromosome are read only once, sorted, querying
+ * batches of merged regions, and matched with their intervals with a sweep line. The custom annotations are written in bulk.
+ *
+ * The region semantics are the same as in {@link VariantQueryParam#REGION}: a variant is annotated with an interval if its start
+ * is within the interval. If a variant is within more than one interval, the last added interval is used.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class CustomAnnotationLoader {
+
+    private final VariantDBAdaptor dbAdaptor;
+    private final String name;
+    private final int batchSize;
+    private final int regionsPerQuery;
+    private final Map<String, List<Interval>> intervals = new LinkedHashMap<>();
+    private int numIntervals = 0;
+
+    protected static Logger logger = LoggerFactory.getLogger(CustomAnnotationLoader.class);
+
+    /**
+     * @param dbAdaptor         Variant DBAdaptor
+     * @param name              Custom annotation name
+     * @param batchSize         Number of variants to update in each bulk write
+     * @param regionsPerQuery   Max number of merged regions per query
+     */
+    public CustomAnnotationLoader(VariantDBAdaptor dbAdaptor, String name, int batchSize, int regionsPerQuery) {
+        this.dbAdaptor = dbAdaptor;
+        this.name = name;
+        this.batchSize = batchSize;
+        this.regionsPerQuery = regionsPerQuery;
+    }
+
+    /**
+     * Add a new interval to annotate.
+     *
+     * @param chromosome    Chromosome
+     * @param start         Start of the interval
+     * @param end           End of the interval, inclusive
+     * @param attribute     Custom annotation for the variants within the interval
+     * @return this
+     */
+    public CustomAnnotationLoader add(String chromosome, int start, int end, AdditionalAttribute attribute) {
+        intervals.computeIfAbsent(chromosome, c -> new ArrayList<>()).add(new Interval(start, end, numIntervals++, attribute));
+        return this;
+    }
+
+    public int getNumIntervals() {
+        return numIntervals;
+    }
+
+    /**
+     * Annotate the variants within the intervals.
+     *
+     * @return Number of annotated variants
+     */
+    public long load() {
+        long numVariants = 0;
+        for (Map.Entry<String, List<Interval>> entry : intervals.entrySet()) {
+            numVariants += load(entry.getKey(), entry.getValue());
+        }
+        logger.info("Loaded custom annotation '{}' from {} intervals into {} variants", name, numIntervals, numVariants);
+        return numVariants;
+    }
+
+    private long load(String chromosome, List<Interval> chromosomeIntervals) {
+        chromosomeIntervals.sort(Comparator.comparingInt(Interval::getStart));
+        List<Region> regions = mergeIntervals(chromosome, chromosomeIntervals);
+        logger.debug("Chromosome {} : {} intervals, {} merged regions", chromosome, chromosomeIntervals.size(), regions.size());
+
+        QueryOptions options = new QueryOptions(QueryOptions.INCLUDE, Arrays.asList(CHROMOSOME, START, END, REFERENCE, ALTERNATE, SV))
+                .append(QueryOptions.SORT, true);
+        IntervalSweep sweep = new IntervalSweep(chromosomeIntervals);
+        Map<Variant, AdditionalAttribute> batch = new LinkedHashMap<>(batchSize);
+        long numVariants = 0;
+        for (int i = 0; i < regions.size(); i += regionsPerQuery) {
+            List<Region> queryRegions = regions.subList(i, Math.min(regions.size(), i + regionsPerQuery));
+            Query query = new Query(VariantQueryParam.REGION.key(), queryRegions);
+            try (VariantDBIterator iterator = dbAdaptor.iterator(query, options)) {
+                while (iterator.hasNext()) {
+                    Variant variant = iterator.next();
+                    Interval interval = sweep.find(variant.getStart());
+                    if (interval == null) {
+                        continue;
+                    }
+                    batch.put(variant, interval.getAttribute());
+                    if (batch.size() >= batchSize) {
+                        numVariants += write(batch);
+                    }
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException("Error loading custom annotation '" + name + "' at chromosome " + chromosome, e);
+            }
+        }
+        numVariants += write(batch);
+        return numVariants;
+    }
+
+    private int write(Map<Variant, AdditionalAttribute> batch) {
+        int size = batch.size();
+        if (size > 0) {
+            dbAdaptor.updateCustomAnnotations(batch, name, QueryOptions.empty());
+            batch.clear();
+        }
+        return size;
+    }
+
+    /**
+     * Merge the overlapping intervals into regions.
+     *
+     * @param chromosome    Chromosome of the intervals
+     * @param intervals     Intervals sorted by start
+     * @return              Non overlapping regions, sorted by start
+     */
+    static List<Region> mergeIntervals(String chromosome, List<Interval> intervals) {
+        List<Region> regions = new ArrayList<>();
+        Region region = null;
+        for (Interval interval : intervals) {
+            if (region == null || interval.getStart() > region.getEnd()) {
+                region = new Region(chromosome, interval.getStart(), interval.getEnd());
+                regions.add(region);
+            } else if (interval.getEnd() > region.getEnd()) {
+                region.setEnd(interval.getEnd());
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * Sweep line over intervals sorted by start. Finds the last added interval containing each position.
+     * Positions are expected in ascending order. Otherwise, the sweep is restarted.
+     */
+    static class IntervalSweep {
+        private final List<Interval> intervals;
+        // Intervals containing the last position, by end and by index
+        private final PriorityQueue<Interval> activeByEnd = new PriorityQueue<>(Comparator.comparingInt(Interval::getEnd));
+        private final TreeSet<Interval> activeByIndex = new TreeSet<>(Comparator.comparingInt(Interval::getIndex));
+        private int next = 0;
+        private int lastPosition = Integer.MIN_VALUE;
+
+        IntervalSweep(List<Interval> intervals) {
+            this.intervals = intervals;
+        }
+
+        Interval find(int position) {
+            if (position < lastPosition) {
+                logger.debug("Unsorted position {} after {}. Restart sweep", position, lastPosition);
+                next = 0;
+                activeByEnd.clear();
+                activeByIndex.clear();
+            }
+            lastPosition = position;
+            while (next < intervals.size() && intervals.get(next).getStart() <= position) {
+                Interval interval = intervals.get(next++);
+                activeByEnd.add(interval);
+                activeByIndex.add(interval);
+            }
+            while (!activeByEnd.isEmpty() && activeByEnd.peek().getEnd() < position) {
+                activeByIndex.remove(activeByEnd.poll());
+            }
+            return activeByIndex.isEmpty() ? null : activeByIndex.last();
+        }
+    }
+
+    static class Interval {
+        private final int start;
+        private final int end;
+        private final int index;
+        private final AdditionalAttribute attribute;
+
+        Interval(int start, int end, int index, AdditionalAttribute attribute) {
+            this.start = start;
+            this.end = end;
+            this.index = index;
+            this.attribute = attribute;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public AdditionalAttribute getAttribute() {
+            return attribute;
+        }
+    }
+}
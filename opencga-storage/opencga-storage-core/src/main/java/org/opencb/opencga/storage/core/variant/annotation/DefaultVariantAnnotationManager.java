@@ -17,12 +17,9 @@
 package org.opencb.opencga.storage.core.variant.annotation;
 
 import org.apache.commons.lang3.StringUtils;
-import org.opencb.biodata.formats.feature.bed.Bed;
 import org.opencb.biodata.formats.feature.bed.io.BedReader;
-import org.opencb.biodata.formats.feature.gff.Gff;
 import org.opencb.biodata.formats.feature.gff.io.GffReader;
 import org.opencb.biodata.formats.io.FormatReaderWrapper;
-import org.opencb.biodata.models.core.Region;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.VariantFileMetadata;
 import org.opencb.biodata.models.variant.avro.AdditionalAttribute;
@@ -43,7 +40,6 @@ import org.opencb.opencga.core.common.UriUtils;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
-import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.annotation.annotators.VariantAnnotator;
 import org.opencb.opencga.storage.core.variant.io.VariantReaderUtils;
 import org.opencb.opencga.storage.core.variant.io.db.VariantAnnotationDBWriter;
@@ -53,6 +49,7 @@ import org.opencb.opencga.storage.core.variant.io.json.VariantAnnotationJsonData
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -63,6 +60,7 @@ import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.zip.GZIPInputStream;
 
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantField.*;
@@ -294,103 +292,79 @@ public class DefaultVariantAnnotationManager implements VariantAnnotationManager
 
     /**
      * Loads custom variant annotations from an specified file into the selected Variant DataBase.
+     * The intervals from the file are loaded in bulk with a {@link CustomAnnotationLoader}.
      *
      * @param uri     URI of the annotation file
      * @param params  Specific params.
      * @throws IOException IOException thrown
-     * @throws StorageEngineException if there is a problem creating or running the {@link ParallelTaskRunner}
+     * @throws StorageEngineException if there is a problem loading the annotations
      */
     public void loadCustomAnnotation(URI uri, ObjectMap params) throws IOException, StorageEngineException {
 
-        final int batchSize = params.getInt(BATCH_SIZE, 100);
-        final int numConsumers = params.getInt(NUM_WRITERS, 6);
+        final int batchSize = params.getInt(BATCH_SIZE, 1000);
+        final int regionsPerQuery = params.getInt(CUSTOM_ANNOTATION_REGIONS_PER_QUERY, 1000);
         final String key = params.getString(CUSTOM_ANNOTATION_KEY, "default");
 
-        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
-                .setNumTasks(numConsumers)
-                .setBatchSize(batchSize)
-                .setAbortOnFail(true)
-                .setSorted(false)
-                .build();
-
+        CustomAnnotationLoader loader = new CustomAnnotationLoader(dbAdaptor, key, batchSize, regionsPerQuery);
 
         Path path = Paths.get(uri);
         String fileName = path.getFileName().toString().toLowerCase();
         if (fileName.endsWith(".gff") || fileName.endsWith(".gff.gz")) {
             try {
-                GffReader gffReader = new GffReader(path);
-                ParallelTaskRunner<Gff, Void> ptr = new ParallelTaskRunner<>(
-                        new FormatReaderWrapper<>(gffReader),
-                        gffList -> {
-                            for (Gff gff : gffList) {
-                                Region region = new Region(normalizeChromosome(gff.getSequenceName()), gff.getStart(), gff.getEnd());
-                                Query query = new Query(VariantQueryParam.REGION.key(), region);
-                                dbAdaptor.updateCustomAnnotations(
-                                        query, key, new AdditionalAttribute(Collections.singletonMap("feature", gff.getFeature())),
-                                        QueryOptions.empty());
-                            }
-                            return Collections.emptyList();
-                        }, null, config);
-
-                try {
-                    ptr.run();
-                } catch (ExecutionException e) {
-                    throw new StorageEngineException("Error executing ParallelTaskRunner", e);
-                }
+                readIntervals(new FormatReaderWrapper<>(new GffReader(path)), gff -> {
+                    loader.add(normalizeChromosome(gff.getSequenceName()), gff.getStart(), gff.getEnd(),
+                            new AdditionalAttribute(Collections.singletonMap("feature", gff.getFeature())));
+                });
             } catch (NoSuchMethodException e) {
                 throw new RuntimeException(e); // This should never happen!
             }
         } else if (fileName.endsWith(".bed") || fileName.endsWith(".bed.gz")) {
             try {
-                BedReader bedReader = new BedReader(path);
-                ParallelTaskRunner<Bed, Void> ptr = new ParallelTaskRunner<>(
-                        new FormatReaderWrapper<>(bedReader),
-                        bedList -> {
-                            for (Bed bed: bedList) {
-                                Region region = new Region(normalizeChromosome(bed.getChromosome()), bed.getStart(), bed.getEnd());
-                                Query query = new Query(VariantQueryParam.REGION.key(), region);
-                                Map<String, String> annotation = new HashMap<>(3);
-                                annotation.put("name", bed.getName());
-                                annotation.put(("score"), String.valueOf(bed.getScore()));
-                                annotation.put(("strand"), bed.getStrand());
-                                dbAdaptor.updateCustomAnnotations(query, key, new AdditionalAttribute(annotation), QueryOptions.empty());
-                            }
-                            return Collections.emptyList();
-                        }, null, config);
-                try {
-                    ptr.run();
-                } catch (ExecutionException e) {
-                    throw new StorageEngineException("Error executing ParallelTaskRunner", e);
-                }
+                readIntervals(new FormatReaderWrapper<>(new BedReader(path)), bed -> {
+                    Map<String, String> annotation = new HashMap<>(3);
+                    annotation.put("name", bed.getName());
+                    annotation.put(("score"), String.valueOf(bed.getScore()));
+                    annotation.put(("strand"), bed.getStrand());
+                    loader.add(normalizeChromosome(bed.getChromosome()), bed.getStart(), bed.getEnd(), new AdditionalAttribute(annotation));
+                });
             } catch (NoSuchMethodException e) {
                 throw new RuntimeException(e); // This should never happen!
             }
         } else if (fileName.endsWith(".vcf") || fileName.endsWith(".vcf.gz")) {
-            InputStream is = new FileInputStream(path.toFile());
-            if (fileName.endsWith(".gz")) {
-                is = new GZIPInputStream(is);
-            }
-            VariantStudyMetadata metadata = new VariantFileMetadata(fileName, fileName).toVariantStudyMetadata("s");
-            ParallelTaskRunner<Variant, Void> ptr = new ParallelTaskRunner<>(
-                    new VariantVcfHtsjdkReader(is, metadata),
-                    variantList -> {
-                        for (Variant variant : variantList) {
-                            Region region = new Region(normalizeChromosome(variant.getChromosome()), variant.getStart(), variant.getEnd());
-                            Query query = new Query(VariantQueryParam.REGION.key(), region);
-                            Map<String, String> info = variant.getStudies().get(0).getFiles().get(0).getAttributes();
-                            AdditionalAttribute attribute = new AdditionalAttribute(info);
-                            dbAdaptor.updateCustomAnnotations(query, key, attribute, new QueryOptions());
-                        }
-                        return Collections.emptyList();
-                    }, null, config);
-            try {
-                ptr.run();
-            } catch (ExecutionException e) {
-                throw new StorageEngineException("Error executing ParallelTaskRunner", e);
+            try (InputStream is = fileName.endsWith(".gz")
+                    ? new GZIPInputStream(new FileInputStream(path.toFile()))
+                    : new FileInputStream(path.toFile())) {
+                VariantStudyMetadata metadata = new VariantFileMetadata(fileName, fileName).toVariantStudyMetadata("s");
+                readIntervals(new VariantVcfHtsjdkReader(is, metadata), variant -> {
+                    Map<String, String> info = variant.getStudies().get(0).getFiles().get(0).getAttributes();
+                    loader.add(normalizeChromosome(variant.getChromosome()), variant.getStart(), variant.getEnd(),
+                            new AdditionalAttribute(info));
+                });
             }
         } else {
             throw new StorageEngineException("Unknown format file : " + path);
         }
+
+        logger.info("Read {} intervals from {}", loader.getNumIntervals(), path);
+        try {
+            loader.load();
+        } catch (RuntimeException e) {
+            throw new StorageEngineException("Error loading custom annotation from " + path, e);
+        }
+    }
+
+    private <T> void readIntervals(DataReader<T> reader, Consumer<T> consumer) throws IOException {
+        reader.open();
+        // DataReader is not AutoCloseable. Close the reader even if the consumer fails.
+        try (Closeable ignored = reader::close) {
+            reader.pre();
+            List<T> batch = reader.read(1000);
+            while (batch != null && !batch.isEmpty()) {
+                batch.forEach(consumer);
+                batch = reader.read(1000);
+            }
+            reader.post();
+        }
     }
 
     private String normalizeChromosome(String chromosome) {
@@ -40,6 +40,7 @@ public interface VariantAnnotationManager {
     String CREATE = "annotation.create";
     String LOAD_FILE = "annotation.load.file";
     String CUSTOM_ANNOTATION_KEY = "custom_annotation_key";
+    String CUSTOM_ANNOTATION_REGIONS_PER_QUERY = "custom_annotation_regions_per_query";
 
     void annotate(Query query, ObjectMap options) throws VariantAnnotatorException, IOException, StorageEngineException;
 
@@ -18,28 +18,49 @@ package org.opencb.opencga.storage.core.variant.io;
 
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.vcf.VCFHeader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.commons.lang3.StringUtils;
+import org.opencb.biodata.models.core.Region;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.metadata.VariantMetadata;
 import org.opencb.commons.ProgressLogger;
+import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.io.DataReader;
 import org.opencb.commons.io.DataWriter;
 import org.opencb.commons.run.ParallelTaskRunner;
+import org.opencb.commons.run.Task;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.metadata.VariantMetadataFactory;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.VariantQueryXref;
 import org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat;
 import org.opencb.opencga.storage.core.variant.io.db.VariantDBReader;
+import org.opencb.opencga.storage.core.variant.io.parquet.VariantToParquetConverter;
+import org.opencb.opencga.storage.core.variant.io.vcf.BgzfChunk;
+import org.opencb.opencga.storage.core.variant.io.vcf.BgzfTabixWriter;
+import org.opencb.opencga.storage.core.variant.io.vcf.VcfBgzfPartitionTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPOutputStream;
@@ -85,9 +106,21 @@ public class VariantExporter {
         }
         outputFile = VariantWriterFactory.checkOutput(outputFile, outputFormat);
 
-        try (OutputStream os = VariantWriterFactory.getOutputStream(outputFile, outputFormat)) {
-            boolean logProgress = !VariantWriterFactory.isStandardOutput(outputFile);
-            exportData(os, outputFormat, query, queryOptions, logProgress);
+        boolean exported = false;
+        if (outputFormat == VariantOutputFormat.PARQUET) {
+            if (VariantWriterFactory.isStandardOutput(outputFile)) {
+                throw new IllegalArgumentException("Unable to write " + outputFormat + " into the standard output");
+            }
+            exportParquet(outputFile, query, queryOptions);
+            exported = true;
+        } else if (outputFormat == VariantOutputFormat.VCF_GZ && !VariantWriterFactory.isStandardOutput(outputFile)) {
+            exported = exportIndexedVcf(outputFile, query, queryOptions);
+        }
+        if (!exported) {
+            try (OutputStream os = VariantWriterFactory.getOutputStream(outputFile, outputFormat)) {
+                boolean logProgress = !VariantWriterFactory.isStandardOutput(outputFile);
+                exportData(os, outputFormat, query, queryOptions, logProgress);
+            }
         }
         if (metadataFactory != null && !VariantWriterFactory.isStandardOutput(outputFile)) {
             VariantMetadata metadata = metadataFactory.makeVariantMetadata(query, queryOptions);
@@ -111,18 +144,7 @@ public class VariantExporter {
         // Task<Variant, Variant>
         ParallelTaskRunner.TaskWithException<Variant, Variant, Exception> progressTask;
         if (logProgress) {
-            final Query finalQuery = query;
-            final QueryOptions finalQueryOptions = queryOptions;
-            ProgressLogger progressLogger = new ProgressLogger("Export variants", () -> {
-                if (finalQueryOptions.getBoolean(QueryOptions.SKIP_COUNT)) {
-                    return 0L;
-                }
-                Long count = engine.count(finalQuery).first();
-                long limit = finalQueryOptions.getLong(QueryOptions.LIMIT, Long.MAX_VALUE);
-                long skip = finalQueryOptions.getLong(QueryOptions.SKIP, 0);
-                count = Math.min(limit, count - skip);
-                return count;
-            }, 200);
+            ProgressLogger progressLogger = newProgressLogger(query, queryOptions);
             progressTask = batch -> {
                 progressLogger.increment(batch.size(), () -> "up to position " + batch.get(batch.size() - 1).toString());
                 return batch;
@@ -148,6 +170,308 @@ public class VariantExporter {
 
     }
 
+    /**
+     * Exports the result of the given query into a bgzip VCF file, and writes its tabix index in the same pass.
+     *
+     * The query is split in genomic partitions, which are read, converted and compressed in parallel,
+     * and written in coordinate order.
+     *
+     * @param outputFile    Output file
+     * @param query         Query with the variants to export
+     * @param queryOptions  Query options
+     * @return              false if the query can not be split in genomic partitions. Nothing is exported in that case.
+     * @throws IOException  If there is any IO error
+     * @throws StorageEngineException  If there is any error exporting variants
+     */
+    protected boolean exportIndexedVcf(String outputFile, Query query, QueryOptions queryOptions)
+            throws IOException, StorageEngineException {
+        if (query == null) {
+            query = new Query();
+        }
+        if (queryOptions == null) {
+            queryOptions = new QueryOptions();
+        }
+        ObjectMap options = new ObjectMap(engine.getOptions());
+        options.putAll(queryOptions);
+        int numThreads = options.getInt(VariantStorageEngine.Options.EXPORT_THREADS.key(),
+                VariantStorageEngine.Options.EXPORT_THREADS.defaultValue());
+        int partitionSize = options.getInt(VariantStorageEngine.Options.EXPORT_PARTITION_SIZE.key(),
+                VariantStorageEngine.Options.EXPORT_PARTITION_SIZE.defaultValue());
+        if (numThreads <= 1 || queryOptions.containsKey(QueryOptions.LIMIT) || queryOptions.containsKey(QueryOptions.SKIP)) {
+            return false;
+        }
+        // Variants from ids, genes or xrefs are not filtered by region
+        VariantQueryXref xrefs = VariantQueryUtils.parseXrefs(query);
+        if (!xrefs.getIds().isEmpty() || !xrefs.getVariants().isEmpty() || !xrefs.getGenes().isEmpty()
+                || !xrefs.getOtherXrefs().isEmpty()) {
+            return false;
+        }
+
+        VariantMetadata metadata = variantWriterFactory.getVcfMetadata(query, queryOptions);
+        List<String> annotations = queryOptions.getAsStringList("annotations");
+        VCFHeader vcfHeader = VcfDataWriter.createVcfHeader(metadata, annotations);
+        SAMSequenceDictionary dictionary = vcfHeader.getSequenceDictionary();
+        List<Region> partitions = getPartitions(query, dictionary, partitionSize);
+        if (partitions.isEmpty()) {
+            logger.info("Unable to split the export in genomic partitions. Missing contigs from the VCF header");
+            return false;
+        }
+        if (!VariantQueryUtils.isValidParam(query, VariantQueryParam.REGION)) {
+            // Variants from chromosomes missing in the VCF header would not be exported
+            List<String> chromosomes = new ArrayList<>(dictionary.size());
+            for (SAMSequenceRecord sequence : dictionary.getSequences()) {
+                chromosomes.add(sequence.getSequenceName());
+            }
+            Query contigsQuery = new Query(query).append(VariantQueryParam.REGION.key(), String.join(",", chromosomes));
+            if (!engine.count(query).first().equals(engine.count(contigsQuery).first())) {
+                logger.info("Unable to split the export in genomic partitions. Missing contigs from the VCF header");
+                return false;
+            }
+        }
+        Map<Region, Integer> partitionsMinStart = getPartitionsMinStart(partitions);
+        logger.info("Export " + partitions.size() + " genomic partitions using " + numThreads + " threads");
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        VariantContextWriter headerWriter = VcfDataWriter.createVariantContextWriter(header, vcfHeader);
+        headerWriter.writeHeader(vcfHeader);
+        headerWriter.close();
+
+        Iterator<Region> partitionsIterator = partitions.iterator();
+        DataReader<Region> partitionsReader = batchSize -> {
+            List<Region> batch = new ArrayList<>(batchSize);
+            while (partitionsIterator.hasNext() && batch.size() < batchSize) {
+                batch.add(partitionsIterator.next());
+            }
+            return batch;
+        };
+        ProgressLogger progressLogger = newProgressLogger(query, queryOptions);
+        final Query finalQuery = query;
+        final QueryOptions finalQueryOptions = queryOptions;
+        BgzfTabixWriter writer = new BgzfTabixWriter(Paths.get(outputFile), header.toByteArray(), TabixFormat.VCF);
+
+        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
+                .setNumTasks(numThreads)
+                .setBatchSize(1)
+                .setCapacity(numThreads)
+                .setSorted(true)
+                .build();
+        ParallelTaskRunner<Region, BgzfChunk> ptr = new ParallelTaskRunner<>(partitionsReader,
+                () -> new VcfBgzfPartitionTask(engine, finalQuery, finalQueryOptions, metadata, annotations, partitionsMinStart,
+                        progressLogger),
+                writer, config);
+        try {
+            ptr.run();
+        } catch (ExecutionException e) {
+            throw new StorageEngineException("Error exporting variants", e);
+        }
+        return true;
+    }
+
+    /**
+     * Split the query in sorted and non overlapping genomic partitions.
+     *
+     * @param query             Query with the variants to export
+     * @param dictionary        Sequence dictionary
+     * @param partitionSize     Max size of each partition
+     * @return                  List of partitions. Empty if the regions to export are unknown, or missing from the dictionary.
+     */
+    protected static List<Region> getPartitions(Query query, SAMSequenceDictionary dictionary, int partitionSize) {
+        List<Region> regions = new ArrayList<>();
+        if (VariantQueryUtils.isValidParam(query, VariantQueryParam.REGION)) {
+            for (Region region : Region.parseRegions(query.getString(VariantQueryParam.REGION.key()))) {
+                SAMSequenceRecord sequence = dictionary.getSequence(region.getChromosome());
+                if (sequence == null) {
+                    // Unable to sort the chromosomes
+                    return Collections.emptyList();
+                }
+                if (sequence.getSequenceLength() > 0) {
+                    region.setEnd(Math.min(region.getEnd(), sequence.getSequenceLength()));
+                }
+                regions.add(region);
+            }
+            // Sort by chromosome and merge overlapping regions
+            List<String> chromosomes = getSortedChromosomes(dictionary);
+            regions.sort(Comparator.comparingInt((Region region) -> chromosomes.indexOf(region.getChromosome()))
+                    .thenComparingInt(Region::getStart));
+            List<Region> mergedRegions = new ArrayList<>(regions.size());
+            for (Region region : regions) {
+                Region last = mergedRegions.isEmpty() ? null : mergedRegions.get(mergedRegions.size() - 1);
+                if (last != null && last.getChromosome().equals(region.getChromosome()) && region.getStart() <= last.getEnd()) {
+                    last.setEnd(Math.max(last.getEnd(), region.getEnd()));
+                } else {
+                    mergedRegions.add(new Region(region.getChromosome(), region.getStart(), region.getEnd()));
+                }
+            }
+            regions = mergedRegions;
+        } else {
+            for (String chromosome : getSortedChromosomes(dictionary)) {
+                SAMSequenceRecord sequence = dictionary.getSequence(chromosome);
+                if (sequence.getSequenceLength() > 0) {
+                    regions.add(new Region(sequence.getSequenceName(), 1, sequence.getSequenceLength()));
+                } else {
+                    regions.add(new Region(sequence.getSequenceName()));
+                }
+            }
+        }
+
+        List<Region> partitions = new ArrayList<>();
+        for (Region region : regions) {
+            if (region.getEnd() == Integer.MAX_VALUE) {
+                // Unknown length
+                partitions.add(region);
+            } else {
+                for (long start = region.getStart(); start <= region.getEnd(); start += partitionSize) {
+                    int end = (int) Math.min(region.getEnd(), start + partitionSize - 1);
+                    partitions.add(new Region(region.getChromosome(), (int) start, end));
+                }
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * Sort the chromosomes from the dictionary. Numeric chromosomes first, followed by X, Y and MT, and then the rest by name.
+     *
+     * The order of the contigs from the VCF header is not reliable, as it is built from the file headers.
+     *
+     * @param dictionary    Sequence dictionary
+     * @return              Sorted chromosome names
+     */
+    protected static List<String> getSortedChromosomes(SAMSequenceDictionary dictionary) {
+        List<String> chromosomes = new ArrayList<>(dictionary.size());
+        for (SAMSequenceRecord sequence : dictionary.getSequences()) {
+            chromosomes.add(sequence.getSequenceName());
+        }
+        chromosomes.sort(Comparator.comparingInt(VariantExporter::getChromosomeRank)
+                .thenComparingInt(chromosome -> StringUtils.isNumeric(chromosome) ? Integer.parseInt(chromosome) : 0)
+                .thenComparing(Comparator.naturalOrder()));
+        return chromosomes;
+    }
+
+    private static int getChromosomeRank(String chromosome) {
+        if (StringUtils.isNumeric(chromosome)) {
+            return 0;
+        }
+        switch (chromosome) {
+            case "X":
+                return 1;
+            case "Y":
+                return 2;
+            case "MT":
+            case "M":
+                return 3;
+            default:
+                return 4;
+        }
+    }
+
+    /**
+     * Get the first position of each partition not covered by the previous partition from the same chromosome.
+     *
+     * The partitions are queried by overlap. Variants starting before this position were already exported by a previous
+     * partition. Variants starting between this position and the start of the partition (e.g. in the gap between two
+     * regions from the query) are exported by this partition.
+     *
+     * @param partitions    Sorted and non overlapping partitions
+     * @return              Min start of the variants to export from each partition
+     */
+    protected static Map<Region, Integer> getPartitionsMinStart(List<Region> partitions) {
+        Map<Region, Integer> minStarts = new HashMap<>(partitions.size());
+        Region previous = null;
+        for (Region partition : partitions) {
+            if (previous != null && previous.getChromosome().equals(partition.getChromosome())) {
+                minStarts.put(partition, previous.getEnd() + 1);
+            } else {
+                minStarts.put(partition, 0);
+            }
+            previous = partition;
+        }
+        return minStarts;
+    }
+
+    /**
+     * Exports the result of the given query into a Parquet file, with one column per field.
+     *
+     * @param outputFile    Output file
+     * @param query         Query with the variants to export
+     * @param queryOptions  Query options
+     * @throws IOException  If there is any IO error
+     * @throws StorageEngineException  If there is any error exporting variants
+     */
+    protected void exportParquet(String outputFile, Query query, QueryOptions queryOptions) throws IOException, StorageEngineException {
+        if (query == null) {
+            query = new Query();
+        }
+        if (queryOptions == null) {
+            queryOptions = new QueryOptions();
+        }
+        ObjectMap options = new ObjectMap(engine.getOptions());
+        options.putAll(queryOptions);
+        int numThreads = Math.max(1, options.getInt(VariantStorageEngine.Options.EXPORT_THREADS.key(),
+                VariantStorageEngine.Options.EXPORT_THREADS.defaultValue()));
+
+        VariantMetadata metadata = variantWriterFactory.getVcfMetadata(query, queryOptions);
+        String study = metadata.getStudies().get(0).getId();
+        List<String> samples = VcfDataWriter.getSamples(metadata);
+        DataWriter<GenericRecord> writer = newParquetDataWriter(outputFile, study, samples, options);
+
+        VariantDBReader variantDBReader = new VariantDBReader(engine.iterator(query, queryOptions));
+        ProgressLogger progressLogger = newProgressLogger(query, queryOptions);
+
+        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
+                .setNumTasks(numThreads)
+                .setBatchSize(100)
+                .setSorted(true)
+                .build();
+        ParallelTaskRunner<Variant, GenericRecord> ptr = new ParallelTaskRunner<>(variantDBReader,
+                () -> ((Task<Variant, Variant>) batch -> {
+                    progressLogger.increment(batch.size(), () -> "up to position " + batch.get(batch.size() - 1).toString());
+                    return batch;
+                }).then(new VariantToParquetConverter(study, samples)),
+                writer, config);
+        try {
+            ptr.run();
+        } catch (ExecutionException | RuntimeException e) {
+            // The writer is not closed if the runner fails before starting. Do not leave an incomplete file.
+            try {
+                writer.close();
+            } catch (RuntimeException closeException) {
+                e.addSuppressed(closeException);
+            }
+            Files.deleteIfExists(Paths.get(outputFile));
+            throw new StorageEngineException("Error exporting variants", e);
+        }
+    }
+
+    /**
+     * Creates a writer for Parquet files. Writing Parquet files requires Hadoop libraries, not available for all storage engines.
+     *
+     * @param outputFile    Output file
+     * @param study         Exported study
+     * @param samples       Samples of the genotypes column
+     * @param options       Export options
+     * @return              DataWriter for Parquet files
+     * @throws StorageEngineException  If the storage engine can not write Parquet files
+     */
+    protected DataWriter<GenericRecord> newParquetDataWriter(String outputFile, String study, List<String> samples, ObjectMap options)
+            throws StorageEngineException {
+        throw new StorageEngineException("Output format " + VariantOutputFormat.PARQUET
+                + " not supported by storage engine " + engine.getStorageEngineId());
+    }
+
+    protected ProgressLogger newProgressLogger(Query query, QueryOptions queryOptions) {
+        return new ProgressLogger("Export variants", () -> {
+            if (queryOptions.getBoolean(QueryOptions.SKIP_COUNT)) {
+                return 0L;
+            }
+            Long count = engine.count(query).first();
+            long limit = queryOptions.getLong(QueryOptions.LIMIT, Long.MAX_VALUE);
+            long skip = queryOptions.getLong(QueryOptions.SKIP, 0);
+            count = Math.min(limit, count - skip);
+            return count;
+        }, 200);
+    }
+
     protected void writeMetadata(VariantMetadata metadata, String output) throws IOException {
         ObjectMapper objectMapper = new ObjectMapper().configure(MapperFeature.REQUIRE_SETTERS_FOR_GETTERS, true);
         File file = Paths.get(output).toFile();
@@ -72,7 +72,8 @@ public class VariantWriterFactory {
         STATS("stats.tsv", false),
         STATS_GZ("stats.tsv.gz", false),
         CELLBASE("frequencies.json"),
-        CELLBASE_GZ("frequencies.json.gz");
+        CELLBASE_GZ("frequencies.json.gz"),
+        PARQUET("parquet", false);
 
         private final boolean multiStudy;
         private final String extension;
@@ -211,20 +212,9 @@ public class VariantWriterFactory {
         switch (outputFormat) {
             case VCF_GZ:
             case VCF:
-                VariantMetadataFactory metadataFactory = new VariantMetadataFactory(dbAdaptor.getStudyConfigurationManager(),
-                        dbAdaptor.getVariantFileMetadataDBAdaptor());
-                VariantMetadata variantMetadata;
-                try {
-                    variantMetadata = metadataFactory.makeVariantMetadata(query, queryOptions);
-                } catch (StorageEngineException e) {
-                    throw new IOException(e);
-                }
-                if (!variantMetadata.getStudies().isEmpty()) {
-                    List<String> annotations = queryOptions.getAsStringList("annotations");
-                    exporter = VcfDataWriter.newWriterForAvro(variantMetadata, annotations, outputStream);
-                } else {
-                    throw new IllegalArgumentException("No study found named " + query.getAsStringList(INCLUDE_STUDY.key()));
-                }
+                VariantMetadata variantMetadata = getVcfMetadata(query, queryOptions);
+                List<String> annotations = queryOptions.getAsStringList("annotations");
+                exporter = VcfDataWriter.newWriterForAvro(variantMetadata, annotations, outputStream);
                 break;
 
             case JSON_GZ:
@@ -257,6 +247,9 @@ public class VariantWriterFactory {
                 exporter = new VariantStatsPopulationFrequencyExporter(outputStream);
                 break;
 
+            case PARQUET:
+                throw new IllegalArgumentException("Output format " + outputFormat + " can not be written into an output stream");
+
             default:
                 throw variantFormatNotSupported(outputFormat.toString());
         }
@@ -264,6 +257,29 @@ public class VariantWriterFactory {
         return exporter;
     }
 
+    /**
+     * Builds the metadata of the single study to be written in a VCF file.
+     *
+     * @param query         Query with the variants to export
+     * @param queryOptions  Query options
+     * @return              VariantMetadata with one study
+     * @throws IOException  if there is an error reading the metadata
+     */
+    protected VariantMetadata getVcfMetadata(Query query, QueryOptions queryOptions) throws IOException {
+        VariantMetadataFactory metadataFactory = new VariantMetadataFactory(dbAdaptor.getStudyConfigurationManager(),
+                dbAdaptor.getVariantFileMetadataDBAdaptor());
+        VariantMetadata variantMetadata;
+        try {
+            variantMetadata = metadataFactory.makeVariantMetadata(query, queryOptions);
+        } catch (StorageEngineException e) {
+            throw new IOException(e);
+        }
+        if (variantMetadata.getStudies().isEmpty()) {
+            throw new IllegalArgumentException("No study found named " + query.getAsStringList(INCLUDE_STUDY.key()));
+        }
+        return variantMetadata;
+    }
+
     protected static IllegalArgumentException variantFormatNotSupported(String outputFormatStr) {
         return new IllegalArgumentException("Unknown output format " + outputFormatStr);
     }
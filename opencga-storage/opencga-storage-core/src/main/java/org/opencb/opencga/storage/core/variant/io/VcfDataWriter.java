@@ -71,15 +71,26 @@ public abstract class VcfDataWriter<T> implements DataWriter<T> {
         }
     }
 
+    public static VCFHeader createVcfHeader(VariantMetadata metadata, List<String> annotations) {
+        return new VariantStudyMetadataToVCFHeaderConverter().convert(metadata.getStudies().get(0), annotations);
+    }
+
+    public static List<String> getSamples(VariantMetadata metadata) {
+        return metadata.getStudies().get(0).getIndividuals().stream()
+                .flatMap(individual -> individual.getSamples().stream()).map(Sample::getId).collect(Collectors.toList());
+    }
+
+    public static VariantContextWriter createVariantContextWriter(OutputStream outputStream, VCFHeader vcfHeader) {
+        return VcfUtils.createVariantContextWriter(outputStream, vcfHeader.getSequenceDictionary(), Options.ALLOW_MISSING_FIELDS_IN_HEADER);
+    }
+
     @Override
     public boolean pre() {
         String study = metadata.getStudies().get(0).getId();
-        List<String> samples = metadata.getStudies().get(0).getIndividuals().stream()
-                .flatMap(individual -> individual.getSamples().stream()).map(Sample::getId).collect(Collectors.toList());
+        List<String> samples = getSamples(metadata);
 
-        VCFHeader vcfHeader = new VariantStudyMetadataToVCFHeaderConverter().convert(metadata.getStudies().get(0), annotations);
-        variantContextWriter = VcfUtils.createVariantContextWriter(outputStream, vcfHeader.getSequenceDictionary(),
-                Options.ALLOW_MISSING_FIELDS_IN_HEADER);
+        VCFHeader vcfHeader = createVcfHeader(metadata, annotations);
+        variantContextWriter = createVariantContextWriter(outputStream, vcfHeader);
         variantContextWriter.writeHeader(vcfHeader);
         converter = newConverter(study, samples, annotations);
 
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.io.parquet;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.commons.lang3.StringUtils;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.ConsequenceType;
+import org.opencb.biodata.models.variant.avro.PopulationFrequency;
+import org.opencb.biodata.models.variant.avro.Score;
+import org.opencb.biodata.models.variant.avro.SequenceOntologyTerm;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+import org.opencb.biodata.tools.Converter;
+
+import java.util.*;
+
+/**
+ * Flattens a {@link Variant} into a columnar record, to be written in a Parquet file.
+ *
+ * Annotation scores are written as single nullable columns, so projections only read the fields they need.
+ * Genotypes of the study are written in a single column with one value per sample, following the order of
+ * the samples given in the constructor. Genotypes are highly repetitive values, so the column is dictionary-encoded.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class VariantToParquetConverter implements Converter<Variant, GenericRecord> {
+
+    public static final String STUDY_METADATA_KEY = "opencga.study";
+    public static final String SAMPLES_METADATA_KEY = "opencga.samples";
+    public static final String MISSING_GENOTYPE = ".";
+
+    private static final Schema COHORT_STATS_SCHEMA = SchemaBuilder
+            .record("CohortStats").namespace(VariantToParquetConverter.class.getPackage().getName())
+            .fields()
+            .optionalInt("altAlleleCount")
+            .optionalFloat("altAlleleFreq")
+            .optionalFloat("maf")
+            .optionalFloat("mgf")
+            .endRecord();
+
+    private static final Schema SCHEMA = SchemaBuilder
+            .record("VariantRow").namespace(VariantToParquetConverter.class.getPackage().getName())
+            .fields()
+            .requiredString("chromosome")
+            .requiredInt("start")
+            .requiredInt("end")
+            .requiredString("reference")
+            .requiredString("alternate")
+            .optionalString("id")
+            .requiredString("type")
+            .name("genes").type().array().items().stringType().noDefault()
+            .name("biotypes").type().array().items().stringType().noDefault()
+            .name("consequenceTypes").type().array().items().stringType().noDefault()
+            .optionalDouble("sift")
+            .optionalDouble("polyphen")
+            .optionalDouble("phastCons")
+            .optionalDouble("phylop")
+            .optionalDouble("gerp")
+            .optionalDouble("caddRaw")
+            .optionalDouble("caddScaled")
+            .name("populationFrequencies").type().map().values().floatType().noDefault()
+            .name("stats").type().map().values(COHORT_STATS_SCHEMA).noDefault()
+            .name("genotypes").type().array().items().stringType().noDefault()
+            .endRecord();
+
+    private final String study;
+    private final List<String> samples;
+
+    /**
+     * @param study     Study to convert. If null, the variants are expected to have a single study.
+     * @param samples   Samples to write in the genotypes column
+     */
+    public VariantToParquetConverter(String study, List<String> samples) {
+        this.study = study;
+        this.samples = samples == null ? Collections.emptyList() : samples;
+    }
+
+    public static Schema getSchema() {
+        return SCHEMA;
+    }
+
+    public String getStudy() {
+        return study;
+    }
+
+    public List<String> getSamples() {
+        return samples;
+    }
+
+    @Override
+    public GenericRecord convert(Variant variant) {
+        GenericRecord record = new GenericData.Record(SCHEMA);
+        record.put("chromosome", variant.getChromosome());
+        record.put("start", variant.getStart());
+        record.put("end", variant.getEnd());
+        record.put("reference", variant.getReference());
+        record.put("alternate", variant.getAlternate());
+        record.put("id", variant.getId());
+        record.put("type", variant.getType().toString());
+
+        Set<String> genes = new LinkedHashSet<>();
+        Set<String> biotypes = new LinkedHashSet<>();
+        Set<String> consequenceTypes = new LinkedHashSet<>();
+        Map<String, Float> populationFrequencies = new HashMap<>();
+        VariantAnnotation annotation = variant.getAnnotation();
+        if (annotation != null) {
+            if (annotation.getConsequenceTypes() != null) {
+                Double sift = null;
+                Double polyphen = null;
+                for (ConsequenceType consequenceType : annotation.getConsequenceTypes()) {
+                    if (StringUtils.isNotEmpty(consequenceType.getGeneName())) {
+                        genes.add(consequenceType.getGeneName());
+                    }
+                    if (StringUtils.isNotEmpty(consequenceType.getBiotype())) {
+                        biotypes.add(consequenceType.getBiotype());
+                    }
+                    if (consequenceType.getSequenceOntologyTerms() != null) {
+                        for (SequenceOntologyTerm term : consequenceType.getSequenceOntologyTerms()) {
+                            consequenceTypes.add(term.getName());
+                        }
+                    }
+                    // Keep the most damaging protein substitution scores
+                    if (consequenceType.getProteinVariantAnnotation() != null
+                            && consequenceType.getProteinVariantAnnotation().getSubstitutionScores() != null) {
+                        for (Score score : consequenceType.getProteinVariantAnnotation().getSubstitutionScores()) {
+                            if ("sift".equals(score.getSource())) {
+                                if (sift == null || score.getScore() < sift) {
+                                    sift = score.getScore();
+                                }
+                            } else if ("polyphen".equals(score.getSource())) {
+                                if (polyphen == null || score.getScore() > polyphen) {
+                                    polyphen = score.getScore();
+                                }
+                            }
+                        }
+                    }
+                }
+                record.put("sift", sift);
+                record.put("polyphen", polyphen);
+            }
+            if (annotation.getConservation() != null) {
+                for (Score score : annotation.getConservation()) {
+                    switch (score.getSource()) {
+                        case "phastCons":
+                        case "phylop":
+                        case "gerp":
+                            record.put(score.getSource(), score.getScore());
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+            if (annotation.getFunctionalScore() != null) {
+                for (Score score : annotation.getFunctionalScore()) {
+                    switch (score.getSource()) {
+                        case "cadd_raw":
+                        case "caddRaw":
+                            record.put("caddRaw", score.getScore());
+                            break;
+                        case "cadd_scaled":
+                        case "caddScaled":
+                            record.put("caddScaled", score.getScore());
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+            if (annotation.getPopulationFrequencies() != null) {
+                for (PopulationFrequency populationFrequency : annotation.getPopulationFrequencies()) {
+                    if (populationFrequency.getAltAlleleFreq() != null) {
+                        populationFrequencies.put(populationFrequency.getStudy() + ':' + populationFrequency.getPopulation(),
+                                populationFrequency.getAltAlleleFreq());
+                    }
+                }
+            }
+        }
+        record.put("genes", new ArrayList<>(genes));
+        record.put("biotypes", new ArrayList<>(biotypes));
+        record.put("consequenceTypes", new ArrayList<>(consequenceTypes));
+        record.put("populationFrequencies", populationFrequencies);
+
+        Map<String, GenericRecord> stats = new HashMap<>();
+        List<String> genotypes = new ArrayList<>(samples.size());
+        StudyEntry studyEntry = getStudyEntry(variant);
+        if (studyEntry != null) {
+            if (studyEntry.getStats() != null) {
+                for (Map.Entry<String, VariantStats> entry : studyEntry.getStats().entrySet()) {
+                    VariantStats variantStats = entry.getValue();
+                    GenericRecord cohortStats = new GenericData.Record(COHORT_STATS_SCHEMA);
+                    cohortStats.put("altAlleleCount", variantStats.getAltAlleleCount());
+                    cohortStats.put("altAlleleFreq", variantStats.getAltAlleleFreq());
+                    cohortStats.put("maf", variantStats.getMaf());
+                    cohortStats.put("mgf", variantStats.getMgf());
+                    stats.put(entry.getKey(), cohortStats);
+                }
+            }
+            Integer gtPosition = studyEntry.getFormatPositions().get("GT");
+            Map<String, Integer> samplesPosition = studyEntry.getSamplesPosition();
+            for (String sample : samples) {
+                Integer samplePosition = samplesPosition == null ? null : samplesPosition.get(sample);
+                String gt = null;
+                if (gtPosition != null && samplePosition != null) {
+                    gt = studyEntry.getSamplesData().get(samplePosition).get(gtPosition);
+                }
+                genotypes.add(gt == null ? MISSING_GENOTYPE : gt);
+            }
+        } else {
+            for (int i = 0; i < samples.size(); i++) {
+                genotypes.add(MISSING_GENOTYPE);
+            }
+        }
+        record.put("stats", stats);
+        record.put("genotypes", genotypes);
+
+        return record;
+    }
+
+    private StudyEntry getStudyEntry(Variant variant) {
+        if (variant.getStudies() == null || variant.getStudies().isEmpty()) {
+            return null;
+        }
+        if (study == null) {
+            return variant.getStudies().get(0);
+        }
+        for (StudyEntry studyEntry : variant.getStudies()) {
+            String studyId = studyEntry.getStudyId();
+            if (studyId.equals(study) || studyId.endsWith(':' + study) || study.endsWith(':' + studyId)) {
+                return studyEntry;
+            }
+        }
+        return variant.getStudies().size() == 1 ? variant.getStudies().get(0) : null;
+    }
+
+}
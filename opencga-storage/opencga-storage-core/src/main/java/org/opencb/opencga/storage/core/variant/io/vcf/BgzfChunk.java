@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.io.vcf;
+
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.tribble.Feature;
+import htsjdk.tribble.SimpleFeature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sequence of complete BGZF blocks, compressed independently, to be appended to a BGZF file.
+ *
+ * Contains the features written in the blocks, with their virtual file offsets relative to the first block of the chunk.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class BgzfChunk {
+
+    private final byte[] data;
+    private final List<Feature> features;
+    private final List<Long> virtualOffsets;
+
+    public BgzfChunk(byte[] data, List<Feature> features, List<Long> virtualOffsets) {
+        this.data = data;
+        this.features = features;
+        this.virtualOffsets = virtualOffsets;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public List<Feature> getFeatures() {
+        return Collections.unmodifiableList(features);
+    }
+
+    public List<Long> getVirtualOffsets() {
+        return Collections.unmodifiableList(virtualOffsets);
+    }
+
+    public static class Builder {
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private final BlockCompressedOutputStream bgzf = new BlockCompressedOutputStream(data, (File) null);
+        private final List<Feature> features = new ArrayList<>();
+        private final List<Long> virtualOffsets = new ArrayList<>();
+
+        public Builder add(byte[] bytes) throws IOException {
+            bgzf.write(bytes);
+            return this;
+        }
+
+        public Builder add(Feature feature, byte[] record) throws IOException {
+            // Only keep the coordinates
+            features.add(new SimpleFeature(feature.getContig(), feature.getStart(), feature.getEnd()));
+            virtualOffsets.add(bgzf.getFilePointer());
+            bgzf.write(record);
+            return this;
+        }
+
+        public BgzfChunk build() throws IOException {
+            // Compress the last incomplete block. Do not close the stream, as it would append the EOF marker block.
+            bgzf.flush();
+            return new BgzfChunk(data.toByteArray(), features, virtualOffsets);
+        }
+    }
+}
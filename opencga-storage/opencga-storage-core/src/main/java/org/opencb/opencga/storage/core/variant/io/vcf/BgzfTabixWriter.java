@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.io.vcf;
+
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.tribble.index.tabix.TabixIndexCreator;
+import htsjdk.tribble.util.TabixUtils;
+import org.opencb.commons.io.DataWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Concatenates {@link BgzfChunk}s into a BGZF file, and builds the tabix index of the file in the same pass.
+ *
+ * Chunks must be written in coordinate order.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class BgzfTabixWriter implements DataWriter<BgzfChunk> {
+
+    private final Path output;
+    private final Path indexOutput;
+    private final byte[] header;
+    private final TabixFormat tabixFormat;
+    private OutputStream outputStream;
+    private TabixIndexCreator indexCreator;
+    // Compressed bytes written so far
+    private long position;
+
+    private final Logger logger = LoggerFactory.getLogger(BgzfTabixWriter.class);
+
+    public BgzfTabixWriter(Path output, byte[] header, TabixFormat tabixFormat) {
+        this.output = output;
+        this.indexOutput = Paths.get(output.toString() + TabixUtils.STANDARD_INDEX_EXTENSION);
+        this.header = header;
+        this.tabixFormat = tabixFormat;
+    }
+
+    public Path getIndexOutput() {
+        return indexOutput;
+    }
+
+    @Override
+    public boolean open() {
+        try {
+            outputStream = new BufferedOutputStream(new FileOutputStream(output.toFile()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean pre() {
+        indexCreator = new TabixIndexCreator(tabixFormat);
+        position = 0;
+        if (header != null && header.length > 0) {
+            try {
+                write(BgzfChunk.builder().add(header).build());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean write(List<BgzfChunk> batch) {
+        for (BgzfChunk chunk : batch) {
+            write(chunk);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean write(BgzfChunk chunk) {
+        // Virtual offsets of the chunk are relative to its first block
+        long offset = position << 16;
+        for (int i = 0; i < chunk.getFeatures().size(); i++) {
+            indexCreator.addFeature(chunk.getFeatures().get(i), offset + chunk.getVirtualOffsets().get(i));
+        }
+        try {
+            outputStream.write(chunk.getData());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        position += chunk.getData().length;
+        return true;
+    }
+
+    @Override
+    public boolean post() {
+        try {
+            outputStream.write(BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
+            outputStream.flush();
+            indexCreator.finalizeIndex(position << 16).write(indexOutput);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        logger.info("Tabix index written at " + indexOutput);
+        return true;
+    }
+
+    @Override
+    public boolean close() {
+        try {
+            outputStream.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+}
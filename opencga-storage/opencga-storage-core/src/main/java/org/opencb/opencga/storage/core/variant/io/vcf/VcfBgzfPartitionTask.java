@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.io.vcf;
+
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFEncoder;
+import htsjdk.variant.vcf.VCFHeader;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.metadata.VariantMetadata;
+import org.opencb.biodata.tools.variant.converters.VariantContextConverter;
+import org.opencb.biodata.tools.variant.converters.avro.VariantAvroToVariantContextConverter;
+import org.opencb.commons.ProgressLogger;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.run.Task;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.io.VcfDataWriter;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.REGION;
+
+/**
+ * Reads the variants of a genomic partition, converts them into VCF records and compresses them into BGZF blocks.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class VcfBgzfPartitionTask implements Task<Region, BgzfChunk> {
+
+    private final VariantStorageEngine engine;
+    private final Query query;
+    private final QueryOptions queryOptions;
+    private final VariantMetadata metadata;
+    private final List<String> annotations;
+    private final Map<Region, Integer> partitionsMinStart;
+    private final ProgressLogger progressLogger;
+    private VariantContextConverter<Variant> converter;
+    private VCFEncoder encoder;
+
+    /**
+     * @param engine                VariantStorageEngine
+     * @param query                 Query with the variants to export
+     * @param queryOptions          Query options
+     * @param metadata              Metadata of the exported variants
+     * @param annotations           Annotation fields to export
+     * @param partitionsMinStart    Min start of the variants to export from each partition. Variants starting before were
+     *                              exported by the previous partition. See VariantExporter#getPartitionsMinStart
+     * @param progressLogger        Progress logger
+     */
+    public VcfBgzfPartitionTask(VariantStorageEngine engine, Query query, QueryOptions queryOptions, VariantMetadata metadata,
+                                List<String> annotations, Map<Region, Integer> partitionsMinStart, ProgressLogger progressLogger) {
+        this.engine = engine;
+        this.query = query;
+        this.queryOptions = queryOptions;
+        this.metadata = metadata;
+        this.annotations = annotations == null ? Collections.emptyList() : annotations;
+        this.partitionsMinStart = partitionsMinStart == null ? Collections.emptyMap() : partitionsMinStart;
+        this.progressLogger = progressLogger;
+    }
+
+    @Override
+    public void pre() {
+        VCFHeader vcfHeader = VcfDataWriter.createVcfHeader(metadata, annotations);
+        encoder = new VCFEncoder(vcfHeader, true, true);
+        converter = new VariantAvroToVariantContextConverter(metadata.getStudies().get(0).getId(),
+                VcfDataWriter.getSamples(metadata), annotations);
+    }
+
+    @Override
+    public List<BgzfChunk> apply(List<Region> regions) throws Exception {
+        List<BgzfChunk> chunks = new ArrayList<>(regions.size());
+        for (Region region : regions) {
+            chunks.add(export(region));
+        }
+        return chunks;
+    }
+
+    protected BgzfChunk export(Region region) throws Exception {
+        Query partitionQuery = new Query(query).append(REGION.key(), region.toString());
+        QueryOptions partitionOptions = new QueryOptions(queryOptions).append(QueryOptions.SORT, true);
+
+        int minStart = partitionsMinStart.getOrDefault(region, region.getStart());
+
+        BgzfChunk.Builder chunk = BgzfChunk.builder();
+        // VCF records of indels start one base before the variant. Keep the last records to write them sorted.
+        List<VariantContext> pending = new LinkedList<>();
+        int numVariants = 0;
+        try (VariantDBIterator iterator = engine.iterator(partitionQuery, partitionOptions)) {
+            while (iterator.hasNext()) {
+                Variant variant = iterator.next();
+                if (!variant.getChromosome().equals(region.getChromosome())
+                        || variant.getStart() < minStart || variant.getStart() > region.getEnd()) {
+                    // Overlapping variant exported by other partition
+                    continue;
+                }
+                flush(chunk, pending, variant.getStart() - 1);
+                pending.add(convert(variant));
+                numVariants++;
+            }
+        }
+        flush(chunk, pending, Integer.MAX_VALUE);
+
+        if (progressLogger != null) {
+            progressLogger.increment(numVariants, () -> "up to region " + region);
+        }
+        return chunk.build();
+    }
+
+    private void flush(BgzfChunk.Builder chunk, List<VariantContext> pending, int maxStart) throws IOException {
+        pending.sort(Comparator.comparingInt(VariantContext::getStart));
+        Iterator<VariantContext> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            VariantContext variantContext = iterator.next();
+            if (variantContext.getStart() > maxStart) {
+                break;
+            }
+            chunk.add(variantContext, (encoder.encode(variantContext) + '\n').getBytes(VCFEncoder.VCF_CHARSET));
+            iterator.remove();
+        }
+    }
+
+    private VariantContext convert(Variant variant) {
+        if (annotations.isEmpty() && !hasStats(variant)) {
+            return converter.convert(variant);
+        } else {
+            // Stats and annotations are formatted with static DecimalFormat instances, which are not thread safe
+            synchronized (VariantContextConverter.class) {
+                return converter.convert(variant);
+            }
+        }
+    }
+
+    private static boolean hasStats(Variant variant) {
+        for (StudyEntry studyEntry : variant.getStudies()) {
+            if (studyEntry.getStats() != null && !studyEntry.getStats().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
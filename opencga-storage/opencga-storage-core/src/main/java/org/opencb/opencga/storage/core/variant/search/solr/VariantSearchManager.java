@@ -29,10 +29,13 @@ import org.opencb.biodata.formats.variant.io.VariantReader;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.annotation.ConsequenceTypeMappings;
 import org.opencb.commons.ProgressLogger;
+import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.core.result.FacetedQueryResult;
 import org.opencb.commons.datastore.core.result.FacetedQueryResultItem;
+import org.opencb.commons.io.DataReader;
+import org.opencb.commons.run.ParallelTaskRunner;
 import org.opencb.commons.utils.CollectionUtils;
 import org.opencb.commons.utils.FileUtils;
 import org.opencb.opencga.core.results.VariantQueryResult;
@@ -42,6 +45,7 @@ import org.opencb.opencga.storage.core.exceptions.VariantSearchException;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBIterator;
 import org.opencb.opencga.storage.core.variant.io.VariantReaderUtils;
+import org.opencb.opencga.storage.core.variant.io.db.VariantDBReader;
 import org.opencb.opencga.storage.core.variant.search.VariantSearchModel;
 import org.opencb.opencga.storage.core.variant.search.VariantSearchToVariantConverter;
 import org.slf4j.Logger;
@@ -50,9 +54,13 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Created by imedina on 09/11/16.
@@ -74,6 +82,19 @@ public class VariantSearchManager {
     public static final String SEARCH_ENGINE_ID = "solr";
     public static final String USE_SEARCH_INDEX = "useSearchIndex";
 
+    /** Number of threads converting variants into Solr documents while loading. */
+    public static final String LOAD_THREADS = "searchLoadThreads";
+    public static final int DEFAULT_LOAD_THREADS = 4;
+    /** Number of concurrent update requests while loading. */
+    public static final String LOAD_WRITERS = "searchLoadWriters";
+    public static final int DEFAULT_LOAD_WRITERS = 2;
+    /** Max number of retries of each update request. */
+    public static final String LOAD_MAX_RETRIES = "searchLoadMaxRetries";
+    public static final int DEFAULT_LOAD_MAX_RETRIES = 3;
+    /** Number of loaded variants between soft commits. The variants are only hard committed at the end of the load. */
+    public static final String LOAD_SOFT_COMMIT_INTERVAL = "searchLoadSoftCommitInterval";
+    public static final long DEFAULT_LOAD_SOFT_COMMIT_INTERVAL = 0;
+
     public enum UseSearchIndex {
         YES, NO, AUTO;
         public static UseSearchIndex from(Map<String, Object> options) {
@@ -174,29 +195,46 @@ public class VariantSearchManager {
      */
     public void load(String collection, VariantDBIterator variantDBIterator, ProgressLogger progressLogger)
             throws IOException, VariantSearchException {
-        if (variantDBIterator == null) {
-            throw new VariantSearchException("VariantDBIterator parameter is null");
-        }
+        load(collection, variantDBIterator, progressLogger, new ObjectMap());
+    }
 
-        int count = 0;
-        List<Variant> variantList = new ArrayList<>(insertBatchSize);
-        while (variantDBIterator.hasNext()) {
-            Variant variant = variantDBIterator.next();
-            progressLogger.increment(1, () -> "up to position " + variant.toString());
-            variantList.add(variant);
-            count++;
-            if (count % insertBatchSize == 0) {
-                insert(collection, variantList);
-                variantList.clear();
-            }
-        }
+    /**
+     * Load a Solr core/collection from a variant DB iterator.
+     *
+     * The variants are read, converted by {@link #LOAD_THREADS} threads and sent to Solr by {@link #LOAD_WRITERS}
+     * concurrent update requests. The collection is committed only once, at the end of the load.
+     *
+     * @param collection        Collection name
+     * @param variantDBIterator Iterator to retrieve the variants to load
+     * @param progressLogger    Progress logger
+     * @param options           Load options
+     * @throws IOException            IOException
+     * @throws VariantSearchException VariantSearchException
+     */
+    public void load(String collection, VariantDBIterator variantDBIterator, ProgressLogger progressLogger, ObjectMap options)
+            throws IOException, VariantSearchException {
+        load(collection, variantDBIterator, progressLogger, options, null);
+    }
 
-        // Insert the remaining variants
-        if (CollectionUtils.isNotEmpty(variantList)) {
-            insert(collection, variantList);
+    /**
+     * Load a Solr core/collection from a variant DB iterator.
+     *
+     * @param collection        Collection name
+     * @param variantDBIterator Iterator to retrieve the variants to load
+     * @param progressLogger    Progress logger
+     * @param options           Load options
+     * @param onLoad            Callback executed for each batch of variants successfully sent to Solr. Optional
+     * @throws IOException            IOException
+     * @throws VariantSearchException VariantSearchException
+     */
+    public void load(String collection, VariantDBIterator variantDBIterator, ProgressLogger progressLogger, ObjectMap options,
+                     Consumer<List<Variant>> onLoad)
+            throws IOException, VariantSearchException {
+        if (variantDBIterator == null) {
+            throw new VariantSearchException("VariantDBIterator parameter is null");
         }
 
-        logger.debug("Variant Search loading done: {} variants indexed", count);
+        load(collection, new VariantDBReader(variantDBIterator), progressLogger, options, onLoad);
     }
 
     /**
@@ -318,28 +356,59 @@ public class VariantSearchManager {
      *  P R I V A T E    M E T H O D S
      -------------------------------------*/
     /**
-     * Insert a list of variants into Solr.
+     * Load variants into Solr using a {@link ParallelTaskRunner}.
      *
-     * @param variants List of variants to insert
+     * @param collection     Collection name
+     * @param reader         Variants reader
+     * @param progressLogger Progress logger. Optional
+     * @param options        Load options
+     * @param onLoad         Callback for each batch of loaded variants. Optional
      * @throws IOException            IOException
      * @throws VariantSearchException VariantSearchException
      */
-    private void insert(String collection, List<Variant> variants) throws IOException, VariantSearchException {
-        if (variants != null && CollectionUtils.isNotEmpty(variants)) {
-            List<VariantSearchModel> variantSearchModels = variantSearchToVariantConverter.convertListToStorageType(variants);
-
-            if (!variantSearchModels.isEmpty()) {
-                UpdateResponse updateResponse;
-                try {
-                    updateResponse = solrManager.getSolrClient().addBeans(collection, variantSearchModels);
-                    if (updateResponse.getStatus() == 0) {
-                        solrManager.getSolrClient().commit(collection);
-                    }
-                } catch (SolrServerException e) {
-                    throw new VariantSearchException(e.getMessage(), e);
-                }
+    private void load(String collection, DataReader<Variant> reader, ProgressLogger progressLogger, ObjectMap options,
+                      Consumer<List<Variant>> onLoad)
+            throws IOException, VariantSearchException {
+        if (options == null) {
+            options = new ObjectMap();
+        }
+        int numThreads = options.getInt(LOAD_THREADS, DEFAULT_LOAD_THREADS);
+        int numWriters = options.getInt(LOAD_WRITERS, DEFAULT_LOAD_WRITERS);
+        int maxRetries = options.getInt(LOAD_MAX_RETRIES, DEFAULT_LOAD_MAX_RETRIES);
+        long softCommitInterval = options.getLong(LOAD_SOFT_COMMIT_INTERVAL, DEFAULT_LOAD_SOFT_COMMIT_INTERVAL);
+
+        ParallelTaskRunner.Task<Variant, VariantSearchModel> task = variants -> {
+            if (progressLogger != null && !variants.isEmpty()) {
+                Variant last = variants.get(variants.size() - 1);
+                progressLogger.increment(variants.size(), () -> "up to position " + last.toString());
             }
+            return variantSearchToVariantConverter.convertListToStorageType(variants);
+        };
+        VariantSolrDataWriter writer = new VariantSolrDataWriter(solrManager.getSolrClient(), collection,
+                numWriters, maxRetries, softCommitInterval);
+        if (onLoad != null) {
+            writer.setOnWrite(models -> onLoad.accept(models.stream()
+                    .map(model -> new Variant(model.getId()))
+                    .collect(Collectors.toList())));
+        }
+
+        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
+                .setNumTasks(numThreads)
+                .setBatchSize(insertBatchSize)
+                // Limit the number of converted batches waiting for a writer
+                .setCapacity(numThreads + numWriters)
+                .setAbortOnFail(true)
+                .setSorted(false).build();
+        ParallelTaskRunner<Variant, VariantSearchModel> ptr = new ParallelTaskRunner<>(reader, task, writer, config);
+
+        StopWatch watch = StopWatch.createStarted();
+        try {
+            ptr.run();
+        } catch (ExecutionException | RuntimeException e) {
+            throw new VariantSearchException(e.getMessage(), e);
         }
+        logger.debug("Variant Search loading done: {} variants indexed in {}s", writer.getNumDocuments(),
+                watch.getTime(TimeUnit.MILLISECONDS) / 1000.0);
     }
 
     /**
@@ -352,47 +421,31 @@ public class VariantSearchManager {
     private void loadJson(String collection, Path path) throws IOException, VariantSearchException {
         // This opens json and json.gz files automatically
         try (BufferedReader bufferedReader = FileUtils.newBufferedReader(path)) {
-            // TODO: get the buffer size from configuration file
-            List<Variant> variants = new ArrayList<>(insertBatchSize);
-            int count = 0;
-            String line;
             ObjectReader objectReader = new ObjectMapper().readerFor(Variant.class);
-            while ((line = bufferedReader.readLine()) != null) {
-                Variant variant = objectReader.readValue(line);
-                variants.add(variant);
-                count++;
-                if (count % insertBatchSize == 0) {
-                    logger.debug("Loading variants from '{}', {} variants loaded", path.toString(), count);
-                    insert(collection, variants);
-                    variants.clear();
+            DataReader<Variant> reader = batchSize -> {
+                List<Variant> variants = new ArrayList<>(batchSize);
+                try {
+                    while (variants.size() < batchSize) {
+                        String line = bufferedReader.readLine();
+                        if (line == null) {
+                            break;
+                        }
+                        variants.add(objectReader.readValue(line));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-            }
-
-            // Insert the remaining variants
-            if (CollectionUtils.isNotEmpty(variants)) {
-                logger.debug("Loading remaining variants from '{}', {} variants loaded", path.toString(), count);
-                insert(collection, variants);
-            }
+                return variants;
+            };
+            load(collection, reader, new ProgressLogger("Loading variants from '" + path + "':"), new ObjectMap(), null);
         }
     }
 
     private void loadAvro(String collection, Path path) throws IOException, VariantSearchException, StorageEngineException {
-        // reader
         VariantReader reader = VariantReaderUtils.getVariantReader(path, null);
-
-        // TODO: get the buffer size from configuration file
-        int bufferSize = 10000;
-
-        List<Variant> variants;
-        do {
-            variants = reader.read(bufferSize);
-            insert(collection, variants);
-        } while (CollectionUtils.isNotEmpty(variants));
-
-        reader.close();
+        load(collection, reader, new ProgressLogger("Loading variants from '" + path + "':"), new ObjectMap(), null);
     }
 
-
     private FacetedQueryResultItem.Field processSolrPivot(String name, int index, Map<String, Set<String>> includes, PivotField pivot) {
         String countName;
         FacetedQueryResultItem.Field field = null;
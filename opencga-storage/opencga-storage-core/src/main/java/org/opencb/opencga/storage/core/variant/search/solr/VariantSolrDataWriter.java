@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.search.solr;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.opencb.commons.io.DataWriter;
+import org.opencb.opencga.storage.core.variant.search.VariantSearchModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Writes batches of {@link VariantSearchModel} into a Solr collection.
+ *
+ * Batches are sent by a pool of concurrent update threads. When all the threads are busy, {@link #write(List)} blocks,
+ * so the pipeline does not read faster than Solr can index. Failed updates are retried with an exponential backoff.
+ *
+ * The documents are hard committed only once, at {@link #post()}. Optionally, a soft commit can be requested every
+ * given number of documents, to make them visible while loading.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class VariantSolrDataWriter implements DataWriter<VariantSearchModel> {
+
+    private static final long MIN_RETRY_SLEEP = 100;
+    private static final long MAX_RETRY_SLEEP = 10000;
+
+    private final SolrClient solrClient;
+    private final String collection;
+    private final int numWriters;
+    private final int maxRetries;
+    private final long softCommitInterval;
+    private Consumer<List<VariantSearchModel>> onWrite;
+
+    private ExecutorService executor;
+    private Semaphore semaphore;
+    private final AtomicReference<Exception> exception = new AtomicReference<>();
+    private final AtomicLong numDocuments = new AtomicLong();
+    private final AtomicLong numRetries = new AtomicLong();
+    private final AtomicLong numSoftCommits = new AtomicLong();
+    private final AtomicLong nextSoftCommit = new AtomicLong();
+
+    private final Logger logger = LoggerFactory.getLogger(VariantSolrDataWriter.class);
+
+    /**
+     * @param solrClient            Solr client
+     * @param collection            Collection name
+     * @param numWriters            Number of concurrent update requests
+     * @param maxRetries            Max number of retries for each update request
+     * @param softCommitInterval    Number of documents between soft commits. Disabled if not positive
+     */
+    public VariantSolrDataWriter(SolrClient solrClient, String collection, int numWriters, int maxRetries, long softCommitInterval) {
+        this.solrClient = solrClient;
+        this.collection = collection;
+        this.numWriters = Math.max(1, numWriters);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.softCommitInterval = softCommitInterval;
+    }
+
+    /**
+     * @param onWrite   Callback executed after each batch is successfully sent to Solr, from the update threads
+     * @return this
+     */
+    public VariantSolrDataWriter setOnWrite(Consumer<List<VariantSearchModel>> onWrite) {
+        this.onWrite = onWrite;
+        return this;
+    }
+
+    @Override
+    public boolean open() {
+        executor = Executors.newFixedThreadPool(numWriters, r -> {
+            Thread thread = new Thread(r, "solr-writer-" + collection);
+            thread.setDaemon(true);
+            return thread;
+        });
+        semaphore = new Semaphore(numWriters);
+        nextSoftCommit.set(softCommitInterval);
+        return true;
+    }
+
+    @Override
+    public boolean write(List<VariantSearchModel> batch) {
+        checkException();
+        if (batch.isEmpty()) {
+            return true;
+        }
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading variants into Solr", e);
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    update(batch);
+                } catch (Exception e) {
+                    exception.compareAndSet(null, e);
+                } finally {
+                    semaphore.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            semaphore.release();
+            throw e;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean post() {
+        // Wait for the pending updates
+        try {
+            semaphore.acquire(numWriters);
+            semaphore.release(numWriters);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading variants into Solr", e);
+        }
+        checkException();
+        try {
+            solrClient.commit(collection);
+        } catch (SolrServerException | IOException e) {
+            throw new IllegalStateException("Error committing variants into Solr collection " + collection, e);
+        }
+        logger.info("Loaded {} variants into Solr collection {}. Retries: {}, soft commits: {}",
+                numDocuments.get(), collection, numRetries.get(), numSoftCommits.get());
+        return true;
+    }
+
+    @Override
+    public boolean close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        return true;
+    }
+
+    private void update(List<VariantSearchModel> batch) throws Exception {
+        long sleep = MIN_RETRY_SLEEP;
+        int retry = 0;
+        while (true) {
+            try {
+                UpdateResponse response = solrClient.addBeans(collection, batch);
+                if (response.getStatus() != 0) {
+                    throw new IOException("Unexpected status " + response.getStatus() + " adding variants into Solr");
+                }
+                break;
+            } catch (SolrServerException | IOException | RuntimeException e) {
+                if (retry >= maxRetries) {
+                    throw e;
+                }
+                retry++;
+                numRetries.incrementAndGet();
+                logger.warn("Error adding {} variants into Solr collection {}. Retry {}/{} in {}ms : {}",
+                        batch.size(), collection, retry, maxRetries, sleep, e.getMessage());
+                Thread.sleep(sleep);
+                sleep = Math.min(sleep * 2, MAX_RETRY_SLEEP);
+            }
+        }
+        if (onWrite != null) {
+            onWrite.accept(batch);
+        }
+
+        long documents = numDocuments.addAndGet(batch.size());
+        if (softCommitInterval > 0) {
+            long next = nextSoftCommit.get();
+            if (documents >= next && nextSoftCommit.compareAndSet(next, documents + softCommitInterval)) {
+                solrClient.commit(collection, false, false, true);
+                numSoftCommits.incrementAndGet();
+            }
+        }
+    }
+
+    private void checkException() {
+        Exception e = exception.get();
+        if (e != null) {
+            throw new IllegalStateException("Error loading variants into Solr collection " + collection, e);
+        }
+    }
+
+    public long getNumDocuments() {
+        return numDocuments.get();
+    }
+
+    public long getNumRetries() {
+        return numRetries.get();
+    }
+
+    public long getNumSoftCommits() {
+        return numSoftCommits.get();
+    }
+}
@@ -22,9 +22,12 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.base.Throwables;
+import org.apache.avro.file.DataFileReader;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.specific.SpecificDatumReader;
 import org.opencb.biodata.models.variant.StudyEntry;
 import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.VariantFileMetadata;
 import org.opencb.biodata.models.variant.stats.VariantSourceStats;
 import org.opencb.biodata.models.variant.stats.VariantStats;
 import org.opencb.biodata.tools.variant.stats.VariantAggregatedStatsCalculator;
@@ -32,16 +35,20 @@ import org.opencb.commons.ProgressLogger;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.io.DataReader;
+import org.opencb.commons.io.avro.AvroDataWriter;
 import org.opencb.commons.run.ParallelTaskRunner;
 import org.opencb.commons.run.Task;
 import org.opencb.opencga.core.common.UriUtils;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.io.avro.AvroRangeDataReader;
 import org.opencb.opencga.storage.core.io.json.JsonDataReader;
 import org.opencb.opencga.storage.core.io.plain.StringDataWriter;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantFileMetadataDBAdaptor;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.io.db.VariantDBReader;
 import org.opencb.opencga.storage.core.variant.io.db.VariantStatsDBWriter;
 import org.opencb.opencga.storage.core.variant.io.json.mixin.GenericRecordAvroJsonMixin;
@@ -56,6 +63,10 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -71,8 +82,28 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
     public static final String OUTPUT = "output";
     public static final String STATS_LOAD_PARALLEL = "stats.load.parallel";
     public static final boolean DEFAULT_STATS_LOAD_PARALLEL = true;
+    /**
+     * Write the calculated stats directly into the database, without the intermediate file.
+     * Disabled by default. When enabled, {@link #OUTPUT} is ignored and no stats files are written.
+     */
+    public static final String STATS_DIRECT_LOAD = "stats.direct.load";
+    public static final boolean DEFAULT_STATS_DIRECT_LOAD = false;
+    /**
+     * Cohorts and regions already loaded by an unfinished direct stats calculation.
+     * Stored in the StudyConfiguration attributes, and used with {@link Options#RESUME}.
+     */
+    public static final String STATS_CHECKPOINT_COHORTS = "stats.checkpoint.cohorts";
+    public static final String STATS_CHECKPOINT_REGIONS = "stats.checkpoint.regions";
+    /**
+     * Format of the intermediate variant stats file. One of {@link #STATS_FORMAT_JSON} or {@link #STATS_FORMAT_AVRO}.
+     */
+    public static final String STATS_FORMAT = "stats.format";
+    public static final String STATS_FORMAT_JSON = "json";
+    public static final String STATS_FORMAT_AVRO = "avro";
+    public static final String DEFAULT_STATS_FORMAT = STATS_FORMAT_JSON;
 
     private static final String VARIANT_STATS_SUFFIX = ".variants.stats.json.gz";
+    private static final String VARIANT_STATS_AVRO_SUFFIX = ".variants.stats.avro";
     private static final String SOURCE_STATS_SUFFIX = ".source.stats.json.gz";
 
     private final JsonFactory jsonFactory;
@@ -92,6 +123,17 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
     @Override
     public void calculateStatistics(String study, List<String> cohorts, QueryOptions options) throws IOException, StorageEngineException {
 
+        if (options.getBoolean(STATS_DIRECT_LOAD, DEFAULT_STATS_DIRECT_LOAD)) {
+            StudyConfigurationManager studyConfigurationManager = dbAdaptor.getStudyConfigurationManager();
+            StudyConfiguration studyConfiguration = studyConfigurationManager.getStudyConfiguration(study, options).first();
+            Map<String, Set<String>> cohortsMap = new HashMap<>(cohorts.size());
+            for (String cohort : cohorts) {
+                cohortsMap.put(cohort, Collections.emptySet());
+            }
+            calculateAndLoadStats(dbAdaptor, cohortsMap, null, studyConfiguration, options);
+            return;
+        }
+
         URI output;
         try {
             output = UriUtils.createUri(options.getString(OUTPUT));
@@ -174,35 +216,12 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
         //Parse query options
         int batchSize = options.getInt(Options.LOAD_BATCH_SIZE.key(), 100); // future optimization, threads, etc
         int numTasks = options.getInt(Options.LOAD_THREADS.key(), 6);
-        boolean overwrite = options.getBoolean(Options.OVERWRITE_STATS.key(), false);
         boolean updateStats = options.getBoolean(Options.UPDATE_STATS.key(), false);
         Properties tagmap = VariantStatisticsManager.getAggregationMappingProperties(options);
 //            fileId = options.getString(VariantStorageEngine.Options.FILE_ID.key());
 
-        // if no cohorts provided and the study is aggregated: try to get the cohorts from the tagMap
-        if (cohorts == null || studyConfiguration.isAggregated() && tagmap != null) {
-            if (studyConfiguration.isAggregated() && tagmap != null) {
-                cohorts = new LinkedHashMap<>();
-                for (String c : VariantAggregatedStatsCalculator.getCohorts(tagmap)) {
-                    cohorts.put(c, Collections.emptySet());
-                }
-            } else {
-                cohorts = new LinkedHashMap<>();
-            }
-        }
-
-        checkAndUpdateStudyConfigurationCohorts(studyConfiguration, cohorts, cohortIds, overwrite, updateStats);
-        if (!overwrite) {
-            for (String cohortName : cohorts.keySet()) {
-                Integer cohortId = studyConfiguration.getCohortIds().get(cohortName);
-                if (studyConfiguration.getInvalidStats().contains(cohortId)) {
-                    logger.debug("Cohort \"{}\":{} is invalid. Need to overwrite stats. Using overwrite = true", cohortName, cohortId);
-                    overwrite = true;
-                }
-            }
-        }
-        checkStudyConfiguration(studyConfiguration);
-
+        cohorts = getCohorts(cohorts, studyConfiguration, tagmap);
+        boolean overwrite = checkCohorts(studyConfiguration, cohorts, cohortIds, options);
 
         VariantSourceStats variantSourceStats = new VariantSourceStats(null/*FILE_ID*/, Integer.toString(studyConfiguration.getStudyId()));
 
@@ -214,7 +233,6 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
                 .append(QueryOptions.EXCLUDE, VariantField.ANNOTATION);
         logger.info("ReaderQueryOptions: " + readerOptions.toJson());
         VariantDBReader reader = new VariantDBReader(studyConfiguration, variantDBAdaptor, readerQuery, readerOptions);
-        List<Task<Variant, String>> tasks = new ArrayList<>(numTasks);
         boolean skipCount = options.getBoolean(QueryOptions.SKIP_COUNT, false);
         ProgressLogger progressLogger = new ProgressLogger("Calculated stats:",
                 () -> {
@@ -225,16 +243,32 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
                         return numStatsToLoad;
                     }
                 }, 200).setBatchSize(5000);
-        for (int i = 0; i < numTasks; i++) {
-            tasks.add(new VariantStatsWrapperTask(overwrite, cohorts, studyConfiguration, variantSourceStats, tagmap, progressLogger));
-        }
-        Path variantStatsPath = Paths.get(output.getPath() + VARIANT_STATS_SUFFIX);
-        logger.info("will write stats to {}", variantStatsPath);
-        StringDataWriter writer = new StringDataWriter(variantStatsPath, true);
-
-        // runner
         ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder().setNumTasks(numTasks).setBatchSize(batchSize).build();
-        ParallelTaskRunner runner = new ParallelTaskRunner<>(reader, tasks, writer, config);
+        ParallelTaskRunner<Variant, ?> runner;
+        if (STATS_FORMAT_AVRO.equals(options.getString(STATS_FORMAT, DEFAULT_STATS_FORMAT))) {
+            List<Task<Variant, GenericRecord>> tasks = new ArrayList<>(numTasks);
+            VariantStatsWrapperAvroConverter converter = new VariantStatsWrapperAvroConverter();
+            for (int i = 0; i < numTasks; i++) {
+                tasks.add(new VariantStatsTask(overwrite, cohorts, studyConfiguration, variantSourceStats, tagmap, progressLogger)
+                        .then((Task<VariantStatsWrapper, GenericRecord>) batch -> batch.stream()
+                                .map(converter::convertToStorageType)
+                                .collect(Collectors.toList())));
+            }
+            Path variantStatsPath = Paths.get(output.getPath() + VARIANT_STATS_AVRO_SUFFIX);
+            logger.info("will write stats to {}", variantStatsPath);
+            AvroDataWriter<GenericRecord> writer = new AvroDataWriter<>(variantStatsPath, true, VariantStatsWrapperAvroConverter.SCHEMA);
+            runner = new ParallelTaskRunner<>(reader, tasks, writer, config);
+        } else {
+            List<Task<Variant, String>> tasks = new ArrayList<>(numTasks);
+            for (int i = 0; i < numTasks; i++) {
+                tasks.add(new VariantStatsWrapperTask(
+                        new VariantStatsTask(overwrite, cohorts, studyConfiguration, variantSourceStats, tagmap, progressLogger)));
+            }
+            Path variantStatsPath = Paths.get(output.getPath() + VARIANT_STATS_SUFFIX);
+            logger.info("will write stats to {}", variantStatsPath);
+            StringDataWriter writer = new StringDataWriter(variantStatsPath, true);
+            runner = new ParallelTaskRunner<>(reader, tasks, writer, config);
+        }
         try {
             logger.info("starting stats creation for cohorts {}", cohorts.keySet());
             long start = System.currentTimeMillis();
@@ -255,77 +289,260 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
         return output;
     }
 
-    class VariantStatsWrapperTask implements ParallelTaskRunner.Task<Variant, String> {
+    /**
+     * If no cohorts are provided and the study is aggregated, try to get the cohorts from the tagMap.
+     */
+    private Map<String, Set<String>> getCohorts(Map<String, Set<String>> cohorts, StudyConfiguration studyConfiguration,
+                                                Properties tagmap) {
+        if (cohorts == null || studyConfiguration.isAggregated() && tagmap != null) {
+            if (studyConfiguration.isAggregated() && tagmap != null) {
+                cohorts = new LinkedHashMap<>();
+                for (String c : VariantAggregatedStatsCalculator.getCohorts(tagmap)) {
+                    cohorts.put(c, Collections.emptySet());
+                }
+            } else {
+                cohorts = new LinkedHashMap<>();
+            }
+        }
+        return cohorts;
+    }
+
+    /**
+     * Check and add the cohorts to the StudyConfiguration.
+     *
+     * @return If the stats have to be overwritten. Forced to true if any of the cohorts is invalid.
+     */
+    private boolean checkCohorts(StudyConfiguration studyConfiguration, Map<String, Set<String>> cohorts,
+                                 Map<String, Integer> cohortIds, QueryOptions options) throws StorageEngineException {
+        boolean overwrite = options.getBoolean(Options.OVERWRITE_STATS.key(), false);
+        boolean updateStats = options.getBoolean(Options.UPDATE_STATS.key(), false);
+        checkAndUpdateStudyConfigurationCohorts(studyConfiguration, cohorts, cohortIds, overwrite, updateStats);
+        if (!overwrite) {
+            for (String cohortName : cohorts.keySet()) {
+                Integer cohortId = studyConfiguration.getCohortIds().get(cohortName);
+                if (studyConfiguration.getInvalidStats().contains(cohortId)) {
+                    logger.debug("Cohort \"{}\":{} is invalid. Need to overwrite stats. Using overwrite = true", cohortName, cohortId);
+                    overwrite = true;
+                }
+            }
+        }
+        checkStudyConfiguration(studyConfiguration);
+        return overwrite;
+    }
+
+    /**
+     * Calculates the stats and writes them directly into the database, without any intermediate file.
+     * <p>
+     * Variants are read region by region, where each region is a chromosome from the indexed files.
+     * After loading each region, a checkpoint is stored in the StudyConfiguration attributes.
+     * If the process is interrupted, it can be resumed with {@link Options#RESUME}, skipping the regions already loaded.
+     *
+     * @param variantDBAdaptor   to obtain the Variants and write the stats
+     * @param cohorts            cohorts (subsets) of the samples. key: cohort name, defaultValue: list of sample names.
+     * @param cohortIds          Cohort ID
+     * @param studyConfiguration Study configuration object
+     * @param options            filters to the query, batch size, number of threads to use...
+     * @throws IOException If any error occurs
+     * @throws StorageEngineException If any error occurs
+     */
+    public void calculateAndLoadStats(VariantDBAdaptor variantDBAdaptor, Map<String, Set<String>> cohorts,
+                                      Map<String, Integer> cohortIds, StudyConfiguration studyConfiguration, QueryOptions options)
+            throws IOException, StorageEngineException {
+        if (options == null) {
+            options = new QueryOptions();
+        }
+        int batchSize = options.getInt(Options.LOAD_BATCH_SIZE.key(), Options.LOAD_BATCH_SIZE.defaultValue());
+        int numTasks = options.getInt(Options.LOAD_THREADS.key(), Options.LOAD_THREADS.defaultValue());
+        boolean updateStats = options.getBoolean(Options.UPDATE_STATS.key(), false);
+        boolean resume = options.getBoolean(Options.RESUME.key(), Options.RESUME.defaultValue());
+        Properties tagmap = VariantStatisticsManager.getAggregationMappingProperties(options);
+
+        cohorts = getCohorts(cohorts, studyConfiguration, tagmap);
+        boolean overwrite = checkCohorts(studyConfiguration, cohorts, cohortIds, options);
+
+        // Checkpoint is only valid for the same set of cohorts
+        String checkpointCohorts = cohorts.keySet().stream()
+                .map(studyConfiguration.getCohortIds()::get)
+                .sorted()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+        Set<String> loadedRegions = new HashSet<>();
+        if (checkpointCohorts.equals(studyConfiguration.getAttributes().getString(STATS_CHECKPOINT_COHORTS))) {
+            if (resume) {
+                loadedRegions.addAll(studyConfiguration.getAttributes().getAsStringList(STATS_CHECKPOINT_REGIONS));
+                logger.info("Resume stats calculation. Skip regions {}", loadedRegions);
+            } else {
+                logger.info("Discard stats checkpoint from a previous execution");
+            }
+        }
+        studyConfiguration.getAttributes().put(STATS_CHECKPOINT_COHORTS, checkpointCohorts);
+        studyConfiguration.getAttributes().put(STATS_CHECKPOINT_REGIONS, new ArrayList<>(loadedRegions));
+        variantDBAdaptor.getStudyConfigurationManager().updateStudyConfiguration(studyConfiguration, options);
+
+        Query readerQuery = VariantStatisticsManager.buildInputQuery(studyConfiguration, cohorts.keySet(), overwrite, updateStats, options);
+        logger.info("ReaderQuery: " + readerQuery.toJson());
+        QueryOptions readerOptions = new QueryOptions(QueryOptions.SORT, true)
+                .append(QueryOptions.EXCLUDE, VariantField.ANNOTATION);
+        logger.info("ReaderQueryOptions: " + readerOptions.toJson());
+
+        List<String> regions;
+        if (readerQuery.containsKey(VariantQueryParam.REGION.key())) {
+            regions = Collections.singletonList(readerQuery.getString(VariantQueryParam.REGION.key()));
+        } else {
+            regions = getChromosomes(variantDBAdaptor, studyConfiguration);
+        }
+
+        boolean skipCount = options.getBoolean(QueryOptions.SKIP_COUNT, false);
+        ProgressLogger progressLogger = new ProgressLogger("Calculated stats:",
+                () -> skipCount ? 0L : variantDBAdaptor.count(readerQuery).first(), 200).setBatchSize(5000);
+        List<VariantStatsDBWriter> writers = Collections.synchronizedList(new ArrayList<>());
+        boolean parallelLoad = options.getBoolean(STATS_LOAD_PARALLEL, DEFAULT_STATS_LOAD_PARALLEL);
+        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder().setAbortOnFail(true)
+                .setNumTasks(numTasks).setBatchSize(batchSize).build();
+
+        Map<String, Set<String>> finalCohorts = cohorts;
+        QueryOptions writerOptions = options;
+        logger.info("starting stats calculation for cohorts {}", cohorts.keySet());
+        long start = System.currentTimeMillis();
+        for (String region : regions) {
+            if (loadedRegions.contains(region)) {
+                continue;
+            }
+            Query regionQuery = new Query(readerQuery);
+            if (region != null) {
+                regionQuery.put(VariantQueryParam.REGION.key(), region);
+            }
+            VariantDBReader reader = new VariantDBReader(studyConfiguration, variantDBAdaptor, regionQuery, readerOptions);
+            ParallelTaskRunner<Variant, VariantStatsWrapper> ptr;
+            if (parallelLoad) {
+                ptr = new ParallelTaskRunner<>(reader, () -> {
+                    VariantStatsTask task = new VariantStatsTask(overwrite, finalCohorts, studyConfiguration, null, tagmap,
+                            progressLogger);
+                    VariantStatsDBWriter dbWriter = newVariantStatisticsDBWriter(variantDBAdaptor, studyConfiguration, writerOptions);
+                    dbWriter.pre();
+                    writers.add(dbWriter);
+                    return new Task<Variant, VariantStatsWrapper>() {
+                        @Override
+                        public List<VariantStatsWrapper> apply(List<Variant> batch) {
+                            List<VariantStatsWrapper> stats = task.apply(batch);
+                            if (!stats.isEmpty()) {
+                                dbWriter.write(stats);
+                            }
+                            return Collections.emptyList();
+                        }
+
+                        @Override
+                        public void post() {
+                            task.post();
+                        }
+                    };
+                }, null, config);
+            } else {
+                VariantStatsDBWriter dbWriter = newVariantStatisticsDBWriter(variantDBAdaptor, studyConfiguration, options);
+                writers.add(dbWriter);
+                ptr = new ParallelTaskRunner<>(reader,
+                        () -> new VariantStatsTask(overwrite, finalCohorts, studyConfiguration, null, tagmap, progressLogger),
+                        dbWriter, config);
+            }
+            try {
+                ptr.run();
+            } catch (ExecutionException e) {
+                throw new StorageEngineException("Unable to calculate statistics.", e);
+            }
+            if (region != null) {
+                loadedRegions.add(region);
+                studyConfiguration.getAttributes().put(STATS_CHECKPOINT_REGIONS, new ArrayList<>(loadedRegions));
+                variantDBAdaptor.getStudyConfigurationManager().updateStudyConfiguration(studyConfiguration, options);
+                logger.info("Stats for region {} loaded", region);
+            }
+        }
+        logger.info("finishing stats calculation and loading, time: {}ms", System.currentTimeMillis() - start);
+
+        long writes = writers.stream().mapToLong(VariantStatsDBWriter::getNumWrites).sum();
+        long variantStats = writers.stream().mapToLong(VariantStatsDBWriter::getVariantStats).sum();
+        if (writes < variantStats) {
+            logger.warn("provided statistics of {} variants, but only {} were updated", variantStats, writes);
+            logger.info("note: maybe those variants didn't had the proper study? maybe the new and the old stats were the same?");
+        }
+
+        VariantStatisticsManager.checkAndUpdateCalculatedCohorts(studyConfiguration, cohorts.keySet(), updateStats);
+        studyConfiguration.getAttributes().remove(STATS_CHECKPOINT_COHORTS);
+        studyConfiguration.getAttributes().remove(STATS_CHECKPOINT_REGIONS);
+        variantDBAdaptor.getStudyConfigurationManager().updateStudyConfiguration(studyConfiguration, options);
+    }
+
+    /**
+     * Get the chromosomes of the indexed files from the study, read from the stats of each file.
+     *
+     * @return List of chromosomes, or a singleton list with a null value if the chromosomes are unknown.
+     */
+    private List<String> getChromosomes(VariantDBAdaptor variantDBAdaptor, StudyConfiguration studyConfiguration) throws IOException {
+        Set<String> chromosomes = new LinkedHashSet<>();
+        Query query = new Query(VariantFileMetadataDBAdaptor.VariantFileMetadataQueryParam.STUDY_ID.key(),
+                studyConfiguration.getStudyId());
+        Iterator<VariantFileMetadata> iterator = variantDBAdaptor.getVariantFileMetadataDBAdaptor().iterator(query, null);
+        while (iterator.hasNext()) {
+            VariantFileMetadata fileMetadata = iterator.next();
+            if (!studyConfiguration.getIndexedFiles().contains(Integer.valueOf(fileMetadata.getId()))) {
+                continue;
+            }
+            if (fileMetadata.getStats() == null || fileMetadata.getStats().getChromosomeCounts() == null
+                    || fileMetadata.getStats().getChromosomeCounts().isEmpty()) {
+                // Unknown chromosomes. Read the whole study at once
+                return Collections.singletonList(null);
+            }
+            chromosomes.addAll(fileMetadata.getStats().getChromosomeCounts().keySet());
+        }
+        if (chromosomes.isEmpty()) {
+            return Collections.singletonList(null);
+        }
+        return new ArrayList<>(chromosomes);
+    }
+
+    class VariantStatsTask implements Task<Variant, VariantStatsWrapper> {
 
-        private boolean overwrite;
         private Map<String, Set<String>> cohorts;
         private StudyConfiguration studyConfiguration;
         private final ProgressLogger progressLogger;
-        //        private String fileId;
-        private ObjectMapper jsonObjectMapper;
-        private ObjectWriter variantsWriter;
         private VariantSourceStats variantSourceStats;
-        private Properties tagmap;
         private VariantStatisticsCalculator variantStatisticsCalculator;
 
-        VariantStatsWrapperTask(boolean overwrite, Map<String, Set<String>> cohorts,
-                                StudyConfiguration studyConfiguration,
-                                VariantSourceStats variantSourceStats, Properties tagmap, ProgressLogger progressLogger) {
-            this.overwrite = overwrite;
+        VariantStatsTask(boolean overwrite, Map<String, Set<String>> cohorts, StudyConfiguration studyConfiguration,
+                         VariantSourceStats variantSourceStats, Properties tagmap, ProgressLogger progressLogger) {
             this.cohorts = cohorts;
             this.studyConfiguration = studyConfiguration;
             this.progressLogger = progressLogger;
-            jsonObjectMapper = new ObjectMapper(new JsonFactory());
-            jsonObjectMapper.addMixIn(VariantStats.class, VariantStatsJsonMixin.class);
-            jsonObjectMapper.addMixIn(GenericRecord.class, GenericRecordAvroJsonMixin.class);
-            variantsWriter = jsonObjectMapper.writerFor(VariantStatsWrapper.class);
             this.variantSourceStats = variantSourceStats;
-            this.tagmap = tagmap;
             variantStatisticsCalculator = new VariantStatisticsCalculator(overwrite);
             variantStatisticsCalculator.setAggregationType(studyConfiguration.getAggregation(), tagmap);
         }
 
         @Override
-        public List<String> apply(List<Variant> variants) {
-
-            List<String> strings = new ArrayList<>(variants.size());
-            boolean defaultCohortAbsent = false;
-
+        public List<VariantStatsWrapper> apply(List<Variant> variants) {
+            long start = System.currentTimeMillis();
             List<VariantStatsWrapper> variantStatsWrappers = variantStatisticsCalculator.calculateBatch(variants,
                     studyConfiguration.getStudyName(), cohorts);
 
-            long start = System.currentTimeMillis();
-            for (VariantStatsWrapper variantStatsWrapper : variantStatsWrappers) {
-                try {
-                    strings.add(variantsWriter.writeValueAsString(variantStatsWrapper));
-                    if (variantStatsWrapper.getCohortStats().get(StudyEntry.DEFAULT_COHORT) == null) {
-                        defaultCohortAbsent = true;
-                    }
-                } catch (JsonProcessingException e) {
-                    throw Throwables.propagate(e);
-                }
-            }
-
             // we don't want to overwrite file stats regarding all samples with stats about a subset of samples. Maybe if we change
             // VariantSource.stats to a map with every subset...
-            if (!defaultCohortAbsent) {
+            if (variantSourceStats != null && variantStatsWrappers.stream()
+                    .allMatch(wrapper -> wrapper.getCohortStats().get(StudyEntry.DEFAULT_COHORT) != null)) {
                 synchronized (variantSourceStats) {
                     variantSourceStats.updateFileStats(variants);
                     variantSourceStats.updateSampleStats(variants, null);  // TODO test
                 }
             }
-            logger.debug("another batch of {} elements calculated. time: {}ms", strings.size(), System.currentTimeMillis() - start);
+            logger.debug("another batch of {} elements calculated. time: {}ms", variantStatsWrappers.size(),
+                    System.currentTimeMillis() - start);
             if (!variants.isEmpty()) {
                 progressLogger.increment(variants.size(), () -> ", up to position "
                         + variants.get(variants.size() - 1).getChromosome()
                         + ":"
                         + variants.get(variants.size() - 1).getStart());
-//                logger.info("stats created up to position {}:{}", variants.get(variants.size() - 1).getChromosome(),
-//                        variants.get(variants.size() - 1).getStart());
             } else {
                 logger.info("task with empty batch");
             }
-            return strings;
+            return variantStatsWrappers;
         }
 
         @Override
@@ -336,6 +553,39 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
         }
     }
 
+    class VariantStatsWrapperTask implements Task<Variant, String> {
+
+        private final VariantStatsTask task;
+        private final ObjectWriter variantsWriter;
+
+        VariantStatsWrapperTask(VariantStatsTask task) {
+            this.task = task;
+            ObjectMapper jsonObjectMapper = new ObjectMapper(new JsonFactory());
+            jsonObjectMapper.addMixIn(VariantStats.class, VariantStatsJsonMixin.class);
+            jsonObjectMapper.addMixIn(GenericRecord.class, GenericRecordAvroJsonMixin.class);
+            variantsWriter = jsonObjectMapper.writerFor(VariantStatsWrapper.class);
+        }
+
+        @Override
+        public List<String> apply(List<Variant> variants) {
+            List<VariantStatsWrapper> variantStatsWrappers = task.apply(variants);
+            List<String> strings = new ArrayList<>(variantStatsWrappers.size());
+            for (VariantStatsWrapper variantStatsWrapper : variantStatsWrappers) {
+                try {
+                    strings.add(variantsWriter.writeValueAsString(variantStatsWrapper));
+                } catch (JsonProcessingException e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+            return strings;
+        }
+
+        @Override
+        public void post() {
+            task.post();
+        }
+    }
+
     public void loadStats(VariantDBAdaptor variantDBAdaptor, URI uri, String study, QueryOptions options) throws
             IOException, StorageEngineException {
         StudyConfigurationManager studyConfigurationManager = variantDBAdaptor.getStudyConfigurationManager();
@@ -346,7 +596,10 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
     public void loadStats(VariantDBAdaptor variantDBAdaptor, URI uri, StudyConfiguration studyConfiguration, QueryOptions options) throws
             IOException, StorageEngineException {
 
-        URI variantStatsUri = Paths.get(uri.getPath() + VARIANT_STATS_SUFFIX).toUri();
+        URI variantStatsUri = Paths.get(uri.getPath() + VARIANT_STATS_AVRO_SUFFIX).toUri();
+        if (!Paths.get(variantStatsUri).toFile().exists()) {
+            variantStatsUri = Paths.get(uri.getPath() + VARIANT_STATS_SUFFIX).toUri();
+        }
         URI sourceStatsUri = Paths.get(uri.getPath() + SOURCE_STATS_SUFFIX).toUri();
 
         boolean updateStats = options.getBoolean(Options.UPDATE_STATS.key(), false);
@@ -369,6 +622,10 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
 
         /* Open input streams */
         Path variantInput = Paths.get(uri.getPath());
+        if (variantInput.toString().endsWith(VARIANT_STATS_AVRO_SUFFIX)) {
+            loadAvroVariantStats(variantInput, studyConfiguration, options);
+            return;
+        }
         InputStream variantInputStream;
         variantInputStream = new FileInputStream(variantInput.toFile());
         variantInputStream = new GZIPInputStream(variantInputStream);
@@ -427,6 +684,66 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
 
     }
 
+    /**
+     * Loads the variant stats from an Avro file. The file is split in ranges of blocks, which are read and loaded in parallel.
+     */
+    private void loadAvroVariantStats(Path variantInput, StudyConfiguration studyConfiguration, QueryOptions options)
+            throws StorageEngineException {
+        int batchSize = options.getInt(Options.LOAD_BATCH_SIZE.key(), Options.LOAD_BATCH_SIZE.defaultValue());
+        int numTasks = options.getInt(Options.LOAD_THREADS.key(), Options.LOAD_THREADS.defaultValue());
+
+        try {
+            numStatsToLoad = AvroRangeDataReader.count(variantInput.toFile());
+        } catch (IOException e) {
+            throw new StorageEngineException("Error reading file " + variantInput, e);
+        }
+        ProgressLogger progressLogger = new ProgressLogger("Loaded stats:", numStatsToLoad);
+        List<AvroRangeDataReader<GenericRecord>> readers =
+                AvroRangeDataReader.split(variantInput.toFile(), VariantStatsWrapperAvroConverter.SCHEMA, numTasks);
+        List<VariantStatsDBWriter> writers = new ArrayList<>(readers.size());
+        ExecutorService executorService = Executors.newFixedThreadPool(readers.size(), r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        }); // Set Daemon for quick shutdown !!!
+        List<Future<Void>> futures = new ArrayList<>(readers.size());
+        for (AvroRangeDataReader<GenericRecord> reader : readers) {
+            VariantStatsDBWriter dbWriter = newVariantStatisticsDBWriter(dbAdaptor, studyConfiguration, options);
+            dbWriter.setProgressLogger(progressLogger);
+            writers.add(dbWriter);
+            VariantStatsWrapperAvroConverter converter = new VariantStatsWrapperAvroConverter();
+            ParallelTaskRunner<GenericRecord, VariantStatsWrapper> ptr = new ParallelTaskRunner<>(
+                    reader,
+                    batch -> batch.stream().map(converter::convertToDataModelType).collect(Collectors.toList()),
+                    dbWriter,
+                    ParallelTaskRunner.Config.builder().setAbortOnFail(true).setBatchSize(batchSize).setNumTasks(1).build());
+            futures.add(executorService.submit(() -> {
+                ptr.run();
+                return null;
+            }));
+        }
+        executorService.shutdown();
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageEngineException("Error loading stats", e);
+        } catch (ExecutionException e) {
+            throw new StorageEngineException("Error loading stats", e);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        long writes = writers.stream().mapToLong(VariantStatsDBWriter::getNumWrites).sum();
+        long variantStats = writers.stream().mapToLong(VariantStatsDBWriter::getVariantStats).sum();
+        if (writes < variantStats) {
+            logger.warn("provided statistics of {} variants, but only {} were updated", variantStats, writes);
+            logger.info("note: maybe those variants didn't had the proper study? maybe the new and the old stats were the same?");
+        }
+    }
+
     protected DataReader<VariantStatsWrapper> newVariantStatsWrapperDataReader(InputStream inputStream) {
         JsonDataReader<VariantStatsWrapper> reader = new JsonDataReader<>(VariantStatsWrapper.class, inputStream);
         reader.addMixIn(VariantStats.class, VariantStatsJsonMixin.class);
@@ -599,6 +916,20 @@ public class DefaultVariantStatisticsManager implements VariantStatisticsManager
             throws IOException, StorageEngineException {
         /** Select input path **/
         Path variantInput = Paths.get(uri.getPath());
+        if (variantInput.toString().endsWith(VARIANT_STATS_AVRO_SUFFIX)) {
+            try (DataFileReader<GenericRecord> reader = new DataFileReader<>(variantInput.toFile(),
+                    new SpecificDatumReader<>(VariantStatsWrapperAvroConverter.SCHEMA))) {
+                if (reader.hasNext()) {
+                    VariantStatsWrapper variantStatsWrapper = new VariantStatsWrapperAvroConverter()
+                            .convertToDataModelType(reader.next());
+                    Set<String> cohortNames = variantStatsWrapper.getCohortStats().keySet();
+                    VariantStatisticsManager.checkAndUpdateCalculatedCohorts(studyConfiguration, cohortNames, updateStats);
+                } else {
+                    throw new IOException("File " + uri + " is empty");
+                }
+            }
+            return;
+        }
 
         /** Open input streams and Initialize Json parse **/
         try (InputStream variantInputStream = new GZIPInputStream(new FileInputStream(variantInput.toFile()));
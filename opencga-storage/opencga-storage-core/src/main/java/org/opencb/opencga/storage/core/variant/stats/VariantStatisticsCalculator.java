@@ -16,6 +16,7 @@
 
 package org.opencb.opencga.storage.core.variant.stats;
 
+import org.opencb.biodata.models.feature.Genotype;
 import org.opencb.biodata.models.variant.StudyEntry;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.metadata.Aggregation;
@@ -30,11 +31,20 @@ import java.util.*;
  */
 public class VariantStatisticsCalculator {
 
+    private static final String GT = "GT";
+
     private int skippedFiles;
     private boolean overwrite;
     private VariantAggregatedStatsCalculator aggregatedCalculator;
     private Aggregation aggregation;
 
+    // Cohorts of each sample position, for the last seen samples position map
+    private Map<String, Integer> lastSamplesPosition;
+    private Map<String, Set<String>> lastCohorts;
+    private int[][] sampleCohorts;
+    private int[][] sampleCohortRanks;
+    private String[] cohortNames;
+
     public VariantStatisticsCalculator() {
         this(false);
     }
@@ -129,18 +139,19 @@ public class VariantStatisticsCalculator {
             study.setStats(new HashMap<>());
 
             if (!AggregationUtils.isAggregated(aggregation) && samples != null) {
-                for (Map.Entry<String, Set<String>> cohort : samples.entrySet()) {
-                    if (overwrite || study.getStats(cohort.getKey()) == null) {
-
-                        VariantStats variantStats = new VariantStats(variant);
-                        Map<String, String> attributes = study.getAttributes();
-                        attributes = attributes == null
-                                ? Collections.emptyMap()
-                                : attributes;
-
-                        VariantStatsCalculator.calculate(study, cohort.getValue(), attributes, null, variantStats);
-                        study.setStats(cohort.getKey(), variantStats);
-
+                Map<String, String> attributes = study.getAttributes();
+                attributes = attributes == null
+                        ? Collections.emptyMap()
+                        : attributes;
+                if (study.getFormatPositions().containsKey(GT)) {
+                    calculateCohortStats(variant, study, samples, attributes);
+                } else {
+                    for (Map.Entry<String, Set<String>> cohort : samples.entrySet()) {
+                        if (overwrite || study.getStats(cohort.getKey()) == null) {
+                            VariantStats variantStats = new VariantStats(variant);
+                            VariantStatsCalculator.calculate(study, cohort.getValue(), attributes, null, variantStats);
+                            study.setStats(cohort.getKey(), variantStats);
+                        }
                     }
                 }
             } else if (aggregatedCalculator != null) { // another way to say that the study is aggregated (!Aggregation
@@ -161,6 +172,139 @@ public class VariantStatisticsCalculator {
         return variantStatsWrappers;
     }
 
+    /**
+     * Computes the VariantStats of all the cohorts with one single pass over the samples of the variant.
+     *
+     * Each different genotype of the variant is parsed only once, and the genotype counts of every cohort are accumulated
+     * with integer codes. Then, the VariantStats are derived from the genotype counts. The result is the same as calling
+     * {@link VariantStatsCalculator#calculate(StudyEntry, Collection, Map, org.opencb.biodata.models.pedigree.Pedigree, VariantStats)}
+     * for each cohort, without pedigree.
+     *
+     * @param variant       Variant
+     * @param study         StudyEntry from the variant, with the GT format
+     * @param cohorts       keys are cohort names, values are sets of samples names
+     * @param attributes    Study attributes. Used to read the FILTER and QUAL
+     */
+    void calculateCohortStats(Variant variant, StudyEntry study, Map<String, Set<String>> cohorts, Map<String, String> attributes) {
+        LinkedHashMap<String, Integer> samplesPosition = study.getSamplesPosition();
+        if (cohorts != lastCohorts || samplesPosition != lastSamplesPosition && !samplesPosition.equals(lastSamplesPosition)) {
+            buildSampleCohorts(samplesPosition, cohorts);
+        }
+        int gtPosition = study.getFormatPositions().get(GT);
+        List<List<String>> samplesData = study.getSamplesData();
+
+        // Code of each different genotype, and number of samples of each cohort with each genotype code.
+        // Keep also the first sample (in cohort iteration order) with each genotype code, to build the
+        // genotype counts map with the same insertion order as the sample by sample calculation.
+        Map<String, Integer> gtCodes = new HashMap<>();
+        List<String> gts = new ArrayList<>();
+        int[][] counts = new int[cohortNames.length][];
+        int[][] firstRanks = new int[cohortNames.length][];
+        for (int i = 0; i < cohortNames.length; i++) {
+            counts[i] = new int[4];
+            firstRanks[i] = new int[4];
+        }
+
+        for (int samplePosition = 0; samplePosition < sampleCohorts.length; samplePosition++) {
+            int[] cohortIdxs = sampleCohorts[samplePosition];
+            int[] cohortRanks = sampleCohortRanks[samplePosition];
+            if (cohortIdxs.length == 0) {
+                continue;
+            }
+            String gt = samplesData.get(samplePosition).get(gtPosition);
+            Integer gtCode = gtCodes.get(gt);
+            if (gtCode == null) {
+                gtCode = gts.size();
+                gtCodes.put(gt, gtCode);
+                gts.add(gt);
+            }
+            for (int i = 0; i < cohortIdxs.length; i++) {
+                int cohortIdx = cohortIdxs[i];
+                int[] cohortCounts = counts[cohortIdx];
+                if (gtCode >= cohortCounts.length) {
+                    int length = Math.max(gtCode + 1, cohortCounts.length * 2);
+                    cohortCounts = Arrays.copyOf(cohortCounts, length);
+                    counts[cohortIdx] = cohortCounts;
+                    firstRanks[cohortIdx] = Arrays.copyOf(firstRanks[cohortIdx], length);
+                }
+                if (cohortCounts[gtCode] == 0 || cohortRanks[i] < firstRanks[cohortIdx][gtCode]) {
+                    firstRanks[cohortIdx][gtCode] = cohortRanks[i];
+                }
+                cohortCounts[gtCode]++;
+            }
+        }
+
+        for (int cohortIdx = 0; cohortIdx < cohortNames.length; cohortIdx++) {
+            String cohortName = cohortNames[cohortIdx];
+            if (!overwrite && study.getStats(cohortName) != null) {
+                continue;
+            }
+            VariantStats variantStats = new VariantStats(variant);
+            variantStats.setNumSamples(cohorts.get(cohortName).size());
+            variantStats.setMissingAlleles(0);
+            variantStats.setMissingGenotypes(0);
+
+            int[] cohortCounts = counts[cohortIdx];
+            int[] cohortFirstRanks = firstRanks[cohortIdx];
+            List<Integer> cohortGtCodes = new ArrayList<>(gts.size());
+            for (int gtCode = 0; gtCode < cohortCounts.length && gtCode < gts.size(); gtCode++) {
+                if (cohortCounts[gtCode] > 0) {
+                    cohortGtCodes.add(gtCode);
+                }
+            }
+            cohortGtCodes.sort(Comparator.comparingInt(gtCode -> cohortFirstRanks[gtCode]));
+            Map<Genotype, Integer> gtCounts = new HashMap<>();
+            for (Integer gtCode : cohortGtCodes) {
+                Genotype genotype = new Genotype(gts.get(gtCode), variantStats.getRefAllele(), variantStats.getAltAllele());
+                gtCounts.merge(genotype, cohortCounts[gtCode], Integer::sum);
+            }
+            VariantStatsCalculator.calculate(gtCounts, variantStats);
+
+            if ("PASS".equalsIgnoreCase(attributes.get(StudyEntry.FILTER))) {
+                variantStats.setPassedFilters(true);
+            }
+            if (attributes.containsKey(StudyEntry.QUAL) && !".".equals(attributes.get(StudyEntry.QUAL))) {
+                float qual = Float.valueOf(attributes.get(StudyEntry.QUAL));
+                if (qual >= 0) {
+                    variantStats.setQuality(qual);
+                }
+            }
+            study.setStats(cohortName, variantStats);
+        }
+    }
+
+    /**
+     * Builds an index with the cohorts of each sample position, and the rank of the sample within each cohort.
+     */
+    private void buildSampleCohorts(LinkedHashMap<String, Integer> samplesPosition, Map<String, Set<String>> cohorts) {
+        cohortNames = cohorts.keySet().toArray(new String[0]);
+        List<List<Integer>> sampleCohortsList = new ArrayList<>(samplesPosition.size());
+        List<List<Integer>> sampleCohortRanksList = new ArrayList<>(samplesPosition.size());
+        for (int i = 0; i < samplesPosition.size(); i++) {
+            sampleCohortsList.add(new ArrayList<>(1));
+            sampleCohortRanksList.add(new ArrayList<>(1));
+        }
+        for (int cohortIdx = 0; cohortIdx < cohortNames.length; cohortIdx++) {
+            int rank = 0;
+            for (String sample : cohorts.get(cohortNames[cohortIdx])) {
+                Integer samplePosition = samplesPosition.get(sample);
+                if (samplePosition != null) {
+                    sampleCohortsList.get(samplePosition).add(cohortIdx);
+                    sampleCohortRanksList.get(samplePosition).add(rank);
+                }
+                rank++;
+            }
+        }
+        sampleCohorts = new int[sampleCohortsList.size()][];
+        sampleCohortRanks = new int[sampleCohortsList.size()][];
+        for (int i = 0; i < sampleCohorts.length; i++) {
+            sampleCohorts[i] = sampleCohortsList.get(i).stream().mapToInt(Integer::intValue).toArray();
+            sampleCohortRanks[i] = sampleCohortRanksList.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        lastSamplesPosition = samplesPosition;
+        lastCohorts = cohorts;
+    }
+
     @Deprecated
     public static Map<String, String> removeAttributePrefix(Map<String, String> attributes)
             throws IllegalArgumentException {
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.stats;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.opencb.biodata.models.feature.Genotype;
+import org.opencb.biodata.models.variant.avro.StructuralVariation;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+import org.opencb.commons.datastore.core.ComplexTypeConverter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts {@link VariantStatsWrapper} from and to Avro records, to store the stats in a binary file.
+ *
+ * The stats of each cohort are stored using the Avro model from biodata.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class VariantStatsWrapperAvroConverter implements ComplexTypeConverter<VariantStatsWrapper, GenericRecord> {
+
+    public static final Schema SCHEMA = SchemaBuilder.record("VariantStatsWrapperAvro")
+            .namespace(VariantStatsWrapperAvroConverter.class.getPackage().getName())
+            .fields()
+            .requiredString("chromosome")
+            .requiredInt("start")
+            .requiredInt("end")
+            .name("sv").type().optional().type(StructuralVariation.getClassSchema())
+            .name("cohortStats").type().map().values(org.opencb.biodata.models.variant.avro.VariantStats.getClassSchema()).noDefault()
+            .endRecord();
+
+    @Override
+    public GenericRecord convertToStorageType(VariantStatsWrapper wrapper) {
+        Map<String, org.opencb.biodata.models.variant.avro.VariantStats> cohortStats = new HashMap<>(wrapper.getCohortStats().size());
+        for (Map.Entry<String, VariantStats> entry : wrapper.getCohortStats().entrySet()) {
+            cohortStats.put(entry.getKey(), entry.getValue().getImpl());
+        }
+        GenericRecord record = new GenericData.Record(SCHEMA);
+        record.put("chromosome", wrapper.getChromosome());
+        record.put("start", wrapper.getStart());
+        record.put("end", wrapper.getEnd());
+        record.put("sv", wrapper.getSv());
+        record.put("cohortStats", cohortStats);
+        return record;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public VariantStatsWrapper convertToDataModelType(GenericRecord record) {
+        Map<?, org.opencb.biodata.models.variant.avro.VariantStats> avroCohortStats =
+                (Map<?, org.opencb.biodata.models.variant.avro.VariantStats>) record.get("cohortStats");
+        Map<String, VariantStats> cohortStats = new HashMap<>(avroCohortStats.size());
+        for (Map.Entry<?, org.opencb.biodata.models.variant.avro.VariantStats> entry : avroCohortStats.entrySet()) {
+            // Map keys may be read as Utf8
+            org.opencb.biodata.models.variant.avro.VariantStats avroStats = entry.getValue();
+            avroStats.setGenotypesCount(toGenotypeKeys(avroStats.getGenotypesCount()));
+            avroStats.setGenotypesFreq(toGenotypeKeys(avroStats.getGenotypesFreq()));
+            cohortStats.put(entry.getKey().toString(), new VariantStats(avroStats));
+        }
+        return new VariantStatsWrapper(
+                record.get("chromosome").toString(),
+                (Integer) record.get("start"),
+                (Integer) record.get("end"),
+                cohortStats,
+                (StructuralVariation) record.get("sv"));
+    }
+
+    /**
+     * The Avro reader does not create the {@link Genotype} keys of the maps, but keeps the serialized string.
+     */
+    private static <V> Map<Genotype, V> toGenotypeKeys(Map<?, V> map) {
+        if (map == null) {
+            return null;
+        }
+        Map<Genotype, V> genotypeMap = new HashMap<>(map.size());
+        for (Map.Entry<?, V> entry : map.entrySet()) {
+            Object key = entry.getKey();
+            genotypeMap.put(key instanceof Genotype ? (Genotype) key : new Genotype(key.toString()), entry.getValue());
+        }
+        return genotypeMap;
+    }
+}
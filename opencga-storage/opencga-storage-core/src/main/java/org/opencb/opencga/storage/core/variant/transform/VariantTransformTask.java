@@ -216,8 +216,9 @@ public abstract class VariantTransformTask<T> implements ParallelTaskRunner.Task
     public void post() {
         synchronized (variantStatsTask) {
             variantStatsTask.post();
+            // Other tasks sharing the same stats may still be running. Avoid concurrent modifications while writing.
+            writeVariantFileMetadata(fileMetadata, outputFileJsonFile);
         }
-        writeVariantFileMetadata(fileMetadata, outputFileJsonFile);
         logger.debug("Time txt2hts: " + this.htsConvertTime.get());
         logger.debug("Time hts2biodata: " + this.biodataConvertTime.get());
         logger.debug("Time normalization: " + this.normTime.get());
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.alignment.local;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.alignment.AlignmentDBAdaptor;
+import org.opencb.opencga.storage.core.alignment.iterators.ProtoAlignmentIterator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class BamManagerPoolTest {
+
+    private Path bamPath;
+
+    @Before
+    public void setUp() throws Exception {
+        bamPath = Paths.get(getClass().getResource("/HG00096.chrom20.small.bam").toURI());
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        BamManagerPool pool = new BamManagerPool();
+        LocalAlignmentDBAdaptor dbAdaptor = new LocalAlignmentDBAdaptor(1000, pool);
+        Query query = new Query(AlignmentDBAdaptor.QueryParams.REGION.key(), "20:60000-65000");
+
+        int numResults = dbAdaptor.get(bamPath, query, new QueryOptions()).getNumResults();
+        assertTrue(numResults > 0);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(numResults, dbAdaptor.get(bamPath, query, new QueryOptions()).getNumResults());
+        }
+
+        assertEquals(1, pool.getNumCreated());
+        assertEquals(5, pool.getNumReused());
+        assertEquals(1, pool.getNumIdle());
+    }
+
+    @Test
+    public void testIterator() throws Exception {
+        BamManagerPool pool = new BamManagerPool();
+        LocalAlignmentDBAdaptor dbAdaptor = new LocalAlignmentDBAdaptor(1000, pool);
+        Query query = new Query(AlignmentDBAdaptor.QueryParams.REGION.key(), "20:60000-65000");
+
+        try (ProtoAlignmentIterator iterator = dbAdaptor.iterator(bamPath, query, new QueryOptions())) {
+            assertTrue(iterator.hasNext());
+            // The reader is not released until the iterator is closed
+            assertEquals(0, pool.getNumIdle());
+            assertTrue(dbAdaptor.count(bamPath, query, new QueryOptions()).first() > 0);
+            assertEquals(2, pool.getNumCreated());
+        }
+        assertEquals(2, pool.getNumIdle());
+    }
+
+    @Test
+    public void testThreadConfinement() throws Exception {
+        BamManagerPool pool = new BamManagerPool();
+        BamManagerPool.PooledBamManager first = pool.borrow(bamPath);
+        BamManagerPool.PooledBamManager second = pool.borrow(bamPath);
+        assertNotSame(first.getBamManager(), second.getBamManager());
+
+        first.close();
+        // Released twice has no effect
+        first.close();
+        assertEquals(1, pool.getNumIdle());
+        second.discard();
+        assertEquals(1, pool.getNumIdle());
+
+        assertSame(first.getBamManager(), pool.borrow(bamPath).getBamManager());
+    }
+
+    @Test
+    public void testMaxIdle() throws Exception {
+        BamManagerPool pool = new BamManagerPool(2, 3, BamManagerPool.DEFAULT_IDLE_TIMEOUT);
+        Path otherBam = copyBam("other.bam");
+
+        BamManagerPool.PooledBamManager[] pooled = new BamManagerPool.PooledBamManager[3];
+        for (int i = 0; i < pooled.length; i++) {
+            pooled[i] = pool.borrow(bamPath);
+        }
+        for (BamManagerPool.PooledBamManager p : pooled) {
+            p.close();
+        }
+        // Max idle per file
+        assertEquals(2, pool.getNumIdle());
+
+        pool.borrow(otherBam).close();
+        pool.borrow(otherBam).close();
+        assertEquals(3, pool.getNumIdle());
+    }
+
+    @Test
+    public void testEvictIdle() throws Exception {
+        BamManagerPool pool = new BamManagerPool(2, 10, 0);
+        pool.borrow(bamPath).close();
+        assertEquals(1, pool.getNumIdle());
+
+        Thread.sleep(5);
+        pool.evictIdle();
+        assertEquals(0, pool.getNumIdle());
+    }
+
+    @Test
+    public void testModifiedFile() throws Exception {
+        BamManagerPool pool = new BamManagerPool();
+        Path bam = copyBam("modified.bam");
+        pool.borrow(bam).close();
+
+        Files.setLastModifiedTime(bam, FileTime.fromMillis(Files.getLastModifiedTime(bam).toMillis() + 1000));
+        pool.borrow(bam).close();
+
+        assertEquals(2, pool.getNumCreated());
+        assertEquals(0, pool.getNumReused());
+        assertEquals(1, pool.getNumIdle());
+    }
+
+    @Test
+    public void testCoverage() throws Exception {
+        BamManagerPool pool = new BamManagerPool();
+        LocalAlignmentDBAdaptor dbAdaptor = new LocalAlignmentDBAdaptor(1000, pool);
+
+        Region region = new Region("20", 60000, 65000);
+        dbAdaptor.coverage(bamPath, region, 100);
+        dbAdaptor.coverage(bamPath, region, 100);
+        assertEquals(1, pool.getNumCreated());
+        pool.close();
+        assertEquals(0, pool.getNumIdle());
+    }
+
+    private Path copyBam(String name) throws IOException {
+        Path dir = Paths.get("target/test-data", "bam-manager-pool-" + System.nanoTime());
+        Files.createDirectories(dir);
+        Path bam = dir.resolve(name);
+        Files.copy(bamPath, bam);
+        return bam;
+    }
+}
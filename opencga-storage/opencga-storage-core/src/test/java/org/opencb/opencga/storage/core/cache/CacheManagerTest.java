@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.core.QueryResult;
+import org.opencb.opencga.storage.core.config.CacheConfiguration;
+import org.opencb.opencga.storage.core.config.StorageConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class CacheManagerTest {
+
+    private CacheManager cacheManager;
+    private StorageConfiguration configuration;
+
+    @Before
+    public void setUp() throws Exception {
+        configuration = new StorageConfiguration();
+        configuration.setCache(new CacheConfiguration()
+                .setActive(true)
+                .setSlowThreshold(10)
+                .setMaxResultSize(100)
+                .setMemoryMaxSize(1024 * 1024)
+                .setRedisActive(false));
+        cacheManager = new CacheManager(configuration);
+    }
+
+    @Test
+    public void testMemoryCache() throws Exception {
+        assertTrue(cacheManager.isActive());
+        assertFalse(cacheManager.isRedisActive());
+
+        Query query = new Query("chr", "1");
+        String key = cacheManager.createKey("db", "var", query, new QueryOptions());
+        assertNull(cacheManager.get(key));
+
+        QueryResult<Variant> result = newResult(10, 20);
+        cacheManager.set(key, query, result);
+        assertSame(result, cacheManager.get(key));
+    }
+
+    @Test
+    public void testSkipFastOrLargeResults() throws Exception {
+        Query query = new Query();
+        String fastKey = cacheManager.createKey("db", "var", query, new QueryOptions("fast", true));
+        cacheManager.set(fastKey, query, newResult(10, 1));
+        assertNull(cacheManager.get(fastKey));
+
+        String largeKey = cacheManager.createKey("db", "var", query, new QueryOptions("large", true));
+        cacheManager.set(largeKey, query, newResult(200, 20));
+        assertNull(cacheManager.get(largeKey));
+    }
+
+    @Test
+    public void testEvictBySize() throws Exception {
+        QueryResult<Variant> result = newResult(100, 20);
+        int size = CacheManager.estimateSize("", result);
+        assertTrue(size > 0);
+        configuration.getCache().setMemoryMaxSize(size * 5L);
+        cacheManager = new CacheManager(configuration);
+
+        Query query = new Query();
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String key = cacheManager.createKey("db", "var", query, new QueryOptions("i", i));
+            keys.add(key);
+            cacheManager.set(key, query, result);
+        }
+        // Last one is always in the cache. Firsts are evicted.
+        assertNotNull(cacheManager.get(keys.get(keys.size() - 1)));
+        assertNull(cacheManager.get(keys.get(0)));
+    }
+
+    @Test
+    public void testClearStudy() throws Exception {
+        Query query = new Query();
+        String key1 = cacheManager.createKey("db1:abc", "var", query, new QueryOptions());
+        String key2 = cacheManager.createKey("db2:abc", "var", query, new QueryOptions());
+        cacheManager.set(key1, query, newResult(10, 20));
+        cacheManager.set(key2, query, newResult(10, 20));
+
+        cacheManager.clearStudy("db1");
+
+        assertNull(cacheManager.get(key1));
+        assertNotNull(cacheManager.get(key2));
+    }
+
+    @Test
+    public void testInactive() throws Exception {
+        configuration.getCache().setActive(false);
+        assertFalse(cacheManager.isActive());
+        assertFalse(new CacheManager().isActive());
+        // Disabled by default
+        assertFalse(new CacheManager(new StorageConfiguration()).isActive());
+    }
+
+    private QueryResult<Variant> newResult(int numResults, int dbTime) {
+        List<Variant> variants = new ArrayList<>(numResults);
+        for (int i = 0; i < numResults; i++) {
+            variants.add(new Variant("1:" + (1000 + i) + ":A:C"));
+        }
+        return new QueryResult<>("", dbTime, numResults, numResults, "", "", variants);
+    }
+}
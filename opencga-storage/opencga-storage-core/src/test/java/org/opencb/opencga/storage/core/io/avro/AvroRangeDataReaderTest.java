@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.io.avro;
+
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.biodata.models.feature.Genotype;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
+import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapperAvroConverter;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class AvroRangeDataReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadVariantStatsInRanges() throws Exception {
+        VariantStatsWrapperAvroConverter converter = new VariantStatsWrapperAvroConverter();
+        List<VariantStatsWrapper> wrappers = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Variant variant = new Variant("1:" + (1000 + i) + ":A:C");
+            Map<Genotype, Integer> gtCounts = new HashMap<>();
+            gtCounts.put(new Genotype("0/0"), i % 7);
+            gtCounts.put(new Genotype("0/1"), i % 5);
+            VariantStats stats = new VariantStats(variant);
+            stats.setGenotypesCount(gtCounts);
+            stats.setMaf((float) (i % 100) / 100);
+            stats.setNumSamples(12);
+            Map<String, VariantStats> cohortStats = new HashMap<>();
+            cohortStats.put(StudyEntry.DEFAULT_COHORT, stats);
+            wrappers.add(new VariantStatsWrapper(variant.getChromosome(), variant.getStart(), variant.getEnd(), cohortStats, null));
+        }
+
+        File file = temporaryFolder.newFile("file.variants.stats.avro");
+        try (DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new SpecificDatumWriter<GenericRecord>())) {
+            writer.setCodec(CodecFactory.deflateCodec(CodecFactory.DEFAULT_DEFLATE_LEVEL));
+            // Small blocks, to have several blocks per range
+            writer.setSyncInterval(2048);
+            writer.create(VariantStatsWrapperAvroConverter.SCHEMA, file);
+            for (VariantStatsWrapper wrapper : wrappers) {
+                writer.append(converter.convertToStorageType(wrapper));
+            }
+        }
+
+        assertEquals(wrappers.size(), AvroRangeDataReader.count(file));
+
+        for (int numRanges : new int[]{1, 2, 5, 16}) {
+            List<VariantStatsWrapper> read = new ArrayList<>();
+            for (AvroRangeDataReader<GenericRecord> reader
+                    : AvroRangeDataReader.<GenericRecord>split(file, VariantStatsWrapperAvroConverter.SCHEMA, numRanges)) {
+                reader.open();
+                List<GenericRecord> batch;
+                do {
+                    batch = reader.read(100);
+                    for (GenericRecord record : batch) {
+                        read.add(converter.convertToDataModelType(record));
+                    }
+                } while (!batch.isEmpty());
+                reader.close();
+            }
+            assertEquals(wrappers.size(), read.size());
+            for (int i = 0; i < wrappers.size(); i++) {
+                assertEquals(wrappers.get(i).getChromosome(), read.get(i).getChromosome());
+                assertEquals(wrappers.get(i).getStart(), read.get(i).getStart());
+                assertEquals(wrappers.get(i).getEnd(), read.get(i).getEnd());
+                assertEquals(wrappers.get(i).getCohortStats(), read.get(i).getCohortStats());
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.io.bgzf;
+
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class BgzfRangeDataReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadAllRanges() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 200000; i++) {
+            lines.add("1\t" + (i + 1000) + "\t.\tA\tC\t.\tPASS\tAC=" + (i % 13) + "\tGT\t0/1\t1/1");
+        }
+        File file = temporaryFolder.newFile("file.txt.gz");
+        try (OutputStream os = new BlockCompressedOutputStream(file)) {
+            for (String line : lines) {
+                os.write(line.getBytes());
+                os.write('\n');
+            }
+        }
+
+        for (int numRanges : new int[]{1, 2, 3, 7, 16}) {
+            List<BgzfRange> ranges = BgzfRange.split(file.toPath(), numRanges);
+            assertTrue(ranges.size() <= numRanges);
+            assertEquals(file.length(), ranges.get(ranges.size() - 1).getEnd());
+            assertEquals(lines, readRanges(file, ranges));
+        }
+    }
+
+    @Test
+    public void testLinesAtBlockBoundaries() throws Exception {
+        // Force one line per block, so every range starts with a complete line
+        List<String> lines = new ArrayList<>();
+        File file = temporaryFolder.newFile("file.txt.gz");
+        try (BlockCompressedOutputStream os = new BlockCompressedOutputStream(file)) {
+            for (int i = 0; i < 1000; i++) {
+                String line = "line_" + i;
+                lines.add(line);
+                os.write(line.getBytes());
+                os.write('\n');
+                os.flush();
+            }
+        }
+
+        for (int numRanges : new int[]{2, 5, 10}) {
+            assertEquals(lines, readRanges(file, BgzfRange.split(file.toPath(), numRanges)));
+        }
+    }
+
+    private List<String> readRanges(File file, List<BgzfRange> ranges) throws IOException {
+        List<String> read = new ArrayList<>();
+        for (BgzfRange range : ranges) {
+            BgzfRangeDataReader reader = new BgzfRangeDataReader(file.toPath(), range, 2);
+            reader.open();
+            List<String> batch;
+            do {
+                batch = reader.read(100);
+                read.addAll(batch);
+            } while (!batch.isEmpty());
+            reader.close();
+        }
+        return read;
+    }
+}
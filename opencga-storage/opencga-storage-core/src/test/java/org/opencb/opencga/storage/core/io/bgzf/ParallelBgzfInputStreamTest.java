@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.io.bgzf;
+
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.opencga.storage.core.io.plain.StringDataReader;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class ParallelBgzfInputStreamTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadBgzf() throws Exception {
+        List<String> lines = buildLines(100000);
+        File file = temporaryFolder.newFile("file.txt.gz");
+        writeBgzf(file, lines);
+
+        byte[] expected = String.join("\n", lines).concat("\n").getBytes();
+        for (int numThreads : new int[]{1, 2, 8}) {
+            try (InputStream is = new ParallelBgzfInputStream(new BufferedInputStream(new FileInputStream(file)), numThreads)) {
+                assertArrayEquals(expected, IOUtils.toByteArray(is));
+            }
+        }
+    }
+
+    @Test
+    public void testIsBgzf() throws Exception {
+        List<String> lines = buildLines(100);
+        File bgzf = temporaryFolder.newFile("file.bgzf.gz");
+        writeBgzf(bgzf, lines);
+        File gzip = temporaryFolder.newFile("file.gzip.gz");
+        try (OutputStream os = new GZIPOutputStream(new FileOutputStream(gzip))) {
+            os.write(String.join("\n", lines).getBytes());
+        }
+
+        try (InputStream is = new BufferedInputStream(new FileInputStream(bgzf))) {
+            assertTrue(ParallelBgzfInputStream.isBgzf(is));
+            // Position not modified
+            assertEquals(31, is.read());
+        }
+        try (InputStream is = new BufferedInputStream(new FileInputStream(gzip))) {
+            assertFalse(ParallelBgzfInputStream.isBgzf(is));
+        }
+    }
+
+    @Test
+    public void testStringDataReader() throws Exception {
+        List<String> lines = buildLines(50000);
+        File bgzf = temporaryFolder.newFile("file.bgzf.gz");
+        writeBgzf(bgzf, lines);
+        File gzip = temporaryFolder.newFile("file.gzip.gz");
+        try (OutputStream os = new GZIPOutputStream(new FileOutputStream(gzip))) {
+            os.write(String.join("\n", lines).getBytes());
+        }
+
+        assertEquals(lines, readLines(bgzf.toPath(), 4));
+        assertEquals(lines, readLines(bgzf.toPath(), 1));
+        assertEquals(lines, readLines(gzip.toPath(), 4));
+    }
+
+    private List<String> readLines(Path path, int decompressionThreads) {
+        StringDataReader reader = new StringDataReader(path).setDecompressionThreads(decompressionThreads);
+        reader.open();
+        reader.pre();
+        List<String> read = new ArrayList<>();
+        List<String> batch;
+        do {
+            batch = reader.read(1000);
+            read.addAll(batch);
+        } while (!batch.isEmpty());
+        reader.post();
+        reader.close();
+        return read;
+    }
+
+    private static void writeBgzf(File file, List<String> lines) throws IOException {
+        try (OutputStream os = new BlockCompressedOutputStream(file)) {
+            for (String line : lines) {
+                os.write(line.getBytes());
+                os.write('\n');
+            }
+        }
+    }
+
+    private static List<String> buildLines(int numLines) {
+        List<String> lines = new ArrayList<>(numLines);
+        for (int i = 0; i < numLines; i++) {
+            lines.add("1\t" + (i + 1000) + "\t.\tA\tC\t.\tPASS\tAC=" + (i % 13) + "\tGT\t0/1\t1/1");
+        }
+        return lines;
+    }
+}
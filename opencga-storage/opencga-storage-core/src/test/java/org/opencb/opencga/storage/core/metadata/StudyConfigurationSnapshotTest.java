@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.metadata;
+
+import com.google.common.collect.BiMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class StudyConfigurationSnapshotTest {
+
+    private StudyConfiguration sc;
+
+    @Before
+    public void setUp() throws Exception {
+        sc = new StudyConfiguration(1, "study");
+        sc.getFileIds().put("file1", 1);
+        sc.getFileIds().put("file2", 2);
+        sc.getSampleIds().put("s1", 1);
+        sc.getSampleIds().put("s2", 2);
+        sc.getSampleIds().put("s3", 3);
+        sc.getSamplesInFiles().put(1, new LinkedHashSet<>(Arrays.asList(1, 2)));
+        sc.getSamplesInFiles().put(2, new LinkedHashSet<>(Arrays.asList(3)));
+        sc.getIndexedFiles().add(1);
+        sc.getIndexedFiles().add(2);
+        sc.getCohortIds().put("ALL", 0);
+        sc.getCohorts().put(0, new LinkedHashSet<>(Arrays.asList(1, 2, 3)));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotSetter() throws Exception {
+        sc.asSnapshot().setStudyName("other");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotSampleIds() throws Exception {
+        sc.asSnapshot().getSampleIds().put("s4", 4);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotCohorts() throws Exception {
+        sc.asSnapshot().getCohorts().get(0).add(4);
+    }
+
+    @Test
+    public void testNewInstanceIsModifiable() throws Exception {
+        StudyConfiguration snapshot = sc.asSnapshot();
+        StudyConfiguration copy = snapshot.newInstance();
+
+        assertFalse(copy.isSnapshot());
+        copy.getSampleIds().put("s4", 4);
+        copy.getCohorts().get(0).add(4);
+        copy.getSamplesInFiles().get(2).add(4);
+
+        assertFalse(snapshot.getSampleIds().containsKey("s4"));
+        assertFalse(snapshot.getCohorts().get(0).contains(4));
+        assertFalse(snapshot.getSamplesInFiles().get(2).contains(4));
+    }
+
+    @Test
+    public void testCachedIndices() throws Exception {
+        BiMap<String, Integer> samplesPosition = StudyConfiguration.getIndexedSamplesPosition(sc);
+        assertNotSame(samplesPosition, StudyConfiguration.getIndexedSamplesPosition(sc));
+
+        StudyConfiguration snapshot = sc.asSnapshot();
+        assertSame(StudyConfiguration.getIndexedSamplesPosition(snapshot), StudyConfiguration.getIndexedSamplesPosition(snapshot));
+        assertSame(StudyConfiguration.getIndexedSamples(snapshot), StudyConfiguration.getIndexedSamples(snapshot));
+        assertEquals(samplesPosition, StudyConfiguration.getIndexedSamplesPosition(snapshot));
+        assertEquals(3, StudyConfiguration.getIndexedSamples(snapshot).size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotIndexedFiles() throws Exception {
+        sc.asSnapshot().getIndexedFiles().add(3);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotSamplesInFiles() throws Exception {
+        sc.asSnapshot().getSamplesInFiles().get(1).add(3);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotSamplesInFilesIterator() throws Exception {
+        Iterator<Integer> iterator = sc.asSnapshot().getSamplesInFiles().get(1).iterator();
+        iterator.next();
+        iterator.remove();
+    }
+}
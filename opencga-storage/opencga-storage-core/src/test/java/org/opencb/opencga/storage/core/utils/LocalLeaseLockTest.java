@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class LocalLeaseLockTest {
+
+    @Rule
+    public TestName name = new TestName();
+
+    private LocalLeaseLock getLock() {
+        return LocalLeaseLock.get(getClass().getSimpleName() + "." + name.getMethodName());
+    }
+
+    @Test
+    public void testLockUnlock() throws Exception {
+        LocalLeaseLock lock = getLock();
+        for (int i = 0; i < 10; i++) {
+            lock.lock(1000, 1000);
+            lock.setToken(i, 1000);
+            lock.unlock(i);
+        }
+        assertEquals(10, lock.getAcquired());
+        assertEquals(0, lock.getContended());
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void testLockAndLock() throws Exception {
+        LocalLeaseLock lock = getLock();
+        lock.lock(10000, 1000);
+        try {
+            lock.lock(10000, 100);
+        } finally {
+            assertEquals(1, lock.getTimeouts());
+            assertEquals(0, lock.getQueueLength());
+        }
+    }
+
+    @Test
+    public void testLockAfterExpiring() throws Exception {
+        LocalLeaseLock lock = getLock();
+        lock.lock(100, 1000);
+        lock.setToken(1, 100);
+
+        lock.lock(1000, 1000);
+        assertEquals(1, lock.getExpiredLeases());
+
+        // Unlock with the expired token is ignored
+        lock.unlock(1);
+        lock.setToken(2, 100);
+        assertEquals(0, lock.getQueueLength());
+        lock.unlock(2);
+    }
+
+    @Test
+    public void testRenew() throws Exception {
+        LocalLeaseLock lock = getLock();
+        lock.lock(200, 1000);
+        lock.setToken(1, 200);
+        Thread.sleep(100);
+        lock.renew(1, 2, 1000);
+        Thread.sleep(200);
+
+        // Lease should still be valid
+        try {
+            lock.lock(1000, 200);
+        } catch (TimeoutException ignore) {
+            lock.unlock(2);
+            return;
+        }
+        throw new AssertionError("Expected TimeoutException");
+    }
+
+    @Test
+    public void testFifo() throws Exception {
+        LocalLeaseLock lock = getLock();
+        lock.lock(10000, 1000);
+
+        int nThreads = 5;
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < nThreads; i++) {
+            int id = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    lock.lock(10000, 10000);
+                    order.add(id);
+                    lock.setToken(id, 10000);
+                    lock.unlock(id);
+                } catch (InterruptedException | TimeoutException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+            // Wait until the thread is queued
+            while (lock.getQueueLength() != i + 1) {
+                Thread.sleep(1);
+            }
+        }
+
+        lock.release();
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+
+        assertEquals(nThreads, order.size());
+        for (int i = 0; i < nThreads; i++) {
+            assertEquals(i, order.get(i).intValue());
+        }
+        assertEquals(nThreads + 1, lock.getAcquired());
+        assertEquals(nThreads, lock.getContended());
+        assertTrue(lock.getWaitTime() >= 0);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.core.results.VariantQueryResult;
+import org.opencb.opencga.storage.core.config.StorageConfiguration;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.variant.dummy.DummyStudyConfigurationAdaptor;
+import org.opencb.opencga.storage.core.variant.dummy.DummyVariantStorageEngine;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class VariantStorageEngineCacheTest {
+
+    private DummyVariantStorageEngine variantStorageEngine;
+
+    @Before
+    public void setUp() throws Exception {
+        DummyStudyConfigurationAdaptor.clear();
+        variantStorageEngine = newVariantStorageEngine();
+
+        StudyConfiguration studyConfiguration = new StudyConfiguration(1, "s1");
+        studyConfiguration.getSampleIds().put("s1_1", 1);
+        studyConfiguration.getFileIds().put("f1", 1);
+        studyConfiguration.getSamplesInFiles().put(1, new LinkedHashSet<>(Collections.singletonList(1)));
+        studyConfiguration.getIndexedFiles().add(1);
+        variantStorageEngine.getStudyConfigurationManager().updateStudyConfiguration(studyConfiguration, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        variantStorageEngine.close();
+        DummyStudyConfigurationAdaptor.clear();
+    }
+
+    @Test
+    public void testCachedResultsAreCopied() throws Exception {
+        VariantQueryResult<Variant> result = variantStorageEngine.get(new Query(), new QueryOptions());
+        assertFalse(result.first().getStudies().isEmpty());
+        result.first().getImpl().setStudies(Collections.emptyList());
+        result.getResult().clear();
+
+        VariantQueryResult<Variant> cachedResult = variantStorageEngine.get(new Query(), new QueryOptions());
+        assertNotEquals(0, cachedResult.getNumResults());
+        assertEquals(cachedResult.getNumResults(), cachedResult.getResult().size());
+        assertFalse(cachedResult.first().getStudies().isEmpty());
+    }
+
+    @Test
+    public void testInvalidateFromOtherProcess() throws Exception {
+        assertFalse(variantStorageEngine.get(new Query(), new QueryOptions()).first().getStudies().isEmpty());
+
+        // Modify the stored study without updating the timeStamp. The cached result is still returned.
+        DummyStudyConfigurationAdaptor.STUDY_CONFIGURATIONS_BY_ID.get(1).getIndexedFiles().clear();
+        DummyStudyConfigurationAdaptor.STUDY_CONFIGURATIONS_BY_NAME.get("s1").getIndexedFiles().clear();
+        assertFalse(variantStorageEngine.get(new Query(), new QueryOptions()).first().getStudies().isEmpty());
+
+        // Any update from other process changes the timeStamp, and invalidates the cached results
+        Thread.sleep(1);
+        newVariantStorageEngine().getStudyConfigurationManager().lockAndUpdate(1, studyConfiguration -> studyConfiguration);
+        assertTrue(variantStorageEngine.get(new Query(), new QueryOptions()).first().getStudies().isEmpty());
+    }
+
+    @Test
+    public void testInvalidateCachedResults() throws Exception {
+        assertFalse(variantStorageEngine.get(new Query(), new QueryOptions()).first().getStudies().isEmpty());
+
+        DummyStudyConfigurationAdaptor.STUDY_CONFIGURATIONS_BY_ID.get(1).getIndexedFiles().clear();
+        DummyStudyConfigurationAdaptor.STUDY_CONFIGURATIONS_BY_NAME.get("s1").getIndexedFiles().clear();
+        long timeStamp = DummyStudyConfigurationAdaptor.STUDY_CONFIGURATIONS_BY_ID.get(1).getTimeStamp();
+
+        // e.g. after annotating, from other process
+        Thread.sleep(1);
+        newVariantStorageEngine().invalidateCachedResults();
+        assertNotEquals(timeStamp, DummyStudyConfigurationAdaptor.STUDY_CONFIGURATIONS_BY_ID.get(1).getTimeStamp().longValue());
+        assertTrue(variantStorageEngine.get(new Query(), new QueryOptions()).first().getStudies().isEmpty());
+    }
+
+    private DummyVariantStorageEngine newVariantStorageEngine() throws Exception {
+        try (InputStream is = DummyVariantStorageEngine.class.getClassLoader().getResourceAsStream("storage-configuration.yml")) {
+            StorageConfiguration storageConfiguration = StorageConfiguration.load(is);
+            storageConfiguration.getCache()
+                    .setActive(true)
+                    .setRedisActive(false)
+                    .setSlowThreshold(0);
+            DummyVariantStorageEngine storageEngine = new DummyVariantStorageEngine();
+            storageEngine.setConfiguration(storageConfiguration, DummyVariantStorageEngine.STORAGE_ENGINE_ID);
+            return storageEngine;
+        }
+    }
+}
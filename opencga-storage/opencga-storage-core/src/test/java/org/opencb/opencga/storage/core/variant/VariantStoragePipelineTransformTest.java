@@ -16,14 +16,26 @@
 
 package org.opencb.opencga.storage.core.variant;
 
+import htsjdk.samtools.util.BlockCompressedOutputStream;
 import org.junit.Test;
+import org.opencb.biodata.formats.variant.io.VariantReader;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.VariantFileMetadata;
 import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.opencga.storage.core.StoragePipelineResult;
 import org.opencb.opencga.storage.core.exceptions.StoragePipelineException;
+import org.opencb.opencga.storage.core.variant.io.VariantReaderUtils;
 
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.*;
 import static org.opencb.opencga.storage.core.variant.io.VariantReaderUtils.MALFORMED_FILE;
@@ -97,5 +109,89 @@ public abstract class VariantStoragePipelineTransformTest extends VariantStorage
         assertEquals(2, result.getTransformStats().getInt("malformed lines"));
     }
 
+    @Test
+    public void transformParallelReaders() throws Exception {
+        Path bgzfInput = toBgzf(smallInputUri);
+
+        ObjectMap params = new ObjectMap();
+        URI singleOutputUri = newOutputUri();
+        StoragePipelineResult single = runETL(getVariantStorageEngine(), bgzfInput.toUri(), singleOutputUri, params, true, true, false);
+
+        params.put(VariantStorageEngine.Options.TRANSFORM_PARALLEL_READERS.key(), 4);
+        URI parallelOutputUri = newOutputUri();
+        StoragePipelineResult parallel = runETL(getVariantStorageEngine(), bgzfInput.toUri(), parallelOutputUri, params, true, true, false);
+
+        String[] parts = Paths.get(parallelOutputUri).toFile().list((dir, name) -> name.contains(".part"));
+        assertEquals(0, parts.length);
+
+        Path singleOutput = Paths.get(single.getTransformResult());
+        Path parallelOutput = Paths.get(parallel.getTransformResult());
+        VariantFileMetadata expectedMetadata = VariantReaderUtils.readVariantFileMetadata(singleOutput, null);
+        VariantFileMetadata metadata = VariantReaderUtils.readVariantFileMetadata(parallelOutput, null);
+        assertEquals(expectedMetadata.getStats(), metadata.getStats());
+
+        List<String> expected = readVariants(singleOutput, expectedMetadata);
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, readVariants(parallelOutput, metadata));
+    }
+
+    @Test
+    public void corruptedTransformParallelReadersTest() throws Exception {
+        Path bgzfInput = toBgzf(corruptedInputUri);
+
+        ObjectMap params = new ObjectMap(VariantStorageEngine.Options.TRANSFORM_FAIL_ON_MALFORMED_VARIANT.key(), true)
+                .append(VariantStorageEngine.Options.TRANSFORM_PARALLEL_READERS.key(), 4);
+        URI outputUri = newOutputUri();
+
+        try {
+            runETL(getVariantStorageEngine(), bgzfInput.toUri(), outputUri, params, true, true, false);
+            fail("Expected StoragePipelineException");
+        } catch (StoragePipelineException e) {
+            assertNotNull(e.getResults().get(0).getTransformError());
+        }
+
+        String[] parts = Paths.get(outputUri).toFile().list((dir, name) -> name.contains(".part"));
+        assertEquals(0, parts.length);
+    }
+
+    /**
+     * Compress a plain or gzip file with BGZF, flushing often to get multiple blocks.
+     */
+    private Path toBgzf(URI input) throws Exception {
+        String fileName = Paths.get(input).getFileName().toString();
+        boolean gzip = fileName.endsWith(".gz");
+        Path bgzfInput = Paths.get(newOutputUri()).resolve(gzip ? fileName : fileName + ".gz");
+        InputStream is = gzip ? new GZIPInputStream(input.toURL().openStream()) : input.toURL().openStream();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is));
+             BlockCompressedOutputStream os = new BlockCompressedOutputStream(bgzfInput.toFile())) {
+            String line;
+            int i = 0;
+            while ((line = reader.readLine()) != null) {
+                os.write(line.getBytes());
+                os.write('\n');
+                if (++i % 50 == 0) {
+                    os.flush();
+                }
+            }
+        }
+        return bgzfInput;
+    }
+
+    private List<String> readVariants(Path path, VariantFileMetadata metadata) throws Exception {
+        List<String> variants = new ArrayList<>();
+        VariantReader reader = VariantReaderUtils.getVariantReader(path, metadata.toVariantStudyMetadata(String.valueOf(STUDY_ID)));
+        reader.open();
+        reader.pre();
+        List<Variant> batch;
+        do {
+            batch = reader.read(100);
+            for (Variant variant : batch) {
+                variants.add(variant.toJson());
+            }
+        } while (!batch.isEmpty());
+        reader.post();
+        reader.close();
+        return variants;
+    }
 
 }
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.adaptors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class MultiVariantDBIteratorTest {
+
+    private static final int DELAY = 50;
+    private List<String> variants;
+    private AtomicInteger createdIterators;
+    private AtomicInteger closedIterators;
+    // Number of iterators fetching its first batch at the same time
+    private AtomicInteger runningQueries;
+    private AtomicInteger maxRunningQueries;
+    // If not null, the first fetch of each iterator waits until this latch is released
+    private CountDownLatch queriesLatch;
+    private BiFunction<Query, QueryOptions, VariantDBIterator> iteratorFactory;
+
+    @Before
+    public void setUp() throws Exception {
+        variants = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            variants.add("1:" + (1000 + i) + ":A:C");
+        }
+        createdIterators = new AtomicInteger();
+        closedIterators = new AtomicInteger();
+        runningQueries = new AtomicInteger();
+        maxRunningQueries = new AtomicInteger();
+        queriesLatch = null;
+        iteratorFactory = (query, options) -> {
+            List<Variant> result = query.getAsStringList(VariantQueryParam.ID.key())
+                    .stream()
+                    .map(Variant::new)
+                    .limit(options.getInt(QueryOptions.LIMIT, Integer.MAX_VALUE))
+                    .collect(Collectors.toList());
+            return new DelayedVariantDBIterator(result);
+        };
+    }
+
+    @Test
+    public void testIterator() throws Exception {
+        checkIterator(new QueryOptions());
+    }
+
+    @Test
+    public void testIteratorPrefetch() throws Exception {
+        // The first fetch of each query is blocked until 5 queries are running at the same time
+        queriesLatch = new CountDownLatch(5);
+        checkIterator(new QueryOptions(MultiVariantDBIterator.PREFETCH, 5));
+        assertEquals(0, queriesLatch.getCount());
+        assertEquals(5, maxRunningQueries.get());
+        assertEquals(createdIterators.get(), closedIterators.get());
+    }
+
+    @Test
+    public void testIteratorNoPrefetch() throws Exception {
+        checkIterator(new QueryOptions());
+        assertEquals(1, maxRunningQueries.get());
+    }
+
+    @Test
+    public void testIteratorPrefetchLimitSkip() throws Exception {
+        QueryOptions options = new QueryOptions(MultiVariantDBIterator.PREFETCH, 5)
+                .append(QueryOptions.LIMIT, 35)
+                .append(QueryOptions.SKIP, 12);
+        List<String> result = new ArrayList<>();
+        try (MultiVariantDBIterator iterator = new MultiVariantDBIterator(variants.iterator(), 10, new Query(), options,
+                iteratorFactory)) {
+            iterator.forEachRemaining(variant -> result.add(variant.toString()));
+        }
+        assertEquals(variants.subList(12, 12 + 35), result);
+    }
+
+    @Test
+    public void testClosePendingIterators() throws Exception {
+        MultiVariantDBIterator iterator = new MultiVariantDBIterator(variants.iterator(), 10, new Query(),
+                new QueryOptions(MultiVariantDBIterator.PREFETCH, 5), iteratorFactory);
+        assertEquals(variants.get(0), iterator.next().toString());
+        iterator.close();
+        // Queries not started are discarded. All the created iterators must be closed
+        assertTrue(createdIterators.get() < variants.size() / 10);
+        assertEquals(createdIterators.get(), closedIterators.get());
+    }
+
+    private void checkIterator(QueryOptions options) throws Exception {
+        List<String> result = new ArrayList<>();
+        try (MultiVariantDBIterator iterator = new MultiVariantDBIterator(variants.iterator(), 10, new Query(), options,
+                iteratorFactory)) {
+            iterator.forEachRemaining(variant -> result.add(variant.toString()));
+            assertTrue(iterator.getTimeFetching() > 0);
+        }
+        assertEquals(variants, result);
+    }
+
+    private class DelayedVariantDBIterator extends VariantDBIterator {
+        private final Iterator<Variant> iterator;
+        private boolean first = true;
+
+        DelayedVariantDBIterator(List<Variant> variants) {
+            iterator = variants.iterator();
+            createdIterators.incrementAndGet();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (first) {
+                first = false;
+                int running = runningQueries.incrementAndGet();
+                maxRunningQueries.accumulateAndGet(running, Math::max);
+                try {
+                    fetch(() -> {
+                        if (queriesLatch == null) {
+                            Thread.sleep(DELAY);
+                        } else {
+                            queriesLatch.countDown();
+                            if (!queriesLatch.await(10, TimeUnit.SECONDS)) {
+                                throw new IllegalStateException("Queries are not executed concurrently");
+                            }
+                        }
+                        return null;
+                    });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    runningQueries.decrementAndGet();
+                }
+            }
+            return iterator.hasNext();
+        }
+
+        @Override
+        public Variant next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return iterator.next();
+        }
+
+        @Override
+        public void close() throws Exception {
+            closedIterators.incrementAndGet();
+            super.close();
+        }
+    }
+}
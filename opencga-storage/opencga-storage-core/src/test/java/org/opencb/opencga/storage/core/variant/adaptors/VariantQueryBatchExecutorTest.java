@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.adaptors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.core.results.VariantQueryResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class VariantQueryBatchExecutorTest {
+
+    private static final String SLEEP = "sleep";
+    private VariantDBAdaptor dbAdaptor;
+
+    @Before
+    public void setUp() throws Exception {
+        dbAdaptor = Mockito.mock(VariantDBAdaptor.class);
+        Mockito.when(dbAdaptor.get(ArgumentMatchers.any(Query.class), ArgumentMatchers.any(QueryOptions.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            Thread.sleep(query.getInt(SLEEP));
+            Variant variant = new Variant(query.getString(VariantQueryParam.ID.key()));
+            return new VariantQueryResult<>("", 0, 1, 1, "", "", Collections.singletonList(variant), null, null);
+        });
+    }
+
+    @Test
+    public void testGet() throws Exception {
+        List<Query> queries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            queries.add(new Query(VariantQueryParam.ID.key(), "1:" + (1000 + i) + ":A:C").append(SLEEP, 100));
+        }
+
+        long start = System.currentTimeMillis();
+        List<VariantQueryResult<Variant>> results = VariantQueryBatchExecutor.get(dbAdaptor, queries,
+                new QueryOptions(VariantQueryBatchExecutor.BATCH_THREADS, 10));
+        long time = System.currentTimeMillis() - start;
+
+        assertEquals(queries.size(), results.size());
+        for (int i = 0; i < queries.size(); i++) {
+            assertEquals(queries.get(i).getString(VariantQueryParam.ID.key()), results.get(i).first().toString());
+            assertTrue(results.get(i).getDbTime() >= 100);
+        }
+        // 20 queries of 100ms in 10 threads
+        assertTrue("Expected less than 2000ms, but was " + time + "ms", time < 2000);
+    }
+
+    @Test
+    public void testGetTimeout() throws Exception {
+        List<Query> queries = new ArrayList<>();
+        queries.add(new Query(VariantQueryParam.ID.key(), "1:1000:A:C").append(SLEEP, 10));
+        queries.add(new Query(VariantQueryParam.ID.key(), "1:1001:A:C").append(SLEEP, 10000));
+
+        List<VariantQueryResult<Variant>> results = VariantQueryBatchExecutor.get(dbAdaptor, queries,
+                new QueryOptions(VariantQueryBatchExecutor.BATCH_TIMEOUT, 500));
+
+        assertEquals(2, results.size());
+        assertEquals("1:1000:A:C", results.get(0).first().toString());
+        assertTrue(results.get(0).getErrorMsg().isEmpty());
+        assertEquals(0, results.get(1).getNumResults());
+        assertFalse(results.get(1).getErrorMsg().isEmpty());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.annotation;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.AdditionalAttribute;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.core.QueryResult;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.dummy.DummyVariantDBAdaptor;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class CustomAnnotationLoaderTest {
+
+    private List<Variant> variants;
+    private Map<String, String> annotations;
+    private List<Integer> bulkSizes;
+    private int queries;
+    private DummyVariantDBAdaptor dbAdaptor;
+
+    @Before
+    public void setUp() throws Exception {
+        variants = new ArrayList<>();
+        for (int pos = 100; pos <= 1000; pos += 100) {
+            variants.add(new Variant("1:" + pos + ":A:C"));
+            variants.add(new Variant("2:" + pos + ":A:C"));
+        }
+        annotations = new HashMap<>();
+        bulkSizes = new ArrayList<>();
+        queries = 0;
+        dbAdaptor = new DummyVariantDBAdaptor("test") {
+            @Override
+            public VariantDBIterator iterator(Query query, QueryOptions options) {
+                queries++;
+                List<Region> regions = Region.parseRegions(query.getString(VariantQueryParam.REGION.key()));
+                List<Variant> result = variants.stream()
+                        .filter(v -> regions.stream().anyMatch(r -> r.getChromosome().equals(v.getChromosome())
+                                && r.getStart() <= v.getStart() && v.getStart() <= r.getEnd()))
+                        .collect(Collectors.toList());
+                Iterator<Variant> iterator = result.iterator();
+                return new VariantDBIterator() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Variant next() {
+                        return iterator.next();
+                    }
+                };
+            }
+
+            @Override
+            public QueryResult updateCustomAnnotations(Map<Variant, AdditionalAttribute> attributes, String name,
+                                                       QueryOptions options) {
+                bulkSizes.add(attributes.size());
+                attributes.forEach((variant, attribute) -> annotations.put(variant.toString(), attribute.getAttribute().get("name")));
+                return new QueryResult();
+            }
+        };
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        CustomAnnotationLoader loader = new CustomAnnotationLoader(dbAdaptor, "key", 3, 1000);
+        loader.add("1", 250, 450, attribute("a"));
+        loader.add("1", 100, 200, attribute("b"));
+        // Overlaps with "a". Added later, so it is used for the shared variants
+        loader.add("1", 400, 600, attribute("c"));
+        loader.add("1", 950, 2000, attribute("d"));
+        loader.add("2", 500, 500, attribute("e"));
+
+        assertEquals(8, loader.load());
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("1:100:A:C", "b");
+        expected.put("1:200:A:C", "b");
+        expected.put("1:300:A:C", "a");
+        expected.put("1:400:A:C", "c");
+        expected.put("1:500:A:C", "c");
+        expected.put("1:600:A:C", "c");
+        expected.put("1:1000:A:C", "d");
+        expected.put("2:500:A:C", "e");
+        assertEquals(expected, annotations);
+        // One query per chromosome
+        assertEquals(2, queries);
+        assertEquals(Arrays.asList(3, 3, 1, 1), bulkSizes);
+    }
+
+    @Test
+    public void testRegionsPerQuery() throws Exception {
+        CustomAnnotationLoader loader = new CustomAnnotationLoader(dbAdaptor, "key", 100, 2);
+        for (int pos = 100; pos <= 1000; pos += 100) {
+            loader.add("1", pos, pos, attribute(String.valueOf(pos)));
+        }
+
+        assertEquals(10, loader.load());
+        assertEquals(5, queries);
+        assertEquals(Collections.singletonList(10), bulkSizes);
+    }
+
+    @Test
+    public void testMergeIntervals() throws Exception {
+        List<CustomAnnotationLoader.Interval> intervals = Arrays.asList(
+                new CustomAnnotationLoader.Interval(10, 20, 0, null),
+                new CustomAnnotationLoader.Interval(15, 30, 1, null),
+                new CustomAnnotationLoader.Interval(18, 25, 2, null),
+                new CustomAnnotationLoader.Interval(31, 40, 3, null),
+                new CustomAnnotationLoader.Interval(40, 40, 4, null));
+
+        assertEquals(Arrays.asList(new Region("1", 10, 30), new Region("1", 31, 40)),
+                CustomAnnotationLoader.mergeIntervals("1", intervals));
+    }
+
+    @Test
+    public void testSweepUnsorted() throws Exception {
+        List<CustomAnnotationLoader.Interval> intervals = Arrays.asList(
+                new CustomAnnotationLoader.Interval(10, 20, 0, null),
+                new CustomAnnotationLoader.Interval(15, 30, 1, null));
+        CustomAnnotationLoader.IntervalSweep sweep = new CustomAnnotationLoader.IntervalSweep(intervals);
+
+        assertEquals(1, sweep.find(25).getIndex());
+        assertNull(sweep.find(31));
+        // Restart the sweep
+        assertEquals(0, sweep.find(12).getIndex());
+        assertEquals(1, sweep.find(16).getIndex());
+    }
+
+    private AdditionalAttribute attribute(String name) {
+        return new AdditionalAttribute(Collections.singletonMap("name", name));
+    }
+}
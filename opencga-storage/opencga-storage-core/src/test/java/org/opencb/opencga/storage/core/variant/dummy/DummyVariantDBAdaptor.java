@@ -84,11 +84,6 @@ public class DummyVariantDBAdaptor implements VariantDBAdaptor {
                 DummyVariantStorageEngine.STORAGE_ENGINE_ID);
     }
 
-    @Override
-    public List<VariantQueryResult<Variant>> get(List<Query> queries, QueryOptions options) {
-        return null;
-    }
-
     @Override
     public VariantQueryResult<Variant> getPhased(String variant, String studyName, String sampleName, QueryOptions options, int windowsSize) {
         return null;
@@ -16,25 +16,39 @@
 
 package org.opencb.opencga.storage.core.variant.io;
 
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.tribble.util.TabixUtils;
+import org.apache.avro.generic.GenericRecord;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.io.DataWriter;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.dummy.DummyStudyConfigurationAdaptor;
 import org.opencb.opencga.storage.core.variant.dummy.DummyVariantStorageTest;
 import org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat;
 
 import java.io.BufferedReader;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.GZIPInputStream;
 
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 /**
  * Created on 06/12/16.
@@ -64,6 +78,156 @@ public class VariantExporterTest extends VariantStorageBaseTest implements Dummy
         System.out.println(getClass().getSimpleName() + ": System out not closed!");
     }
 
+    @Test
+    public void exportStudyVcfGzTest() throws Exception {
+        URI output = newOutputUri().resolve("variant.vcf.gz");
+        variantStorageEngine.exportData(output, VariantOutputFormat.VCF_GZ, new Query(), new QueryOptions()
+                .append(VariantStorageEngine.Options.EXPORT_THREADS.key(), 4)
+                .append(VariantStorageEngine.Options.EXPORT_PARTITION_SIZE.key(), 10000000));
+
+        assertTrue(Paths.get(output).toFile().exists());
+
+        // Check gzip format
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(output.getPath()))))) {
+            assertTrue(br.readLine().startsWith("##fileformat=VCF"));
+        }
+    }
+
+    @Test
+    public void exportVcfGzParallelTest() throws Exception {
+        URI serialOutput = newOutputUri().resolve("serial.vcf.gz");
+        variantStorageEngine.exportData(serialOutput, VariantOutputFormat.VCF_GZ, new Query(), new QueryOptions()
+                .append(VariantStorageEngine.Options.EXPORT_THREADS.key(), 1));
+        URI parallelOutput = newOutputUri().resolve("parallel.vcf.gz");
+        variantStorageEngine.exportData(parallelOutput, VariantOutputFormat.VCF_GZ, new Query(), new QueryOptions()
+                .append(VariantStorageEngine.Options.EXPORT_THREADS.key(), 4)
+                .append(VariantStorageEngine.Options.EXPORT_PARTITION_SIZE.key(), 10000000));
+
+        // Only the parallel export writes the tabix index
+        assertFalse(Paths.get(serialOutput.getPath() + TabixUtils.STANDARD_INDEX_EXTENSION).toFile().exists());
+        assertTrue(Paths.get(parallelOutput.getPath() + TabixUtils.STANDARD_INDEX_EXTENSION).toFile().exists());
+
+        List<String> serialRecords = readVcfRecords(serialOutput);
+        assertFalse(serialRecords.isEmpty());
+        assertEquals(serialRecords, readVcfRecords(parallelOutput));
+    }
+
+    @Test
+    public void exportParquetFailTest() throws Exception {
+        URI output = newOutputUri().resolve("variant.parquet");
+        AtomicBoolean closed = new AtomicBoolean(false);
+        VariantExporter exporter = new VariantExporter(variantStorageEngine, null) {
+            @Override
+            protected DataWriter<GenericRecord> newParquetDataWriter(String outputFile, String study, List<String> samples,
+                                                                     ObjectMap options) {
+                return new DataWriter<GenericRecord>() {
+                    @Override
+                    public boolean open() {
+                        try {
+                            Files.createFile(Paths.get(outputFile));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return true;
+                    }
+
+                    @Override
+                    public boolean pre() {
+                        throw new IllegalStateException("Failing writer");
+                    }
+
+                    @Override
+                    public boolean write(List<GenericRecord> batch) {
+                        return true;
+                    }
+
+                    @Override
+                    public boolean close() {
+                        closed.set(true);
+                        return true;
+                    }
+                };
+            }
+        };
+
+        try {
+            exporter.export(output, VariantOutputFormat.PARQUET, new Query(), new QueryOptions());
+            fail("Expected StorageEngineException");
+        } catch (StorageEngineException e) {
+            assertEquals("Failing writer", e.getCause().getMessage());
+        }
+        assertTrue(closed.get());
+        assertFalse(Paths.get(output).toFile().exists());
+    }
+
+    @Test
+    public void getPartitionsTest() throws Exception {
+        SAMSequenceDictionary dictionary = new SAMSequenceDictionary(Arrays.asList(
+                new SAMSequenceRecord("1", 2500),
+                new SAMSequenceRecord("2", 1000),
+                new SAMSequenceRecord("X", SAMSequenceRecord.UNKNOWN_SEQUENCE_LENGTH)));
+
+        assertEquals(Arrays.asList(
+                new Region("1", 1, 1000), new Region("1", 1001, 2000), new Region("1", 2001, 2500),
+                new Region("2", 1, 1000),
+                new Region("X")),
+                VariantExporter.getPartitions(new Query(), dictionary, 1000));
+
+        // Sorted by chromosome, merged and bounded by the contig length
+        Query query = new Query(VariantQueryParam.REGION.key(), "2:500-600,1:1500-1800,1:1700-5000,1:100-200");
+        assertEquals(Arrays.asList(
+                new Region("1", 100, 200), new Region("1", 1500, 2499), new Region("1", 2500, 2500),
+                new Region("2", 500, 600)),
+                VariantExporter.getPartitions(query, dictionary, 1000));
+
+        // Unknown chromosome
+        query = new Query(VariantQueryParam.REGION.key(), "1:100-200,3:100-200");
+        assertEquals(Collections.emptyList(), VariantExporter.getPartitions(query, dictionary, 1000));
+    }
+
+    @Test
+    public void getSortedChromosomesTest() throws Exception {
+        SAMSequenceDictionary dictionary = new SAMSequenceDictionary(Arrays.asList(
+                new SAMSequenceRecord("GL000192.1", 100),
+                new SAMSequenceRecord("MT", 100),
+                new SAMSequenceRecord("10", 100),
+                new SAMSequenceRecord("Y", 100),
+                new SAMSequenceRecord("2", 100),
+                new SAMSequenceRecord("X", 100),
+                new SAMSequenceRecord("GL000191.1", 100),
+                new SAMSequenceRecord("1", 100)));
+
+        assertEquals(Arrays.asList("1", "2", "10", "X", "Y", "MT", "GL000191.1", "GL000192.1"),
+                VariantExporter.getSortedChromosomes(dictionary));
+    }
+
+    @Test
+    public void getPartitionsMinStartTest() throws Exception {
+        List<Region> partitions = Arrays.asList(
+                new Region("1", 100, 200), new Region("1", 1500, 2499), new Region("1", 2500, 2500),
+                new Region("2", 500, 600));
+        Map<Region, Integer> minStarts = VariantExporter.getPartitionsMinStart(partitions);
+
+        // Variants overlapping the start of the regions from the query are exported, unless exported by the previous partition
+        assertEquals(0, minStarts.get(new Region("1", 100, 200)).intValue());
+        assertEquals(201, minStarts.get(new Region("1", 1500, 2499)).intValue());
+        assertEquals(2500, minStarts.get(new Region("1", 2500, 2500)).intValue());
+        assertEquals(0, minStarts.get(new Region("2", 500, 600)).intValue());
+    }
+
+    private List<String> readVcfRecords(URI vcf) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(vcf.getPath()))))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    records.add(line);
+                }
+            }
+        }
+        return records;
+    }
+
     @Test
     public void exportStudyJsonTest() throws Exception {
         URI output = newOutputUri().resolve("variant.json.gz");
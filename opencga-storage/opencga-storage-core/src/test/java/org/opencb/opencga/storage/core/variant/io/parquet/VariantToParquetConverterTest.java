@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.io.parquet;
+
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.*;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class VariantToParquetConverterTest {
+
+    private final VariantToParquetConverter converter = new VariantToParquetConverter("S_1", Arrays.asList("S1", "S2", "S3"));
+
+    @Test
+    public void testConvert() {
+        Variant variant = new Variant("1:1000:A:C");
+        StudyEntry studyEntry = new StudyEntry("user@p1:S_1", Collections.emptyList(), Arrays.asList("GT", "DP"));
+        studyEntry.addSampleData("S3", Arrays.asList("1/1", "20"));
+        studyEntry.addSampleData("S1", Arrays.asList("0/1", "10"));
+        VariantStats stats = new VariantStats();
+        stats.setAltAlleleCount(3);
+        stats.setAltAlleleFreq(0.75f);
+        stats.setMaf(0.25f);
+        stats.setMgf(0.5f);
+        studyEntry.setStats("ALL", stats);
+        variant.addStudyEntry(studyEntry);
+
+        VariantAnnotation annotation = new VariantAnnotation();
+        ConsequenceType ct1 = new ConsequenceType();
+        ct1.setGeneName("BRCA2");
+        ct1.setBiotype("protein_coding");
+        ct1.setSequenceOntologyTerms(Collections.singletonList(new SequenceOntologyTerm("SO:0001583", "missense_variant")));
+        ProteinVariantAnnotation protein = new ProteinVariantAnnotation();
+        protein.setSubstitutionScores(Arrays.asList(
+                new Score(0.3, "sift", ""), new Score(0.1, "sift", ""),
+                new Score(0.5, "polyphen", ""), new Score(0.9, "polyphen", "")));
+        ct1.setProteinVariantAnnotation(protein);
+        ConsequenceType ct2 = new ConsequenceType();
+        ct2.setGeneName("BRCA2");
+        ct2.setBiotype("nonsense_mediated_decay");
+        ct2.setSequenceOntologyTerms(Arrays.asList(
+                new SequenceOntologyTerm("SO:0001583", "missense_variant"),
+                new SequenceOntologyTerm("SO:0001619", "non_coding_transcript_variant")));
+        annotation.setConsequenceTypes(Arrays.asList(ct1, ct2));
+        annotation.setConservation(Arrays.asList(new Score(0.8, "phastCons", ""), new Score(4.5, "gerp", "")));
+        annotation.setFunctionalScore(Collections.singletonList(new Score(25.0, "cadd_scaled", "")));
+        PopulationFrequency frequency = new PopulationFrequency();
+        frequency.setStudy("1kG_phase3");
+        frequency.setPopulation("ALL");
+        frequency.setAltAlleleFreq(0.01f);
+        annotation.setPopulationFrequencies(Collections.singletonList(frequency));
+        variant.setAnnotation(annotation);
+
+        GenericRecord record = converter.convert(variant);
+        assertTrue(GenericData.get().validate(VariantToParquetConverter.getSchema(), record));
+
+        assertEquals("1", record.get("chromosome"));
+        assertEquals(1000, record.get("start"));
+        assertEquals("SNV", record.get("type"));
+        assertEquals(Collections.singletonList("BRCA2"), record.get("genes"));
+        assertEquals(Arrays.asList("protein_coding", "nonsense_mediated_decay"), record.get("biotypes"));
+        assertEquals(Arrays.asList("missense_variant", "non_coding_transcript_variant"), record.get("consequenceTypes"));
+        assertEquals(0.1, record.get("sift"));
+        assertEquals(0.9, record.get("polyphen"));
+        assertEquals(0.8, record.get("phastCons"));
+        assertEquals(4.5, record.get("gerp"));
+        assertNull(record.get("phylop"));
+        assertNull(record.get("caddRaw"));
+        assertEquals(25.0, record.get("caddScaled"));
+        assertEquals(Collections.singletonMap("1kG_phase3:ALL", 0.01f), record.get("populationFrequencies"));
+
+        GenericRecord cohortStats = ((Map<String, GenericRecord>) record.get("stats")).get("ALL");
+        assertEquals(3, cohortStats.get("altAlleleCount"));
+        assertEquals(0.75f, cohortStats.get("altAlleleFreq"));
+        assertEquals(0.25f, cohortStats.get("maf"));
+        assertEquals(0.5f, cohortStats.get("mgf"));
+
+        assertEquals(Arrays.asList("0/1", VariantToParquetConverter.MISSING_GENOTYPE, "1/1"), record.get("genotypes"));
+    }
+
+    @Test
+    public void testConvertWithoutAnnotation() {
+        Variant variant = new Variant("2:2000:AT:-");
+
+        GenericRecord record = converter.convert(variant);
+        assertTrue(GenericData.get().validate(VariantToParquetConverter.getSchema(), record));
+
+        assertEquals("INDEL", record.get("type"));
+        assertEquals(Collections.emptyList(), record.get("genes"));
+        assertNull(record.get("sift"));
+        assertEquals(Collections.emptyMap(), record.get("stats"));
+        assertEquals(Collections.nCopies(3, VariantToParquetConverter.MISSING_GENOTYPE), record.get("genotypes"));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.io.vcf;
+
+import htsjdk.tribble.SimpleFeature;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.tribble.readers.TabixReader;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class BgzfTabixWriterTest {
+
+    private static final String HEADER = "##fileformat=VCFv4.2\n#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path output;
+    private List<String> records;
+
+    @Before
+    public void setUp() throws Exception {
+        output = temporaryFolder.getRoot().toPath().resolve("variants.vcf.gz");
+        records = new ArrayList<>();
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        BgzfTabixWriter writer = new BgzfTabixWriter(output, HEADER.getBytes(StandardCharsets.UTF_8), TabixFormat.VCF);
+        writer.open();
+        writer.pre();
+        // Several chunks, some of them spanning multiple BGZF blocks
+        writer.write(Arrays.asList(chunk("1", 1, 10000, 3), chunk("1", 10001, 20000, 1000)));
+        writer.write(chunk("1", 20001, 30000, 3000));
+        writer.write(chunk("2", 1, 100000, 10000));
+        writer.write(chunk("3", 1, 10000, 10001));
+        writer.post();
+        writer.close();
+
+        assertTrue(writer.getIndexOutput().toFile().exists());
+
+        // Plain gzip readers must read the file as one stream
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(output.toFile()))))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+        }
+        assertEquals(records, lines);
+
+        checkQuery("1", 1, 30000);
+        checkQuery("1", 5000, 25000);
+        checkQuery("1", 10001, 10001);
+        checkQuery("2", 45678, 98765);
+        checkQuery("3", 1, 10000);
+    }
+
+    @Test
+    public void testWriteEmpty() throws Exception {
+        BgzfTabixWriter writer = new BgzfTabixWriter(output, HEADER.getBytes(StandardCharsets.UTF_8), TabixFormat.VCF);
+        writer.open();
+        writer.pre();
+        writer.write(BgzfChunk.builder().build());
+        writer.post();
+        writer.close();
+
+        assertTrue(writer.getIndexOutput().toFile().exists());
+        checkQuery("1", 1, 30000);
+    }
+
+    private void checkQuery(String chromosome, int start, int end) throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (String record : records) {
+            String[] split = record.split("\t");
+            int position = Integer.parseInt(split[1]);
+            if (split[0].equals(chromosome) && position >= start && position <= end) {
+                expected.add(record);
+            }
+        }
+        List<String> actual = new ArrayList<>();
+        TabixReader reader = new TabixReader(output.toString(), getIndex().toString());
+        try {
+            TabixReader.Iterator iterator = reader.query(chromosome + ":" + start + "-" + end);
+            String line;
+            while ((line = iterator.next()) != null) {
+                actual.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        assertEquals(chromosome + ":" + start + "-" + end, expected, actual);
+    }
+
+    private Path getIndex() {
+        return output.resolveSibling(output.getFileName() + ".tbi");
+    }
+
+    private BgzfChunk chunk(String chromosome, int start, int end, int numRecords) throws Exception {
+        BgzfChunk.Builder builder = BgzfChunk.builder();
+        int step = Math.max(1, (end - start + 1) / numRecords);
+        for (int position = start; position <= end && numRecords > 0; position += step, numRecords--) {
+            String record = chromosome + '\t' + position + "\t.\tA\tC\t.\tPASS\tAC=1;AN=2;SOME_LONG_ANNOTATION=" + position;
+            records.add(record);
+            builder.add(new SimpleFeature(chromosome, position, position), (record + '\n').getBytes(StandardCharsets.UTF_8));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.search.solr;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.ProgressLogger;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.config.StorageConfiguration;
+import org.opencb.opencga.storage.core.exceptions.VariantSearchException;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.search.VariantSearchModel;
+import org.opencb.opencga.storage.core.variant.search.VariantSearchToVariantConverter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class VariantSolrDataWriterTest {
+
+    private final String collection = "variants";
+    private SolrClient solrClient;
+    private List<VariantSearchModel> documents;
+    private VariantSearchManager variantSearchManager;
+
+    @Before
+    public void setUp() throws Exception {
+        documents = Collections.synchronizedList(new ArrayList<>());
+        solrClient = mock(SolrClient.class);
+        doAnswer(this::addBeans).when(solrClient).addBeans(anyString(), anyCollection());
+
+        variantSearchManager = new VariantSearchManager(null, new StorageConfiguration())
+                .setSolrClient(solrClient)
+                .setInsertBatchSize(100);
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        List<Variant> variants = getVariants(1000);
+
+        ObjectMap options = new ObjectMap(VariantSearchManager.LOAD_THREADS, 3)
+                .append(VariantSearchManager.LOAD_WRITERS, 2);
+        variantSearchManager.load(collection, toIterator(variants), new ProgressLogger("Loaded:"), options);
+
+        assertEquals(variants.stream().map(Variant::toString).collect(Collectors.toSet()),
+                documents.stream().map(VariantSearchModel::getId).collect(Collectors.toSet()));
+        verify(solrClient, times(10)).addBeans(eq(collection), anyCollection());
+        // Only one hard commit at the end
+        verify(solrClient, times(1)).commit(collection);
+    }
+
+    @Test
+    public void testLoadFail() throws Exception {
+        doThrow(new IOException("Mock error")).when(solrClient).addBeans(anyString(), anyCollection());
+
+        ObjectMap options = new ObjectMap(VariantSearchManager.LOAD_MAX_RETRIES, 0);
+        try {
+            variantSearchManager.load(collection, toIterator(getVariants(1000)), null, options);
+            fail("Expected VariantSearchException");
+        } catch (VariantSearchException e) {
+            verify(solrClient, never()).commit(anyString());
+        }
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        doThrow(new IOException("Mock error"))
+                .doAnswer(this::addBeans)
+                .when(solrClient).addBeans(anyString(), anyCollection());
+
+        VariantSolrDataWriter writer = new VariantSolrDataWriter(solrClient, collection, 1, 2, 0);
+        write(writer, getVariants(10));
+
+        assertEquals(1, writer.getNumRetries());
+        assertEquals(10, writer.getNumDocuments());
+        assertEquals(10, documents.size());
+        verify(solrClient, times(1)).commit(collection);
+    }
+
+    @Test
+    public void testRetryFail() throws Exception {
+        doThrow(new IOException("Mock error")).when(solrClient).addBeans(anyString(), anyCollection());
+
+        VariantSolrDataWriter writer = new VariantSolrDataWriter(solrClient, collection, 1, 1, 0);
+        try {
+            write(writer, getVariants(10));
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals(1, writer.getNumRetries());
+            verify(solrClient, times(2)).addBeans(anyString(), anyCollection());
+            verify(solrClient, never()).commit(anyString());
+        }
+    }
+
+    @Test
+    public void testSoftCommit() throws Exception {
+        VariantSolrDataWriter writer = new VariantSolrDataWriter(solrClient, collection, 1, 0, 20);
+        List<Variant> variants = getVariants(100);
+        writer.open();
+        writer.pre();
+        for (int i = 0; i < variants.size(); i += 10) {
+            writer.write(convert(variants.subList(i, i + 10)));
+        }
+        writer.post();
+        writer.close();
+
+        assertEquals(5, writer.getNumSoftCommits());
+        assertEquals(100, documents.size());
+        verify(solrClient, times(5)).commit(collection, false, false, true);
+        verify(solrClient, times(1)).commit(collection);
+    }
+
+    private UpdateResponse addBeans(InvocationOnMock invocation) {
+        documents.addAll(invocation.getArgument(1));
+        UpdateResponse response = mock(UpdateResponse.class);
+        doReturn(0).when(response).getStatus();
+        return response;
+    }
+
+    private void write(VariantSolrDataWriter writer, List<Variant> variants) {
+        writer.open();
+        try {
+            writer.pre();
+            writer.write(convert(variants));
+            writer.post();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private List<VariantSearchModel> convert(List<Variant> variants) {
+        return new VariantSearchToVariantConverter().convertListToStorageType(variants);
+    }
+
+    private List<Variant> getVariants(int numVariants) {
+        List<Variant> variants = new ArrayList<>(numVariants);
+        for (int i = 0; i < numVariants; i++) {
+            variants.add(new Variant("1:" + (1000 + i) + ":A:C"));
+        }
+        return variants;
+    }
+
+    private VariantDBIterator toIterator(List<Variant> variants) {
+        Iterator<Variant> iterator = variants.iterator();
+        return new VariantDBIterator() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Variant next() {
+                return iterator.next();
+            }
+        };
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.stats;
+
+import org.junit.Test;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.metadata.Aggregation;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+import org.opencb.biodata.tools.variant.stats.VariantStatsCalculator;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class VariantStatisticsCalculatorTest {
+
+    private static final String STUDY = "study";
+    private static final String[] GENOTYPES = {"0/0", "0/1", "1/1", "./.", "0|1", "1|0", "1/2", "0", "1", "."};
+
+    @Test
+    public void testCalculateBatchMatchesSampleByCohort() throws Exception {
+        Random random = new Random(1);
+        int numSamples = 200;
+        List<String> sampleNames = new ArrayList<>(numSamples);
+        for (int i = 0; i < numSamples; i++) {
+            sampleNames.add("S" + i);
+        }
+
+        Map<String, Set<String>> cohorts = new LinkedHashMap<>();
+        cohorts.put(StudyEntry.DEFAULT_COHORT, new HashSet<>(sampleNames));
+        for (int c = 0; c < 10; c++) {
+            Set<String> cohort = new HashSet<>();
+            for (String sample : sampleNames) {
+                if (random.nextInt(4) == 0) {
+                    cohort.add(sample);
+                }
+            }
+            cohorts.put("C" + c, cohort);
+        }
+        // Cohort with samples not present in the variants
+        cohorts.put("MISSING", new HashSet<>(Arrays.asList("S1", "S2", "UNKNOWN_SAMPLE")));
+
+        List<Variant> variants = new ArrayList<>();
+        List<Variant> expectedVariants = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            List<List<String>> samplesData = new ArrayList<>(numSamples);
+            for (int s = 0; s < numSamples; s++) {
+                samplesData.add(Collections.singletonList(GENOTYPES[random.nextInt(i % 2 == 0 ? 4 : GENOTYPES.length)]));
+            }
+            Map<String, String> attributes = new HashMap<>();
+            attributes.put(StudyEntry.FILTER, i % 3 == 0 ? "PASS" : "LowQual");
+            attributes.put(StudyEntry.QUAL, i % 5 == 0 ? "." : String.valueOf(i * 1.5));
+            variants.add(buildVariant("1:" + (1000 + i) + ":A:C", sampleNames, samplesData, attributes));
+            expectedVariants.add(buildVariant("1:" + (1000 + i) + ":A:C", sampleNames, samplesData, attributes));
+        }
+
+        VariantStatisticsCalculator calculator = new VariantStatisticsCalculator(true);
+        calculator.setAggregationType(Aggregation.NONE, null);
+        List<VariantStatsWrapper> wrappers = calculator.calculateBatch(variants, STUDY, cohorts);
+
+        assertEquals(variants.size(), wrappers.size());
+        for (int i = 0; i < wrappers.size(); i++) {
+            StudyEntry study = expectedVariants.get(i).getStudy(STUDY);
+            for (Map.Entry<String, Set<String>> cohort : cohorts.entrySet()) {
+                VariantStats expected = new VariantStats(expectedVariants.get(i));
+                VariantStatsCalculator.calculate(study, cohort.getValue(), study.getAttributes(), null, expected);
+                assertEquals(cohort.getKey(), expected, wrappers.get(i).getCohortStats().get(cohort.getKey()));
+            }
+        }
+    }
+
+    private static Variant buildVariant(String variantStr, List<String> sampleNames, List<List<String>> samplesData,
+                                        Map<String, String> attributes) {
+        Variant variant = new Variant(variantStr);
+        StudyEntry studyEntry = new StudyEntry(STUDY);
+        studyEntry.setFormat(Collections.singletonList("GT"));
+        Map<String, Integer> samplesPosition = new LinkedHashMap<>();
+        for (int i = 0; i < sampleNames.size(); i++) {
+            samplesPosition.put(sampleNames.get(i), i);
+        }
+        studyEntry.setSamplesPosition(samplesPosition);
+        studyEntry.setSamplesData(new ArrayList<>(samplesData));
+        studyEntry.setAttributes(new HashMap<>(attributes));
+        variant.addStudyEntry(studyEntry);
+        return variant;
+    }
+}
@@ -40,6 +40,7 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -108,6 +109,36 @@ public abstract class VariantStatisticsManagerTest extends VariantStorageBaseTes
         checkCohorts(dbAdaptor, studyConfiguration);
     }
 
+    @Test
+    public void calculateStatsDirectLoadTest() throws Exception {
+        //Calculate stats without the intermediate file
+        VariantStatisticsManager vsm = variantStorageEngine.newVariantStatisticsManager();
+        Assume.assumeTrue(vsm instanceof DefaultVariantStatisticsManager);
+        DefaultVariantStatisticsManager dvsm = (DefaultVariantStatisticsManager) vsm;
+
+        Integer fileId = studyConfiguration.getFileIds().get(Paths.get(inputUri).getFileName().toString());
+        QueryOptions options = new QueryOptions(VariantStorageEngine.Options.FILE_ID.key(), fileId);
+        options.put(VariantStorageEngine.Options.LOAD_BATCH_SIZE.key(), 100);
+        Iterator<String> iterator = studyConfiguration.getSampleIds().keySet().iterator();
+
+        HashSet<String> cohort1 = new HashSet<>();
+        cohort1.add(iterator.next());
+        cohort1.add(iterator.next());
+
+        Map<String, Set<String>> cohorts = new HashMap<>();
+        Map<String, Integer> cohortIds = new HashMap<>();
+        cohorts.put("cohort1", cohort1);
+        cohortIds.put("cohort1", 10);
+
+        dvsm.calculateAndLoadStats(dbAdaptor, cohorts, cohortIds, studyConfiguration, options);
+
+        studyConfiguration = dbAdaptor.getStudyConfigurationManager().getStudyConfiguration(studyConfiguration.getStudyId(), null).first();
+        assertTrue(studyConfiguration.getCalculatedStats().contains(10));
+        assertFalse(studyConfiguration.getAttributes().containsKey(DefaultVariantStatisticsManager.STATS_CHECKPOINT_COHORTS));
+        assertFalse(studyConfiguration.getAttributes().containsKey(DefaultVariantStatisticsManager.STATS_CHECKPOINT_REGIONS));
+        checkCohorts(dbAdaptor, studyConfiguration);
+    }
+
     @Test
     public void calculateStatsSeparatedCohortsTest() throws Exception {
         //Calculate stats for 2 cohorts separately
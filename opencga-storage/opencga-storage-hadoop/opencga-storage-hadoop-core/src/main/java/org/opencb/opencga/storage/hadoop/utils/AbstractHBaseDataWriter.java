@@ -1,5 +1,6 @@
 package org.opencb.opencga.storage.hadoop.utils;
 
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.BufferedMutator;
 import org.apache.hadoop.hbase.client.Mutation;
@@ -20,6 +21,7 @@ public abstract class AbstractHBaseDataWriter<T, M extends Mutation> implements
     private final HBaseManager hBaseManager;
     private final String tableName;
     private BufferedMutator mutator;
+    private HBaseBulkLoader bulkLoader;
 
     public AbstractHBaseDataWriter(HBaseManager hBaseManager, String tableName) {
         this.hBaseManager = new HBaseManager(hBaseManager);
@@ -28,10 +30,36 @@ public abstract class AbstractHBaseDataWriter<T, M extends Mutation> implements
 
     protected abstract List<M> convert(List<T> batch);
 
+    /**
+     * Mutations buffered by the implementation, to be written before the last flush.
+     *
+     * @return List of pending mutations
+     */
+    protected List<M> getPendingMutations() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Write the mutations into HFiles and bulk load them into the table, instead of sending them to the region servers.
+     * Only {@link org.apache.hadoop.hbase.client.Put} mutations are supported. Must be called before {@link #open()}.
+     *
+     * @param stagingBaseDir Directory to write the HFiles, in the same file system as HBase
+     * @param maxBufferSize  Max size in bytes of the buffered cells before writing and loading the HFiles
+     * @return this
+     */
+    public AbstractHBaseDataWriter<T, M> setBulkLoad(Path stagingBaseDir, long maxBufferSize) {
+        bulkLoader = new HBaseBulkLoader(hBaseManager, tableName, stagingBaseDir, maxBufferSize);
+        return this;
+    }
+
     @Override
     public boolean open() {
         try {
-            mutator = hBaseManager.getConnection().getBufferedMutator(TableName.valueOf(tableName));
+            if (bulkLoader == null) {
+                mutator = hBaseManager.getConnection().getBufferedMutator(TableName.valueOf(tableName));
+            } else {
+                bulkLoader.open();
+            }
         } catch (IOException e) {
             throw new UncheckedIOException("Failed to connect to Hbase", e);
         }
@@ -40,28 +68,28 @@ public abstract class AbstractHBaseDataWriter<T, M extends Mutation> implements
 
     @Override
     public boolean write(List<T> list) {
-        try {
-            mutator.mutate(convert(list));
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
+        mutate(convert(list));
         return true;
     }
 
     @Override
     public boolean write(T elem) {
-        try {
-            mutator.mutate(convert(Collections.singletonList(elem)));
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
+        mutate(convert(Collections.singletonList(elem)));
         return true;
     }
 
     @Override
     public boolean post() {
         try {
-            mutator.flush();
+            List<M> pendingMutations = getPendingMutations();
+            if (!pendingMutations.isEmpty()) {
+                mutate(pendingMutations);
+            }
+            if (bulkLoader == null) {
+                mutator.flush();
+            } else {
+                bulkLoader.flush();
+            }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -71,10 +99,26 @@ public abstract class AbstractHBaseDataWriter<T, M extends Mutation> implements
     @Override
     public boolean close() {
         try {
-            mutator.close();
+            if (bulkLoader == null) {
+                mutator.close();
+            } else {
+                bulkLoader.close();
+            }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
         return true;
     }
+
+    private void mutate(List<M> mutations) {
+        try {
+            if (bulkLoader == null) {
+                mutator.mutate(mutations);
+            } else {
+                bulkLoader.write(mutations);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.utils;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.*;
+import org.apache.hadoop.hbase.client.*;
+import org.apache.hadoop.hbase.io.hfile.CacheConfig;
+import org.apache.hadoop.hbase.io.hfile.HFileContext;
+import org.apache.hadoop.hbase.io.hfile.HFileContextBuilder;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
+import org.apache.hadoop.hbase.regionserver.StoreFile;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Writes mutations into HFiles, and moves them into the table with {@link LoadIncrementalHFiles}.
+ *
+ * Avoids the WAL writes and memstore flushes in the region servers. The cells are sorted in memory, and written
+ * into one HFile per region and column family, the same as {@link org.apache.hadoop.hbase.mapreduce.HFileOutputFormat2}.
+ * Every time the buffer is full, the HFiles are written and loaded. Cells without timestamp get the time when the
+ * HFiles are written, increasing on each flush, so the last written value is always the visible one.
+ *
+ * Only {@link Put} mutations are supported.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class HBaseBulkLoader {
+
+    public static final long DEFAULT_MAX_BUFFER_SIZE = 32 * 1024 * 1024;
+
+    private final Logger logger = LoggerFactory.getLogger(HBaseBulkLoader.class);
+    private final HBaseManager hBaseManager;
+    private final String tableName;
+    private final Path stagingDir;
+    private final long maxBufferSize;
+
+    private final TreeSet<KeyValue> buffer = new TreeSet<>(KeyValue.COMPARATOR);
+    private long bufferSize = 0;
+    private long timestamp = 0;
+    private FileSystem fs;
+    private Configuration writerConf;
+    private HTableDescriptor tableDescriptor;
+
+    /**
+     * @param hBaseManager  HBaseManager
+     * @param tableName     Table to load
+     * @param stagingBaseDir Directory to write the HFiles, in the same file system as HBase. A new subdirectory will be created
+     * @param maxBufferSize Max heap size in bytes of the buffered cells before writing and loading the HFiles
+     */
+    public HBaseBulkLoader(HBaseManager hBaseManager, String tableName, Path stagingBaseDir, long maxBufferSize) {
+        this.hBaseManager = hBaseManager;
+        this.tableName = tableName;
+        this.stagingDir = new Path(stagingBaseDir, tableName.replace(':', '_') + '_' + UUID.randomUUID());
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    public void open() throws IOException {
+        Configuration conf = hBaseManager.getConf();
+        fs = stagingDir.getFileSystem(conf);
+        // Do not cache the blocks of the new HFiles
+        writerConf = new Configuration(conf);
+        writerConf.setFloat(HConstants.HFILE_BLOCK_CACHE_SIZE_KEY, 0.0f);
+        try (Table table = hBaseManager.getConnection().getTable(TableName.valueOf(tableName))) {
+            tableDescriptor = table.getTableDescriptor();
+        }
+    }
+
+    public void write(List<? extends Mutation> mutations) throws IOException {
+        for (Mutation mutation : mutations) {
+            if (!(mutation instanceof Put)) {
+                throw new IllegalArgumentException("Unable to bulk load mutation of type " + mutation.getClass().getSimpleName());
+            }
+            for (List<Cell> cells : mutation.getFamilyCellMap().values()) {
+                for (Cell cell : cells) {
+                    KeyValue kv = KeyValueUtil.ensureKeyValue(cell);
+                    // Keep the last value
+                    if (!buffer.add(kv)) {
+                        buffer.remove(kv);
+                        buffer.add(kv);
+                    }
+                    // Count the object overhead as well. Small cells may take more heap than their content
+                    bufferSize += kv.heapSize();
+                }
+            }
+        }
+        if (bufferSize >= maxBufferSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Write the buffered cells into HFiles, and load them into the table.
+     *
+     * @throws IOException on error writing or loading the HFiles
+     */
+    public void flush() throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int numFiles = writeHFiles();
+        buffer.clear();
+        bufferSize = 0;
+
+        try (Table table = hBaseManager.getConnection().getTable(TableName.valueOf(tableName));
+             RegionLocator regionLocator = hBaseManager.getConnection().getRegionLocator(TableName.valueOf(tableName));
+             Admin admin = hBaseManager.getConnection().getAdmin()) {
+            new LoadIncrementalHFiles(writerConf).doBulkLoad(stagingDir, admin, table, regionLocator);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Error loading HFiles from " + stagingDir + " into " + tableName, e);
+        } finally {
+            fs.delete(stagingDir, true);
+        }
+        logger.info("Bulk loaded {} HFiles into {} in {}s", numFiles, tableName, (System.currentTimeMillis() - start) / 1000.0);
+    }
+
+    public void close() throws IOException {
+        if (fs != null) {
+            fs.delete(stagingDir, true);
+        }
+    }
+
+    /**
+     * Write the buffer into one HFile per region and column family.
+     *
+     * @return Number of written files
+     * @throws IOException on error writing the HFiles
+     */
+    private int writeHFiles() throws IOException {
+        byte[][] startKeys;
+        try (RegionLocator regionLocator = hBaseManager.getConnection().getRegionLocator(TableName.valueOf(tableName))) {
+            startKeys = regionLocator.getStartKeys();
+        }
+        // Cells without timestamp get the time when the HFiles are written
+        timestamp = Math.max(System.currentTimeMillis(), timestamp + 1);
+        byte[] timestampBytes = Bytes.toBytes(timestamp);
+        int numFiles = 0;
+        Map<String, StoreFile.Writer> writers = new HashMap<>();
+        byte[] regionEnd = null;
+        boolean lastRegion = false;
+        try {
+            for (KeyValue kv : buffer) {
+                if (writers.isEmpty() || !lastRegion && Bytes.compareTo(kv.getRowArray(), kv.getRowOffset(), kv.getRowLength(),
+                        regionEnd, 0, regionEnd.length) >= 0) {
+                    // New region
+                    closeWriters(writers);
+                    int idx = Arrays.binarySearch(startKeys, CellUtil.cloneRow(kv), Bytes.BYTES_COMPARATOR);
+                    if (idx < 0) {
+                        // Insertion point - 1
+                        idx = -idx - 2;
+                    }
+                    lastRegion = idx + 1 >= startKeys.length;
+                    regionEnd = lastRegion ? null : startKeys[idx + 1];
+                }
+                String family = Bytes.toString(CellUtil.cloneFamily(kv));
+                StoreFile.Writer writer = writers.get(family);
+                if (writer == null) {
+                    writer = newWriter(family);
+                    writers.put(family, writer);
+                    numFiles++;
+                }
+                kv.updateLatestStamp(timestampBytes);
+                writer.append(kv);
+            }
+        } finally {
+            closeWriters(writers);
+        }
+        return numFiles;
+    }
+
+    private StoreFile.Writer newWriter(String family) throws IOException {
+        HColumnDescriptor familyDescriptor = tableDescriptor.getFamily(Bytes.toBytes(family));
+        HFileContext context = new HFileContextBuilder()
+                .withCompression(familyDescriptor.getCompressionType())
+                .withBlockSize(familyDescriptor.getBlocksize())
+                .withDataBlockEncoding(familyDescriptor.getDataBlockEncoding())
+                .build();
+        return new StoreFile.WriterBuilder(writerConf, new CacheConfig(writerConf), fs)
+                .withOutputDir(new Path(stagingDir, family))
+                .withBloomType(familyDescriptor.getBloomFilterType())
+                .withComparator(KeyValue.COMPARATOR)
+                .withFileContext(context)
+                .build();
+    }
+
+    private void closeWriters(Map<String, StoreFile.Writer> writers) throws IOException {
+        for (StoreFile.Writer writer : writers.values()) {
+            // Same metadata as HFileOutputFormat2
+            writer.appendFileInfo(StoreFile.BULKLOAD_TIME_KEY, Bytes.toBytes(System.currentTimeMillis()));
+            writer.appendFileInfo(StoreFile.BULKLOAD_TASK_KEY, Bytes.toBytes(stagingDir.getName()));
+            writer.appendFileInfo(StoreFile.MAJOR_COMPACTION_KEY, Bytes.toBytes(true));
+            writer.appendFileInfo(StoreFile.EXCLUDE_FROM_MINOR_COMPACTION_KEY, Bytes.toBytes(false));
+            writer.appendTrackedTimestampsToMetadata();
+            writer.close();
+        }
+        writers.clear();
+    }
+}
@@ -20,6 +20,7 @@ import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.apache.hadoop.hbase.client.*;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.opencb.opencga.storage.core.utils.LocalLeaseLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,6 +47,9 @@ import java.util.concurrent.TimeoutException;
  * Unlock:
  *      HBase.put(row, column, "");
  *
+ * Threads from the same JVM are queued in a {@link LocalLeaseLock} before trying to get the lock from HBase, so they
+ * are woken up in order as soon as the lock is released. The lock in HBase is polled with an exponential backoff.
+ *
  * Created on 19/05/16.
  *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
@@ -55,6 +59,8 @@ public class HBaseLock {
     private static final String LOCK_SEPARATOR = "_";
     private static final String LOCK_EXPIRING_DATE_SEPARATOR = ":";
     private static final String CURRENT_LOCK = "CURRENT-";
+    private static final long MIN_RETRY_SLEEP = 5;
+    private static final long MAX_RETRY_SLEEP = 100;
 
     protected final HBaseManager hbaseManager;
     protected final String tableName;
@@ -113,43 +119,111 @@ public class HBaseLock {
         StopWatch stopWatch = new StopWatch();
         stopWatch.start();
 
-        lockValue = readLockValue(row, column);
-        do {
-            // If the lock is taken, wait
-            while (isLockTaken(lockValue)) {
-                Thread.sleep(100);
-                lockValue = readLockValue(row, column);
+        // Wait in the queue of threads from this JVM. Only the first one will contend for the lock in HBase.
+        LocalLeaseLock localLock = getLocalLock(row, column);
+        localLock.lock(lockDuration, timeout);
+        boolean locked = false;
+        try {
+            long retrySleep = MIN_RETRY_SLEEP;
+            lockValue = readLockValue(row, column);
+            do {
+                // If the lock is taken, wait
+                while (isLockTaken(lockValue)) {
+                    localLock.remoteRetry();
+                    localLock.renew(LocalLeaseLock.NO_TOKEN, LocalLeaseLock.NO_TOKEN, lockDuration);
+                    // Exponential backoff. Do not sleep beyond the expiration of the current lock, or the timeout
+                    long sleep = Math.min(retrySleep, getCurrentLockExpiration(lockValue) - System.currentTimeMillis() + 1);
+                    sleep = Math.min(sleep, timeout - stopWatch.getTime() + 1);
+                    Thread.sleep(Math.max(1, sleep));
+                    retrySleep = Math.min(retrySleep * 2, MAX_RETRY_SLEEP);
+                    lockValue = readLockValue(row, column);
+                    //Check if the lock is still valid
+                    if (stopWatch.getTime() > timeout) {
+                        throw new TimeoutException("Unable to get the lock");
+                    }
+                }
                 //Check if the lock is still valid
                 if (stopWatch.getTime() > timeout) {
                     throw new TimeoutException("Unable to get the lock");
                 }
-            }
-            //Check if the lock is still valid
-            if (stopWatch.getTime() > timeout) {
-                throw new TimeoutException("Unable to get the lock");
-            }
 
-            // Append token to the lock cell
-            appendToken(token, lockDuration, row, column);
+                // Append token to the lock cell
+                appendToken(token, lockDuration, row, column);
 
-            lockValue = readLockValue(row, column);
+                lockValue = readLockValue(row, column);
 
-            // Get the first non expired lock
-            for (String lock : lockValue) {
-                if (!isLockExpired(lock)) {
-                    readToken = lock.split(LOCK_EXPIRING_DATE_SEPARATOR)[0];
-                    break;
+                // Get the first non expired lock
+                for (String lock : lockValue) {
+                    if (!isLockExpired(lock)) {
+                        readToken = lock.split(LOCK_EXPIRING_DATE_SEPARATOR)[0];
+                        break;
+                    }
                 }
+
+                // You win the lock if the first available lock is yours.
+            } while (!readToken.equals(token));
+
+            logger.debug("Won the lock with token " + token + " (" + token.hashCode() + ") from lock: " + Arrays.toString(lockValue));
+            // Overwrite the lock with the winner current lock. Remove previous expired locks
+            putCurrentLock(token, lockDuration, row, column);
+            localLock.setToken(token.hashCode(), lockDuration);
+            locked = true;
+        } finally {
+            if (!locked) {
+                localLock.release();
             }
+        }
 
-            // You win the lock if the first available lock is yours.
-        } while (!readToken.equals(token));
+        return token.hashCode();
+    }
 
-        logger.debug("Won the lock with token " + token + " (" + token.hashCode() + ") from lock: " + Arrays.toString(lockValue));
-        // Overwrite the lock with the winner current lock. Remove previous expired locks
-        putCurrentLock(token, lockDuration, row, column);
+    /**
+     * Extend the duration of the lock.
+     *
+     * @param column        Column to find the lock cell
+     * @param lockToken     Lock token
+     * @param lockDuration  New duration in milliseconds of the token, from now.
+     * @return              Lock token
+     * @throws IOException                if there is an error writing or reading from HBase.
+     * @throws IllegalLockStatusException if the lockToken does not match with the current lockToken
+     */
+    public long refresh(byte[] column, long lockToken, long lockDuration) throws IOException, IllegalLockStatusException {
+        return refresh(defaultRow, column, lockToken, lockDuration);
+    }
 
-        return token.hashCode();
+    /**
+     * Extend the duration of the lock.
+     *
+     * @param row           Row to find the lock cell
+     * @param column        Column to find the lock cell
+     * @param lockToken     Lock token
+     * @param lockDuration  New duration in milliseconds of the token, from now.
+     * @return              Lock token
+     * @throws IOException                if there is an error writing or reading from HBase.
+     * @throws IllegalLockStatusException if the lockToken does not match with the current lockToken
+     */
+    public long refresh(byte[] row, byte[] column, long lockToken, long lockDuration) throws IOException, IllegalLockStatusException {
+        // Minimum lock duration of 100ms
+        long duration = Math.max(lockDuration, 100);
+        byte[] rawLockValue = readLockRawValue(row, column);
+        String[] lockValue = splitLockValue(rawLockValue);
+        String currentLock = getCurrentLock(lockValue);
+
+        if (currentLock.hashCode() != lockToken || !isLockTaken(lockValue)) {
+            throw new IllegalLockStatusException(lockToken, currentLock, lockValue);
+        }
+
+        // Only if the lock was not modified since it was read
+        boolean refreshed = HBaseManager.act(getConnection(), tableName, table -> {
+            return table.checkAndPut(row, getColumnFamily(), column, rawLockValue,
+                    buildCurrentLockPut(currentLock, duration, row, column));
+        });
+        if (!refreshed) {
+            throw new IllegalLockStatusException(lockToken, currentLock, lockValue);
+        }
+        logger.debug("Refresh lock with token " + lockToken);
+        getLocalLock(row, column).renew(lockToken, lockToken, duration);
+        return lockToken;
     }
 
     /**
@@ -174,23 +248,51 @@ public class HBaseLock {
      * @throws IllegalLockStatusException if the lockToken does not match with the current lockToken
      */
     public void unlock(byte[] row, byte[] column, long lockToken) throws IOException, IllegalLockStatusException {
-        String[] lockValue;
-        lockValue = readLockValue(row, column);
+        try {
+            String[] lockValue;
+            lockValue = readLockValue(row, column);
+
+            String currentLock = getCurrentLock(lockValue);
 
-        String currentLock = "";
+            if (currentLock.hashCode() != lockToken) {
+                throw new IllegalLockStatusException(lockToken, currentLock, lockValue);
+            }
+
+            logger.debug("Unlock lock with token " + lockToken);
+            clearLock(row, column);
+        } finally {
+            // Notify the next thread waiting for the lock in this JVM
+            getLocalLock(row, column).unlock(lockToken);
+        }
+    }
+
+    private String getCurrentLock(String[] lockValue) {
         for (String lock : lockValue) {
             if (lock.startsWith(CURRENT_LOCK)) {
-                currentLock = lock.replace(CURRENT_LOCK, "").split(LOCK_EXPIRING_DATE_SEPARATOR)[0];
-                break;
+                return lock.replace(CURRENT_LOCK, "").split(LOCK_EXPIRING_DATE_SEPARATOR)[0];
             }
         }
+        return "";
+    }
 
-        if (currentLock.hashCode() != lockToken) {
-            throw new IllegalLockStatusException(lockToken, currentLock, lockValue);
+    private long getCurrentLockExpiration(String[] lockValue) {
+        for (String lock : lockValue) {
+            if (lock.startsWith(CURRENT_LOCK)) {
+                return Long.parseLong(lock.split(LOCK_EXPIRING_DATE_SEPARATOR)[1]);
+            }
         }
+        return 0;
+    }
 
-        logger.debug("Unlock lock with token " + lockToken);
-        clearLock(row, column);
+    /**
+     * Get the queue of threads from this JVM waiting for this lock.
+     *
+     * @param row       Row to find the lock cell
+     * @param column    Column to find the lock cell
+     * @return          Local lock
+     */
+    public LocalLeaseLock getLocalLock(byte[] row, byte[] column) {
+        return LocalLeaseLock.get("hbase:" + tableName + ':' + Bytes.toStringBinary(row) + ':' + Bytes.toStringBinary(column));
     }
 
     private void appendToken(String token, long lockDuration, byte[] row, byte[] qualifier) throws IOException {
@@ -210,20 +312,24 @@ public class HBaseLock {
 
     private void putCurrentLock(String token, long lockDuration, byte[] row, byte[] qualifier) throws IOException {
         HBaseManager.act(getConnection(), tableName, table -> {
-            Put p = new Put(row);
-            byte[] columnFamily = getColumnFamily();
-
-            p.addColumn(columnFamily, qualifier,
-                    Bytes.toBytes(
-                            CURRENT_LOCK
-                            + token
-                            + LOCK_EXPIRING_DATE_SEPARATOR
-                            + (System.currentTimeMillis() + lockDuration)
-                            + LOCK_SEPARATOR));
-            table.put(p);
+            table.put(buildCurrentLockPut(token, lockDuration, row, qualifier));
         });
     }
 
+    private Put buildCurrentLockPut(String token, long lockDuration, byte[] row, byte[] qualifier) {
+        Put p = new Put(row);
+        byte[] columnFamily = getColumnFamily();
+
+        p.addColumn(columnFamily, qualifier,
+                Bytes.toBytes(
+                        CURRENT_LOCK
+                        + token
+                        + LOCK_EXPIRING_DATE_SEPARATOR
+                        + (System.currentTimeMillis() + lockDuration)
+                        + LOCK_SEPARATOR));
+        return p;
+    }
+
     private void clearLock(byte[] row, byte[] qualifier) throws IOException {
         HBaseManager.act(getConnection(), tableName, table -> {
             Put p = new Put(row);
@@ -258,18 +364,24 @@ public class HBaseLock {
     }
 
     private String[] readLockValue(byte[] row, byte[] qualifier) throws IOException {
-        String lockValue;
-        lockValue = HBaseManager.act(getConnection(), tableName, table -> {
+        return splitLockValue(readLockRawValue(row, qualifier));
+    }
+
+    private byte[] readLockRawValue(byte[] row, byte[] qualifier) throws IOException {
+        return HBaseManager.act(getConnection(), tableName, table -> {
             byte[] columnFamily = getColumnFamily();
 
             Result result = table.get(new Get(row).addColumn(columnFamily, qualifier));
             if (result.isEmpty()) {
                 return null;
             } else {
-                return Bytes.toString(result.getValue(columnFamily, qualifier));
+                return result.getValue(columnFamily, qualifier);
             }
         });
+    }
 
+    private String[] splitLockValue(byte[] rawLockValue) {
+        String lockValue = rawLockValue == null ? null : Bytes.toString(rawLockValue);
         if (lockValue == null || lockValue.isEmpty()) {
             return new String[0];
         } else {
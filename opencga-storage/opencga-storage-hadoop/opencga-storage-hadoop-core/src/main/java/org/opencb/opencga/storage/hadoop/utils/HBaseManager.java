@@ -22,6 +22,7 @@ import org.apache.hadoop.hbase.*;
 import org.apache.hadoop.hbase.client.Admin;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.ConnectionFactory;
+import org.apache.hadoop.hbase.client.RegionLocator;
 import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -30,7 +31,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -397,6 +400,67 @@ public class HBaseManager implements AutoCloseable {
         });
     }
 
+    /**
+     * Split an existing table at the given points, as if they were pre-splits of the table.
+     * Split points that are already the start of a region are skipped.
+     *
+     * Each split is requested once the previous one finishes. Regions with reference files (i.e. daughters of a split region
+     * not compacted yet) can not be split, so the splits are requested in descending order. If all the rows of the table are
+     * after the split points, each split is applied to the first region, which remains empty.
+     *
+     * @param con           HBase connection object
+     * @param tableName     Table name
+     * @param splitPoints   Split points
+     * @param timeout       Max time to wait for each split, in milliseconds
+     * @return              Number of new regions
+     * @throws IOException  If any IO problem occurs, or if a split does not finish in time
+     */
+    public static int splitTableIfNeeded(Connection con, String tableName, List<byte[]> splitPoints, long timeout)
+            throws IOException {
+        TableName tName = TableName.valueOf(tableName);
+        List<byte[]> sortedSplitPoints = new ArrayList<>(splitPoints);
+        sortedSplitPoints.sort(Bytes.BYTES_COMPARATOR.reversed());
+        return act(con, tableName, (table, admin) -> {
+            int newRegions = 0;
+            try (RegionLocator regionLocator = con.getRegionLocator(tName)) {
+                for (byte[] splitPoint : sortedSplitPoints) {
+                    if (isRegionStartKey(regionLocator, splitPoint)) {
+                        continue;
+                    }
+                    long deadline = System.currentTimeMillis() + timeout;
+                    boolean requested = false;
+                    while (!isRegionStartKey(regionLocator, splitPoint)) {
+                        if (System.currentTimeMillis() > deadline) {
+                            throw new IOException("Timeout splitting table " + tableName + " at " + Bytes.toStringBinary(splitPoint));
+                        }
+                        if (!requested) {
+                            try {
+                                admin.split(tName, splitPoint);
+                                requested = true;
+                            } catch (NotServingRegionException e) {
+                                // The region from the previous split is not online yet
+                                LOGGER.debug("Region not online yet. Retry split", e);
+                            }
+                        }
+                        try {
+                            Thread.sleep(100);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("Interrupted splitting table " + tableName);
+                        }
+                    }
+                    newRegions++;
+                }
+            }
+            LOGGER.info("Split HBASE table {} in {} new regions", tableName, newRegions);
+            return newRegions;
+        });
+    }
+
+    private static boolean isRegionStartKey(RegionLocator regionLocator, byte[] row) throws IOException {
+        return Bytes.equals(regionLocator.getRegionLocation(row, true).getRegionInfo().getStartKey(), row);
+    }
+
     public static Configuration addHBaseSettings(Configuration conf, String credentialsStr) throws URISyntaxException {
         HBaseCredentials credentials = new HBaseCredentials(credentialsStr);
         return addHBaseSettings(conf, credentials);
@@ -103,6 +103,8 @@ public abstract class AbstractAnalysisTableDriver extends Configured implements
         }
 
         initVariantTableHelper(studyId, archiveTable, variantTable);
+        // Each study may use a different archive row key version
+        ArchiveTableHelper.setRowKeyVersion(conf, ArchiveTableHelper.getRowKeyVersion(readStudyConfiguration()));
 
         // Other validations
         parseAndValidateParameters();
@@ -16,8 +16,10 @@
 
 package org.opencb.opencga.storage.hadoop.variant;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
 import org.opencb.biodata.formats.variant.io.VariantReader;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.VariantFileMetadata;
@@ -34,10 +36,15 @@ import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.io.VariantReaderUtils;
 import org.opencb.opencga.storage.hadoop.auth.HBaseCredentials;
+import org.opencb.opencga.storage.hadoop.exceptions.StorageHadoopException;
+import org.opencb.opencga.storage.hadoop.utils.AbstractHBaseDataWriter;
+import org.opencb.opencga.storage.hadoop.utils.HBaseBulkLoader;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.archive.VariantHBaseArchiveDataWriter;
 import org.opencb.opencga.storage.hadoop.variant.index.VariantHadoopDBWriter;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBLoader;
 import org.opencb.opencga.storage.hadoop.variant.transform.VariantSliceReader;
 import org.opencb.opencga.storage.hadoop.variant.transform.VariantToVcfSliceConverterTask;
 import org.slf4j.Logger;
@@ -58,6 +65,10 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 
 import static org.opencb.biodata.models.variant.protobuf.VcfSliceProtos.VcfSlice;
+import static org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine.HADOOP_LOAD_BULK;
+import static org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine.HADOOP_LOAD_BULK_BUFFER_SIZE;
+import static org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine.HADOOP_LOAD_BULK_DEFAULT;
+import static org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine.INTERMEDIATE_HDFS_DIRECTORY;
 import static org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine.STORAGE_ENGINE_ID;
 
 /**
@@ -69,6 +80,8 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
 
     private final Logger logger = LoggerFactory.getLogger(HadoopLocalLoadVariantStoragePipeline.class);
     private static final String OPERATION_NAME = "Load";
+    // Tables loaded with a HBaseBulkLoader, sharing the HADOOP_LOAD_BULK_BUFFER_SIZE: archive, variants and sample index
+    private static final int BULK_LOADED_TABLES = 3;
 
     /**
      * @param configuration      {@link StorageConfiguration}
@@ -85,6 +98,20 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
         super(configuration, dbAdaptor, variantReaderUtils, options, archiveCredentials, null, conf);
     }
 
+    @Override
+    public URI preLoad(URI input, URI output) throws StorageEngineException {
+        super.preLoad(input, output);
+
+        String sampleIndexTable = dbAdaptor.getTableNameGenerator().getSampleIndexTableName(getStudyId());
+        try {
+            SampleIndexDBAdaptor.createTableIfNeeded(dbAdaptor.getGenomeHelper(), sampleIndexTable, dbAdaptor.getConnection());
+        } catch (IOException e) {
+            throw new StorageHadoopException("Issue creating table " + sampleIndexTable, e);
+        }
+
+        return input;
+    }
+
     @Override
     protected void securePreLoad(StudyConfiguration studyConfiguration, VariantFileMetadata fileMetadata) throws StorageEngineException {
         super.securePreLoad(studyConfiguration, fileMetadata);
@@ -135,7 +162,7 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
 
             long start = System.currentTimeMillis();
             if (VariantReaderUtils.isProto(fileName)) {
-                ArchiveTableHelper helper = new ArchiveTableHelper(dbAdaptor.getGenomeHelper(), studyId, fileMetadata);
+                ArchiveTableHelper helper = new ArchiveTableHelper(conf, studyId, fileMetadata);
 
                 ProgressLogger progressLogger = new ProgressLogger("Loaded slices:");
                 if (fileMetadata.getStats() != null) {
@@ -144,7 +171,7 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
 
                 loadFromProto(input, table, helper, progressLogger);
             } else {
-                ArchiveTableHelper helper = new ArchiveTableHelper(dbAdaptor.getGenomeHelper(), studyId, fileMetadata);
+                ArchiveTableHelper helper = new ArchiveTableHelper(conf, studyId, fileMetadata);
 
                 ProgressLogger progressLogger;
                 if (fileMetadata.getStats() != null) {
@@ -169,7 +196,8 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
             throws StorageEngineException {
         long counter = 0;
 
-        VariantHBaseArchiveDataWriter archiveWriter = new VariantHBaseArchiveDataWriter(helper, table, dbAdaptor.getHBaseManager());
+        VariantHBaseArchiveDataWriter archiveWriter = configureBulkLoad(
+                new VariantHBaseArchiveDataWriter(helper, table, dbAdaptor.getHBaseManager()));
         VcfSliceToVariantListConverter converter = new VcfSliceToVariantListConverter(helper.getStudyMetadata());
         VariantHadoopDBWriter variantsWriter = newVariantHadoopDBWriter();
 
@@ -220,7 +248,8 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
                 .setBatchSize(1)
                 .setReadQueuePutTimeout(1000).build();
 
-        VariantHBaseArchiveDataWriter archiveWriter = new VariantHBaseArchiveDataWriter(helper, table, dbAdaptor.getHBaseManager());
+        VariantHBaseArchiveDataWriter archiveWriter = configureBulkLoad(
+                new VariantHBaseArchiveDataWriter(helper, table, dbAdaptor.getHBaseManager()));
         VariantHadoopDBWriter hadoopDBWriter = newVariantHadoopDBWriter();
         GroupedVariantsTask task = new GroupedVariantsTask(archiveWriter, hadoopDBWriter, null);
 
@@ -237,15 +266,44 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
     public void securePostLoad(List<Integer> fileIds, StudyConfiguration studyConfiguration) throws StorageEngineException {
         super.securePostLoad(fileIds, studyConfiguration);
         StudyConfigurationManager.setStatus(studyConfiguration, BatchFileOperation.Status.READY, OPERATION_NAME, fileIds);
+        // The sample index is written while loading the variants
+        SampleIndexDBAdaptor.addIndexedFiles(studyConfiguration, fileIds);
     }
 
     private VariantHadoopDBWriter newVariantHadoopDBWriter() throws StorageEngineException {
         StudyConfiguration studyConfiguration = getStudyConfiguration();
-        return new VariantHadoopDBWriter(
+        SampleIndexDBLoader sampleIndexDBLoader = configureBulkLoad(new SampleIndexDBLoader(
+                dbAdaptor.getGenomeHelper(),
+                dbAdaptor.getHBaseManager(),
+                dbAdaptor.getTableNameGenerator().getSampleIndexTableName(getStudyId()),
+                studyConfiguration,
+                getFileId()));
+        return configureBulkLoad(new VariantHadoopDBWriter(
                 dbAdaptor.getGenomeHelper(),
                 dbAdaptor.getCredentials().getTable(),
                 studyConfiguration,
-                dbAdaptor.getHBaseManager());
+                dbAdaptor.getHBaseManager(),
+                sampleIndexDBLoader));
+    }
+
+    private <W extends AbstractHBaseDataWriter<?, ?>> W configureBulkLoad(W writer) throws StorageEngineException {
+        if (options.getBoolean(HADOOP_LOAD_BULK, HADOOP_LOAD_BULK_DEFAULT)) {
+            long bufferSize = options.getLong(HADOOP_LOAD_BULK_BUFFER_SIZE, HBaseBulkLoader.DEFAULT_MAX_BUFFER_SIZE * BULK_LOADED_TABLES);
+            writer.setBulkLoad(getBulkLoadStagingDir(), bufferSize / BULK_LOADED_TABLES);
+        }
+        return writer;
+    }
+
+    private org.apache.hadoop.fs.Path getBulkLoadStagingDir() throws StorageEngineException {
+        String intermediateDirectory = options.getString(INTERMEDIATE_HDFS_DIRECTORY);
+        if (StringUtils.isEmpty(intermediateDirectory)) {
+            try {
+                intermediateDirectory = FileSystem.get(conf).getHomeDirectory().toString();
+            } catch (IOException e) {
+                throw new StorageHadoopException("Unable to get the home directory", e);
+            }
+        }
+        return new org.apache.hadoop.fs.Path(intermediateDirectory, "bulkload");
     }
 
     protected static class GroupedVariantsTask implements Task<ImmutablePair<Long, List<Variant>>, VcfSlice> {
@@ -43,6 +43,7 @@ import org.opencb.opencga.storage.core.exceptions.VariantSearchException;
 import org.opencb.opencga.storage.core.metadata.BatchFileOperation;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
+import org.opencb.opencga.storage.core.metadata.VariantMetadataFactory;
 import org.opencb.opencga.storage.core.utils.CellBaseUtils;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.VariantStoragePipeline;
@@ -50,6 +51,7 @@ import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotationManager;
 import org.opencb.opencga.storage.core.variant.annotation.annotators.VariantAnnotator;
+import org.opencb.opencga.storage.core.variant.io.VariantExporter;
 import org.opencb.opencga.storage.core.variant.io.VariantReaderUtils;
 import org.opencb.opencga.storage.core.variant.stats.VariantStatisticsManager;
 import org.opencb.opencga.storage.hadoop.auth.HBaseCredentials;
@@ -57,12 +59,16 @@ import org.opencb.opencga.storage.hadoop.utils.DeleteHBaseColumnDriver;
 import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.annotation.HadoopDefaultVariantAnnotationManager;
+import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveRowKeyFactory;
+import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveRowKeyMigrationDriver;
 import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.executors.ExternalMRExecutor;
 import org.opencb.opencga.storage.hadoop.variant.executors.MRExecutor;
+import org.opencb.opencga.storage.hadoop.variant.exporters.HadoopVariantExporter;
 import org.opencb.opencga.storage.hadoop.variant.gaps.FillGapsDriver;
 import org.opencb.opencga.storage.hadoop.variant.gaps.FillGapsFromArchiveMapper;
 import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixHelper;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.metadata.HBaseStudyConfigurationDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.stats.HadoopDefaultVariantStatisticsManager;
 import org.opencb.opencga.storage.hadoop.variant.stats.HadoopMRVariantStatisticsManager;
@@ -121,6 +127,11 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
 
     public static final String HADOOP_LOAD_ARCHIVE_BATCH_SIZE = "hadoop.load.archive.batch.size";
     public static final String HADOOP_LOAD_VARIANT_BATCH_SIZE = "hadoop.load.variant.batch.size";
+    // Load the archive and variants tables writing HFiles, instead of sending the mutations to the region servers
+    public static final String HADOOP_LOAD_BULK = "hadoop.load.bulk";
+    public static final boolean HADOOP_LOAD_BULK_DEFAULT = false;
+    // Max heap size in bytes of the cells buffered before writing and loading the HFiles. Shared by all the bulk loaded tables
+    public static final String HADOOP_LOAD_BULK_BUFFER_SIZE = "hadoop.load.bulk.buffer.size";
     @Deprecated public static final String HADOOP_LOAD_DIRECT = "hadoop.load.direct";
     @Deprecated public static final boolean HADOOP_LOAD_DIRECT_DEFAULT = true;
 
@@ -156,11 +167,20 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
     public static final String ARCHIVE_ROW_KEY_SEPARATOR = "opencga.archive.row_key_sep";
     public static final String ARCHIVE_FILE_BATCH_SIZE = "opencga.archive.file_batch_size";
     public static final int DEFAULT_ARCHIVE_FILE_BATCH_SIZE = 1000;
+    // Row key layout of the archive table for new studies. Stored in the StudyConfiguration attributes.
+    public static final String ARCHIVE_ROW_KEY_VERSION = "opencga.archive.row_key.version";
+    public static final int DEFAULT_ARCHIVE_ROW_KEY_VERSION = ArchiveRowKeyFactory.BINARY_ROW_KEY_VERSION;
+
+    // Sample index table configuration
+    public static final String SAMPLE_INDEX_TABLE_COMPRESSION = "opencga.sample.index.table.compression";
 
     public static final String EXTERNAL_MR_EXECUTOR = "opencga.external.mr.executor";
     public static final String STATS_LOCAL = "stats.local";
 
     public static final String DBADAPTOR_PHOENIX_FETCH_SIZE = "dbadaptor.phoenix.fetch_size";
+    // Max number of deltas stored for each StudyConfiguration before writing it again entirely. Zero to always write it entirely.
+    public static final String STUDY_CONFIGURATION_MAX_DELTAS = "opencga.storage.hadoop.study_configuration.max_deltas";
+    public static final int DEFAULT_STUDY_CONFIGURATION_MAX_DELTAS = 20;
     public static final String MISSING_GENOTYPES_UPDATED = "missing_genotypes_updated";
     public static final int FILL_GAPS_MAX_SAMPLES = 100;
 
@@ -321,6 +341,11 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
         return newStoragePipeline(connected, null);
     }
 
+    @Override
+    protected VariantExporter newVariantExporter(VariantMetadataFactory metadataFactory) throws StorageEngineException {
+        return new HadoopVariantExporter(this, metadataFactory);
+    }
+
     @Override
     protected VariantAnnotationManager newVariantAnnotationManager(VariantAnnotator annotator) throws StorageEngineException {
         return new HadoopDefaultVariantAnnotationManager(annotator, getDBAdaptor());
@@ -411,6 +436,8 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
                     BatchFileOperation.Type.OTHER,
                     // Allow concurrent operations if fillGaps.
                     (v) -> fillGaps || v.getOperationName().equals(FILL_GAPS_OPERATION_NAME));
+            // The new genotypes are not added to the sample index
+            SampleIndexDBAdaptor.removeIndexedFiles(sc, fileIdsList);
 
             options.put(AbstractAnalysisTableDriver.TIMESTAMP, operation.getTimestamp());
             return sc;
@@ -471,6 +498,56 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
 
     }
 
+    /**
+     * Rewrite the archive table of a study with the {@link ArchiveRowKeyFactory#BINARY_ROW_KEY_VERSION}.
+     * The study should not be modified until the migration finishes.
+     *
+     * The rows are migrated in place. The archive table was pre-split with legacy row keys, so it is split first at the
+     * binary row key pre-split points (see {@link ArchiveTableHelper#generateArchiveTableBootPreSplitHuman}). Otherwise, all
+     * the migrated rows would fall into the first region of the table.
+     *
+     * @param study         Study
+     * @param inputOptions  Other options
+     * @throws StorageEngineException if the migration fails
+     */
+    public void migrateArchiveRowKeys(String study, ObjectMap inputOptions) throws StorageEngineException {
+        ObjectMap options = new ObjectMap(getOptions());
+        if (inputOptions != null) {
+            options.putAll(inputOptions);
+        }
+        StudyConfiguration studyConfiguration = getStudyConfigurationManager().getStudyConfiguration(study, null).first();
+        if (studyConfiguration == null) {
+            throw new StorageEngineException("Study '" + study + "' not found");
+        }
+        int studyId = studyConfiguration.getStudyId();
+        if (ArchiveTableHelper.getRowKeyVersion(studyConfiguration) == ArchiveRowKeyFactory.BINARY_ROW_KEY_VERSION) {
+            logger.info("Archive table of study '{}' already migrated", study);
+            return;
+        }
+
+        String hadoopRoute = options.getString(HADOOP_BIN, "hadoop");
+        String jar = getJarWithDependencies(options);
+        Class execClass = ArchiveRowKeyMigrationDriver.class;
+        String executable = hadoopRoute + " jar " + jar + ' ' + execClass.getName();
+        String args = ArchiveRowKeyMigrationDriver.buildCommandLineArgs(
+                getArchiveTableName(studyId),
+                getVariantTableName(),
+                studyId, Collections.emptyList(), options);
+
+        long startTime = System.currentTimeMillis();
+        logger.info("------------------------------------------------------");
+        logger.info("Migrate row keys of archive table '{}'", getArchiveTableName(studyId));
+        logger.debug(executable + ' ' + args);
+        logger.info("------------------------------------------------------");
+        int exitValue = getMRExecutor(options).run(executable, args);
+        logger.info("------------------------------------------------------");
+        logger.info("Exit value: {}", exitValue);
+        logger.info("Total time: {}s", (System.currentTimeMillis() - startTime) / 1000.0);
+        if (exitValue != 0) {
+            throw new StorageEngineException("Error migrating row keys of archive table '" + getArchiveTableName(studyId) + "'");
+        }
+    }
+
     public HadoopVariantStoragePipeline newStoragePipeline(boolean connected, Map<? extends String, ?> extraOptions)
             throws StorageEngineException {
         ObjectMap options = new ObjectMap(configuration.getStorageEngine(STORAGE_ENGINE_ID).getVariant().getOptions());
@@ -52,6 +52,7 @@ import org.opencb.opencga.storage.hadoop.auth.HBaseCredentials;
 import org.opencb.opencga.storage.hadoop.exceptions.StorageHadoopException;
 import org.opencb.opencga.storage.hadoop.utils.HBaseLock;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor;
+import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveRowKeyFactory;
 import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.archive.VariantHbaseTransformTask;
 import org.opencb.opencga.storage.hadoop.variant.executors.MRExecutor;
@@ -299,7 +300,8 @@ public abstract class HadoopVariantStoragePipeline extends VariantStoragePipelin
         super.preLoad(input, output);
 
         try {
-            ArchiveTableHelper.createArchiveTableIfNeeded(dbAdaptor.getGenomeHelper(), archiveTableCredentials.getTable(),
+            // Use the pipeline configuration, with the archive row key version of this study
+            ArchiveTableHelper.createArchiveTableIfNeeded(new GenomeHelper(conf), archiveTableCredentials.getTable(),
                     dbAdaptor.getConnection());
         } catch (IOException e) {
             throw new StorageHadoopException("Issue creating table " + archiveTableCredentials.getTable(), e);
@@ -325,6 +327,19 @@ public abstract class HadoopVariantStoragePipeline extends VariantStoragePipelin
         } else {
             options.put(MERGE_MODE.key(), MergeMode.from(studyConfiguration.getAttributes()));
         }
+
+        int archiveRowKeyVersion;
+        if (!studyConfiguration.getAttributes().containsKey(ARCHIVE_ROW_KEY_VERSION)) {
+            // Studies with indexed files were loaded with the legacy row keys
+            archiveRowKeyVersion = studyConfiguration.getIndexedFiles().isEmpty()
+                    ? options.getInt(ARCHIVE_ROW_KEY_VERSION, DEFAULT_ARCHIVE_ROW_KEY_VERSION)
+                    : ArchiveRowKeyFactory.LEGACY_ROW_KEY_VERSION;
+            studyConfiguration.getAttributes().put(ARCHIVE_ROW_KEY_VERSION, archiveRowKeyVersion);
+        } else {
+            archiveRowKeyVersion = ArchiveTableHelper.getRowKeyVersion(studyConfiguration);
+        }
+        options.put(ARCHIVE_ROW_KEY_VERSION, archiveRowKeyVersion);
+        ArchiveTableHelper.setRowKeyVersion(conf, archiveRowKeyVersion);
     }
 
     @Override
@@ -42,6 +42,7 @@ import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixKey
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -148,6 +149,9 @@ public class VariantHBaseQueryParser {
             }
             otherParams.remove(GENOTYPE);
         }
+        if (isValidParam(query, VARIANTS_TO_INDEX)) {
+            messages.add("Filter " + VARIANTS_TO_INDEX.key() + " not supported");
+        }
 
         if (messages.isEmpty() && otherParams.isEmpty()) {
             return true;
@@ -215,6 +219,41 @@ public class VariantHBaseQueryParser {
         return scans;
     }
 
+    /**
+     * Sort the scans by row key, and restrict them to the rows after the given resume token.
+     *
+     * Scans finishing before the resume token are discarded. The given scans are not modified.
+     *
+     * @param scans         Scans to resume. Must not overlap
+     * @param resumeToken   Resume token, with the row key of the last returned variant. Null to start from the beginning
+     * @return              Sorted list of scans
+     */
+    public static List<Scan> resumeScans(List<Scan> scans, String resumeToken) {
+        List<Scan> sortedScans = new ArrayList<>(scans);
+        sortedScans.sort((s1, s2) -> Bytes.compareTo(s1.getStartRow(), s2.getStartRow()));
+        if (StringUtils.isEmpty(resumeToken)) {
+            return sortedScans;
+        }
+        // Smallest row key after the last returned variant
+        byte[] nextRowKey = Bytes.add(VariantPhoenixKeyFactory.parseResumeToken(resumeToken), new byte[]{0});
+        List<Scan> resumedScans = new ArrayList<>(sortedScans.size());
+        for (Scan scan : sortedScans) {
+            if (scan.getStopRow().length > 0 && Bytes.compareTo(scan.getStopRow(), nextRowKey) <= 0) {
+                continue;
+            }
+            if (Bytes.compareTo(scan.getStartRow(), nextRowKey) < 0) {
+                try {
+                    scan = new Scan(scan);
+                } catch (IOException e) {
+                    throw VariantQueryException.internalException(e);
+                }
+                scan.setStartRow(nextRowKey);
+            }
+            resumedScans.add(scan);
+        }
+        return resumedScans;
+    }
+
     public Scan parseQuery(Query query, QueryOptions options) {
         VariantQueryUtils.SelectVariantElements selectElements =
                 VariantQueryUtils.parseSelectElements(query, options, studyConfigurationManager);
@@ -577,8 +616,7 @@ public class VariantHBaseQueryParser {
             scan.setStartRow(keyFactory.generateBlockIdAsBytes(fileId, region.getChromosome(), region.getStart()));
             long endSlice = keyFactory.getSliceId((long) region.getEnd()) + 1;
             // +1 because the stop row is exclusive
-            scan.setStopRow(Bytes.toBytes(keyFactory.generateBlockIdFromSlice(
-                    fileId, region.getChromosome(), endSlice)));
+            scan.setStopRow(keyFactory.generateBlockIdFromSliceAsBytes(fileId, region.getChromosome(), endSlice));
         }
     }
 
@@ -50,11 +50,14 @@ import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.archive.VariantHadoopArchiveDBIterator;
 import org.opencb.opencga.storage.hadoop.variant.converters.annotation.VariantAnnotationToPhoenixConverter;
 import org.opencb.opencga.storage.hadoop.variant.converters.stats.VariantStatsToHBaseConverter;
+import org.opencb.opencga.storage.hadoop.variant.index.ConcurrentResultScannerIterator;
 import org.opencb.opencga.storage.hadoop.variant.index.VariantHBaseResultSetIterator;
 import org.opencb.opencga.storage.hadoop.variant.index.VariantHBaseScanIterator;
 import org.opencb.opencga.storage.hadoop.variant.index.phoenix.PhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixHelper;
+import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixKeyFactory;
 import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantSqlQueryParser;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.metadata.HBaseStudyConfigurationDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.metadata.HBaseVariantFileMetadataDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.utils.HBaseVariantTableNameGenerator;
@@ -78,6 +81,17 @@ import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils
  */
 public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
     public static final String NATIVE = "native";
+    // Max number of region scans to execute concurrently with the native iterator
+    public static final String NATIVE_SCAN_PARALLEL = "native.scan.parallel";
+    public static final int NATIVE_SCAN_PARALLEL_DEFAULT = 1;
+    // Number of rows prefetched from each concurrent scan
+    public static final String NATIVE_SCAN_PREFETCH = "native.scan.prefetch";
+    public static final int NATIVE_SCAN_PREFETCH_DEFAULT = 100;
+    // Resolve the sample and genotype filters with the sample index table
+    public static final String SAMPLE_INDEX = "sampleIndex";
+    // Max number of candidate variants from the sample index to query by id. Otherwise, the query regions are narrowed
+    public static final String SAMPLE_INDEX_MAX_VARIANTS_BY_ID = "sampleIndex.maxVariantsById";
+    public static final int SAMPLE_INDEX_MAX_VARIANTS_BY_ID_DEFAULT = 1000;
     protected static Logger logger = LoggerFactory.getLogger(VariantHadoopDBAdaptor.class);
     private final String variantTable;
     private final VariantPhoenixHelper phoenixHelper;
@@ -90,6 +104,7 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
     private final VariantSqlQueryParser queryParser;
     private final VariantHBaseQueryParser hbaseQueryParser;
     private final HBaseVariantFileMetadataDBAdaptor variantFileMetadataDBAdaptor;
+    private final SampleIndexDBAdaptor sampleIndexDBAdaptor;
     private final int phoenixFetchSize;
     private boolean clientSideSkip;
     private HBaseManager hBaseManager;
@@ -123,6 +138,9 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
         phoenixHelper = new VariantPhoenixHelper(genomeHelper);
 
         hbaseQueryParser = new VariantHBaseQueryParser(genomeHelper, studyConfigurationManager.get());
+
+        sampleIndexDBAdaptor = new SampleIndexDBAdaptor(genomeHelper, this.hBaseManager, tableNameGenerator,
+                studyConfigurationManager.get());
     }
 
     public java.sql.Connection getJdbcConnection() {
@@ -173,6 +191,10 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
         return tableNameGenerator;
     }
 
+    public SampleIndexDBAdaptor getSampleIndexDBAdaptor() {
+        return sampleIndexDBAdaptor;
+    }
+
     public static Configuration getHbaseConfiguration(Configuration configuration, HBaseCredentials credentials) {
 
         // HBase configuration
@@ -186,7 +208,14 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
         if (fileMetadata == null) {
             throw new StorageEngineException("File '" + fileId + "' not found in study '" + studyId + "'");
         }
-        return new ArchiveTableHelper(genomeHelper, studyId, fileMetadata);
+        StudyConfiguration studyConfiguration = getStudyConfigurationManager().getStudyConfiguration(studyId, null).first();
+        if (studyConfiguration == null) {
+            throw new StorageEngineException("Study '" + studyId + "' not found");
+        }
+        // Each study may use a different archive row key version
+        Configuration conf = new Configuration(genomeHelper.getConf());
+        ArchiveTableHelper.setRowKeyVersion(conf, ArchiveTableHelper.getRowKeyVersion(studyConfiguration));
+        return new ArchiveTableHelper(conf, studyId, fileMetadata);
 
     }
 
@@ -235,7 +264,9 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
     @Override
     public VariantQueryResult<Variant> get(Query query, QueryOptions options) {
 
-        List<Variant> variants = new LinkedList<>();
+        int limit = options == null ? -1 : options.getInt(QueryOptions.LIMIT, -1);
+        // Do not size the list from the limit. It may be much larger than the number of results
+        List<Variant> variants = new ArrayList<>();
         VariantDBIterator iterator = iterator(query, options);
         iterator.forEachRemaining(variants::add);
         long numTotalResults;
@@ -249,7 +280,7 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
                 if (options.getBoolean(QueryOptions.SKIP_COUNT, true)) {
                     numTotalResults = -1;
                 } else {
-                    numTotalResults = count(query).first();
+                    numTotalResults = count(query, options).first();
                 }
             } else {
                 // There are no limit. Do not count.
@@ -258,17 +289,12 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
         }
 
         Map<String, List<String>> samples = getSamplesMetadata(query, options, getStudyConfigurationManager());
-        return new VariantQueryResult<>("getVariants", ((int) iterator.getTimeFetching()), variants.size(), numTotalResults,
-                warn, error, variants, samples, HadoopVariantStorageEngine.STORAGE_ENGINE_ID);
-    }
-
-    @Override
-    public List<VariantQueryResult<Variant>> get(List<Query> queries, QueryOptions options) {
-        List<VariantQueryResult<Variant>> results = new ArrayList<>(queries.size());
-        for (Query query : queries) {
-            results.add(get(query, options));
+        VariantQueryResult<Variant> result = new VariantQueryResult<>("getVariants", ((int) iterator.getTimeFetching()), variants.size(),
+                numTotalResults, warn, error, variants, samples, HadoopVariantStorageEngine.STORAGE_ENGINE_ID);
+        if (VariantSqlQueryParser.isKeysetPagination(options) && limit > 0 && variants.size() >= limit) {
+            result.setResumeToken(VariantPhoenixKeyFactory.generateResumeToken(variants.get(variants.size() - 1)));
         }
-        return results;
+        return result;
     }
 
     @Override
@@ -279,10 +305,33 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
 
     @Override
     public QueryResult<Long> count(Query query) {
+        return count(query, QueryOptions.empty());
+    }
+
+    /**
+     * Count the variants of the query.
+     *
+     * @param query     Query to count
+     * @param options   Query options. Only the sample index options ({@link #SAMPLE_INDEX} and
+     *                  {@link #SAMPLE_INDEX_MAX_VARIANTS_BY_ID}) are used
+     * @return          Number of variants
+     */
+    public QueryResult<Long> count(Query query, QueryOptions options) {
         if (query == null) {
             query = new Query();
         }
+        if (options == null) {
+            options = QueryOptions.empty();
+        }
         long startTime = System.currentTimeMillis();
+        if (options.getBoolean(SAMPLE_INDEX, true)) {
+            query = sampleIndexDBAdaptor.restrictQuery(query, options,
+                    options.getInt(SAMPLE_INDEX_MAX_VARIANTS_BY_ID, SAMPLE_INDEX_MAX_VARIANTS_BY_ID_DEFAULT));
+            if (query == null) {
+                return new QueryResult<>("count", ((int) (System.currentTimeMillis() - startTime)),
+                        1, 1, "", "", Collections.singletonList(0L));
+            }
+        }
         String sql = queryParser.parse(query, new QueryOptions(QueryOptions.COUNT, true)).getSql();
         logger.info(sql);
         try (Statement statement = getJdbcConnection().createStatement();
@@ -317,6 +366,15 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
         boolean hbaseIterator = options.getBoolean(NATIVE, false);
         // || VariantHBaseQueryParser.fullySupportedQuery(query);
 
+        // The native iterator is already a scan over the sample columns
+        if (!archiveIterator && !hbaseIterator && options.getBoolean(SAMPLE_INDEX, true)) {
+            query = sampleIndexDBAdaptor.restrictQuery(query, options,
+                    options.getInt(SAMPLE_INDEX_MAX_VARIANTS_BY_ID, SAMPLE_INDEX_MAX_VARIANTS_BY_ID_DEFAULT));
+            if (query == null) {
+                return VariantDBIterator.emptyIterator();
+            }
+        }
+
         if (archiveIterator) {
             String study = query.getString(STUDY.key());
             StudyConfiguration studyConfiguration;
@@ -380,6 +438,10 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
             logger.debug("Creating " + VariantHBaseScanIterator.class.getSimpleName() + " iterator");
             SelectVariantElements selectElements = VariantQueryUtils.parseSelectElements(query, options, studyConfigurationManager.get());
             List<Scan> scans = hbaseQueryParser.parseQueryMultiRegion(selectElements, query, options);
+            boolean keysetPagination = VariantSqlQueryParser.isKeysetPagination(options);
+            if (keysetPagination) {
+                scans = VariantHBaseQueryParser.resumeScans(scans, options.getString(VariantSqlQueryParser.RESUME_TOKEN));
+            }
             try {
                 Table table = getConnection().getTable(TableName.valueOf(variantTable));
                 String unknownGenotype = null;
@@ -387,20 +449,29 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
                     unknownGenotype = query.getString(UNKNOWN_GENOTYPE.key());
                 }
                 List<String> formats = getIncludeFormats(query);
-                Iterator<ResultScanner> resScans = scans.stream().map(scan -> {
-                    try {
-                        return table.getScanner(scan);
-                    } catch (IOException e) {
-                        throw VariantQueryException.internalException(e);
-                    }
-                }).iterator();
+                Iterator<ResultScanner> resScans;
+                int scanParallel = options.getInt(NATIVE_SCAN_PARALLEL, NATIVE_SCAN_PARALLEL_DEFAULT);
+                if (scanParallel > 1 && scans.size() > 1) {
+                    // Keep the order of the regions only if sorting is requested
+                    resScans = new ConcurrentResultScannerIterator(getConnection(), TableName.valueOf(variantTable), scans, scanParallel,
+                            options.getInt(NATIVE_SCAN_PREFETCH, NATIVE_SCAN_PREFETCH_DEFAULT),
+                            options.getBoolean(QueryOptions.SORT) || keysetPagination);
+                } else {
+                    resScans = scans.stream().map(scan -> {
+                        try {
+                            return table.getScanner(scan);
+                        } catch (IOException e) {
+                            throw VariantQueryException.internalException(e);
+                        }
+                    }).iterator();
+                }
 
                 VariantHBaseScanIterator iterator = new VariantHBaseScanIterator(
                         resScans, genomeHelper, studyConfigurationManager.get(), options, unknownGenotype, formats, selectElements);
 
-                // Client side skip!
+                // Client side skip! Not needed with keyset pagination
                 int skip = options.getInt(QueryOptions.SKIP, -1);
-                if (skip > 0) {
+                if (skip > 0 && !keysetPagination) {
                     logger.info("Client side skip! skip = {}", skip);
                     iterator.skip(skip);
                 }
@@ -434,7 +505,7 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
                         resultSet, genomeHelper, getStudyConfigurationManager(), phoenixQuery.getSelect(),
                         formats, unknownGenotype, options);
 
-                if (clientSideSkip) {
+                if (clientSideSkip && !VariantSqlQueryParser.isKeysetPagination(options)) {
                     // Client side skip!
                     int skip = options.getInt(QueryOptions.SKIP, -1);
                     if (skip > 0) {
@@ -566,6 +637,31 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public boolean isSearchIndexSyncTracked() {
+        return true;
+    }
+
+    @Override
+    public QueryResult updateSearchIndexSync(List<Variant> variants, long timestamp, QueryOptions options) {
+        long start = System.currentTimeMillis();
+        byte[] column = VariantPhoenixHelper.VariantColumn.INDEX_NOT_SYNC.bytes();
+        List<Delete> deletes = new ArrayList<>(variants.size());
+        for (Variant variant : variants) {
+            // Only remove the versions written before the timestamp. Variants modified afterwards remain not synchronized
+            Delete delete = new Delete(VariantPhoenixKeyFactory.generateVariantRowKey(variant));
+            delete.addColumns(genomeHelper.getColumnFamily(), column, timestamp);
+            deletes.add(delete);
+        }
+        try (Table table = getConnection().getTable(TableName.valueOf(variantTable))) {
+            table.delete(deletes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new QueryResult<>("Update search index sync", (int) (System.currentTimeMillis() - start), variants.size(),
+                variants.size(), "", "", Collections.emptyList());
+    }
+
     public <T> void addNotNull(Collection<T> collection, T value) {
         if (value != null) {
             collection.add(value);
@@ -22,19 +22,37 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.opencb.biodata.models.core.Region;
 import org.opencb.biodata.models.variant.Variant;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static org.opencb.opencga.storage.hadoop.variant.GenomeHelper.DEFAULT_ROWKEY_SEPARATOR;
 import static org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine.*;
 
 /**
+ * Generates and parses the row keys of the archive table.
+ *
+ * There are two row key layouts, identified by the {@link HadoopVariantStorageEngine#ARCHIVE_ROW_KEY_VERSION}:
+ * <ul>
+ * <li>{@link #LEGACY_ROW_KEY_VERSION}: String with zero padded numbers. {@code 00000_22_000000000016}
+ * <li>{@link #BINARY_ROW_KEY_VERSION}: Binary key. One byte with the version, the file batch as a 4 bytes int,
+ *     the chromosome code from a dictionary of common contigs, and the slice as a 4 bytes int. All numbers are big endian.
+ *     Chromosomes not in the dictionary are written after the code {@code 0xFF}, followed by a {@code 0x00} separator.
+ * </ul>
+ * The layout of the generated keys is defined by the version of the factory. Parsing methods accept both layouts.
+ *
  * Created on 25/04/17.
  *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
  */
 public class ArchiveRowKeyFactory {
 
+    public static final int LEGACY_ROW_KEY_VERSION = 1;
+    public static final int BINARY_ROW_KEY_VERSION = 2;
+
     private final int chunkSize;
     private final char separator;
     private final int fileBatchSize;
+    private final int version;
 
     private static final int FILE_BATCH_IDX = 0;
     private static final int CHROMOSOME_IDX = 1;
@@ -44,16 +62,48 @@ public class ArchiveRowKeyFactory {
     private static final int FILE_BATCH_PAD = 5;
     private static final int POSITION_PAD = 12;
 
+    private static final int FILE_BATCH_OFFSET = 1;
+    private static final int CHROMOSOME_OFFSET = FILE_BATCH_OFFSET + Bytes.SIZEOF_INT;
+    private static final int OTHER_CHROMOSOME_CODE = 0xFF;
+    private static final String[] CHROMOSOMES = new String[]{"1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13",
+            "14", "15", "16", "17", "18", "19", "20", "21", "22", "X", "Y", "MT", };
+    private static final Map<String, Byte> CHROMOSOME_CODES = new HashMap<>();
+
+    static {
+        for (int i = 0; i < CHROMOSOMES.length; i++) {
+            CHROMOSOME_CODES.put(CHROMOSOMES[i], (byte) (i + 1));
+        }
+    }
+
+    /**
+     * Reads the configuration of the row keys. Without {@link HadoopVariantStorageEngine#ARCHIVE_ROW_KEY_VERSION},
+     * the table is expected to use the {@link #LEGACY_ROW_KEY_VERSION}.
+     *
+     * @param conf Configuration
+     */
     public ArchiveRowKeyFactory(Configuration conf) {
-        this.chunkSize = conf.getInt(ARCHIVE_CHUNK_SIZE, DEFAULT_ARCHIVE_CHUNK_SIZE);
-        this.separator = conf.get(ARCHIVE_ROW_KEY_SEPARATOR, DEFAULT_ROWKEY_SEPARATOR).charAt(0);
-        this.fileBatchSize = conf.getInt(ARCHIVE_FILE_BATCH_SIZE, DEFAULT_ARCHIVE_FILE_BATCH_SIZE);
+        this(conf.getInt(ARCHIVE_CHUNK_SIZE, DEFAULT_ARCHIVE_CHUNK_SIZE),
+                conf.get(ARCHIVE_ROW_KEY_SEPARATOR, DEFAULT_ROWKEY_SEPARATOR).charAt(0),
+                conf.getInt(ARCHIVE_FILE_BATCH_SIZE, DEFAULT_ARCHIVE_FILE_BATCH_SIZE),
+                conf.getInt(ARCHIVE_ROW_KEY_VERSION, LEGACY_ROW_KEY_VERSION));
     }
 
     public ArchiveRowKeyFactory(int chunkSize, char separator, int fileBatchSize) {
+        this(chunkSize, separator, fileBatchSize, LEGACY_ROW_KEY_VERSION);
+    }
+
+    public ArchiveRowKeyFactory(int chunkSize, char separator, int fileBatchSize, int version) {
+        if (version != LEGACY_ROW_KEY_VERSION && version != BINARY_ROW_KEY_VERSION) {
+            throw new IllegalArgumentException("Unknown archive row key version " + version);
+        }
         this.chunkSize = chunkSize;
         this.separator = separator;
         this.fileBatchSize = fileBatchSize;
+        this.version = version;
+    }
+
+    public int getVersion() {
+        return version;
     }
 
     public int getChunkSize() {
@@ -116,7 +166,7 @@ public class ArchiveRowKeyFactory {
     }
 
     /**
-     * Changes the String from {@link #generateBlockId(int, String, long)} to bytes.
+     * Generates the row key with the layout of the version of this factory.
      *
      * @param fileId File id
      * @param chrom  Chromosome
@@ -124,7 +174,90 @@ public class ArchiveRowKeyFactory {
      * @return {@link Byte} array
      */
     public byte[] generateBlockIdAsBytes(int fileId, String chrom, int start) {
-        return Bytes.toBytes(generateBlockId(fileId, chrom, start));
+        return generateBlockIdFromSliceAndBatchAsBytes(getFileBatch(fileId), chrom, getSliceId(start));
+    }
+
+    public byte[] generateBlockIdAsBytes(Variant variant, int fileId) {
+        return generateBlockIdFromSliceAsBytes(fileId, variant.getChromosome(), getSliceId(variant.getStart()));
+    }
+
+    public byte[] generateBlockIdFromSliceAsBytes(int fileId, String chrom, long slice) {
+        return generateBlockIdFromSliceAndBatchAsBytes(getFileBatch(fileId), chrom, slice);
+    }
+
+    public byte[] generateBlockIdFromSliceAndBatchAsBytes(int fileBatch, String chrom, long slice) {
+        if (version == LEGACY_ROW_KEY_VERSION) {
+            return Bytes.toBytes(generateBlockIdFromSliceAndBatch(fileBatch, chrom, slice));
+        }
+        String chromosome = Region.normalizeChromosome(chrom);
+        Byte code = CHROMOSOME_CODES.get(chromosome);
+        byte[] chromosomeBytes = code == null ? Bytes.toBytes(chromosome) : null;
+
+        int length = CHROMOSOME_OFFSET + 1 + (chromosomeBytes == null ? 0 : chromosomeBytes.length + 1) + Bytes.SIZEOF_INT;
+        byte[] blockId = new byte[length];
+        blockId[0] = (byte) BINARY_ROW_KEY_VERSION;
+        int offset = Bytes.putInt(blockId, FILE_BATCH_OFFSET, fileBatch);
+        if (chromosomeBytes == null) {
+            offset = Bytes.putByte(blockId, offset, code);
+        } else {
+            offset = Bytes.putByte(blockId, offset, (byte) OTHER_CHROMOSOME_CODE);
+            offset = Bytes.putBytes(blockId, offset, chromosomeBytes, 0, chromosomeBytes.length);
+            offset = Bytes.putByte(blockId, offset, (byte) 0);
+        }
+        Bytes.putInt(blockId, offset, Math.toIntExact(slice));
+        return blockId;
+    }
+
+    /**
+     * Get the version of a row key. Legacy keys always start with a digit.
+     *
+     * @param blockId Row key
+     * @return Row key version
+     */
+    public static int getVersion(byte[] blockId) {
+        return blockId.length > 0 && blockId[0] == BINARY_ROW_KEY_VERSION ? BINARY_ROW_KEY_VERSION : LEGACY_ROW_KEY_VERSION;
+    }
+
+    public int extractFileBatchFromBlockId(byte[] blockId) {
+        if (getVersion(blockId) == LEGACY_ROW_KEY_VERSION) {
+            return extractFileBatchFromBlockId(Bytes.toString(blockId));
+        }
+        return Bytes.toInt(blockId, FILE_BATCH_OFFSET);
+    }
+
+    public String extractChromosomeFromBlockId(byte[] blockId) {
+        if (getVersion(blockId) == LEGACY_ROW_KEY_VERSION) {
+            return extractChromosomeFromBlockId(Bytes.toString(blockId));
+        }
+        int code = blockId[CHROMOSOME_OFFSET] & 0xFF;
+        if (code == OTHER_CHROMOSOME_CODE) {
+            // Skip code and separator
+            return Bytes.toString(blockId, CHROMOSOME_OFFSET + 1, blockId.length - Bytes.SIZEOF_INT - CHROMOSOME_OFFSET - 2);
+        } else if (code > 0 && code <= CHROMOSOMES.length) {
+            return CHROMOSOMES[code - 1];
+        } else {
+            throw new IllegalStateException("Unknown chromosome code " + code + " in block ID " + Bytes.toStringBinary(blockId));
+        }
+    }
+
+    public long extractSliceFromBlockId(byte[] blockId) {
+        if (getVersion(blockId) == LEGACY_ROW_KEY_VERSION) {
+            return extractSliceFromBlockId(Bytes.toString(blockId));
+        }
+        // Slice is always the last field
+        return Bytes.toInt(blockId, blockId.length - Bytes.SIZEOF_INT);
+    }
+
+    public long extractPositionFromBlockId(byte[] blockId) {
+        return getStartPositionFromSlice(extractSliceFromBlockId(blockId));
+    }
+
+    public Region extractRegionFromBlockId(byte[] blockId) {
+        if (getVersion(blockId) == LEGACY_ROW_KEY_VERSION) {
+            return extractRegionFromBlockId(Bytes.toString(blockId));
+        }
+        long position = extractPositionFromBlockId(blockId);
+        return new Region(extractChromosomeFromBlockId(blockId), (int) position, (int) (position + getChunkSize()));
     }
 
     public int extractFileBatchFromBlockId(String blockId) {
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.archive;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.util.ToolRunner;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
+import org.opencb.opencga.storage.hadoop.variant.AbstractAnalysisTableDriver;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
+import org.opencb.opencga.storage.hadoop.variant.archive.mr.ArchiveRowKeyMigrationMapper;
+import org.opencb.opencga.storage.hadoop.variant.mr.VariantMapReduceUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Rewrites the archive table of a study from the {@link ArchiveRowKeyFactory#LEGACY_ROW_KEY_VERSION}
+ * to the {@link ArchiveRowKeyFactory#BINARY_ROW_KEY_VERSION}.
+ *
+ * Rows are rewritten in the same table. The study should not be loaded or queried until the migration finishes.
+ * Once the job succeeds, the new version is stored in the StudyConfiguration. If the job fails, it can be executed again.
+ *
+ * The table was pre-split with legacy row keys, which start with a digit, while binary row keys start with the version byte.
+ * Before running the mapper, the table is split at the binary pre-split points. Otherwise, all the migrated rows would be
+ * written into the first region.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class ArchiveRowKeyMigrationDriver extends AbstractAnalysisTableDriver {
+
+    public static final String MIGRATE_ROW_KEYS_OPERATION_NAME = "migrate_archive_row_keys";
+    public static final String ARCHIVE_TABLE_SPLIT_TIMEOUT = "opencga.archive.table.split.timeout";
+    public static final long DEFAULT_ARCHIVE_TABLE_SPLIT_TIMEOUT = 60000;
+    private static final Logger LOG = LoggerFactory.getLogger(ArchiveRowKeyMigrationDriver.class);
+
+    public ArchiveRowKeyMigrationDriver() {
+    }
+
+    public ArchiveRowKeyMigrationDriver(Configuration conf) {
+        super(conf);
+    }
+
+    @Override
+    protected void parseAndValidateParameters() {
+    }
+
+    @Override
+    protected Class<ArchiveRowKeyMigrationMapper> getMapperClass() {
+        return ArchiveRowKeyMigrationMapper.class;
+    }
+
+    @Override
+    protected Job setupJob(Job job, String archiveTableName, String variantTableName) throws IOException {
+        // Legacy row keys always start with a digit
+        Scan scan = new Scan(Bytes.toBytes("0"), Bytes.toBytes(":"));
+        scan.setCacheBlocks(false);
+        scan.setCaching(getConf().getInt(HadoopVariantStorageEngine.MAPREDUCE_HBASE_SCAN_CACHING, 50));
+        LOG.info(scan.toString());
+
+        // Read and write the archive table
+        VariantMapReduceUtil.initTableMapperJob(job, archiveTableName, archiveTableName, scan, ArchiveRowKeyMigrationMapper.class);
+
+        return job;
+    }
+
+    @Override
+    protected void preExecution(String variantTable) throws IOException, StorageEngineException {
+        Configuration conf = new Configuration(getConf());
+        ArchiveTableHelper.setRowKeyVersion(conf, ArchiveRowKeyFactory.BINARY_ROW_KEY_VERSION);
+        // Split points for all the existing file batches
+        int maxFileId = readStudyConfiguration().getFileIds().values().stream().mapToInt(Integer::intValue).max().orElse(0);
+        conf.setInt(HadoopVariantStorageEngine.EXPECTED_FILES_NUMBER, Math.max(maxFileId, conf.getInt(
+                HadoopVariantStorageEngine.EXPECTED_FILES_NUMBER, HadoopVariantStorageEngine.DEFAULT_EXPECTED_FILES_NUMBER)));
+        List<byte[]> splitPoints = ArchiveTableHelper.generateArchiveTableBootPreSplitHuman(conf);
+
+        long timeout = conf.getLong(ARCHIVE_TABLE_SPLIT_TIMEOUT, DEFAULT_ARCHIVE_TABLE_SPLIT_TIMEOUT);
+        try (HBaseManager hBaseManager = new HBaseManager(conf)) {
+            LOG.info("Split archive table {} at {} binary row key split points", getArchiveTable(), splitPoints.size());
+            HBaseManager.splitTableIfNeeded(hBaseManager.getConnection(), getArchiveTable(), splitPoints, timeout);
+        }
+    }
+
+    @Override
+    protected void postExecution(boolean succeed) throws IOException, StorageEngineException {
+        if (succeed) {
+            getStudyConfigurationManager().lockAndUpdate(getStudyId(), sc -> {
+                sc.getAttributes().put(HadoopVariantStorageEngine.ARCHIVE_ROW_KEY_VERSION, ArchiveRowKeyFactory.BINARY_ROW_KEY_VERSION);
+                return sc;
+            });
+        }
+    }
+
+    @Override
+    protected String getJobOperationName() {
+        return MIGRATE_ROW_KEYS_OPERATION_NAME;
+    }
+
+    public int privateMain(String[] args) throws Exception {
+        return privateMain(args, getConf());
+    }
+
+    public int privateMain(String[] args, Configuration conf) throws Exception {
+        if (conf != null) {
+            setConf(conf);
+        }
+        return ToolRunner.run(this, args);
+    }
+
+    public static void main(String[] args) throws Exception {
+        try {
+            System.exit(new ArchiveRowKeyMigrationDriver().privateMain(args));
+        } catch (Exception e) {
+            LOG.error("Error executing " + ArchiveRowKeyMigrationDriver.class, e);
+            System.exit(1);
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.opencb.biodata.models.variant.VariantFileMetadata;
 import org.opencb.biodata.models.variant.metadata.VariantStudyMetadata;
 import org.opencb.biodata.models.variant.protobuf.VcfSliceProtos.VcfSlice;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
@@ -172,6 +173,22 @@ public class ArchiveTableHelper extends GenomeHelper {
         return fileId + REF_COLUMN_SUFIX;
     }
 
+    public static void setRowKeyVersion(Configuration conf, int version) {
+        conf.setInt(HadoopVariantStorageEngine.ARCHIVE_ROW_KEY_VERSION, version);
+    }
+
+    /**
+     * Get the version of the archive row keys of a study.
+     * Studies without this attribute were loaded before the {@link ArchiveRowKeyFactory#BINARY_ROW_KEY_VERSION}.
+     *
+     * @param studyConfiguration StudyConfiguration
+     * @return Row key version
+     */
+    public static int getRowKeyVersion(StudyConfiguration studyConfiguration) {
+        return studyConfiguration.getAttributes()
+                .getInt(HadoopVariantStorageEngine.ARCHIVE_ROW_KEY_VERSION, ArchiveRowKeyFactory.LEGACY_ROW_KEY_VERSION);
+    }
+
     public static boolean createArchiveTableIfNeeded(GenomeHelper genomeHelper, String tableName) throws IOException {
         try (Connection con = ConnectionFactory.createConnection(genomeHelper.getConf())) {
             return createArchiveTableIfNeeded(genomeHelper, tableName, con);
@@ -199,7 +216,7 @@ public class ArchiveTableHelper extends GenomeHelper {
         for (int batch = 0; batch <= expectedNumBatches; batch++) {
             int finalBatch = batch;
             preSplits.addAll(generateBootPreSplitsHuman(nSplits, (chr, start) ->
-                    Bytes.toBytes(rowKeyFactory.generateBlockIdFromSliceAndBatch(finalBatch, chr, start))));
+                    rowKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(finalBatch, chr, start)));
         }
         return preSplits;
     }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.archive.mr;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.mapreduce.TableMapper;
+import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveRowKeyFactory;
+import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveTableHelper;
+import org.opencb.opencga.storage.hadoop.variant.mr.AnalysisTableMapReduceHelper;
+
+import java.io.IOException;
+
+/**
+ * Moves each row of the archive table with a legacy row key to the equivalent binary row key.
+ *
+ * The cells are copied keeping the timestamps, and the old row is deleted.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class ArchiveRowKeyMigrationMapper extends TableMapper<ImmutableBytesWritable, Mutation> {
+
+    private ArchiveRowKeyFactory rowKeyFactory;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        Configuration conf = new Configuration(context.getConfiguration());
+        ArchiveTableHelper.setRowKeyVersion(conf, ArchiveRowKeyFactory.BINARY_ROW_KEY_VERSION);
+        rowKeyFactory = new ArchiveRowKeyFactory(conf);
+    }
+
+    @Override
+    protected void map(ImmutableBytesWritable key, Result value, Context context) throws IOException, InterruptedException {
+        byte[] rowKey = value.getRow();
+        if (ArchiveRowKeyFactory.getVersion(rowKey) != ArchiveRowKeyFactory.LEGACY_ROW_KEY_VERSION) {
+            context.getCounter(AnalysisTableMapReduceHelper.COUNTER_GROUP_NAME, "SKIP_ROW").increment(1);
+            return;
+        }
+        byte[] newRowKey = rowKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(
+                rowKeyFactory.extractFileBatchFromBlockId(rowKey),
+                rowKeyFactory.extractChromosomeFromBlockId(rowKey),
+                rowKeyFactory.extractSliceFromBlockId(rowKey));
+
+        Put put = new Put(newRowKey);
+        for (Cell cell : value.rawCells()) {
+            put.addColumn(CellUtil.cloneFamily(cell), CellUtil.cloneQualifier(cell), cell.getTimestamp(), CellUtil.cloneValue(cell));
+        }
+        context.write(new ImmutableBytesWritable(newRowKey), put);
+        context.write(new ImmutableBytesWritable(rowKey), new Delete(rowKey));
+
+        context.getCounter(AnalysisTableMapReduceHelper.COUNTER_GROUP_NAME, "MIGRATED_ROW").increment(1);
+        context.getCounter(AnalysisTableMapReduceHelper.COUNTER_GROUP_NAME, "SAVED_ROW_KEY_BYTES")
+                .increment(rowKey.length - newRowKey.length);
+    }
+
+}
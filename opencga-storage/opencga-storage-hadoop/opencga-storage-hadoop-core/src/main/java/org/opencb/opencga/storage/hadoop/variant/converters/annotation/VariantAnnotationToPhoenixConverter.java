@@ -188,6 +188,7 @@ public class VariantAnnotationToPhoenixConverter extends AbstractPhoenixConverte
             }
         }
         map.put(TYPE, variantType.toString());
+        map.put(INDEX_NOT_SYNC, true);
 
         return map;
     }
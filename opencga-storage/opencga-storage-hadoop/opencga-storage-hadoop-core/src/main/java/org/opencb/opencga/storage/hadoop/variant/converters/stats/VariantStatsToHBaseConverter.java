@@ -106,6 +106,7 @@ public class VariantStatsToHBaseConverter extends AbstractPhoenixConverter imple
 
             add(put, statsColumn, builder.build().toByteArray());
         }
+        add(put, VariantPhoenixHelper.VariantColumn.INDEX_NOT_SYNC, true);
         return put;
     }
 
@@ -21,7 +21,10 @@ import com.google.common.collect.BiMap;
 import htsjdk.variant.vcf.VCFConstants;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.schema.types.PInteger;
 import org.apache.phoenix.schema.types.PVarcharArray;
@@ -80,6 +83,9 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
             .append(StudyConfigurationManager.CACHED, true);
     private final Map<Integer, LinkedHashMap<String, Integer>> returnedSamplesPositionMap = new HashMap<>();
     private Map<Pair<Integer, Integer>, List<Boolean>> missingUpdatedSamplesMap = new HashMap<>();
+    // Decoded columns, by qualifier and by name
+    private final Map<ImmutableBytesWritable, StudyColumn> columnsByQualifier = new HashMap<>();
+    private final Map<String, StudyColumn> columnsByName = new HashMap<>();
 
     private boolean studyNameAsStudyId = false;
     private boolean simpleGenotypes = false;
@@ -189,33 +195,34 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
 
             for (int i = 1; i <= metaData.getColumnCount(); i++) {
                 String columnName = metaData.getColumnName(i);
-                if (columnName.endsWith(VariantPhoenixHelper.SAMPLE_DATA_SUFIX)) {
-                    String[] split = columnName.split(VariantPhoenixHelper.COLUMN_KEY_SEPARATOR_STR);
-                    Integer studyId = getStudyId(split);
-                    Integer sampleId = getSampleId(split);
-                    Array value = resultSet.getArray(i);
-                    if (value != null) {
-                        List<String> sampleData = toModifiableList(value);
-                        studies.add(studyId);
-                        sampleDataMap.computeIfAbsent(studyId, s -> new ArrayList<>()).add(Pair.of(sampleId, sampleData));
-                    }
-                } else if (columnName.endsWith(VariantPhoenixHelper.FILE_SUFIX)) {
-                    String[] split = columnName.split(VariantPhoenixHelper.COLUMN_KEY_SEPARATOR_STR);
-                    Integer studyId = getStudyId(split);
-                    String fileId = getFileId(split);
-                    PhoenixArray array = (PhoenixArray) resultSet.getArray(i);
-                    if (array != null) {
-                        studies.add(studyId);
-                        filesMap.computeIfAbsent(studyId, s -> new ArrayList<>()).add(Pair.of(fileId, array));
-                    }
-                } else if (columnName.endsWith(VariantPhoenixHelper.STUDY_SUFIX)) {
-                    Integer studyId = VariantPhoenixHelper.extractStudyId(columnName, true);
-                    // Method GetInt will always return 0, even is null was stored.
-                    // Check if value was actually a null.
-                    resultSet.getInt(i);
-                    if (!resultSet.wasNull()) {
-                        studies.add(studyId);
-                    }
+                StudyColumn column = columnsByName.computeIfAbsent(columnName, StudyColumn::parse);
+                switch (column.getType()) {
+                    case SAMPLE_DATA:
+                        Array value = resultSet.getArray(i);
+                        if (value != null) {
+                            List<String> sampleData = toModifiableList(value);
+                            studies.add(column.getStudyId());
+                            sampleDataMap.computeIfAbsent(column.getStudyId(), s -> new ArrayList<>())
+                                    .add(Pair.of(column.getSampleId(), sampleData));
+                        }
+                        break;
+                    case FILE:
+                        PhoenixArray array = (PhoenixArray) resultSet.getArray(i);
+                        if (array != null) {
+                            studies.add(column.getStudyId());
+                            filesMap.computeIfAbsent(column.getStudyId(), s -> new ArrayList<>()).add(Pair.of(column.getFileId(), array));
+                        }
+                        break;
+                    case STUDY:
+                        // Method GetInt will always return 0, even is null was stored.
+                        // Check if value was actually a null.
+                        resultSet.getInt(i);
+                        if (!resultSet.wasNull()) {
+                            studies.add(column.getStudyId());
+                        }
+                        break;
+                    default:
+                        break;
                 }
             }
 
@@ -252,33 +259,40 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
         Map<Integer, List<Pair<Integer, List<String>>>> sampleDataMap = new HashMap<>();
         Map<Integer, List<Pair<String, PhoenixArray>>> filesMap = new HashMap<>();
 
-        for (Map.Entry<byte[], byte[]> entry : result.getFamilyMap(columnFamily).entrySet()) {
-            byte[] qualifier = entry.getKey();
-            byte[] bytes = entry.getValue();
-            if (bytes == null || bytes.length == 0) {
+        StudyColumn previousColumn = null;
+        for (Cell cell : result.rawCells()) {
+            if (!CellUtil.matchingFamily(cell, columnFamily)) {
                 continue;
             }
-            if (endsWith(qualifier, VariantPhoenixHelper.SAMPLE_DATA_SUFIX_BYTES)) {
-                String columnName = Bytes.toString(qualifier);
-                String[] split = columnName.split(VariantPhoenixHelper.COLUMN_KEY_SEPARATOR_STR);
-                Integer studyId = getStudyId(split);
-                Integer sampleId = getSampleId(split);
-                Array array = (Array) PVarcharArray.INSTANCE.toObject(bytes);
-                List<String> sampleData = toModifiableList(array);
-                studies.add(studyId);
-                sampleDataMap.computeIfAbsent(studyId, s -> new ArrayList<>()).add(Pair.of(sampleId, sampleData));
-            } else if (endsWith(qualifier, VariantPhoenixHelper.FILE_SUFIX_BYTES)) {
-                String columnName = Bytes.toString(qualifier);
-                String[] split = columnName.split(VariantPhoenixHelper.COLUMN_KEY_SEPARATOR_STR);
-                Integer studyId = getStudyId(split);
-                String fileId = getFileId(split);
-                studies.add(studyId);
-                PhoenixArray array = (PhoenixArray) PVarcharArray.INSTANCE.toObject(bytes);
-                filesMap.computeIfAbsent(studyId, s -> new ArrayList<>()).add(Pair.of(fileId, array));
-            } else if (endsWith(qualifier, VariantPhoenixHelper.STUDY_SUFIX_BYTES)) {
-                String columnName = Bytes.toString(qualifier);
-                Integer studyId = VariantPhoenixHelper.extractStudyId(columnName, true);
-                studies.add(studyId);
+            StudyColumn column = getStudyColumn(cell);
+            // Cells are sorted by qualifier, and then by timestamp. Take only the last version.
+            if (column == previousColumn) {
+                continue;
+            }
+            previousColumn = column;
+            if (column.getType() == StudyColumn.Type.OTHER || cell.getValueLength() == 0) {
+                continue;
+            }
+            switch (column.getType()) {
+                case SAMPLE_DATA:
+                    Array array = (Array) PVarcharArray.INSTANCE.toObject(cell.getValueArray(), cell.getValueOffset(),
+                            cell.getValueLength());
+                    List<String> sampleData = toModifiableList(array);
+                    studies.add(column.getStudyId());
+                    sampleDataMap.computeIfAbsent(column.getStudyId(), s -> new ArrayList<>())
+                            .add(Pair.of(column.getSampleId(), sampleData));
+                    break;
+                case FILE:
+                    studies.add(column.getStudyId());
+                    PhoenixArray fileArray = (PhoenixArray) PVarcharArray.INSTANCE.toObject(cell.getValueArray(), cell.getValueOffset(),
+                            cell.getValueLength());
+                    filesMap.computeIfAbsent(column.getStudyId(), s -> new ArrayList<>()).add(Pair.of(column.getFileId(), fileArray));
+                    break;
+                case STUDY:
+                    studies.add(column.getStudyId());
+                    break;
+                default:
+                    break;
             }
         }
 
@@ -745,16 +759,85 @@ public class HBaseToStudyEntryConverter extends AbstractPhoenixConverter {
         }
     }
 
-    private Integer getStudyId(String[] split) {
-        return Integer.valueOf(split[0]);
+    private StudyColumn getStudyColumn(Cell cell) {
+        // Wraps the qualifier without copying it. Only copied when the column is not in the cache
+        ImmutableBytesWritable qualifier = new ImmutableBytesWritable(cell.getQualifierArray(), cell.getQualifierOffset(),
+                cell.getQualifierLength());
+        StudyColumn column = columnsByQualifier.get(qualifier);
+        if (column == null) {
+            byte[] bytes = CellUtil.cloneQualifier(cell);
+            column = StudyColumn.parse(bytes);
+            columnsByQualifier.put(new ImmutableBytesWritable(bytes), column);
+        }
+        return column;
     }
 
-    private Integer getSampleId(String[] split) {
-        return Integer.valueOf(split[1]);
-    }
+    /**
+     * Decoded column of the variants table, with the ids already parsed.
+     * Each column is decoded only once, and reused for every row.
+     */
+    static final class StudyColumn {
+
+        enum Type {
+            SAMPLE_DATA,
+            FILE,
+            STUDY,
+            OTHER
+        }
+
+        private static final StudyColumn OTHER_COLUMN = new StudyColumn(Type.OTHER, null, null, null);
+
+        private final Type type;
+        private final Integer studyId;
+        private final Integer sampleId;
+        private final String fileId;
 
-    private String getFileId(String[] split) {
-        return split[1];
+        private StudyColumn(Type type, Integer studyId, Integer sampleId, String fileId) {
+            this.type = type;
+            this.studyId = studyId;
+            this.sampleId = sampleId;
+            this.fileId = fileId;
+        }
+
+        static StudyColumn parse(byte[] qualifier) {
+            if (endsWith(qualifier, VariantPhoenixHelper.SAMPLE_DATA_SUFIX_BYTES)
+                    || endsWith(qualifier, VariantPhoenixHelper.FILE_SUFIX_BYTES)
+                    || endsWith(qualifier, VariantPhoenixHelper.STUDY_SUFIX_BYTES)) {
+                return parse(Bytes.toString(qualifier));
+            } else {
+                return OTHER_COLUMN;
+            }
+        }
+
+        static StudyColumn parse(String columnName) {
+            if (columnName.endsWith(VariantPhoenixHelper.SAMPLE_DATA_SUFIX)) {
+                String[] split = columnName.split(VariantPhoenixHelper.COLUMN_KEY_SEPARATOR_STR);
+                return new StudyColumn(Type.SAMPLE_DATA, Integer.valueOf(split[0]), Integer.valueOf(split[1]), null);
+            } else if (columnName.endsWith(VariantPhoenixHelper.FILE_SUFIX)) {
+                String[] split = columnName.split(VariantPhoenixHelper.COLUMN_KEY_SEPARATOR_STR);
+                return new StudyColumn(Type.FILE, Integer.valueOf(split[0]), null, split[1]);
+            } else if (columnName.endsWith(VariantPhoenixHelper.STUDY_SUFIX)) {
+                return new StudyColumn(Type.STUDY, VariantPhoenixHelper.extractStudyId(columnName, true), null, null);
+            } else {
+                return OTHER_COLUMN;
+            }
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public Integer getStudyId() {
+            return studyId;
+        }
+
+        public Integer getSampleId() {
+            return sampleId;
+        }
+
+        public String getFileId() {
+            return fileId;
+        }
     }
 
 }
@@ -143,6 +143,9 @@ public class StudyEntryToHBaseConverter extends AbstractPhoenixConverter impleme
                 }
             }
         }
+        if (!put.isEmpty()) {
+            add(put, VariantPhoenixHelper.VariantColumn.INDEX_NOT_SYNC, true);
+        }
 
         return put;
     }
@@ -21,12 +21,22 @@ import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
+import org.opencb.opencga.storage.core.variant.io.parquet.VariantToParquetConverter;
+import org.opencb.opencga.storage.hadoop.variant.metadata.HBaseStudyConfigurationDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.mr.AbstractHBaseVariantMapper;
 import org.opencb.opencga.storage.hadoop.variant.mr.AnalysisTableMapReduceHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.opencb.opencga.storage.hadoop.variant.exporters.VariantTableExportDriver.CONFIG_VARIANT_TABLE_EXPORT_TYPE;
 
@@ -38,6 +48,7 @@ public class AnalysisToFileMapper extends AbstractHBaseVariantMapper<Object, Obj
 
     private Logger logger = LoggerFactory.getLogger(AnalysisToFileMapper.class);
     private VariantTableExportDriver.ExportType type;
+    private VariantToParquetConverter parquetConverter;
 
     @Override
     protected void setup(Context context) throws IOException, InterruptedException {
@@ -53,10 +64,27 @@ public class AnalysisToFileMapper extends AbstractHBaseVariantMapper<Object, Obj
 //        }
 //        logger.info("Export Genotype [{}] of {} samples ... ", withGenotype, returnedSamples.size());
         getHbaseToVariantConverter().setStudyNameAsStudyId(true);
+        try (StudyConfigurationManager scm = new StudyConfigurationManager(new HBaseStudyConfigurationDBAdaptor(getHelper()))) {
+            Query query = new Query(VariantQueryParam.STUDY.key(), getStudyConfiguration().getStudyId());
+            getHbaseToVariantConverter().setSelectVariantElements(VariantQueryUtils.parseSelectElements(query, new QueryOptions(), scm));
+        }
 
         String typeString = context.getConfiguration()
                 .get(CONFIG_VARIANT_TABLE_EXPORT_TYPE, VariantTableExportDriver.ExportType.AVRO.name());
         this.type = VariantTableExportDriver.ExportType.valueOf(typeString);
+        if (this.type == VariantTableExportDriver.ExportType.PARQUET) {
+            parquetConverter = new VariantToParquetConverter(getStudyConfiguration().getStudyName(), getSamples(getStudyConfiguration()));
+        }
+    }
+
+    /**
+     * Samples of the genotypes column of PARQUET exports.
+     *
+     * @param studyConfiguration    Study configuration
+     * @return  Indexed samples, sorted by sample position
+     */
+    public static List<String> getSamples(StudyConfiguration studyConfiguration) {
+        return new ArrayList<>(StudyConfiguration.getSortedIndexedSamplesPosition(studyConfiguration).keySet());
     }
 
     @Override
@@ -70,6 +98,9 @@ public class AnalysisToFileMapper extends AbstractHBaseVariantMapper<Object, Obj
             case VCF:
                 context.write(variant, NullWritable.get());
                 break;
+            case PARQUET:
+                context.write(null, parquetConverter.convert(variant));
+                break;
             default:
                 throw new IllegalStateException("Type not supported: " + this.type);
         }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencb.opencga.storage.hadoop.variant.exporters;
+
+import org.apache.avro.generic.GenericRecord;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.io.DataWriter;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.VariantMetadataFactory;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.io.VariantExporter;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Variant exporter for the Hadoop storage engine. Adds support for Parquet files.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class HadoopVariantExporter extends VariantExporter {
+
+    public HadoopVariantExporter(HadoopVariantStorageEngine engine, VariantMetadataFactory metadataFactory)
+            throws StorageEngineException {
+        super(engine, metadataFactory);
+    }
+
+    @Override
+    protected DataWriter<GenericRecord> newParquetDataWriter(String outputFile, String study, List<String> samples, ObjectMap options)
+            throws StorageEngineException {
+        int rowGroupSize = options.getInt(VariantStorageEngine.Options.EXPORT_PARQUET_ROW_GROUP_SIZE.key(),
+                VariantStorageEngine.Options.EXPORT_PARQUET_ROW_GROUP_SIZE.defaultValue());
+        // Always write into the local file system
+        return new VariantParquetDataWriter(Paths.get(outputFile).toUri(), study, samples, rowGroupSize);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencb.opencga.storage.hadoop.variant.exporters;
+
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.opencb.commons.io.DataWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Writes records from {@link org.opencb.opencga.storage.core.variant.io.parquet.VariantToParquetConverter} into a Parquet file.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class VariantParquetDataWriter implements DataWriter<GenericRecord> {
+
+    private final URI output;
+    private final Configuration conf;
+    private final int rowGroupSize;
+    private ParquetWriter<GenericRecord> writer;
+
+    public VariantParquetDataWriter(URI output, String study, List<String> samples, int rowGroupSize) {
+        this(output, new Configuration(), study, samples, rowGroupSize);
+    }
+
+    public VariantParquetDataWriter(URI output, Configuration conf, String study, List<String> samples, int rowGroupSize) {
+        this.output = output;
+        this.conf = new Configuration(conf);
+        this.rowGroupSize = rowGroupSize;
+        VariantParquetWriteSupport.configure(this.conf, study, samples);
+    }
+
+    @Override
+    public boolean open() {
+        try {
+            writer = new Builder(new Path(output))
+                    .withConf(conf)
+                    .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
+                    .withRowGroupSize(rowGroupSize)
+                    .withCompressionCodec(CompressionCodecName.SNAPPY)
+                    .withDictionaryEncoding(true)
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean write(List<GenericRecord> batch) {
+        try {
+            for (GenericRecord record : batch) {
+                writer.write(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                writer = null;
+            }
+        }
+        return true;
+    }
+
+    private static class Builder extends ParquetWriter.Builder<GenericRecord, Builder> {
+
+        Builder(Path file) {
+            super(file);
+        }
+
+        @Override
+        protected Builder self() {
+            return this;
+        }
+
+        @Override
+        protected WriteSupport<GenericRecord> getWriteSupport(Configuration conf) {
+            return new VariantParquetWriteSupport();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opencb.opencga.storage.hadoop.variant.exporters;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.io.api.RecordConsumer;
+import org.apache.parquet.schema.*;
+import org.opencb.opencga.storage.core.variant.io.parquet.VariantToParquetConverter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName.*;
+import static org.apache.parquet.schema.Type.Repetition.*;
+
+/**
+ * Writes records from {@link VariantToParquetConverter} into Parquet, adding the study and the samples of the
+ * genotypes column to the key-value metadata of the file footer.
+ *
+ * The Parquet schema is derived from the Avro schema of the converter, using the standard LIST and MAP layouts.
+ * Records are written directly, without parquet-avro, as it requires a newer Avro version than the one in the classpath.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class VariantParquetWriteSupport extends WriteSupport<GenericRecord> {
+
+    public static final String STUDY = "opencga.variant.parquet.study";
+    public static final String SAMPLES = "opencga.variant.parquet.samples";
+
+    private static final Schema AVRO_SCHEMA = VariantToParquetConverter.getSchema();
+    private static final MessageType SCHEMA = new MessageType(AVRO_SCHEMA.getName(), convertFields(AVRO_SCHEMA));
+
+    private RecordConsumer recordConsumer;
+
+    public VariantParquetWriteSupport() {
+    }
+
+    /**
+     * Configure the write support.
+     *
+     * @param conf      Configuration
+     * @param study     Exported study
+     * @param samples   Samples of the genotypes column
+     */
+    public static void configure(Configuration conf, String study, List<String> samples) {
+        conf.set(STUDY, study);
+        try {
+            // Sample names may contain commas. Store them as a JSON array
+            conf.set(SAMPLES, new ObjectMapper().writeValueAsString(samples));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static MessageType getSchema() {
+        return SCHEMA;
+    }
+
+    @Override
+    public WriteContext init(Configuration configuration) {
+        Map<String, String> extraMetaData = new HashMap<>();
+        if (configuration.get(STUDY) != null) {
+            extraMetaData.put(VariantToParquetConverter.STUDY_METADATA_KEY, configuration.get(STUDY));
+        }
+        if (configuration.get(SAMPLES) != null) {
+            extraMetaData.put(VariantToParquetConverter.SAMPLES_METADATA_KEY, configuration.get(SAMPLES));
+        }
+        return new WriteContext(SCHEMA, extraMetaData);
+    }
+
+    @Override
+    public void prepareForWrite(RecordConsumer recordConsumer) {
+        this.recordConsumer = recordConsumer;
+    }
+
+    @Override
+    public void write(GenericRecord record) {
+        recordConsumer.startMessage();
+        writeFields(AVRO_SCHEMA, record);
+        recordConsumer.endMessage();
+    }
+
+    private void writeFields(Schema schema, GenericRecord record) {
+        for (Schema.Field field : schema.getFields()) {
+            Object value = record.get(field.pos());
+            if (value != null) {
+                recordConsumer.startField(field.name(), field.pos());
+                writeValue(field.schema(), value);
+                recordConsumer.endField(field.name(), field.pos());
+            }
+        }
+    }
+
+    private void writeValue(Schema schema, Object value) {
+        switch (schema.getType()) {
+            case UNION:
+                writeValue(getNonNullType(schema), value);
+                break;
+            case STRING:
+                recordConsumer.addBinary(Binary.fromString(value.toString()));
+                break;
+            case INT:
+                recordConsumer.addInteger(((Number) value).intValue());
+                break;
+            case LONG:
+                recordConsumer.addLong(((Number) value).longValue());
+                break;
+            case FLOAT:
+                recordConsumer.addFloat(((Number) value).floatValue());
+                break;
+            case DOUBLE:
+                recordConsumer.addDouble(((Number) value).doubleValue());
+                break;
+            case BOOLEAN:
+                recordConsumer.addBoolean((Boolean) value);
+                break;
+            case RECORD:
+                recordConsumer.startGroup();
+                writeFields(schema, (GenericRecord) value);
+                recordConsumer.endGroup();
+                break;
+            case ARRAY:
+                Collection<?> collection = (Collection<?>) value;
+                recordConsumer.startGroup();
+                if (!collection.isEmpty()) {
+                    recordConsumer.startField("list", 0);
+                    for (Object element : collection) {
+                        recordConsumer.startGroup();
+                        recordConsumer.startField("element", 0);
+                        writeValue(schema.getElementType(), element);
+                        recordConsumer.endField("element", 0);
+                        recordConsumer.endGroup();
+                    }
+                    recordConsumer.endField("list", 0);
+                }
+                recordConsumer.endGroup();
+                break;
+            case MAP:
+                Map<?, ?> map = (Map<?, ?>) value;
+                recordConsumer.startGroup();
+                if (!map.isEmpty()) {
+                    recordConsumer.startField("key_value", 0);
+                    for (Map.Entry<?, ?> entry : map.entrySet()) {
+                        recordConsumer.startGroup();
+                        recordConsumer.startField("key", 0);
+                        recordConsumer.addBinary(Binary.fromString(entry.getKey().toString()));
+                        recordConsumer.endField("key", 0);
+                        recordConsumer.startField("value", 1);
+                        writeValue(schema.getValueType(), entry.getValue());
+                        recordConsumer.endField("value", 1);
+                        recordConsumer.endGroup();
+                    }
+                    recordConsumer.endField("key_value", 0);
+                }
+                recordConsumer.endGroup();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported type " + schema.getType());
+        }
+    }
+
+    private static List<Type> convertFields(Schema schema) {
+        List<Type> types = new ArrayList<>(schema.getFields().size());
+        for (Schema.Field field : schema.getFields()) {
+            types.add(convert(field.name(), field.schema(), REQUIRED));
+        }
+        return types;
+    }
+
+    private static Type convert(String name, Schema schema, Type.Repetition repetition) {
+        switch (schema.getType()) {
+            case UNION:
+                return convert(name, getNonNullType(schema), OPTIONAL);
+            case STRING:
+                return new PrimitiveType(repetition, BINARY, name, OriginalType.UTF8);
+            case INT:
+                return new PrimitiveType(repetition, INT32, name);
+            case LONG:
+                return new PrimitiveType(repetition, INT64, name);
+            case FLOAT:
+                return new PrimitiveType(repetition, FLOAT, name);
+            case DOUBLE:
+                return new PrimitiveType(repetition, DOUBLE, name);
+            case BOOLEAN:
+                return new PrimitiveType(repetition, BOOLEAN, name);
+            case RECORD:
+                return new GroupType(repetition, name, convertFields(schema));
+            case ARRAY:
+                return new GroupType(repetition, name, OriginalType.LIST,
+                        new GroupType(REPEATED, "list", convert("element", schema.getElementType(), REQUIRED)));
+            case MAP:
+                return new GroupType(repetition, name, OriginalType.MAP,
+                        new GroupType(REPEATED, "key_value", OriginalType.MAP_KEY_VALUE,
+                                new PrimitiveType(REQUIRED, BINARY, "key", OriginalType.UTF8),
+                                convert("value", schema.getValueType(), REQUIRED)));
+            default:
+                throw new IllegalArgumentException("Unsupported type " + schema.getType() + " for field " + name);
+        }
+    }
+
+    private static Schema getNonNullType(Schema union) {
+        for (Schema schema : union.getTypes()) {
+            if (schema.getType() != Schema.Type.NULL) {
+                return schema;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported union " + union);
+    }
+}
@@ -17,21 +17,25 @@
 package org.opencb.opencga.storage.hadoop.variant.exporters;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.mapreduce.AvroJob;
 import org.apache.avro.mapreduce.AvroKeyOutputFormat;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataOutputStream;
-import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.mapreduce.TableMapper;
 import org.apache.hadoop.io.compress.GzipCodec;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.parquet.hadoop.ParquetOutputFormat;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
 import org.opencb.biodata.models.variant.avro.VariantAvro;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.io.json.mixin.GenericRecordAvroJsonMixin;
 import org.opencb.opencga.storage.hadoop.variant.AbstractAnalysisTableDriver;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantMapReduceUtil;
 
@@ -55,7 +59,7 @@ public class VariantTableExportDriver extends AbstractAnalysisTableDriver {
     private String outFile;
     private ExportType type;
 
-    public enum ExportType {AVRO, VCF};
+    public enum ExportType {AVRO, VCF, PARQUET};
 
     public VariantTableExportDriver() {
         super();
@@ -103,6 +107,17 @@ public class VariantTableExportDriver extends AbstractAnalysisTableDriver {
             case VCF:
                 job.setOutputFormatClass(HadoopVcfOutputFormat.class);
                 break;
+            case PARQUET:
+                job.setOutputFormatClass(ParquetOutputFormat.class);
+                ParquetOutputFormat.setWriteSupportClass(job, VariantParquetWriteSupport.class);
+                StudyConfiguration studyConfiguration = readStudyConfiguration();
+                VariantParquetWriteSupport.configure(job.getConfiguration(), studyConfiguration.getStudyName(),
+                        AnalysisToFileMapper.getSamples(studyConfiguration));
+                ParquetOutputFormat.setBlockSize(job, getConf().getInt(VariantStorageEngine.Options.EXPORT_PARQUET_ROW_GROUP_SIZE.key(),
+                        VariantStorageEngine.Options.EXPORT_PARQUET_ROW_GROUP_SIZE.defaultValue()));
+                ParquetOutputFormat.setCompression(job, CompressionCodecName.SNAPPY);
+                ParquetOutputFormat.setEnableDictionary(job, true);
+                break;
             default:
                 throw new IllegalStateException("Type not known: " + this.type);
         }
@@ -124,9 +139,9 @@ public class VariantTableExportDriver extends AbstractAnalysisTableDriver {
     }
 
     protected void writeMetadata(StudyConfiguration studyConfiguration, String output) throws IOException {
-        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectMapper objectMapper = new ObjectMapper().addMixIn(GenericRecord.class, GenericRecordAvroJsonMixin.class);
         Path path = new Path(output);
-        try (FSDataOutputStream fos = FileSystem.get(getConf()).create(path)) {
+        try (FSDataOutputStream fos = path.getFileSystem(getConf()).create(path)) {
             objectMapper.writeValue(fos, studyConfiguration);
         }
     }
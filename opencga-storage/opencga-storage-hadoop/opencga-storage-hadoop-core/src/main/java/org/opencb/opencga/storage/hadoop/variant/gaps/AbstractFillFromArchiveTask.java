@@ -193,10 +193,9 @@ public abstract class AbstractFillFromArchiveTask implements Task<Result, Put> {
         protected Context(Result result) throws IOException {
             this.rowKey = result.getRow();
             this.result = result;
-            String blockId = Bytes.toString(rowKey);
-            region = rowKeyFactory.extractRegionFromBlockId(blockId);
+            region = rowKeyFactory.extractRegionFromBlockId(rowKey);
 
-            fileBatch = rowKeyFactory.extractFileBatchFromBlockId(blockId);
+            fileBatch = rowKeyFactory.extractFileBatchFromBlockId(rowKey);
             this.fileIdsInBatch = new TreeSet<>();
             for (Integer fileId : AbstractFillFromArchiveTask.this.fileIds) {
                 if (rowKeyFactory.getFileBatch(fileId) == fileBatch) {
@@ -204,7 +203,7 @@ public abstract class AbstractFillFromArchiveTask implements Task<Result, Put> {
                 }
             }
             if (fileIdsInBatch.isEmpty()) {
-                throw new IllegalStateException("Read data from RK " + blockId + " from file batch " + fileBatch
+                throw new IllegalStateException("Read data from RK " + Bytes.toStringBinary(rowKey) + " from file batch " + fileBatch
                         + " without any file from " + AbstractFillFromArchiveTask.this.fileIds);
             }
 
@@ -226,7 +225,7 @@ public abstract class AbstractFillFromArchiveTask implements Task<Result, Put> {
                 if (pair == null) {
                     if (fileBatch != rowKeyFactory.getFileBatch(fileId)) {
                         // This should never happen
-                        logger.warn("Skip VcfSlice for file " + fileId + " in RK " + Bytes.toString(rowKey));
+                        logger.warn("Skip VcfSlice for file " + fileId + " in RK " + Bytes.toStringBinary(rowKey));
                     }
                     vcfSliceNotFound(fileId);
                 }
@@ -244,7 +243,7 @@ public abstract class AbstractFillFromArchiveTask implements Task<Result, Put> {
                     increment("PARSE_VCF_SLICE", fileBatch, stopWatch);
                     increment("PARSE_VCF_SLICE", fileBatch, 1);
                 } catch (InvalidProtocolBufferException | RuntimeException e) {
-                    throw new IOException("Error parsing data from row " + Bytes.toString(rowKey), e);
+                    throw new IOException("Error parsing data from row " + Bytes.toStringBinary(rowKey), e);
                 }
             } else {
                 vcfSlice = null;
@@ -106,12 +106,11 @@ public class FillGapsFromArchiveTask extends AbstractFillFromArchiveTask {
             // If there are files not in the main batch, make an specific get to that batch
             if (!otherFilesGroupByFilesBatch.isEmpty()) {
                 List<Get> gets = new ArrayList<>(otherFilesGroupByFilesBatch.size());
-                String chromosome = rowKeyFactory.extractChromosomeFromBlockId(Bytes.toString(rowKey));
-                long slice = rowKeyFactory.extractSliceFromBlockId(Bytes.toString(rowKey));
+                String chromosome = rowKeyFactory.extractChromosomeFromBlockId(rowKey);
+                long slice = rowKeyFactory.extractSliceFromBlockId(rowKey);
                 for (Map.Entry<Integer, List<Integer>> entry : otherFilesGroupByFilesBatch.entrySet()) {
                     Integer fileBatch = entry.getKey();
-                    String otherRowKey = rowKeyFactory.generateBlockIdFromSliceAndBatch(fileBatch, chromosome, slice);
-                    Get get = new Get(Bytes.toBytes(otherRowKey));
+                    Get get = new Get(rowKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(fileBatch, chromosome, slice));
                     for (Integer fileId : entry.getValue()) {
                         get.addColumn(helper.getColumnFamily(), fileToNonRefColumnMap.get(fileId));
                         get.addColumn(helper.getColumnFamily(), fileToRefColumnMap.get(fileId));
@@ -120,7 +119,7 @@ public class FillGapsFromArchiveTask extends AbstractFillFromArchiveTask {
                 }
                 results = new HashMap<>();
                 for (Result result : archiveTable.get(gets)) {
-                    results.put(rowKeyFactory.extractFileBatchFromBlockId(Bytes.toString(result.getRow())), result);
+                    results.put(rowKeyFactory.extractFileBatchFromBlockId(result.getRow()), result);
                 }
                 results.put(mainFileBatch, result);
             } else {
@@ -156,7 +155,7 @@ public class FillGapsFromArchiveTask extends AbstractFillFromArchiveTask {
         @Override
         protected void vcfSliceNotFound(int fileId) {
             // We are trying to read Ref and NonRef from this file. There was a gap?
-            logger.warn("Nothing found for fileId " + fileId + " in RK " + Bytes.toString(rowKey));
+            logger.warn("Nothing found for fileId " + fileId + " in RK " + Bytes.toStringBinary(rowKey));
         }
 
         @Override
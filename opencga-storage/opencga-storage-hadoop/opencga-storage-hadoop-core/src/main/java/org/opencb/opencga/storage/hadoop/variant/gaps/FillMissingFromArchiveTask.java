@@ -63,7 +63,7 @@ public class FillMissingFromArchiveTask extends AbstractFillFromArchiveTask {
         @Override
         protected void vcfSliceNotFound(int fileId) {
             // Not reading Ref column. It may have information, but only reference information
-            logger.debug("Nothing to read for fileId " + fileId + " in RK " + Bytes.toString(rowKey));
+            logger.debug("Nothing to read for fileId " + fileId + " in RK " + Bytes.toStringBinary(rowKey));
         }
 
         @Override
@@ -107,9 +107,8 @@ public abstract class AbstractArchiveTableMapper extends AbstractHBaseVariantMap
 
         // Calculate various positions
         byte[] currRowKey = key.get();
-        String sliceKey = Bytes.toString(currRowKey);
-        String chr = rowKeyFactory.extractChromosomeFromBlockId(sliceKey);
-        Long sliceReg = rowKeyFactory.extractSliceFromBlockId(sliceKey);
+        String chr = rowKeyFactory.extractChromosomeFromBlockId(currRowKey);
+        Long sliceReg = rowKeyFactory.extractSliceFromBlockId(currRowKey);
         long startPos = rowKeyFactory.getStartPositionFromSlice(sliceReg);
         long nextStartPos = rowKeyFactory.getStartPositionFromSlice(sliceReg + 1);
 
@@ -123,7 +122,7 @@ public abstract class AbstractArchiveTableMapper extends AbstractHBaseVariantMap
             sampleIds.addAll(sids);
         }
 
-        logger.debug("Processing slice {}", sliceKey);
+        logger.debug("Processing slice {}", Bytes.toStringBinary(currRowKey));
 
 
         VariantMapReduceContext ctx = new VariantMapReduceContext(currRowKey, context, value, fileIds,
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.index;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.*;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Iterator over the {@link ResultScanner}s of a list of scans, opening the scanners concurrently.
+ *
+ * At most "parallelism" scans are in flight at the same time. Each scan is opened in a background thread,
+ * which prefetches the first rows of the scan. If the scan is exhausted within the prefetched rows, the
+ * scanner is closed straight away.
+ *
+ * If ordered, the scanners are returned in the same order as the scans. Otherwise, the scanners are
+ * returned as soon as they are ready.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class ConcurrentResultScannerIterator implements Iterator<ResultScanner>, AutoCloseable {
+
+    private final Logger logger = LoggerFactory.getLogger(ConcurrentResultScannerIterator.class);
+    private final Connection connection;
+    private final TableName tableName;
+    private final Iterator<Scan> scans;
+    private final int parallelism;
+    private final int prefetch;
+    private final boolean ordered;
+    private final ExecutorService executor;
+    private final CompletionService<ResultScanner> completionService;
+    private final Queue<Future<ResultScanner>> pending;
+
+    /**
+     * @param connection    HBase connection
+     * @param tableName     Table to scan
+     * @param scans         Scans to execute
+     * @param parallelism   Max number of scans to execute concurrently
+     * @param prefetch      Number of rows to prefetch from each scan
+     * @param ordered       Return the scanners in the same order as the scans
+     */
+    public ConcurrentResultScannerIterator(Connection connection, TableName tableName, List<Scan> scans, int parallelism,
+                                           int prefetch, boolean ordered) {
+        this.connection = connection;
+        this.tableName = tableName;
+        this.scans = scans.iterator();
+        this.parallelism = Math.max(1, Math.min(parallelism, scans.size()));
+        this.prefetch = Math.max(1, prefetch);
+        this.ordered = ordered;
+        executor = Executors.newFixedThreadPool(this.parallelism, r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        }); // Set Daemon for quick shutdown !!!
+        completionService = new ExecutorCompletionService<>(executor);
+        pending = new LinkedList<>();
+        submitScans();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public ResultScanner next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            Future<ResultScanner> future;
+            if (ordered) {
+                future = pending.poll();
+            } else {
+                future = completionService.take();
+                pending.remove(future);
+            }
+            ResultScanner scanner = future.get();
+            submitScans();
+            return scanner;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw VariantQueryException.internalException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw VariantQueryException.internalException((Exception) e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (Future<ResultScanner> future : pending) {
+            if (!future.cancel(true)) {
+                try {
+                    future.get().close();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException | CancellationException e) {
+                    logger.debug("Ignore error from discarded scan", e);
+                }
+            }
+        }
+        pending.clear();
+    }
+
+    private void submitScans() {
+        while (pending.size() < parallelism && scans.hasNext()) {
+            Scan scan = scans.next();
+            Callable<ResultScanner> callable = () -> openScanner(scan);
+            if (ordered) {
+                pending.add(executor.submit(callable));
+            } else {
+                pending.add(completionService.submit(callable));
+            }
+        }
+    }
+
+    private ResultScanner openScanner(Scan scan) throws IOException {
+        ResultScanner scanner;
+        try (Table table = connection.getTable(tableName)) {
+            scanner = table.getScanner(scan);
+        }
+        Result[] results = scanner.next(prefetch);
+        if (results.length < prefetch) {
+            // Scan exhausted. Release the scanner.
+            scanner.close();
+            scanner = null;
+        }
+        return new PrefetchedResultScanner(results, scanner);
+    }
+
+    /**
+     * ResultScanner returning first the prefetched results, and then the remaining results of the scanner, if any.
+     */
+    private static class PrefetchedResultScanner implements ResultScanner {
+        private final Result[] prefetched;
+        private final ResultScanner scanner;
+        private int idx = 0;
+
+        PrefetchedResultScanner(Result[] prefetched, ResultScanner scanner) {
+            this.prefetched = prefetched;
+            this.scanner = scanner;
+        }
+
+        @Override
+        public Result next() throws IOException {
+            if (idx < prefetched.length) {
+                return prefetched[idx++];
+            } else if (scanner != null) {
+                return scanner.next();
+            } else {
+                return null;
+            }
+        }
+
+        @Override
+        public Result[] next(int nbRows) throws IOException {
+            List<Result> results = new ArrayList<>(nbRows);
+            while (results.size() < nbRows) {
+                Result result = next();
+                if (result == null) {
+                    break;
+                }
+                results.add(result);
+            }
+            return results.toArray(new Result[results.size()]);
+        }
+
+        @Override
+        public void close() {
+            if (scanner != null) {
+                scanner.close();
+            }
+        }
+
+        @Override
+        public Iterator<Result> iterator() {
+            return new Iterator<Result>() {
+                private Result next = null;
+
+                @Override
+                public boolean hasNext() {
+                    if (next == null) {
+                        try {
+                            next = PrefetchedResultScanner.this.next();
+                        } catch (IOException e) {
+                            throw VariantQueryException.internalException(e);
+                        }
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public Result next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Result result = next;
+                    next = null;
+                    return result;
+                }
+            };
+        }
+    }
+}
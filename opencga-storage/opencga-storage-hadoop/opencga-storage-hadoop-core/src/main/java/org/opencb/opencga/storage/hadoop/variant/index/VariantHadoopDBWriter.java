@@ -24,6 +24,7 @@ import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
 import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
 import org.opencb.opencga.storage.hadoop.variant.converters.study.StudyEntryToHBaseConverter;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBLoader;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -36,10 +37,72 @@ import java.util.List;
 public class VariantHadoopDBWriter extends AbstractHBaseDataWriter<Variant, Put> {
 
     private final StudyEntryToHBaseConverter converter;
+    private final SampleIndexDBLoader sampleIndexDBLoader;
 
     public VariantHadoopDBWriter(GenomeHelper helper, String tableName, StudyConfiguration sc, HBaseManager hBaseManager) {
+        this(helper, tableName, sc, hBaseManager, null);
+    }
+
+    /**
+     * @param helper        GenomeHelper
+     * @param tableName     Variants table
+     * @param sc            StudyConfiguration
+     * @param hBaseManager  HBaseManager
+     * @param sampleIndexDBLoader Optional writer for the sample index table. Receives the same variants as this writer.
+     */
+    public VariantHadoopDBWriter(GenomeHelper helper, String tableName, StudyConfiguration sc, HBaseManager hBaseManager,
+                                 SampleIndexDBLoader sampleIndexDBLoader) {
         super(hBaseManager, tableName);
         converter = new StudyEntryToHBaseConverter(helper.getColumnFamily(), sc, true);
+        this.sampleIndexDBLoader = sampleIndexDBLoader;
+    }
+
+    @Override
+    public boolean open() {
+        if (sampleIndexDBLoader != null) {
+            sampleIndexDBLoader.open();
+        }
+        return super.open();
+    }
+
+    @Override
+    public boolean pre() {
+        if (sampleIndexDBLoader != null) {
+            sampleIndexDBLoader.pre();
+        }
+        return super.pre();
+    }
+
+    @Override
+    public boolean write(List<Variant> list) {
+        if (sampleIndexDBLoader != null) {
+            sampleIndexDBLoader.write(list);
+        }
+        return super.write(list);
+    }
+
+    @Override
+    public boolean write(Variant elem) {
+        if (sampleIndexDBLoader != null) {
+            sampleIndexDBLoader.write(elem);
+        }
+        return super.write(elem);
+    }
+
+    @Override
+    public boolean post() {
+        if (sampleIndexDBLoader != null) {
+            sampleIndexDBLoader.post();
+        }
+        return super.post();
+    }
+
+    @Override
+    public boolean close() {
+        if (sampleIndexDBLoader != null) {
+            sampleIndexDBLoader.close();
+        }
+        return super.close();
     }
 
     @Override
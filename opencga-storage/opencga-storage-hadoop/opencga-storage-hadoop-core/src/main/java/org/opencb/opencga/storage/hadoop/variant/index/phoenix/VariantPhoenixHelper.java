@@ -90,6 +90,9 @@ public class VariantPhoenixHelper {
 
         TYPE("TYPE", PVarchar.INSTANCE),
 
+        // Set by every write. Removed once the variant is synchronized with the search index
+        INDEX_NOT_SYNC("INDEX_NOT_SYNC", PBoolean.INSTANCE),
+
         SO(ANNOTATION_PREFIX + "SO", PIntegerArray.INSTANCE),
         GENES(ANNOTATION_PREFIX + "GENES", PVarcharArray.INSTANCE),
         BIOTYPE(ANNOTATION_PREFIX + "BIOTYPE", PVarcharArray.INSTANCE),
@@ -23,6 +23,9 @@ import org.apache.phoenix.schema.types.PUnsignedInt;
 import org.apache.phoenix.schema.types.PVarchar;
 import org.opencb.biodata.models.core.Region;
 import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+
+import java.util.Base64;
 
 /**
  * Created on 25/04/17.
@@ -107,4 +110,28 @@ public class VariantPhoenixKeyFactory {
                     + Bytes.toHex(variantRowKey) + "]", e);
         }
     }
+
+    /**
+     * Build an opaque token to resume a query after the given variant.
+     *
+     * @param variant   Last returned variant
+     * @return          Resume token
+     */
+    public static String generateResumeToken(Variant variant) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(generateVariantRowKey(variant));
+    }
+
+    /**
+     * Get the row key of the last returned variant from a resume token.
+     *
+     * @param resumeToken   Resume token
+     * @return              Row key of the last returned variant
+     */
+    public static byte[] parseResumeToken(String resumeToken) {
+        try {
+            return Base64.getUrlDecoder().decode(resumeToken);
+        } catch (IllegalArgumentException e) {
+            throw new VariantQueryException("Malformed resume token '" + resumeToken + "'", e);
+        }
+    }
 }
@@ -71,6 +71,7 @@ public class VariantSqlQueryParser {
     private final boolean clientSideSkip;
 
     private static final Map<String, String> SQL_OPERATOR;
+    private static final QueryOptions STUDY_CONFIGURATION_READ_ONLY = new QueryOptions(StudyConfigurationManager.READ_ONLY, true);
 
     static {
         SQL_OPERATOR = new HashMap<>();
@@ -81,7 +82,12 @@ public class VariantSqlQueryParser {
     }
 
     // Internal usage only
-    private static final String ALT_GT = "ALT";
+    public static final String ALT_GT = "ALT";
+
+    // Paginate sorting by row key, and return a resume token with each page
+    public static final String KEYSET_PAGINATION = "keysetPagination";
+    // Resume token from a previous page. Implies KEYSET_PAGINATION
+    public static final String RESUME_TOKEN = "resumeToken";
 
     public static class VariantPhoenixSQLQuery {
         private String sql;
@@ -113,12 +119,17 @@ public class VariantSqlQueryParser {
 
         StringBuilder sb = new StringBuilder("SELECT ");
         VariantPhoenixSQLQuery phoenixSQLQuery = new VariantPhoenixSQLQuery();
+        boolean keysetPagination = isKeysetPagination(options);
 
         try {
 
             Set<Column> dynamicColumns = new HashSet<>();
             List<String> regionFilters = getRegionFilters(query);
             List<String> filters = getOtherFilters(query, options, dynamicColumns);
+            if (keysetPagination && StringUtils.isNotEmpty(options.getString(RESUME_TOKEN))) {
+                byte[] rowKey = VariantPhoenixKeyFactory.parseResumeToken(options.getString(RESUME_TOKEN));
+                filters.add(getResumeFilter(VariantPhoenixKeyFactory.extractVariantFromVariantRowKey(rowKey)));
+            }
 
             if (DEFAULT_TABLE_TYPE != PTableType.VIEW && filters.isEmpty()) {
                 // Only region filters. Hint no index usage
@@ -134,7 +145,13 @@ public class VariantSqlQueryParser {
             throw e;
         }
 
-        if (options.getBoolean(QueryOptions.SORT)) {
+        if (keysetPagination) {
+            // Sort by the whole primary key, so the last returned variant can be used to resume the query
+            sb.append(" ORDER BY ").append(VariantColumn.CHROMOSOME.column()).append(',')
+                    .append(VariantColumn.POSITION.column()).append(',')
+                    .append(VariantColumn.REFERENCE.column()).append(',')
+                    .append(VariantColumn.ALTERNATE.column()).append(" ASC ");
+        } else if (options.getBoolean(QueryOptions.SORT)) {
             sb.append(" ORDER BY ").append(VariantColumn.CHROMOSOME.column()).append(',').append(VariantColumn.POSITION.column());
 
             String order = options.getString(QueryOptions.ORDER, QueryOptions.ASCENDING);
@@ -145,7 +162,12 @@ public class VariantSqlQueryParser {
             }
         }
 
-        if (clientSideSkip) {
+        if (keysetPagination) {
+            // Skip is replaced by the resume token
+            if (options.getInt(QueryOptions.LIMIT) > 0) {
+                sb.append(" LIMIT ").append(options.getInt(QueryOptions.LIMIT));
+            }
+        } else if (clientSideSkip) {
             int skip = Math.max(0, options.getInt(QueryOptions.SKIP));
             if (options.getInt(QueryOptions.LIMIT) > 0) {
                 sb.append(" LIMIT ").append(skip + options.getInt(QueryOptions.LIMIT));
@@ -198,7 +220,8 @@ public class VariantSqlQueryParser {
 
             if (returnedFields.contains(VariantField.STUDIES)) {
                 for (Integer studyId : studyIds) {
-                    StudyConfiguration studyConfiguration = studyConfigurationManager.getStudyConfiguration(studyId, null).first();
+                    StudyConfiguration studyConfiguration = studyConfigurationManager
+                            .getStudyConfiguration(studyId, STUDY_CONFIGURATION_READ_ONLY).first();
                     Column studyColumn = VariantPhoenixHelper.getStudyColumn(studyId);
                     sb.append(",\"").append(studyColumn.column()).append('"');
                     sb.append(",\"").append(VariantPhoenixHelper.getFillMissingColumn(studyId).column()).append('"');
@@ -412,6 +435,7 @@ public class VariantSqlQueryParser {
      * {@link VariantQueryParam#COHORT}
      * {@link VariantQueryParam#GENOTYPE}
      * {@link VariantQueryParam#RELEASE}
+     * {@link VariantQueryUtils#VARIANTS_TO_INDEX}
      *
      * Annotation filters:
      * {@link VariantQueryParam#ANNOTATION_EXISTS}
@@ -506,14 +530,16 @@ public class VariantSqlQueryParser {
             }
             List<Integer> studyIds = studyConfigurationManager.getStudyIds(values, options);
             if (studyIds.size() == 1) {
-                defaultStudyConfiguration = studyConfigurationManager.getStudyConfiguration(studyIds.get(0), options).first();
+                defaultStudyConfiguration = studyConfigurationManager
+                        .getStudyConfiguration(studyIds.get(0), STUDY_CONFIGURATION_READ_ONLY).first();
             } else {
                 defaultStudyConfiguration = null;
             }
         } else {
             List<Integer> studyIds = studyConfigurationManager.getStudyIds(options);
             if (studyIds.size() == 1) {
-                defaultStudyConfiguration = studyConfigurationManager.getStudyConfiguration(studyIds.get(0), options).first();
+                defaultStudyConfiguration = studyConfigurationManager
+                        .getStudyConfiguration(studyIds.get(0), STUDY_CONFIGURATION_READ_ONLY).first();
             } else {
                 defaultStudyConfiguration = null;
             }
@@ -680,7 +706,8 @@ public class VariantSqlQueryParser {
                 String[] studyCohort = splitStudyResource(cohort);
                 StudyConfiguration studyConfiguration;
                 if (studyCohort.length == 2) {
-                    studyConfiguration = studyConfigurationManager.getStudyConfiguration(studyCohort[0], defaultStudyConfiguration, null);
+                    studyConfiguration = studyConfigurationManager.getStudyConfiguration(studyCohort[0], defaultStudyConfiguration,
+                            STUDY_CONFIGURATION_READ_ONLY);
                     cohort = studyCohort[1];
                 } else if (studyCohort.length == 1) {
                     studyConfiguration = defaultStudyConfiguration;
@@ -782,6 +809,14 @@ public class VariantSqlQueryParser {
             filters.add(releaseFilters.toString());
         }
 
+        if (isValidParam(query, VARIANTS_TO_INDEX)) {
+            if (query.getBoolean(VARIANTS_TO_INDEX.key())) {
+                filters.add(buildFilter(VariantColumn.INDEX_NOT_SYNC, "=", true));
+            } else {
+                filters.add("\"" + VariantColumn.INDEX_NOT_SYNC + "\" IS NULL");
+            }
+        }
+
         return defaultStudyConfiguration;
     }
 
@@ -962,7 +997,7 @@ public class VariantSqlQueryParser {
             if (split.length == 2) {
                 String study = split[0];
                 cohort = split[1];
-                sc = studyConfigurationManager.getStudyConfiguration(study, defaultStudyConfiguration, null);
+                sc = studyConfigurationManager.getStudyConfiguration(study, defaultStudyConfiguration, STUDY_CONFIGURATION_READ_ONLY);
             } else {
                 cohort = key;
                 sc = defaultStudyConfiguration;
@@ -1239,6 +1274,57 @@ public class VariantSqlQueryParser {
         }
     }
 
+    /**
+     * Check if the query uses keyset pagination. If so, results are sorted by row key, and the skip is ignored.
+     *
+     * @param options   Query options
+     * @return          if the query uses keyset pagination
+     * @throws VariantQueryException if the keyset pagination is combined with a descending order
+     */
+    public static boolean isKeysetPagination(QueryOptions options) {
+        if (options == null || !options.getBoolean(KEYSET_PAGINATION) && StringUtils.isEmpty(options.getString(RESUME_TOKEN))) {
+            return false;
+        }
+        String order = options.getString(QueryOptions.ORDER, QueryOptions.ASCENDING);
+        if (!order.equalsIgnoreCase(QueryOptions.ASCENDING) && !order.equalsIgnoreCase("ASC")) {
+            throw new VariantQueryException("Unable to use " + KEYSET_PAGINATION + " with " + QueryOptions.ORDER + " '" + order + "'. "
+                    + "Only ascending order is supported");
+        }
+        return true;
+    }
+
+    /**
+     * Filter the variants sorted after the given variant, following the primary key order.
+     *
+     * Empty alleles are stored as null, which sort before any other value.
+     *
+     * @param variant   Last returned variant
+     * @return          SQL filter
+     */
+    private String getResumeFilter(Variant variant) {
+        String chromosome = checkStringValue(variant.getChromosome());
+        String reference = checkStringValue(variant.getReference());
+        String alternate = checkStringValue(variant.getAlternate());
+
+        String alternateFilter;
+        if (alternate.isEmpty()) {
+            alternateFilter = VariantColumn.ALTERNATE + " IS NOT NULL";
+        } else {
+            alternateFilter = VariantColumn.ALTERNATE + " > '" + alternate + '\'';
+        }
+        String alleleFilter;
+        if (reference.isEmpty()) {
+            alleleFilter = VariantColumn.REFERENCE + " IS NOT NULL OR " + VariantColumn.REFERENCE + " IS NULL AND " + alternateFilter;
+        } else {
+            alleleFilter = VariantColumn.REFERENCE + " > '" + reference + "' OR "
+                    + VariantColumn.REFERENCE + " = '" + reference + "' AND " + alternateFilter;
+        }
+
+        return "((" + VariantColumn.CHROMOSOME + ", " + VariantColumn.POSITION + ") > ('" + chromosome + "', " + variant.getStart() + ")"
+                + " OR " + VariantColumn.CHROMOSOME + " = '" + chromosome + "' AND " + VariantColumn.POSITION + " = " + variant.getStart()
+                + " AND (" + alleleFilter + "))";
+    }
+
     private String checkStringValue(String value) {
         if (value.contains("'")) {
             throw new VariantQueryException("Unable to query text field using \"'\"");
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Row keys and cell encoding of the sample index table.
+ *
+ * Each row contains the variants of one sample in a batch of {@link #BATCH_SIZE} positions from one chromosome:
+ * <pre>
+ * {SAMPLE_ID}{CHROMOSOME}{SEPARATOR}{BATCH_START}
+ * </pre>
+ * There is one column per genotype and file, with the list of variant row keys (from the variants table) of the sample with that
+ * genotype. The same batch can be written from different files (e.g. split data loads). A batch written more than once from the
+ * same file (i.e. unsorted input) gets additional columns, with the part number as suffix:
+ * <pre>
+ * {GENOTYPE}{PART_SEPARATOR}{FILE_ID}[{PART_SEPARATOR}{PART}]
+ * </pre>
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public final class SampleIndexConverter {
+
+    public static final int BATCH_SIZE = 1_000_000;
+    public static final byte SEPARATOR = 0;
+    public static final char PART_SEPARATOR = '_';
+
+    private SampleIndexConverter() {
+    }
+
+    public static int getBatchStart(int position) {
+        return position - position % BATCH_SIZE;
+    }
+
+    public static byte[] toRowKey(int sampleId) {
+        return Bytes.toBytes(sampleId);
+    }
+
+    public static byte[] toRowKey(int sampleId, String chromosome, int batchStart) {
+        return Bytes.add(Bytes.toBytes(sampleId), Bytes.add(Bytes.toBytes(chromosome), new byte[]{SEPARATOR}), Bytes.toBytes(batchStart));
+    }
+
+    public static byte[] toGenotypeColumn(String genotype, int fileId, int part) {
+        if (part == 0) {
+            return Bytes.toBytes(genotype + PART_SEPARATOR + fileId);
+        } else {
+            return Bytes.toBytes(genotype + PART_SEPARATOR + fileId + PART_SEPARATOR + part);
+        }
+    }
+
+    public static String getGenotype(byte[] column) {
+        String genotype = Bytes.toString(column);
+        int idx = genotype.indexOf(PART_SEPARATOR);
+        return idx < 0 ? genotype : genotype.substring(0, idx);
+    }
+
+    /**
+     * Concatenate the variant row keys, each one preceded by its length.
+     *
+     * @param variantRowKeys Variant row keys
+     * @return Encoded list
+     */
+    public static byte[] encodeVariants(Collection<byte[]> variantRowKeys) {
+        int size = 0;
+        for (byte[] rowKey : variantRowKeys) {
+            size += Bytes.SIZEOF_INT + rowKey.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] rowKey : variantRowKeys) {
+            buffer.putInt(rowKey.length);
+            buffer.put(rowKey);
+        }
+        return buffer.array();
+    }
+
+    public static List<byte[]> decodeVariants(byte[] value, int offset, int length) {
+        List<byte[]> variantRowKeys = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(value, offset, length);
+        while (buffer.hasRemaining()) {
+            byte[] rowKey = new byte[buffer.getInt()];
+            buffer.get(rowKey);
+            variantRowKeys.add(rowKey);
+        }
+        return variantRowKeys;
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
+import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
+import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
+import org.opencb.opencga.storage.hadoop.variant.gaps.FillGapsTask;
+import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixKeyFactory;
+import org.opencb.opencga.storage.hadoop.variant.utils.HBaseVariantTableNameGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.*;
+import static org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantSqlQueryParser.ALT_GT;
+import static org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConverter.*;
+
+/**
+ * Reads the sample index table to find the variants where a set of samples have some genotypes.
+ *
+ * Only files loaded with the sample index are indexed. Those files are registered in the StudyConfiguration
+ * attribute {@link #SAMPLE_INDEX_FILES}. Any operation writing genotypes of a file without updating the sample index
+ * must remove the file from this list.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class SampleIndexDBAdaptor {
+
+    public static final String SAMPLE_INDEX_FILES = "sample_index_files";
+    // Long lists of regions are not efficiently resolved by the query parser
+    public static final int MAX_NARROWED_REGIONS = 100;
+
+    private final GenomeHelper genomeHelper;
+    private final HBaseManager hBaseManager;
+    private final HBaseVariantTableNameGenerator tableNameGenerator;
+    private final StudyConfigurationManager studyConfigurationManager;
+    private final Logger logger = LoggerFactory.getLogger(SampleIndexDBAdaptor.class);
+
+    public SampleIndexDBAdaptor(GenomeHelper genomeHelper, HBaseManager hBaseManager, HBaseVariantTableNameGenerator tableNameGenerator,
+                                StudyConfigurationManager studyConfigurationManager) {
+        this.genomeHelper = genomeHelper;
+        this.hBaseManager = hBaseManager;
+        this.tableNameGenerator = tableNameGenerator;
+        this.studyConfigurationManager = studyConfigurationManager;
+    }
+
+    public static boolean createTableIfNeeded(GenomeHelper genomeHelper, String tableName, Connection con) throws IOException {
+        Compression.Algorithm compression = Compression.getCompressionAlgorithmByName(genomeHelper.getConf().get(
+                HadoopVariantStorageEngine.SAMPLE_INDEX_TABLE_COMPRESSION, Compression.Algorithm.SNAPPY.getName()));
+        return HBaseManager.createTableIfNeeded(con, tableName, genomeHelper.getColumnFamily(), Collections.emptyList(), compression);
+    }
+
+    public static void addIndexedFiles(StudyConfiguration studyConfiguration, Collection<Integer> fileIds) {
+        Set<Integer> indexedFiles = new LinkedHashSet<>(getIndexedFiles(studyConfiguration));
+        indexedFiles.addAll(fileIds);
+        studyConfiguration.getAttributes().put(SAMPLE_INDEX_FILES, new ArrayList<>(indexedFiles));
+    }
+
+    public static void removeIndexedFiles(StudyConfiguration studyConfiguration, Collection<Integer> fileIds) {
+        List<Integer> indexedFiles = new ArrayList<>(getIndexedFiles(studyConfiguration));
+        if (indexedFiles.removeAll(fileIds)) {
+            studyConfiguration.getAttributes().put(SAMPLE_INDEX_FILES, indexedFiles);
+        }
+    }
+
+    public static List<Integer> getIndexedFiles(StudyConfiguration studyConfiguration) {
+        if (studyConfiguration.getAttributes().containsKey(SAMPLE_INDEX_FILES)) {
+            return studyConfiguration.getAttributes().getAsIntegerList(SAMPLE_INDEX_FILES);
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * A sample is indexed if all the files containing the sample are indexed.
+     *
+     * @param studyConfiguration StudyConfiguration
+     * @param sampleId Sample
+     * @return if the sample is indexed
+     */
+    public static boolean isSampleIndexed(StudyConfiguration studyConfiguration, int sampleId) {
+        List<Integer> indexedFiles = getIndexedFiles(studyConfiguration);
+        for (Map.Entry<Integer, LinkedHashSet<Integer>> entry : studyConfiguration.getSamplesInFiles().entrySet()) {
+            if (entry.getValue().contains(sampleId) && !indexedFiles.contains(entry.getKey())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Restrict the query to the variants matching the sample and genotype filters, resolved with the sample index.
+     *
+     * The sample and genotype filters are not removed from the query, so the result of the query does not change.
+     * If there are few candidate variants, they are queried by id. Otherwise, the regions are narrowed to the span
+     * of the candidate variants within each batch.
+     *
+     * The sample index is not used if the filters can not be resolved with it, i.e. negated genotypes, reference
+     * genotypes, OR between samples, non indexed samples, or other filters by id or gene.
+     *
+     * @param query             Query to restrict
+     * @param options           Query options
+     * @param maxVariantsById   Max number of candidate variants to query by id
+     * @return Restricted query, the same query if the sample index can not be used, or null if there are no candidates
+     */
+    public Query restrictQuery(Query query, QueryOptions options, int maxVariantsById) {
+        if (!isValidParam(query, SAMPLE) && !isValidParam(query, GENOTYPE)) {
+            return query;
+        }
+        VariantQueryXref xrefs = VariantQueryUtils.parseXrefs(query);
+        if (!xrefs.getVariants().isEmpty() || !xrefs.getIds().isEmpty()
+                || !xrefs.getGenes().isEmpty() || !xrefs.getOtherXrefs().isEmpty()) {
+            return query;
+        }
+        StudyConfiguration sc = getDefaultStudyConfiguration(query, options, studyConfigurationManager);
+        if (sc == null) {
+            return query;
+        }
+
+        // Same as VariantSqlQueryParser. Different samples are combined with AND
+        Map<Object, List<String>> genotypesMap = new HashMap<>();
+        if (isValidParam(query, GENOTYPE)) {
+            QueryOperation operation = parseGenotypeFilter(query.getString(GENOTYPE.key()), genotypesMap);
+            if (operation == QueryOperation.OR) {
+                return query;
+            }
+        }
+        if (isValidParam(query, SAMPLE)) {
+            String value = query.getString(SAMPLE.key());
+            QueryOperation operation = checkOperator(value);
+            if (operation == QueryOperation.OR) {
+                return query;
+            }
+            for (String sample : splitValue(value, operation)) {
+                genotypesMap.put(sample, Collections.singletonList(ALT_GT));
+            }
+        }
+
+        Map<Integer, Predicate<String>> genotypeFilters = new HashMap<>();
+        for (Map.Entry<Object, List<String>> entry : genotypesMap.entrySet()) {
+            int sampleId;
+            try {
+                sampleId = studyConfigurationManager.getSampleId(entry.getKey(), sc);
+            } catch (VariantQueryException e) {
+                // Let the query parser report the error
+                return query;
+            }
+            Set<String> genotypes = new HashSet<>(entry.getValue());
+            if (!isSampleIndexed(sc, sampleId)
+                    || genotypes.stream().anyMatch(gt -> isNegated(gt) || FillGapsTask.isHomRefDiploid(gt))) {
+                return query;
+            }
+            boolean altGt = genotypes.remove(ALT_GT);
+            Predicate<String> predicate = genotypes::contains;
+            if (altGt) {
+                // Same as the query parser. The genotype contains a 1: 0/1, 1/1, 0|1, 1|0, 1/2, ...
+                predicate = predicate.or(gt -> gt.contains("1"));
+            }
+            genotypeFilters.merge(sampleId, predicate, Predicate::and);
+        }
+
+        List<Region> regions = isValidParam(query, REGION)
+                ? Region.parseRegions(query.getString(REGION.key()), true)
+                : Collections.emptyList();
+
+        SortedSet<byte[]> candidates = null;
+        try {
+            for (Map.Entry<Integer, Predicate<String>> entry : genotypeFilters.entrySet()) {
+                SortedSet<byte[]> variants = get(sc.getStudyId(), entry.getKey(), regions, entry.getValue());
+                if (candidates == null) {
+                    candidates = variants;
+                } else {
+                    candidates.retainAll(variants);
+                }
+                if (candidates.isEmpty()) {
+                    logger.info("No variants found in the sample index");
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            throw VariantQueryException.internalException(e);
+        }
+        logger.info("Found {} candidate variants in the sample index", candidates.size());
+
+        Query restrictedQuery = new Query(query);
+        if (candidates.size() <= maxVariantsById) {
+            List<String> ids = new ArrayList<>(candidates.size());
+            for (byte[] variantRowKey : candidates) {
+                ids.add(VariantPhoenixKeyFactory.extractVariantFromVariantRowKey(variantRowKey).toString());
+            }
+            restrictedQuery.remove(REGION.key());
+            restrictedQuery.put(ID.key(), ids);
+        } else {
+            List<Region> narrowedRegions = narrowRegions(candidates, regions);
+            if (narrowedRegions == null) {
+                logger.info("Too many regions to restrict the query");
+                return query;
+            }
+            restrictedQuery.put(REGION.key(), narrowedRegions);
+        }
+        return restrictedQuery;
+    }
+
+    /**
+     * Build one region for each batch and each of the original regions, from the first to the last candidate variant.
+     * If there are more than {@link #MAX_NARROWED_REGIONS}, the closest regions from the same original region are merged.
+     *
+     * @param candidates    Candidate variants
+     * @param regions       Original regions. Might be empty
+     * @return List of regions, or null if they can not be reduced to {@link #MAX_NARROWED_REGIONS}
+     */
+    private List<Region> narrowRegions(SortedSet<byte[]> candidates, List<Region> regions) {
+        // Narrowed regions, with the index of the original region
+        Map<String, Pair<Integer, Region>> narrowedRegionsMap = new LinkedHashMap<>();
+        for (byte[] variantRowKey : candidates) {
+            Variant variant = VariantPhoenixKeyFactory.extractVariantFromVariantRowKey(variantRowKey);
+            int regionIdx = 0;
+            while (regionIdx < regions.size() && !regions.get(regionIdx).contains(variant.getChromosome(), variant.getStart())) {
+                regionIdx++;
+            }
+            String key = variant.getChromosome() + ':' + getBatchStart(variant.getStart()) + ':' + regionIdx;
+            Pair<Integer, Region> pair = narrowedRegionsMap.get(key);
+            if (pair == null) {
+                Region region = new Region(variant.getChromosome(), variant.getStart(), variant.getStart());
+                narrowedRegionsMap.put(key, Pair.of(regionIdx, region));
+            } else {
+                Region region = pair.getRight();
+                region.setStart(Math.min(region.getStart(), variant.getStart()));
+                region.setEnd(Math.max(region.getEnd(), variant.getStart()));
+            }
+        }
+        List<Pair<Integer, Region>> narrowedRegions = new ArrayList<>(narrowedRegionsMap.values());
+        int numMerges = narrowedRegions.size() - MAX_NARROWED_REGIONS;
+        if (numMerges <= 0) {
+            return narrowedRegions.stream().map(Pair::getRight).collect(Collectors.toList());
+        }
+
+        // Regions that could be merged with the previous one, sorted by the gap between them
+        List<Integer> mergeable = new ArrayList<>();
+        for (int i = 1; i < narrowedRegions.size(); i++) {
+            Pair<Integer, Region> previous = narrowedRegions.get(i - 1);
+            Pair<Integer, Region> current = narrowedRegions.get(i);
+            if (previous.getLeft().equals(current.getLeft())
+                    && previous.getRight().getChromosome().equals(current.getRight().getChromosome())) {
+                mergeable.add(i);
+            }
+        }
+        if (mergeable.size() < numMerges) {
+            return null;
+        }
+        mergeable.sort(Comparator.comparingInt(i -> narrowedRegions.get(i).getRight().getStart()
+                - narrowedRegions.get(i - 1).getRight().getEnd()));
+        Set<Integer> merge = new HashSet<>(mergeable.subList(0, numMerges));
+
+        List<Region> mergedRegions = new ArrayList<>(MAX_NARROWED_REGIONS);
+        for (int i = 0; i < narrowedRegions.size(); i++) {
+            Region region = narrowedRegions.get(i).getRight();
+            if (merge.contains(i)) {
+                mergedRegions.get(mergedRegions.size() - 1).setEnd(region.getEnd());
+            } else {
+                mergedRegions.add(region);
+            }
+        }
+        return mergedRegions;
+    }
+
+    /**
+     * Get the variants where the sample has any of the genotypes accepted by the filter.
+     *
+     * @param studyId   Study
+     * @param sampleId  Sample
+     * @param regions   Regions to read. Empty to read all the sample
+     * @param genotypeFilter Genotypes to accept
+     * @return Sorted set of variant row keys
+     * @throws IOException on error reading from HBase
+     */
+    public SortedSet<byte[]> get(int studyId, int sampleId, List<Region> regions, Predicate<String> genotypeFilter) throws IOException {
+        List<Scan> scans = new ArrayList<>();
+        if (regions.isEmpty()) {
+            Scan scan = new Scan();
+            scan.setRowPrefixFilter(toRowKey(sampleId));
+            scans.add(scan);
+        } else {
+            for (Region region : regions) {
+                Scan scan = new Scan();
+                scan.setStartRow(toRowKey(sampleId, region.getChromosome(), getBatchStart(region.getStart())));
+                // Add a trailing byte to include the last batch
+                scan.setStopRow(Bytes.add(toRowKey(sampleId, region.getChromosome(), getBatchStart(region.getEnd())), new byte[]{0}));
+                scans.add(scan);
+            }
+        }
+
+        String tableName = tableNameGenerator.getSampleIndexTableName(studyId);
+        byte[] family = genomeHelper.getColumnFamily();
+        SortedSet<byte[]> variants = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+        return hBaseManager.act(tableName, table -> {
+            for (Scan scan : scans) {
+                scan.addFamily(family);
+                try (ResultScanner scanner = table.getScanner(scan)) {
+                    for (Result result : scanner) {
+                        for (Cell cell : result.rawCells()) {
+                            if (!genotypeFilter.test(getGenotype(CellUtil.cloneQualifier(cell)))) {
+                                continue;
+                            }
+                            for (byte[] variantRowKey : decodeVariants(cell.getValueArray(), cell.getValueOffset(),
+                                    cell.getValueLength())) {
+                                if (regions.isEmpty() || contains(regions, variantRowKey)) {
+                                    variants.add(variantRowKey);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            return variants;
+        });
+    }
+
+    private static boolean contains(List<Region> regions, byte[] variantRowKey) {
+        Variant variant = VariantPhoenixKeyFactory.extractVariantFromVariantRowKey(variantRowKey);
+        for (Region region : regions) {
+            if (region.contains(variant.getChromosome(), variant.getStart())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
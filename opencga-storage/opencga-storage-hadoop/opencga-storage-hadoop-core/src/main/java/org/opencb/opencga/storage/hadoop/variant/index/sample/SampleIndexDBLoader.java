@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.hadoop.hbase.client.Put;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.tools.variant.merge.VariantMerger;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.hadoop.utils.AbstractHBaseDataWriter;
+import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
+import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
+import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixKeyFactory;
+
+import java.util.*;
+
+import static org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConverter.*;
+
+/**
+ * Writes the non reference genotypes of each sample into the sample index table.
+ *
+ * Expects the variants sorted by chromosome and position. The genotypes of the current batch are buffered, and written
+ * once a variant from a different batch is found, or the buffer is full.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class SampleIndexDBLoader extends AbstractHBaseDataWriter<Variant, Put> {
+
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 1_000_000;
+
+    private final byte[] family;
+    private final StudyConfiguration studyConfiguration;
+    private final int fileId;
+    private final Set<String> defaultGenotypes = new HashSet<>(Arrays.asList("0/0", "0|0"));
+    private final int maxBufferSize;
+
+    // Variant row keys of the current batch, by sample and genotype
+    private final Map<Integer, Map<String, List<byte[]>>> buffer = new HashMap<>();
+    private int bufferSize = 0;
+    private String chromosome = null;
+    private int batchStart = -1;
+    // Number of parts written for each batch from this file
+    private final Map<String, Integer> writtenBatches = new HashMap<>();
+
+    public SampleIndexDBLoader(GenomeHelper helper, HBaseManager hBaseManager, String tableName, StudyConfiguration sc, int fileId) {
+        this(helper, hBaseManager, tableName, sc, fileId, DEFAULT_MAX_BUFFER_SIZE);
+    }
+
+    public SampleIndexDBLoader(GenomeHelper helper, HBaseManager hBaseManager, String tableName, StudyConfiguration sc, int fileId,
+                               int maxBufferSize) {
+        super(hBaseManager, tableName);
+        family = helper.getColumnFamily();
+        studyConfiguration = sc;
+        this.fileId = fileId;
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    @Override
+    protected List<Put> convert(List<Variant> variants) {
+        List<Put> puts = new ArrayList<>();
+        for (Variant variant : variants) {
+            if (!HadoopVariantStorageEngine.TARGET_VARIANT_TYPE_SET.contains(variant.getType())) {
+                continue;
+            }
+            int variantBatchStart = getBatchStart(variant.getStart());
+            if (variantBatchStart != batchStart || !variant.getChromosome().equals(chromosome)) {
+                puts.addAll(flush());
+                chromosome = variant.getChromosome();
+                batchStart = variantBatchStart;
+            }
+
+            StudyEntry studyEntry = variant.getStudies().get(0);
+            Integer gtIdx = studyEntry.getFormatPositions().get(VariantMerger.GT_KEY);
+            if (gtIdx == null) {
+                continue;
+            }
+            byte[] variantRowKey = null;
+            int sampleIdx = 0;
+            for (String sampleName : studyEntry.getOrderedSamplesName()) {
+                String gt = studyEntry.getSamplesData().get(sampleIdx).get(gtIdx);
+                sampleIdx++;
+                if (defaultGenotypes.contains(gt)) {
+                    continue;
+                }
+                if (variantRowKey == null) {
+                    variantRowKey = VariantPhoenixKeyFactory.generateVariantRowKey(variant);
+                }
+                Integer sampleId = studyConfiguration.getSampleIds().get(sampleName);
+                buffer.computeIfAbsent(sampleId, k -> new HashMap<>())
+                        .computeIfAbsent(gt, k -> new ArrayList<>())
+                        .add(variantRowKey);
+                bufferSize++;
+            }
+            if (bufferSize >= maxBufferSize) {
+                puts.addAll(flush());
+            }
+        }
+        return puts;
+    }
+
+    @Override
+    protected List<Put> getPendingMutations() {
+        return flush();
+    }
+
+    private List<Put> flush() {
+        if (buffer.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int part = writtenBatches.merge(chromosome + ':' + batchStart, 1, Integer::sum) - 1;
+        List<Put> puts = new ArrayList<>(buffer.size());
+        for (Map.Entry<Integer, Map<String, List<byte[]>>> sampleEntry : buffer.entrySet()) {
+            Put put = new Put(toRowKey(sampleEntry.getKey(), chromosome, batchStart));
+            for (Map.Entry<String, List<byte[]>> gtEntry : sampleEntry.getValue().entrySet()) {
+                put.addColumn(family, toGenotypeColumn(gtEntry.getKey(), fileId, part), encodeVariants(gtEntry.getValue()));
+            }
+            puts.add(put);
+        }
+        buffer.clear();
+        bufferSize = 0;
+        return puts;
+    }
+}
@@ -16,7 +16,9 @@
 
 package org.opencb.opencga.storage.hadoop.variant.metadata;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import org.apache.avro.generic.GenericRecord;
@@ -24,6 +26,10 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.*;
+import org.apache.hadoop.hbase.filter.ColumnPrefixFilter;
+import org.apache.hadoop.hbase.filter.CompareFilter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.util.StopWatch;
 import org.opencb.commons.datastore.core.QueryOptions;
@@ -36,6 +42,7 @@ import org.opencb.opencga.storage.core.variant.io.json.mixin.GenericRecordAvroJs
 import org.opencb.opencga.storage.hadoop.utils.HBaseLock;
 import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
 import org.opencb.opencga.storage.hadoop.variant.index.VariantTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.utils.HBaseVariantTableNameGenerator;
 import org.slf4j.Logger;
@@ -43,10 +50,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.zip.DataFormatException;
@@ -60,6 +71,8 @@ import static org.opencb.opencga.storage.hadoop.variant.metadata.HBaseVariantMet
  */
 public class HBaseStudyConfigurationDBAdaptor extends StudyConfigurationAdaptor {
 
+    private static final String DELTA_BASE = "base";
+    private static final String DELTA_PATCH = "delta";
     private static Logger logger = LoggerFactory.getLogger(HBaseStudyConfigurationDBAdaptor.class);
 
     private final Configuration configuration;
@@ -68,6 +81,9 @@ public class HBaseStudyConfigurationDBAdaptor extends StudyConfigurationAdaptor
     private final ObjectMapper objectMapper;
     private final String tableName;
     private final HBaseLock lock;
+    private final int maxDeltas;
+    // Number of deltas stored after the last full StudyConfiguration, by studyId
+    private final Map<Integer, Integer> pendingDeltas = new ConcurrentHashMap<>();
     private Boolean tableExists = null; // unknown
 
 
@@ -88,6 +104,8 @@ public class HBaseStudyConfigurationDBAdaptor extends StudyConfigurationAdaptor
             this.hBaseManager = new HBaseManager(hBaseManager);
         }
         lock = new HBaseLock(this.hBaseManager, this.tableName, genomeHelper.getColumnFamily(), null);
+        maxDeltas = configuration.getInt(HadoopVariantStorageEngine.STUDY_CONFIGURATION_MAX_DELTAS,
+                HadoopVariantStorageEngine.DEFAULT_STUDY_CONFIGURATION_MAX_DELTAS);
     }
 
     @Override
@@ -140,39 +158,32 @@ public class HBaseStudyConfigurationDBAdaptor extends StudyConfigurationAdaptor
         StopWatch watch = new StopWatch().start();
         String error = null;
         List<StudyConfiguration> studyConfigurationList = Collections.emptyList();
-        Get get = new Get(getStudyConfigurationRowKey(studyId));
-        get.addColumn(genomeHelper.getColumnFamily(), getValueColumn());
+        byte[] row = getStudyConfigurationRowKey(studyId);
+        byte[] family = genomeHelper.getColumnFamily();
         logger.debug("Get StudyConfiguration {} from DB {}", studyId, tableName);
 
-        if (timeStamp != null) {
-            try {
-                get.setTimeRange(timeStamp + 1, Long.MAX_VALUE);
-            } catch (IOException e) {
-                //This should not happen ever.
-                throw new IllegalArgumentException(e);
-            }
-        }
-
         try {
             if (hBaseManager.tableExists(tableName)) {
                 studyConfigurationList = hBaseManager.act(tableName, table -> {
-                    Result result = table.get(get);
-                    if (result.isEmpty()) {
+                    if (timeStamp != null) {
+                        // Check the last timeStamp before reading the whole StudyConfiguration
+                        Result result = table.get(new Get(row).addColumn(family, getTimeStampColumn()));
+                        byte[] lastTimeStamp = result.getValue(family, getTimeStampColumn());
+                        if (lastTimeStamp != null && Bytes.toLong(lastTimeStamp) == timeStamp) {
+                            return Collections.emptyList();
+                        }
+                    }
+                    Result result = table.get(new Get(row).addFamily(family));
+                    byte[] value = result.getValue(family, getValueColumn());
+                    if (value == null) {
                         return Collections.emptyList();
                     } else {
-                        byte[] value = result.getValue(genomeHelper.getColumnFamily(), getValueColumn());
-                        // Try to decompress value.
-                        try {
-                            value = CompressionUtils.decompress(value);
-                        } catch (DataFormatException e) {
-                            if (value[0] == '{') {
-                                logger.debug("StudyConfiguration was not compressed", e);
-                            } else {
-                                throw new IllegalStateException("Problem reading StudyConfiguration "
-                                        + studyId + " from table " + tableName, e);
-                            }
+                        JsonNode json = objectMapper.readTree(decompress(studyId, value));
+                        json = applyDeltas(studyId, json, result.getFamilyMap(family));
+                        StudyConfiguration studyConfiguration = objectMapper.treeToValue(json, StudyConfiguration.class);
+                        if (timeStamp != null && timeStamp.equals(studyConfiguration.getTimeStamp())) {
+                            return Collections.emptyList();
                         }
-                        StudyConfiguration studyConfiguration = objectMapper.readValue(value, StudyConfiguration.class);
                         return Collections.singletonList(studyConfiguration);
                     }
                 });
@@ -184,8 +195,60 @@ public class HBaseStudyConfigurationDBAdaptor extends StudyConfigurationAdaptor
                 studyConfigurationList.size(), studyConfigurationList.size(), "", error, studyConfigurationList);
     }
 
+    private byte[] decompress(int studyId, byte[] value) throws IOException {
+        // Try to decompress value.
+        try {
+            return CompressionUtils.decompress(value);
+        } catch (DataFormatException e) {
+            if (value[0] == '{') {
+                logger.debug("StudyConfiguration was not compressed", e);
+                return value;
+            } else {
+                throw new IllegalStateException("Problem reading StudyConfiguration "
+                        + studyId + " from table " + tableName, e);
+            }
+        }
+    }
+
+    /**
+     * Apply the deltas stored after the last full version of the StudyConfiguration.
+     *
+     * @param studyId   Study id
+     * @param json      Last full version of the StudyConfiguration
+     * @param columns   All the columns from the StudyConfiguration row
+     * @return          Current version of the StudyConfiguration
+     * @throws IOException if a delta can not be read
+     */
+    private JsonNode applyDeltas(int studyId, JsonNode json, NavigableMap<byte[], byte[]> columns) throws IOException {
+        byte[] deltaPrefix = getDeltaColumnPrefix();
+        int numDeltas = 0;
+        for (Map.Entry<byte[], byte[]> entry : columns.tailMap(deltaPrefix).entrySet()) {
+            if (!Bytes.startsWith(entry.getKey(), deltaPrefix)) {
+                break;
+            }
+            JsonNode delta = objectMapper.readTree(decompress(studyId, entry.getValue()));
+            long currentTimeStamp = json.path("timeStamp").asLong();
+            if (delta.path(DELTA_BASE).asLong() == currentTimeStamp) {
+                json = JsonDeltaUtils.apply(json, delta.get(DELTA_PATCH));
+                numDeltas++;
+            } else {
+                // Left behind by a concurrent full update
+                logger.warn("Discard delta {} from StudyConfiguration {}. Expected base timeStamp {}, found {}",
+                        Bytes.toString(entry.getKey()), studyId, currentTimeStamp, delta.path(DELTA_BASE).asLong());
+            }
+        }
+        pendingDeltas.put(studyId, numDeltas);
+        return json;
+    }
+
     @Override
     protected QueryResult updateStudyConfiguration(StudyConfiguration studyConfiguration, QueryOptions options) {
+        return updateStudyConfiguration(studyConfiguration, null, options);
+    }
+
+    @Override
+    protected QueryResult updateStudyConfiguration(StudyConfiguration studyConfiguration, StudyConfiguration previous,
+                                                   QueryOptions options) {
         long startTime = System.currentTimeMillis();
         String error = "";
         logger.info("Update StudyConfiguration {}", studyConfiguration.getStudyName());
@@ -195,15 +258,14 @@ public class HBaseStudyConfigurationDBAdaptor extends StudyConfigurationAdaptor
 
         try {
             hBaseManager.act(tableName, table -> {
-                byte[] bytes = objectMapper.writeValueAsBytes(studyConfiguration);
+                JsonNode json = objectMapper.valueToTree(studyConfiguration);
+                byte[] bytes = objectMapper.writeValueAsBytes(json);
                 // Compress json
                 // Avoid "java.lang.IllegalArgumentException: KeyValue size too large"
                 bytes = CompressionUtils.compress(bytes);
-                Put put = new Put(getStudyConfigurationRowKey(studyConfiguration));
-                put.addColumn(genomeHelper.getColumnFamily(), getValueColumn(), studyConfiguration.getTimeStamp(), bytes);
-                put.addColumn(genomeHelper.getColumnFamily(), getTypeColumn(), studyConfiguration.getTimeStamp(),
-                        Type.STUDY_CONFIGURATION.bytes());
-                table.put(put);
+                if (!updateStudyConfigurationDelta(table, studyConfiguration, previous, json, bytes.length)) {
+                    updateStudyConfiguration(table, studyConfiguration, bytes);
+                }
             });
         } catch (IOException e) {
             throw new UncheckedIOException(e);
@@ -212,6 +274,89 @@ public class HBaseStudyConfigurationDBAdaptor extends StudyConfigurationAdaptor
         return new QueryResult<>("", (int) (System.currentTimeMillis() - startTime), 0, 0, "", error, Collections.emptyList());
     }
 
+    /**
+     * Store only the changes from the previous version of the StudyConfiguration.
+     * The delta is only written if the last stored version is the previous version.
+     *
+     * @param table                 Metadata table
+     * @param studyConfiguration    StudyConfiguration to store
+     * @param previous              Last known version of the StudyConfiguration
+     * @param json                  StudyConfiguration as json
+     * @param size                  Size of the compressed StudyConfiguration
+     * @return                      If the delta was written
+     * @throws IOException          on error writing the delta
+     */
+    private boolean updateStudyConfigurationDelta(Table table, StudyConfiguration studyConfiguration, StudyConfiguration previous,
+                                                  JsonNode json, int size) throws IOException {
+        int studyId = studyConfiguration.getStudyId();
+        if (previous == null || previous.getTimeStamp() == null || previous.getStudyId() != studyId
+                || studyConfiguration.getTimeStamp() == null
+                // Deltas are stored by timeStamp. Do not overwrite a previous delta, or write a delta with the base timeStamp
+                || studyConfiguration.getTimeStamp() <= previous.getTimeStamp()
+                || pendingDeltas.getOrDefault(studyId, maxDeltas) >= maxDeltas) {
+            return false;
+        }
+        JsonNode patch = JsonDeltaUtils.diff(objectMapper.valueToTree(previous), json);
+        ObjectNode delta = objectMapper.createObjectNode();
+        delta.put(DELTA_BASE, previous.getTimeStamp());
+        delta.set(DELTA_PATCH, patch == null ? objectMapper.createObjectNode() : patch);
+        byte[] bytes = CompressionUtils.compress(objectMapper.writeValueAsBytes(delta));
+        if (bytes.length * 2 > size) {
+            // Not worth it. Write the whole StudyConfiguration
+            return false;
+        }
+
+        byte[] row = getStudyConfigurationRowKey(studyConfiguration);
+        byte[] family = genomeHelper.getColumnFamily();
+        RowMutations mutations = new RowMutations(row);
+        mutations.add(new Put(row)
+                .addColumn(family, getDeltaColumn(studyConfiguration.getTimeStamp()), bytes)
+                .addColumn(family, getTimeStampColumn(), Bytes.toBytes(studyConfiguration.getTimeStamp())));
+        boolean written = table.checkAndMutate(row, family, getTimeStampColumn(), CompareFilter.CompareOp.EQUAL,
+                Bytes.toBytes(previous.getTimeStamp()), mutations);
+        if (written) {
+            pendingDeltas.merge(studyId, 1, Integer::sum);
+            logger.debug("Stored delta of {} bytes for StudyConfiguration {}", bytes.length, studyId);
+        } else {
+            logger.debug("StudyConfiguration {} modified since timeStamp {}. Write whole StudyConfiguration",
+                    studyId, previous.getTimeStamp());
+        }
+        return written;
+    }
+
+    /**
+     * Write the whole StudyConfiguration, and remove the deltas.
+     *
+     * @param table                 Metadata table
+     * @param studyConfiguration    StudyConfiguration to store
+     * @param bytes                 Compressed StudyConfiguration
+     * @throws IOException          on error writing the StudyConfiguration
+     */
+    private void updateStudyConfiguration(Table table, StudyConfiguration studyConfiguration, byte[] bytes) throws IOException {
+        byte[] row = getStudyConfigurationRowKey(studyConfiguration);
+        byte[] family = genomeHelper.getColumnFamily();
+        RowMutations mutations = new RowMutations(row);
+
+        Put put = new Put(row);
+        put.addColumn(family, getValueColumn(), studyConfiguration.getTimeStamp(), bytes);
+        put.addColumn(family, getTypeColumn(), studyConfiguration.getTimeStamp(), Type.STUDY_CONFIGURATION.bytes());
+        put.addColumn(family, getTimeStampColumn(), Bytes.toBytes(studyConfiguration.getTimeStamp()));
+        mutations.add(put);
+
+        Get get = new Get(row).addFamily(family)
+                .setFilter(new FilterList(new ColumnPrefixFilter(getDeltaColumnPrefix()), new KeyOnlyFilter()));
+        Result result = table.get(get);
+        if (!result.isEmpty()) {
+            Delete delete = new Delete(row);
+            for (byte[] column : result.getFamilyMap(family).keySet()) {
+                delete.addColumns(family, column);
+            }
+            mutations.add(delete);
+        }
+        table.mutateRow(mutations);
+        pendingDeltas.put(studyConfiguration.getStudyId(), 0);
+    }
+
     @Override
     public BiMap<String, Integer> getStudies(QueryOptions options) {
         Get get = new Get(getStudiesSummaryRowKey());
@@ -239,6 +384,34 @@ public class HBaseStudyConfigurationDBAdaptor extends StudyConfigurationAdaptor
         }
     }
 
+    @Override
+    protected Map<Integer, Long> getStudyTimeStamps(QueryOptions options) {
+        Map<Integer, Long> timeStamps = new HashMap<>();
+        List<Integer> studyIds = getStudyIds(options);
+        if (studyIds.isEmpty()) {
+            return timeStamps;
+        }
+        byte[] family = genomeHelper.getColumnFamily();
+        List<Get> gets = new ArrayList<>(studyIds.size());
+        for (Integer studyId : studyIds) {
+            gets.add(new Get(getStudyConfigurationRowKey(studyId)).addColumn(family, getTimeStampColumn()));
+        }
+        try {
+            Result[] results = hBaseManager.act(tableName, table -> {
+                return table.get(gets);
+            });
+            for (int i = 0; i < results.length; i++) {
+                byte[] timeStamp = results[i].getValue(family, getTimeStampColumn());
+                if (timeStamp != null) {
+                    timeStamps.put(studyIds.get(i), Bytes.toLong(timeStamp));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return timeStamps;
+    }
+
     private void updateStudiesSummary(String study, Integer studyId, QueryOptions options) {
         BiMap<String, Integer> studiesSummary = getStudies(options);
         if (study.isEmpty()) {
@@ -24,6 +24,8 @@ class HBaseVariantMetadataUtils {
     private static final byte[] TYPE_COLUMN = Bytes.toBytes("type");
     private static final byte[] LOCK_COLUMN = Bytes.toBytes("lock");
     private static final byte[] STATUS_COLUMN = Bytes.toBytes("status");
+    private static final byte[] TIMESTAMP_COLUMN = Bytes.toBytes("timeStamp");
+    private static final String DELTA_COLUMN_PREFIX = "delta_";
 
     public enum Type {
         STUDY_CONFIGURATION, STUDIES, VARIANT_FILE_METADATA, FILES;
@@ -99,6 +101,19 @@ class HBaseVariantMetadataUtils {
         return STATUS_COLUMN;
     }
 
+    static byte[] getTimeStampColumn() {
+        return TIMESTAMP_COLUMN;
+    }
+
+    static byte[] getDeltaColumnPrefix() {
+        return Bytes.toBytes(DELTA_COLUMN_PREFIX);
+    }
+
+    static byte[] getDeltaColumn(long timeStamp) {
+        // Pad the timeStamp, so the deltas are sorted by time
+        return Bytes.toBytes(DELTA_COLUMN_PREFIX + String.format("%020d", timeStamp));
+    }
+
     static boolean createMetaTableIfNeeded(HBaseManager hBaseManager, String tableName, GenomeHelper genomeHelper) throws IOException {
         return hBaseManager.createTableIfNeeded(tableName, genomeHelper.getColumnFamily(), Compression.Algorithm.NONE);
     }
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.metadata;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Compute and apply deltas between two json documents.
+ *
+ * A delta between two objects is an object with the changed fields. Changed objects and arrays are described with a nested delta,
+ * and removed fields are listed in {@link #UNSET}. A delta between two arrays is an object with the new {@link #SIZE} of the array
+ * and the changed elements by position. Any other change is described with the new value.
+ *
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+final class JsonDeltaUtils {
+
+    static final String UNSET = "@unset";
+    static final String SIZE = "@size";
+
+    private JsonDeltaUtils() {
+    }
+
+    /**
+     * Compute the delta to transform the base document into the target document.
+     *
+     * @param base      Base document
+     * @param target    Target document
+     * @return          Delta, or null if both documents are equal
+     */
+    static JsonNode diff(JsonNode base, JsonNode target) {
+        if (base == null || base.equals(target)) {
+            return base == null ? target : null;
+        }
+        if (base.isObject() && target.isObject()) {
+            ObjectNode delta = JsonNodeFactory.instance.objectNode();
+            Iterator<Map.Entry<String, JsonNode>> it = target.fields();
+            while (it.hasNext()) {
+                Map.Entry<String, JsonNode> entry = it.next();
+                JsonNode fieldDelta = diff(base.get(entry.getKey()), entry.getValue());
+                if (fieldDelta != null) {
+                    delta.set(entry.getKey(), fieldDelta);
+                }
+            }
+            Iterator<String> baseFields = base.fieldNames();
+            while (baseFields.hasNext()) {
+                String field = baseFields.next();
+                if (!target.has(field)) {
+                    delta.withArray(UNSET).add(field);
+                }
+            }
+            return delta;
+        } else if (base.isArray() && target.isArray()) {
+            ObjectNode delta = JsonNodeFactory.instance.objectNode();
+            delta.put(SIZE, target.size());
+            for (int i = 0; i < target.size(); i++) {
+                JsonNode elementDelta = diff(base.get(i), target.get(i));
+                if (elementDelta != null) {
+                    delta.set(String.valueOf(i), elementDelta);
+                }
+            }
+            return delta;
+        } else {
+            return target;
+        }
+    }
+
+    /**
+     * Apply a delta generated with {@link #diff(JsonNode, JsonNode)} to the base document.
+     *
+     * @param base      Base document. Objects and arrays may be modified.
+     * @param delta     Delta to apply
+     * @return          Resulting document
+     */
+    static JsonNode apply(JsonNode base, JsonNode delta) {
+        if (delta == null) {
+            return base;
+        }
+        if (base != null && base.isObject() && delta.isObject()) {
+            ObjectNode object = (ObjectNode) base;
+            Iterator<Map.Entry<String, JsonNode>> it = delta.fields();
+            while (it.hasNext()) {
+                Map.Entry<String, JsonNode> entry = it.next();
+                if (entry.getKey().equals(UNSET)) {
+                    for (JsonNode field : entry.getValue()) {
+                        object.remove(field.asText());
+                    }
+                } else {
+                    object.set(entry.getKey(), apply(object.get(entry.getKey()), entry.getValue()));
+                }
+            }
+            return object;
+        } else if (base != null && base.isArray() && delta.isObject() && delta.has(SIZE)) {
+            ArrayNode array = (ArrayNode) base;
+            int size = delta.get(SIZE).asInt();
+            while (array.size() > size) {
+                array.remove(array.size() - 1);
+            }
+            for (int i = 0; i < size; i++) {
+                JsonNode elementDelta = delta.get(String.valueOf(i));
+                if (i < array.size()) {
+                    array.set(i, apply(array.get(i), elementDelta));
+                } else {
+                    array.add(elementDelta);
+                }
+            }
+            return array;
+        } else {
+            return delta;
+        }
+    }
+}
@@ -50,6 +50,17 @@ public class HadoopDefaultVariantStatisticsManager extends DefaultVariantStatist
         return super.createStats(variantDBAdaptor, output, cohorts, cohortIds, studyConfiguration, options);
     }
 
+    @Override
+    public void calculateAndLoadStats(VariantDBAdaptor variantDBAdaptor, Map<String, Set<String>> cohorts, Map<String, Integer> cohortIds,
+                                      StudyConfiguration studyConfiguration, QueryOptions options)
+            throws IOException, StorageEngineException {
+        if (options == null) {
+            options = new QueryOptions();
+        }
+        options.putIfAbsent(QueryOptions.SKIP_COUNT, true);
+        super.calculateAndLoadStats(variantDBAdaptor, cohorts, cohortIds, studyConfiguration, options);
+    }
+
 
     @Override
     protected VariantStatsDBWriter newVariantStatisticsDBWriter(VariantDBAdaptor dbAdaptor, StudyConfiguration studyConfiguration,
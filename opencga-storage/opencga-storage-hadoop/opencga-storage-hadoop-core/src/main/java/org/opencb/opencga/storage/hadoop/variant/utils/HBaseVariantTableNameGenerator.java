@@ -16,6 +16,7 @@ public class HBaseVariantTableNameGenerator {
     private static final String VARIANTS_SUFIX = "_variants";
     private static final String META_SUFIX = "_meta";
     private static final String ARCHIVE_SUFIX = "_archive_";
+    private static final String SAMPLE_INDEX_SUFIX = "_sample_index_";
     private static final int MINIMUM_DB_NAME_SIZE = 1;
 
     private final String namespace;
@@ -56,6 +57,10 @@ public class HBaseVariantTableNameGenerator {
         return metaTableName;
     }
 
+    public String getSampleIndexTableName(int studyId) {
+        return getSampleIndexTableName(dbName, studyId, namespace);
+    }
+
     public static String getDBNameFromArchiveTableName(String archiveTableName) {
         int endIndex = checkValidArchiveTableNameGetEndIndex(archiveTableName);
         return archiveTableName.substring(0, endIndex);
@@ -144,6 +149,18 @@ public class HBaseVariantTableNameGenerator {
         return buildTableName(namespace, dbName, ARCHIVE_SUFIX + studyId);
     }
 
+    /**
+     * Get the sample index table name given a StudyId.
+     *
+     * @param dbName given database name
+     * @param studyId Numerical study identifier
+     * @param namespace hbase namespace
+     * @return Table name
+     */
+    public static String getSampleIndexTableName(String dbName, int studyId, String namespace) {
+        return buildTableName(namespace, dbName, SAMPLE_INDEX_SUFIX + studyId);
+    }
+
     public static String getVariantTableName(String dbName, ObjectMap options) {
         return buildTableName(options.getString(HadoopVariantStorageEngine.HBASE_NAMESPACE, ""), "", dbName + VARIANTS_SUFIX);
     }
@@ -141,4 +141,29 @@ public class HBaseLockTest extends VariantStorageBaseTest implements HadoopVaria
         hbaseLock.unlock(getColumn(lockId), lock);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRefreshLock() throws Exception {
+        int lockId = 5;
+        long lock = hbaseLock.lock(getColumn(lockId), 1000, 1000);
+
+        Thread.sleep(500);
+        assertEquals(lock, hbaseLock.refresh(getColumn(lockId), lock, 2000));
+        Thread.sleep(1000);
+
+        // Lock should still be valid
+        thrown.expect(TimeoutException.class);
+        hbaseLock.lock(getColumn(lockId), 1000, 100);
+    }
+
+    @Test
+    public void testRefreshExpiredLock() throws Exception {
+        int lockId = 6;
+        long lock = hbaseLock.lock(getColumn(lockId), 100, 1000);
+        Thread.sleep(200);
+        hbaseLock.lock(getColumn(lockId), 1000, 1000);
+
+        thrown.expect(HBaseLock.IllegalLockStatusException.class);
+        hbaseLock.refresh(getColumn(lockId), lock, 1000);
+    }
+}
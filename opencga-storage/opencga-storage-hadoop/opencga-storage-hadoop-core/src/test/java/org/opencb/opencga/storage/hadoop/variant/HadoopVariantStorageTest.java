@@ -83,6 +83,7 @@ import org.opencb.opencga.storage.core.variant.VariantStorageTest;
 import org.opencb.opencga.storage.hadoop.utils.DeleteHBaseColumnDriver;
 import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
 import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveDriver;
+import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveRowKeyMigrationDriver;
 import org.opencb.opencga.storage.hadoop.variant.executors.MRExecutor;
 import org.opencb.opencga.storage.hadoop.variant.gaps.FillGapsDriver;
 import org.opencb.opencga.storage.hadoop.variant.index.phoenix.PhoenixHelper;
@@ -362,6 +363,9 @@ public interface HadoopVariantStorageTest /*extends VariantStorageManagerTestUti
         options.put(HadoopVariantStorageEngine.VARIANT_TABLE_COMPRESSION, supportedAlgorithms.contains(Compression.Algorithm.SNAPPY)
                 ? Compression.Algorithm.SNAPPY.getName()
                 : Compression.Algorithm.NONE.getName());
+        options.put(HadoopVariantStorageEngine.SAMPLE_INDEX_TABLE_COMPRESSION, supportedAlgorithms.contains(Compression.Algorithm.SNAPPY)
+                ? Compression.Algorithm.SNAPPY.getName()
+                : Compression.Algorithm.NONE.getName());
 
         FileSystem fs = FileSystem.get(HadoopVariantStorageTest.configuration.get());
         String intermediateDirectory = fs.getHomeDirectory().toUri().resolve("opencga_test/").toString();
@@ -475,6 +479,11 @@ public interface HadoopVariantStorageTest /*extends VariantStorageManagerTestUti
                     int r = new DeleteHBaseColumnDriver().privateMain(Commandline.translateCommandline(args), conf);
                     System.out.println("Finish execution DeleteHBaseColumnDriver");
                     return r;
+                } else if (executable.endsWith(ArchiveRowKeyMigrationDriver.class.getName())) {
+                    System.out.println("Executing ArchiveRowKeyMigrationDriver : " + executable + " " + args);
+                    int r = new ArchiveRowKeyMigrationDriver().privateMain(Commandline.translateCommandline(args), conf);
+                    System.out.println("Finish execution ArchiveRowKeyMigrationDriver");
+                    return r;
                 }
             } catch (Exception e) {
                 e.printStackTrace();
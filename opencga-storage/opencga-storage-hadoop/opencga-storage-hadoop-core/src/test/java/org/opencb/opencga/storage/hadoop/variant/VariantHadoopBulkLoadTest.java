@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.compress.Compression;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.ExternalResource;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.hadoop.utils.HBaseDataWriter;
+import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
+import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class VariantHadoopBulkLoadTest extends VariantStorageBaseTest implements HadoopVariantStorageTest {
+
+    @ClassRule
+    public static ExternalResource externalResource = new HadoopExternalResource();
+
+    private static final byte[] FAMILY = Bytes.toBytes("0");
+    private HBaseManager hBaseManager;
+    private Path stagingDir;
+
+    @Before
+    public void setUp() throws Exception {
+        hBaseManager = new HBaseManager(configuration.get());
+        FileSystem fs = FileSystem.get(configuration.get());
+        stagingDir = new Path(fs.getHomeDirectory(), "opencga_test_bulkload");
+    }
+
+    @Test
+    public void testBulkLoadTable() throws Exception {
+        String tableName = DB_NAME + "_bulkload";
+        hBaseManager.createTableIfNeeded(tableName, FAMILY,
+                Arrays.asList(Bytes.toBytes("r020"), Bytes.toBytes("r050"), Bytes.toBytes("r080")), Compression.Algorithm.NONE);
+
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(i);
+        }
+        Collections.shuffle(rows, new Random(1));
+
+        // Small buffer to write several sets of HFiles
+        HBaseDataWriter<Put> writer = new HBaseDataWriter<>(hBaseManager, tableName);
+        writer.setBulkLoad(stagingDir, 500);
+        writer.open();
+        writer.pre();
+        for (Integer row : rows) {
+            writer.write(newPut(row, "v1"));
+        }
+        // Overwrite even rows
+        for (Integer row : rows) {
+            if (row % 2 == 0) {
+                writer.write(newPut(row, "v2"));
+            }
+        }
+        writer.post();
+        writer.close();
+
+        Map<String, String> values = readTable(tableName);
+        assertEquals(100, values.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 2 == 0 ? "v2" : "v1", values.get(getRow(i) + "_c"));
+        }
+        assertEquals(0, FileSystem.get(configuration.get()).listStatus(stagingDir).length);
+    }
+
+    @Test
+    public void testBulkLoadFile() throws Exception {
+        HadoopVariantStorageEngine engine = getVariantStorageEngine();
+        ObjectMap params = new ObjectMap(VariantStorageEngine.Options.ANNOTATE.key(), false)
+                .append(VariantStorageEngine.Options.CALCULATE_STATS.key(), false);
+
+        StudyConfiguration sc1 = new StudyConfiguration(1, "S_1");
+        runDefaultETL(smallInputUri, engine, sc1, params);
+
+        StudyConfiguration sc2 = new StudyConfiguration(2, "S_2");
+        runDefaultETL(smallInputUri, engine, sc2, new ObjectMap(params)
+                .append(HadoopVariantStorageEngine.HADOOP_LOAD_BULK, true)
+                .append(HadoopVariantStorageEngine.HADOOP_LOAD_BULK_BUFFER_SIZE, 100_000));
+
+        // Same archive table
+        Map<String, String> archive1 = readTable(engine.getArchiveTableName(1));
+        Map<String, String> archive2 = readTable(engine.getArchiveTableName(2));
+        assertFalse(archive1.isEmpty());
+        assertEquals(archive1, archive2);
+
+        // Same variants
+        VariantHadoopDBAdaptor dbAdaptor = engine.getDBAdaptor();
+        Map<String, List<List<String>>> variants1 = getSamplesData(dbAdaptor, "S_1");
+        Map<String, List<List<String>>> variants2 = getSamplesData(dbAdaptor, "S_2");
+        assertFalse(variants1.isEmpty());
+        assertEquals(variants1, variants2);
+
+        // Same sample index
+        for (String sample : Arrays.asList("NA19600", "NA19660", "NA19661", "NA19685")) {
+            assertEquals(sample, dbAdaptor.count(new Query(STUDY.key(), "S_1").append(SAMPLE.key(), sample)).first(),
+                    dbAdaptor.count(new Query(STUDY.key(), "S_2").append(SAMPLE.key(), sample)).first());
+        }
+    }
+
+    private Map<String, List<List<String>>> getSamplesData(VariantHadoopDBAdaptor dbAdaptor, String study) {
+        return dbAdaptor.stream(new Query(STUDY.key(), study), new QueryOptions())
+                .collect(Collectors.toMap(Variant::toString, variant -> {
+                    StudyEntry studyEntry = variant.getStudy(study);
+                    return studyEntry == null ? Collections.emptyList() : studyEntry.getSamplesData();
+                }));
+    }
+
+    private Put newPut(int row, String value) {
+        return new Put(Bytes.toBytes(getRow(row))).addColumn(FAMILY, Bytes.toBytes("c"), Bytes.toBytes(value));
+    }
+
+    private String getRow(int i) {
+        return String.format("r%03d", i);
+    }
+
+    private Map<String, String> readTable(String tableName) throws IOException {
+        Map<String, String> cells = new TreeMap<>();
+        hBaseManager.act(tableName, table -> {
+            try (ResultScanner scanner = table.getScanner(new Scan())) {
+                for (Result result : scanner) {
+                    for (Cell cell : result.rawCells()) {
+                        cells.put(Bytes.toStringBinary(CellUtil.cloneRow(cell)) + '_' + Bytes.toStringBinary(CellUtil.cloneQualifier(cell)),
+                                Bytes.toStringBinary(CellUtil.cloneValue(cell)));
+                    }
+                }
+            }
+        });
+        return cells;
+    }
+}
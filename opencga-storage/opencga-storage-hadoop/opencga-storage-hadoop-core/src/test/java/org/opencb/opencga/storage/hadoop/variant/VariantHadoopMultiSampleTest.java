@@ -273,7 +273,7 @@ public class VariantHadoopMultiSampleTest extends VariantStorageBaseTest impleme
             int numBlocks = 0;
             for (Result result : table.getScanner(dbAdaptor.getGenomeHelper().getColumnFamily())) {
                 numBlocks++;
-                int batch = rowKeyFactory.extractFileBatchFromBlockId(Bytes.toString(result.getRow()));
+                int batch = rowKeyFactory.extractFileBatchFromBlockId(result.getRow());
                 for (byte[] column : result.getFamilyMap(dbAdaptor.getGenomeHelper().getColumnFamily()).keySet()) {
                     if (!Bytes.startsWith(column, VARIANT_COLUMN_B_PREFIX)) {
                         int fileId = ArchiveTableHelper.getFileIdFromNonRefColumnName(column);
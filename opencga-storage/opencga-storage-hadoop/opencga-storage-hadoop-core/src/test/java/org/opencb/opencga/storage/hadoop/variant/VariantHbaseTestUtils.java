@@ -100,7 +100,7 @@ public class VariantHbaseTestUtils {
         dbAdaptor.getHBaseManager().act(archiveTableName, table -> {
             for (Result result : table.getScanner(helper.getColumnFamily())) {
                 out.println("-----------------");
-                out.println(Bytes.toString(result.getRow()));
+                out.println(Bytes.toStringBinary(result.getRow()));
                 for (Cell c : result.rawCells()) {
                     out.println('\t' + Bytes.toString(CellUtil.cloneQualifier(c)));
                 }
@@ -268,7 +268,7 @@ public class VariantHbaseTestUtils {
             ResultScanner scanner = table.getScanner(scan);
             for (Result result : scanner) {
                 os.println("--------------------");
-                os.println(Bytes.toString(result.getRow()));
+                os.println(Bytes.toStringBinary(result.getRow()));
 
                 os.println("\t" + Bytes.toString(archiveHelper.getNonRefColumnName()));
                 byte[] value = result.getValue(archiveHelper.getColumnFamily(), archiveHelper.getNonRefColumnName());
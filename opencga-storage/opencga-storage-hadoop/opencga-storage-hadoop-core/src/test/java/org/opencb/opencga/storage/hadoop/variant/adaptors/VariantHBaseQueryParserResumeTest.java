@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.adaptors;
+
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixKeyFactory;
+import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantSqlQueryParser;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class VariantHBaseQueryParserResumeTest {
+
+    @Test
+    public void testResumeTokenRoundTrip() {
+        Variant variant = new Variant("1:1000:A:C");
+        String token = VariantPhoenixKeyFactory.generateResumeToken(variant);
+        byte[] rowKey = VariantPhoenixKeyFactory.parseResumeToken(token);
+        assertArrayEquals(VariantPhoenixKeyFactory.generateVariantRowKey(variant), rowKey);
+        assertEquals(variant, VariantPhoenixKeyFactory.extractVariantFromVariantRowKey(rowKey));
+    }
+
+    @Test(expected = VariantQueryException.class)
+    public void testMalformedResumeToken() {
+        VariantPhoenixKeyFactory.parseResumeToken("not a token!");
+    }
+
+    @Test
+    public void testResumeScans() {
+        Scan chr2 = newScan("2", 1, 5000);
+        Scan chr1Second = newScan("1", 2000, 3000);
+        Scan chr1First = newScan("1", 1, 1000);
+
+        // No token. Only sort
+        List<Scan> scans = VariantHBaseQueryParser.resumeScans(Arrays.asList(chr2, chr1Second, chr1First), null);
+        assertEquals(Arrays.asList(chr1First, chr1Second, chr2), scans);
+
+        // Resume in the middle of the second scan
+        Variant last = new Variant("1:2500:A:C");
+        scans = VariantHBaseQueryParser.resumeScans(Arrays.asList(chr2, chr1Second, chr1First),
+                VariantPhoenixKeyFactory.generateResumeToken(last));
+        assertEquals(2, scans.size());
+        assertTrue(Bytes.compareTo(scans.get(0).getStartRow(), VariantPhoenixKeyFactory.generateVariantRowKey(last)) > 0);
+        assertArrayEquals(chr1Second.getStopRow(), scans.get(0).getStopRow());
+        assertSame(chr2, scans.get(1));
+
+        // Input scans are not modified
+        assertArrayEquals(VariantPhoenixKeyFactory.generateVariantRowKey("1", 2000), chr1Second.getStartRow());
+        assertArrayEquals(VariantPhoenixKeyFactory.generateVariantRowKey("2", 1), chr2.getStartRow());
+    }
+
+    @Test
+    public void testKeysetPagination() {
+        assertFalse(VariantSqlQueryParser.isKeysetPagination(new QueryOptions()));
+        assertTrue(VariantSqlQueryParser.isKeysetPagination(new QueryOptions(VariantSqlQueryParser.KEYSET_PAGINATION, true)));
+        assertTrue(VariantSqlQueryParser.isKeysetPagination(new QueryOptions(VariantSqlQueryParser.RESUME_TOKEN,
+                VariantPhoenixKeyFactory.generateResumeToken(new Variant("1:1000:A:C")))));
+        assertTrue(VariantSqlQueryParser.isKeysetPagination(new QueryOptions(VariantSqlQueryParser.KEYSET_PAGINATION, true)
+                .append(QueryOptions.ORDER, QueryOptions.ASCENDING)));
+    }
+
+    @Test(expected = VariantQueryException.class)
+    public void testKeysetPaginationDescending() {
+        VariantSqlQueryParser.isKeysetPagination(new QueryOptions(VariantSqlQueryParser.KEYSET_PAGINATION, true)
+                .append(QueryOptions.ORDER, QueryOptions.DESCENDING));
+    }
+
+    private Scan newScan(String chromosome, int start, int end) {
+        Scan scan = new Scan();
+        scan.setStartRow(VariantPhoenixKeyFactory.generateVariantRowKey(chromosome, start));
+        scan.setStopRow(VariantPhoenixKeyFactory.generateVariantRowKey(chromosome, end));
+        return scan;
+    }
+}
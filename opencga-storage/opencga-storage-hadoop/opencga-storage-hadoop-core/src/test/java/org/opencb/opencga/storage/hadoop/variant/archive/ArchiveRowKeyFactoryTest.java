@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.archive;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.opencb.opencga.storage.hadoop.variant.archive.ArchiveRowKeyFactory.BINARY_ROW_KEY_VERSION;
+import static org.opencb.opencga.storage.hadoop.variant.archive.ArchiveRowKeyFactory.LEGACY_ROW_KEY_VERSION;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class ArchiveRowKeyFactoryTest {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final ArchiveRowKeyFactory legacyKeyFactory = new ArchiveRowKeyFactory(CHUNK_SIZE, '_', 100, LEGACY_ROW_KEY_VERSION);
+    private final ArchiveRowKeyFactory binaryKeyFactory = new ArchiveRowKeyFactory(CHUNK_SIZE, '_', 100, BINARY_ROW_KEY_VERSION);
+
+    @Test
+    public void testConfiguration() {
+        Configuration conf = new Configuration();
+        assertEquals(LEGACY_ROW_KEY_VERSION, new ArchiveRowKeyFactory(conf).getVersion());
+        ArchiveTableHelper.setRowKeyVersion(conf, BINARY_ROW_KEY_VERSION);
+        assertEquals(BINARY_ROW_KEY_VERSION, new ArchiveRowKeyFactory(conf).getVersion());
+    }
+
+    @Test
+    public void testLegacyRowKey() {
+        byte[] blockId = legacyKeyFactory.generateBlockIdAsBytes(1234, "chr22", 16050075);
+        assertEquals("00012_22_000000016050", Bytes.toString(blockId));
+        assertEquals(LEGACY_ROW_KEY_VERSION, ArchiveRowKeyFactory.getVersion(blockId));
+        checkRowKey(blockId, 12, "22", 16050);
+    }
+
+    @Test
+    public void testBinaryRowKey() {
+        byte[] blockId = binaryKeyFactory.generateBlockIdAsBytes(1234, "chr22", 16050075);
+        assertArrayEquals(new byte[]{BINARY_ROW_KEY_VERSION, 0, 0, 0, 12, 22, 0, 0, 0x3E, (byte) 0xB2}, blockId);
+        assertEquals(BINARY_ROW_KEY_VERSION, ArchiveRowKeyFactory.getVersion(blockId));
+        checkRowKey(blockId, 12, "22", 16050);
+
+        checkRowKey(binaryKeyFactory.generateBlockIdAsBytes(1, "X", 1000), 0, "X", 1);
+        checkRowKey(binaryKeyFactory.generateBlockIdAsBytes(1, "MT", 0), 0, "MT", 0);
+        // Contigs out of the dictionary
+        checkRowKey(binaryKeyFactory.generateBlockIdAsBytes(1, "NC_007605", 1500), 0, "NC_007605", 1);
+        checkRowKey(binaryKeyFactory.generateBlockIdAsBytes(1, "GL000192.1", 547000), 0, "GL000192.1", 547);
+    }
+
+    @Test
+    public void testBinaryRowKeyShorter() {
+        for (String chr : Arrays.asList("1", "22", "X", "MT")) {
+            byte[] legacy = legacyKeyFactory.generateBlockIdAsBytes(1, chr, 100_000_000);
+            byte[] binary = binaryKeyFactory.generateBlockIdAsBytes(1, chr, 100_000_000);
+            assertTrue(binary.length * 2 <= legacy.length);
+        }
+    }
+
+    @Test
+    public void testBinaryRowKeyOrder() {
+        List<byte[]> sortedKeys = Arrays.asList(
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "1", 0),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "1", 255),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "1", 256),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "1", 1_000_000),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "2", 0),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "10", 0),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "X", 0),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "MT", 0),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "GL000192.1", 0),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "GL000192.1", 10),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "GL000192.11", 0),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(1, "1", 0),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(256, "1", 0));
+        for (int i = 1; i < sortedKeys.size(); i++) {
+            assertTrue(Bytes.toStringBinary(sortedKeys.get(i)), Bytes.compareTo(sortedKeys.get(i - 1), sortedKeys.get(i)) < 0);
+        }
+    }
+
+    @Test
+    public void testGenerateSplitArchive() {
+        Configuration conf = new Configuration();
+        conf.setInt(HadoopVariantStorageEngine.ARCHIVE_TABLE_PRESPLIT_SIZE, 10);
+        conf.setInt(HadoopVariantStorageEngine.EXPECTED_FILES_NUMBER, 4500);
+        conf.setInt(HadoopVariantStorageEngine.ARCHIVE_FILE_BATCH_SIZE, 1000);
+        ArchiveTableHelper.setRowKeyVersion(conf, BINARY_ROW_KEY_VERSION);
+
+        List<byte[]> splits = ArchiveTableHelper.generateArchiveTableBootPreSplitHuman(conf);
+        assertEquals(50, splits.size());
+        for (int i = 1; i < splits.size(); i++) {
+            assertTrue(Bytes.compareTo(splits.get(i - 1), splits.get(i)) < 0);
+        }
+        assertEquals(4, binaryKeyFactory.extractFileBatchFromBlockId(splits.get(splits.size() - 1)));
+
+        List<byte[]> humanSplits = GenomeHelper.generateBootPreSplitsHuman(30,
+                (chr, pos) -> binaryKeyFactory.generateBlockIdAsBytes(1, chr, pos));
+        assertEquals(30, humanSplits.size());
+        for (int i = 1; i < humanSplits.size(); i++) {
+            assertTrue(Bytes.compareTo(humanSplits.get(i - 1), humanSplits.get(i)) < 0);
+        }
+    }
+
+    private void checkRowKey(byte[] blockId, int fileBatch, String chromosome, long slice) {
+        // Parse methods should accept any version
+        for (ArchiveRowKeyFactory keyFactory : Arrays.asList(legacyKeyFactory, binaryKeyFactory)) {
+            assertEquals(fileBatch, keyFactory.extractFileBatchFromBlockId(blockId));
+            assertEquals(chromosome, keyFactory.extractChromosomeFromBlockId(blockId));
+            assertEquals(slice, keyFactory.extractSliceFromBlockId(blockId));
+            assertEquals(slice * CHUNK_SIZE, keyFactory.extractPositionFromBlockId(blockId));
+            assertEquals(new Region(chromosome, (int) slice * CHUNK_SIZE, (int) (slice + 1) * CHUNK_SIZE),
+                    keyFactory.extractRegionFromBlockId(blockId));
+        }
+    }
+}
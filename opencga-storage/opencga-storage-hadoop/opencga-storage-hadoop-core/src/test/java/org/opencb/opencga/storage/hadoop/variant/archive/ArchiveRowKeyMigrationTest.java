@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.archive;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.RegionLocator;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.ExternalResource;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageTest;
+import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
+import static org.opencb.opencga.storage.hadoop.variant.archive.ArchiveRowKeyFactory.BINARY_ROW_KEY_VERSION;
+import static org.opencb.opencga.storage.hadoop.variant.archive.ArchiveRowKeyFactory.LEGACY_ROW_KEY_VERSION;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class ArchiveRowKeyMigrationTest extends VariantStorageBaseTest implements HadoopVariantStorageTest {
+
+    @ClassRule
+    public static ExternalResource externalResource = new HadoopExternalResource();
+
+    @Test
+    public void testMigrate() throws Exception {
+        HadoopVariantStorageEngine engine = getVariantStorageEngine();
+        VariantHadoopDBAdaptor dbAdaptor = engine.getDBAdaptor();
+        ObjectMap params = new ObjectMap(VariantStorageEngine.Options.ANNOTATE.key(), false)
+                .append(VariantStorageEngine.Options.CALCULATE_STATS.key(), false);
+
+        runDefaultETL(smallInputUri, engine, new StudyConfiguration(1, "S_1"), params);
+        runDefaultETL(smallInputUri, engine, new StudyConfiguration(2, "S_2"), new ObjectMap(params)
+                .append(HadoopVariantStorageEngine.ARCHIVE_ROW_KEY_VERSION, LEGACY_ROW_KEY_VERSION));
+
+        assertEquals(BINARY_ROW_KEY_VERSION, getRowKeyVersion(dbAdaptor, "S_1"));
+        assertEquals(LEGACY_ROW_KEY_VERSION, getRowKeyVersion(dbAdaptor, "S_2"));
+
+        // Same content with different row keys
+        Map<String, String> archive = readArchiveTable(engine, 1, BINARY_ROW_KEY_VERSION);
+        assertFalse(archive.isEmpty());
+        assertEquals(archive, readArchiveTable(engine, 2, LEGACY_ROW_KEY_VERSION));
+
+        Set<String> variants = getArchiveVariants(dbAdaptor, "S_1", null);
+        Set<String> variantsInRegion = getArchiveVariants(dbAdaptor, "S_1", "1:1000000-5000000");
+        assertFalse(variants.isEmpty());
+        assertFalse(variantsInRegion.isEmpty());
+        assertEquals(variants, getArchiveVariants(dbAdaptor, "S_2", null));
+        assertEquals(variantsInRegion, getArchiveVariants(dbAdaptor, "S_2", "1:1000000-5000000"));
+
+        assertEquals(0, getBinaryRowsRegions(engine, 2).size());
+        engine.migrateArchiveRowKeys("S_2", new ObjectMap());
+
+        assertEquals(BINARY_ROW_KEY_VERSION, getRowKeyVersion(dbAdaptor, "S_2"));
+        // The table is split at the binary row keys before migrating. Migrated rows are not written into one single region
+        assertTrue(getBinaryRowsRegions(engine, 2).size() > 1);
+        assertEquals(archive, readArchiveTable(engine, 2, BINARY_ROW_KEY_VERSION));
+        assertEquals(variants, getArchiveVariants(dbAdaptor, "S_2", null));
+        assertEquals(variantsInRegion, getArchiveVariants(dbAdaptor, "S_2", "1:1000000-5000000"));
+
+        // Nothing to do
+        engine.migrateArchiveRowKeys("S_2", new ObjectMap());
+        assertEquals(archive, readArchiveTable(engine, 2, BINARY_ROW_KEY_VERSION));
+    }
+
+    private int getRowKeyVersion(VariantHadoopDBAdaptor dbAdaptor, String study) {
+        return ArchiveTableHelper.getRowKeyVersion(dbAdaptor.getStudyConfigurationManager().getStudyConfiguration(study, null).first());
+    }
+
+    private Set<String> getArchiveVariants(VariantHadoopDBAdaptor dbAdaptor, String study, String region) {
+        StudyConfiguration sc = dbAdaptor.getStudyConfigurationManager().getStudyConfiguration(study, null).first();
+        Query query = new Query(STUDY.key(), sc.getStudyId())
+                .append(FILE.key(), sc.getIndexedFiles().iterator().next())
+                .append(REGION.key(), region);
+        Set<String> variants = new HashSet<>();
+        dbAdaptor.iterator(query, new QueryOptions("archive", true)).forEachRemaining(variant -> variants.add(variant.toString()));
+        return variants;
+    }
+
+    /**
+     * Get the start keys of the regions with binary row keys.
+     */
+    private Set<String> getBinaryRowsRegions(HadoopVariantStorageEngine engine, int studyId) throws Exception {
+        String tableName = engine.getArchiveTableName(studyId);
+        Set<String> regions = new HashSet<>();
+        try (RegionLocator regionLocator = engine.getDBAdaptor().getHBaseManager().getConnection()
+                .getRegionLocator(TableName.valueOf(tableName))) {
+            engine.getDBAdaptor().getHBaseManager().act(tableName, table -> {
+                try (ResultScanner scanner = table.getScanner(new Scan())) {
+                    for (Result result : scanner) {
+                        if (ArchiveRowKeyFactory.getVersion(result.getRow()) == BINARY_ROW_KEY_VERSION) {
+                            byte[] startKey = regionLocator.getRegionLocation(result.getRow()).getRegionInfo().getStartKey();
+                            regions.add(Bytes.toStringBinary(startKey));
+                        }
+                    }
+                }
+            });
+        }
+        return regions;
+    }
+
+    /**
+     * Read all the cells of the archive table, using the parsed row key.
+     */
+    private Map<String, String> readArchiveTable(HadoopVariantStorageEngine engine, int studyId, int expectedVersion)
+            throws Exception {
+        ArchiveRowKeyFactory keyFactory = new ArchiveRowKeyFactory(1000, '_', 1000);
+        Map<String, String> cells = new TreeMap<>();
+        engine.getDBAdaptor().getHBaseManager().act(engine.getArchiveTableName(studyId), table -> {
+            try (ResultScanner scanner = table.getScanner(new Scan())) {
+                for (Result result : scanner) {
+                    byte[] row = result.getRow();
+                    assertEquals(Bytes.toStringBinary(row), expectedVersion, ArchiveRowKeyFactory.getVersion(row));
+                    String rowKey = keyFactory.extractFileBatchFromBlockId(row) + ":" + keyFactory.extractChromosomeFromBlockId(row)
+                            + ":" + keyFactory.extractSliceFromBlockId(row);
+                    for (Cell cell : result.rawCells()) {
+                        cells.put(rowKey + '_' + Bytes.toStringBinary(CellUtil.cloneQualifier(cell)),
+                                Bytes.toStringBinary(CellUtil.cloneValue(cell)));
+                    }
+                }
+            }
+        });
+        return cells;
+    }
+}
@@ -2,7 +2,12 @@ package org.opencb.opencga.storage.hadoop.variant.converters.study;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.phoenix.schema.types.PUnsignedInt;
 import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.schema.types.PVarcharArray;
 import org.apache.phoenix.schema.types.PhoenixArray;
 import org.junit.Assert;
 import org.junit.Before;
@@ -14,11 +19,15 @@ import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.dummy.DummyStudyConfigurationAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.converters.stats.HBaseToVariantStatsConverter;
+import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixHelper;
+import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixKeyFactory;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created on 06/10/17.
@@ -155,6 +164,63 @@ public class HBaseToStudyEntryConverterTest {
         Assert.assertEquals(s.toString(), expected, s);
     }
 
+    @Test
+    public void testConvertResult() throws Exception {
+        GenomeHelper genomeHelper = new GenomeHelper(new Configuration());
+        converter = new HBaseToStudyEntryConverter(genomeHelper, scm, new HBaseToVariantStatsConverter(genomeHelper));
+        Variant variant = new Variant("1:1000:A:C");
+        byte[] row = VariantPhoenixKeyFactory.generateVariantRowKey(variant);
+        byte[] family = genomeHelper.getColumnFamily();
+
+        List<Cell> cells = new ArrayList<>();
+        cells.add(new KeyValue(row, family, VariantPhoenixHelper.buildSampleColumnKey(1, 1), 2,
+                PVarcharArray.INSTANCE.toBytes(arrayOf("0/0", "PASS"))));
+        // Old version of the same column. Should be ignored
+        cells.add(new KeyValue(row, family, VariantPhoenixHelper.buildSampleColumnKey(1, 1), 1,
+                PVarcharArray.INSTANCE.toBytes(arrayOf("1/1", "PASS"))));
+        cells.add(new KeyValue(row, family, VariantPhoenixHelper.buildSampleColumnKey(1, 3), 1,
+                PVarcharArray.INSTANCE.toBytes(arrayOf("0/1", "PASS"))));
+        cells.add(new KeyValue(row, family, VariantPhoenixHelper.getStudyColumn(1).bytes(), 1,
+                PUnsignedInt.INSTANCE.toBytes(1)));
+        cells.sort(KeyValue.COMPARATOR);
+        Result result = Result.create(cells);
+
+        StudyEntry expected = new StudyEntry("1", Collections.emptyList(), listOf("GT", "FT"))
+                .addSampleData("S1", listOf("0/0", "PASS"))
+                .addSampleData("S2", listOf("?/?", "."))
+                .addSampleData("S3", listOf("0/1", "PASS"))
+                .addSampleData("S4", listOf("?/?", "."))
+                .addSampleData("S5", listOf("?/?", "."))
+                .addSampleData("S6", listOf("?/?", "."));
+        // Convert twice, the second time with the decoded columns from the cache
+        for (int i = 0; i < 2; i++) {
+            Map<Integer, StudyEntry> map = converter.convert(result);
+            Assert.assertEquals(Collections.singleton(1), map.keySet());
+            Assert.assertEquals(map.get(1).toString(), expected, map.get(1));
+        }
+    }
+
+    @Test
+    public void testParseStudyColumn() throws Exception {
+        HBaseToStudyEntryConverter.StudyColumn column = HBaseToStudyEntryConverter.StudyColumn
+                .parse(VariantPhoenixHelper.buildSampleColumnKey(3, 25));
+        Assert.assertEquals(HBaseToStudyEntryConverter.StudyColumn.Type.SAMPLE_DATA, column.getType());
+        Assert.assertEquals(3, column.getStudyId().intValue());
+        Assert.assertEquals(25, column.getSampleId().intValue());
+
+        column = HBaseToStudyEntryConverter.StudyColumn.parse(VariantPhoenixHelper.buildFileColumnKey(3, 7));
+        Assert.assertEquals(HBaseToStudyEntryConverter.StudyColumn.Type.FILE, column.getType());
+        Assert.assertEquals(3, column.getStudyId().intValue());
+        Assert.assertEquals("7", column.getFileId());
+
+        column = HBaseToStudyEntryConverter.StudyColumn.parse(VariantPhoenixHelper.getStudyColumn(3).bytes());
+        Assert.assertEquals(HBaseToStudyEntryConverter.StudyColumn.Type.STUDY, column.getType());
+        Assert.assertEquals(3, column.getStudyId().intValue());
+
+        column = HBaseToStudyEntryConverter.StudyColumn.parse(VariantPhoenixHelper.getStatsColumn(3, 1).bytes());
+        Assert.assertEquals(HBaseToStudyEntryConverter.StudyColumn.Type.OTHER, column.getType());
+    }
+
     private PhoenixArray arrayOf(String... values) {
         return new PhoenixArray(PVarchar.INSTANCE, values);
     }
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.exporters;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.example.GroupReadSupport;
+import org.apache.tools.ant.types.Commandline;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.ExternalResource;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat;
+import org.opencb.opencga.storage.core.variant.io.parquet.VariantToParquetConverter;
+import org.opencb.opencga.storage.hadoop.variant.AbstractAnalysisTableDriver;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageTest;
+
+import java.io.File;
+import java.net.URI;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class HadoopVariantExporterTest extends VariantStorageBaseTest implements HadoopVariantStorageTest {
+
+    @ClassRule
+    public static ExternalResource externalResource = new HadoopExternalResource();
+
+    private static boolean loaded = false;
+    private static StudyConfiguration studyConfiguration;
+
+    @Before
+    @Override
+    public void before() throws Exception {
+        if (!loaded) {
+            clearDB(DB_NAME);
+            studyConfiguration = newStudyConfiguration();
+            runDefaultETL(smallInputUri, getVariantStorageEngine(), studyConfiguration,
+                    new ObjectMap(VariantStorageEngine.Options.ANNOTATE.key(), false)
+                            .append(VariantStorageEngine.Options.CALCULATE_STATS.key(), false));
+            loaded = true;
+        }
+    }
+
+    @Test
+    public void exportParquet() throws Exception {
+        HadoopVariantStorageEngine engine = getVariantStorageEngine();
+        URI output = newOutputUri().resolve("variants.parquet");
+        engine.exportData(output, VariantOutputFormat.PARQUET, new Query(), new QueryOptions()
+                .append(VariantStorageEngine.Options.EXPORT_PARQUET_ROW_GROUP_SIZE.key(), 64 * 1024));
+
+        Path path = new Path(output);
+        Map<String, String> keyValueMetaData = ParquetFileReader.readFooter(new Configuration(), path)
+                .getFileMetaData().getKeyValueMetaData();
+        List<String> samples = Arrays.asList(new ObjectMapper()
+                .readValue(keyValueMetaData.get(VariantToParquetConverter.SAMPLES_METADATA_KEY), String[].class));
+        String study = keyValueMetaData.get(VariantToParquetConverter.STUDY_METADATA_KEY);
+        assertEquals(new HashSet<>(studyConfiguration.getSampleIds().keySet()), new HashSet<>(samples));
+        assertNotNull(study);
+
+        List<String> expected = new ArrayList<>();
+        VariantToParquetConverter converter = new VariantToParquetConverter(study, samples);
+        try (VariantDBIterator iterator = engine.iterator(new Query(), new QueryOptions())) {
+            while (iterator.hasNext()) {
+                GenericRecord record = converter.convert(iterator.next());
+                expected.add(record.get("chromosome") + ":" + record.get("start") + ":" + record.get("reference")
+                        + ":" + record.get("alternate") + " " + record.get("type") + " " + record.get("genotypes"));
+            }
+        }
+        List<String> actual = new ArrayList<>();
+        for (Group group : readParquet(path)) {
+            actual.add(toString(group));
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void exportParquetMapReduce() throws Exception {
+        HadoopVariantStorageEngine engine = getVariantStorageEngine();
+        File outputDir = new File(newOutputUri().resolve("variants_mr").getPath());
+
+        ObjectMap other = new ObjectMap()
+                .append(VariantTableExportDriver.CONFIG_VARIANT_TABLE_EXPORT_TYPE, VariantTableExportDriver.ExportType.PARQUET.name())
+                .append(VariantTableExportDriver.CONFIG_VARIANT_TABLE_EXPORT_PATH, outputDir.toURI().toString())
+                .append(VariantStorageEngine.Options.EXPORT_PARQUET_ROW_GROUP_SIZE.key(), 64 * 1024)
+                .append(AbstractAnalysisTableDriver.TIMESTAMP, System.currentTimeMillis());
+        String args = VariantTableExportDriver.buildCommandLineArgs(
+                engine.getArchiveTableName(studyConfiguration.getStudyId()), engine.getVariantTableName(),
+                studyConfiguration.getStudyId(), Collections.emptyList(), other);
+        Configuration conf = new Configuration(false);
+        HBaseConfiguration.merge(conf, configuration.get());
+        assertEquals(0, new VariantTableExportDriver().privateMain(Commandline.translateCommandline(args), conf));
+
+        Set<String> expected = new HashSet<>();
+        VariantToParquetConverter converter = new VariantToParquetConverter(studyConfiguration.getStudyName(),
+                AnalysisToFileMapper.getSamples(studyConfiguration));
+        try (VariantDBIterator iterator = engine.iterator(new Query(), new QueryOptions())) {
+            while (iterator.hasNext()) {
+                GenericRecord record = converter.convert(iterator.next());
+                expected.add(record.get("chromosome") + ":" + record.get("start") + ":" + record.get("reference")
+                        + ":" + record.get("alternate") + " " + record.get("type") + " " + record.get("genotypes"));
+            }
+        }
+
+        Set<String> actual = new HashSet<>();
+        File[] parts = outputDir.listFiles((dir, name) -> name.startsWith("part-") && name.endsWith(".parquet"));
+        assertNotNull(parts);
+        assertNotEquals(0, parts.length);
+        for (File part : parts) {
+            Map<String, String> keyValueMetaData = ParquetFileReader.readFooter(new Configuration(), new Path(part.toURI()))
+                    .getFileMetaData().getKeyValueMetaData();
+            assertEquals(studyConfiguration.getStudyName(), keyValueMetaData.get(VariantToParquetConverter.STUDY_METADATA_KEY));
+            for (Group group : readParquet(new Path(part.toURI()))) {
+                actual.add(toString(group));
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    private List<Group> readParquet(Path path) throws Exception {
+        List<Group> groups = new ArrayList<>();
+        try (ParquetReader<Group> reader = ParquetReader.builder(new GroupReadSupport(), path).build()) {
+            Group group;
+            while ((group = reader.read()) != null) {
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+
+    private String toString(Group group) {
+        List<String> genotypes = new ArrayList<>();
+        Group genotypesList = group.getGroup("genotypes", 0);
+        for (int i = 0; i < genotypesList.getFieldRepetitionCount("list"); i++) {
+            genotypes.add(genotypesList.getGroup("list", i).getString("element", 0));
+        }
+        return group.getString("chromosome", 0) + ":" + group.getInteger("start", 0) + ":" + group.getString("reference", 0)
+                + ":" + group.getString("alternate", 0) + " " + group.getString("type", 0) + " " + genotypes;
+    }
+}
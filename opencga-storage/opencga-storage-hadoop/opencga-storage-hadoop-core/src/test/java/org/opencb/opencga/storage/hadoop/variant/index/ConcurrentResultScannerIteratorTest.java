@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.index;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.*;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class ConcurrentResultScannerIteratorTest {
+
+    private static final TableName TABLE_NAME = TableName.valueOf("variants");
+    private Connection connection;
+    private List<Scan> scans;
+    private Map<Result, Integer> resultToScan;
+
+    @Before
+    public void setUp() throws Exception {
+        scans = new ArrayList<>();
+        resultToScan = new IdentityHashMap<>();
+        Map<String, List<Result>> resultsByScan = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            Scan scan = new Scan(Bytes.toBytes("row_" + i));
+            List<Result> results = new ArrayList<>();
+            // Some scans with no results, some with more results than the prefetch size
+            for (int r = 0; r < (i * 7) % 23; r++) {
+                Result result = Result.create(new Cell[0]);
+                results.add(result);
+                resultToScan.put(result, i);
+            }
+            resultsByScan.put(Bytes.toString(scan.getStartRow()), results);
+            scans.add(scan);
+        }
+
+        Table table = Mockito.mock(Table.class);
+        Mockito.when(table.getScanner(ArgumentMatchers.any(Scan.class))).thenAnswer(invocation -> {
+            Scan scan = invocation.getArgument(0);
+            // Delay some scans, so they complete out of order
+            Thread.sleep(scan.getStartRow().length % 3);
+            Iterator<Result> iterator = resultsByScan.get(Bytes.toString(scan.getStartRow())).iterator();
+            ResultScanner scanner = Mockito.mock(ResultScanner.class);
+            Mockito.when(scanner.next()).thenAnswer(i -> iterator.hasNext() ? iterator.next() : null);
+            Mockito.when(scanner.next(ArgumentMatchers.anyInt())).thenAnswer(i -> {
+                List<Result> batch = new ArrayList<>();
+                while (batch.size() < (Integer) i.getArgument(0) && iterator.hasNext()) {
+                    batch.add(iterator.next());
+                }
+                return batch.toArray(new Result[batch.size()]);
+            });
+            return scanner;
+        });
+        connection = Mockito.mock(Connection.class);
+        Mockito.when(connection.getTable(TABLE_NAME)).thenReturn(table);
+    }
+
+    @Test
+    public void testOrdered() throws Exception {
+        List<Integer> scanIds = readAll(new ConcurrentResultScannerIterator(connection, TABLE_NAME, scans, 4, 5, true));
+
+        List<Integer> sorted = new ArrayList<>(scanIds);
+        Collections.sort(sorted);
+        assertEquals(sorted, scanIds);
+        assertEquals(resultToScan.size(), scanIds.size());
+    }
+
+    @Test
+    public void testUnordered() throws Exception {
+        List<Integer> scanIds = readAll(new ConcurrentResultScannerIterator(connection, TABLE_NAME, scans, 4, 5, false));
+
+        List<Integer> expected = new ArrayList<>(resultToScan.values());
+        Collections.sort(expected);
+        Collections.sort(scanIds);
+        assertEquals(expected, scanIds);
+    }
+
+    private List<Integer> readAll(ConcurrentResultScannerIterator iterator) {
+        List<Integer> scanIds = new ArrayList<>();
+        while (iterator.hasNext()) {
+            try (ResultScanner scanner = iterator.next()) {
+                for (Result result : scanner) {
+                    scanIds.add(resultToScan.get(result));
+                }
+            }
+        }
+        iterator.close();
+        return scanIds;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.ExternalResource;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageTest;
+import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor;
+import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixKeyFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class SampleIndexTest extends VariantStorageBaseTest implements HadoopVariantStorageTest {
+
+    @ClassRule
+    public static ExternalResource externalResource = new HadoopExternalResource();
+
+    private VariantHadoopDBAdaptor dbAdaptor;
+    private StudyConfiguration studyConfiguration;
+
+    @Before
+    public void setUp() throws Exception {
+        HadoopVariantStorageEngine variantStorageEngine = getVariantStorageEngine();
+        studyConfiguration = newStudyConfiguration();
+        runDefaultETL(smallInputUri, variantStorageEngine, studyConfiguration,
+                new ObjectMap(VariantStorageEngine.Options.ANNOTATE.key(), false)
+                        .append(VariantStorageEngine.Options.CALCULATE_STATS.key(), false));
+        dbAdaptor = variantStorageEngine.getDBAdaptor();
+        studyConfiguration = dbAdaptor.getStudyConfigurationManager().getStudyConfiguration(studyConfiguration.getStudyId(), null).first();
+    }
+
+    @Test
+    public void testIndexedFiles() throws Exception {
+        assertEquals(studyConfiguration.getIndexedFiles(), SampleIndexDBAdaptor.getIndexedFiles(studyConfiguration)
+                .stream().collect(Collectors.toSet()));
+        for (Integer sampleId : studyConfiguration.getSampleIds().values()) {
+            assertTrue(SampleIndexDBAdaptor.isSampleIndexed(studyConfiguration, sampleId));
+        }
+
+        SampleIndexDBAdaptor.removeIndexedFiles(studyConfiguration, studyConfiguration.getIndexedFiles());
+        for (Integer sampleId : studyConfiguration.getSampleIds().values()) {
+            assertFalse(SampleIndexDBAdaptor.isSampleIndexed(studyConfiguration, sampleId));
+        }
+    }
+
+    @Test
+    public void testQueries() throws Exception {
+        checkQueries();
+    }
+
+    @Test
+    public void testSplitData() throws Exception {
+        // Rewrite the sample index as if the variants were loaded from two files with the same samples and regions.
+        // The Hadoop local load does not accept split data yet, so write the sample index directly
+        String tableName = dbAdaptor.getTableNameGenerator().getSampleIndexTableName(studyConfiguration.getStudyId());
+        dbAdaptor.getHBaseManager().act(tableName, table -> {
+            List<Delete> deletes = new ArrayList<>();
+            try (ResultScanner scanner = table.getScanner(new Scan())) {
+                for (Result result : scanner) {
+                    deletes.add(new Delete(result.getRow()));
+                }
+            }
+            table.delete(deletes);
+        });
+
+        List<Variant> variants = new ArrayList<>();
+        dbAdaptor.iterator(new Query(), new QueryOptions()).forEachRemaining(variants::add);
+        int fileId = 100;
+        for (int split = 0; split < 2; split++) {
+            SampleIndexDBLoader loader = new SampleIndexDBLoader(dbAdaptor.getGenomeHelper(), dbAdaptor.getHBaseManager(),
+                    tableName, studyConfiguration, fileId + split);
+            loader.open();
+            loader.pre();
+            for (int i = split; i < variants.size(); i += 2) {
+                loader.write(variants.get(i));
+            }
+            loader.post();
+            loader.close();
+        }
+
+        checkQueries();
+    }
+
+    private void checkQueries() {
+        List<Query> queries = Arrays.asList(
+                new Query(SAMPLE.key(), "NA19600"),
+                new Query(SAMPLE.key(), "NA19600;NA19660"),
+                new Query(GENOTYPE.key(), "NA19600:1|1"),
+                new Query(GENOTYPE.key(), "NA19600:0|1,1|0;NA19661:1|1"),
+                new Query(GENOTYPE.key(), "NA19600:./."),
+                new Query(GENOTYPE.key(), "NA19600:0|0"),
+                new Query(GENOTYPE.key(), "NA19600:!1|1"),
+                new Query(SAMPLE.key(), "NA19660").append(REGION.key(), "1:1000000-3000000,2"),
+                new Query(GENOTYPE.key(), "NA19685:1|0").append(REGION.key(), "1:1000000-7000000,1:16000000-17000000"));
+
+        for (Query query : queries) {
+            Set<String> expected = getVariants(query, new QueryOptions(VariantHadoopDBAdaptor.SAMPLE_INDEX, false));
+            assertFalse(query.toJson(), expected.isEmpty());
+
+            // Query candidate variants by id
+            assertEquals(query.toJson(), expected, getVariants(query, new QueryOptions()));
+            // Narrow regions
+            assertEquals(query.toJson(), expected, getVariants(query,
+                    new QueryOptions(VariantHadoopDBAdaptor.SAMPLE_INDEX_MAX_VARIANTS_BY_ID, 0)));
+            assertEquals(query.toJson(), expected.size(), dbAdaptor.count(query).first().intValue());
+            assertEquals(query.toJson(), expected.size(), dbAdaptor.count(query,
+                    new QueryOptions(VariantHadoopDBAdaptor.SAMPLE_INDEX, false)).first().intValue());
+            assertEquals(query.toJson(), expected.size(), dbAdaptor.count(query,
+                    new QueryOptions(VariantHadoopDBAdaptor.SAMPLE_INDEX_MAX_VARIANTS_BY_ID, 0)).first().intValue());
+        }
+    }
+
+    @Test
+    public void testRestrictQuery() throws Exception {
+        SampleIndexDBAdaptor sampleIndexDBAdaptor = dbAdaptor.getSampleIndexDBAdaptor();
+        QueryOptions options = new QueryOptions();
+
+        Query query = new Query(GENOTYPE.key(), "NA19600:1|1");
+        Query restrictedQuery = sampleIndexDBAdaptor.restrictQuery(query, options, 1000);
+        assertEquals(query.getString(GENOTYPE.key()), restrictedQuery.getString(GENOTYPE.key()));
+        assertFalse(restrictedQuery.getAsStringList(ID.key()).isEmpty());
+
+        restrictedQuery = sampleIndexDBAdaptor.restrictQuery(query, options, 0);
+        assertFalse(restrictedQuery.containsKey(ID.key()));
+        assertFalse(restrictedQuery.getString(REGION.key()).isEmpty());
+
+        // Not supported by the sample index
+        query = new Query(GENOTYPE.key(), "NA19600:!1|1");
+        assertSame(query, sampleIndexDBAdaptor.restrictQuery(query, options, 1000));
+        query = new Query(GENOTYPE.key(), "NA19600:0|0");
+        assertSame(query, sampleIndexDBAdaptor.restrictQuery(query, options, 1000));
+        query = new Query(SAMPLE.key(), "NA19600,NA19660");
+        assertSame(query, sampleIndexDBAdaptor.restrictQuery(query, options, 1000));
+
+        // No candidates
+        query = new Query(GENOTYPE.key(), "NA19600:2|2");
+        assertNull(sampleIndexDBAdaptor.restrictQuery(query, options, 1000));
+        assertEquals(0, dbAdaptor.count(query).first().intValue());
+        assertEquals(0, dbAdaptor.get(query, options).getNumResults());
+    }
+
+    @Test
+    public void testEncodeVariants() throws Exception {
+        List<byte[]> rowKeys = Arrays.asList(
+                VariantPhoenixKeyFactory.generateVariantRowKey(new Variant("1:1000:A:C")),
+                VariantPhoenixKeyFactory.generateVariantRowKey(new Variant("1:1000:-:CT")),
+                VariantPhoenixKeyFactory.generateVariantRowKey(new Variant("1:1005:AT:-")));
+        byte[] value = Bytes.add(new byte[]{1, 2}, SampleIndexConverter.encodeVariants(rowKeys));
+
+        List<byte[]> decoded = SampleIndexConverter.decodeVariants(value, 2, value.length - 2);
+        assertEquals(rowKeys.size(), decoded.size());
+        for (int i = 0; i < rowKeys.size(); i++) {
+            assertArrayEquals(rowKeys.get(i), decoded.get(i));
+        }
+        assertEquals(Collections.emptyList(), SampleIndexConverter.decodeVariants(new byte[0], 0, 0));
+
+        assertEquals("0/1", SampleIndexConverter.getGenotype(SampleIndexConverter.toGenotypeColumn("0/1", 1, 0)));
+        assertEquals("0/1", SampleIndexConverter.getGenotype(SampleIndexConverter.toGenotypeColumn("0/1", 1, 3)));
+        assertFalse(Bytes.equals(SampleIndexConverter.toGenotypeColumn("0/1", 1, 0), SampleIndexConverter.toGenotypeColumn("0/1", 2, 0)));
+    }
+
+    private Set<String> getVariants(Query query, QueryOptions options) {
+        return dbAdaptor.get(query, options).getResult().stream().map(Variant::toString).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.metadata;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.filter.ColumnPrefixFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.ExternalResource;
+import org.opencb.opencga.storage.core.metadata.BatchFileOperation;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
+import org.opencb.opencga.storage.core.variant.io.json.mixin.GenericRecordAvroJsonMixin;
+import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
+import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageTest;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.opencb.opencga.storage.hadoop.variant.metadata.HBaseVariantMetadataUtils.getDeltaColumnPrefix;
+import static org.opencb.opencga.storage.hadoop.variant.metadata.HBaseVariantMetadataUtils.getStudyConfigurationRowKey;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class HBaseStudyConfigurationDBAdaptorTest implements HadoopVariantStorageTest {
+
+    @ClassRule
+    public static ExternalResource externalResource = new HadoopExternalResource();
+
+    private static final String META_TABLE = "study_configuration_delta_test_meta";
+    private static final int STUDY_ID = 1;
+    private Configuration conf;
+    private HBaseManager hBaseManager;
+
+    @Before
+    public void setUp() throws Exception {
+        conf = new Configuration(configuration.get());
+        hBaseManager = new HBaseManager(conf);
+        if (hBaseManager.tableExists(META_TABLE)) {
+            hBaseManager.getConnection().getAdmin().disableTable(TableName.valueOf(META_TABLE));
+            hBaseManager.getConnection().getAdmin().deleteTable(TableName.valueOf(META_TABLE));
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        hBaseManager.close();
+    }
+
+    @Test
+    public void testUpdateWithDeltas() throws Exception {
+        StudyConfigurationManager scm = newStudyConfigurationManager();
+        StudyConfiguration expected = addFiles(scm, 5);
+
+        assertEquals(4, countDeltas());
+        assertEquals(toJsonNode(expected), toJsonNode(newStudyConfigurationManager().getStudyConfiguration(STUDY_ID, null).first()));
+    }
+
+    @Test
+    public void testCompactDeltas() throws Exception {
+        conf.setInt(HadoopVariantStorageEngine.STUDY_CONFIGURATION_MAX_DELTAS, 2);
+        StudyConfigurationManager scm = newStudyConfigurationManager();
+        StudyConfiguration expected = addFiles(scm, 4);
+
+        // Full, delta, delta, full
+        assertEquals(0, countDeltas());
+        assertEquals(toJsonNode(expected), toJsonNode(newStudyConfigurationManager().getStudyConfiguration(STUDY_ID, null).first()));
+    }
+
+    @Test
+    public void testConcurrentFullUpdate() throws Exception {
+        StudyConfigurationManager scm = newStudyConfigurationManager();
+        addFiles(scm, 3);
+        StudyConfiguration outdated = scm.getStudyConfiguration(STUDY_ID, null).first();
+
+        // Update from a different manager, without deltas
+        conf.setInt(HadoopVariantStorageEngine.STUDY_CONFIGURATION_MAX_DELTAS, 0);
+        StudyConfigurationManager otherScm = newStudyConfigurationManager();
+        StudyConfiguration sc = otherScm.getStudyConfiguration(STUDY_ID, null).first();
+        sc.getAttributes().put("other", true);
+        otherScm.updateStudyConfiguration(sc, null);
+        assertEquals(0, countDeltas());
+
+        // The first manager does not know about the last update. Should write the whole StudyConfiguration
+        outdated.getAttributes().put("outdated", true);
+        scm.updateStudyConfiguration(outdated, null);
+        assertEquals(0, countDeltas());
+        assertEquals(toJsonNode(outdated), toJsonNode(newStudyConfigurationManager().getStudyConfiguration(STUDY_ID, null).first()));
+    }
+
+    @Test
+    public void testRapidUpdates() throws Exception {
+        StudyConfigurationManager scm = newStudyConfigurationManager();
+        StudyConfiguration sc = addFiles(scm, 1);
+
+        // Updates within the same millisecond must not overwrite the previous delta
+        long timeStamp = sc.getTimeStamp();
+        for (int i = 0; i < 5; i++) {
+            sc.getAttributes().put("update_" + i, i);
+            scm.updateStudyConfiguration(sc, null);
+            assertTrue(sc.getTimeStamp() > timeStamp);
+            timeStamp = sc.getTimeStamp();
+        }
+
+        assertEquals(5, countDeltas());
+        assertEquals(toJsonNode(sc), toJsonNode(newStudyConfigurationManager().getStudyConfiguration(STUDY_ID, null).first()));
+    }
+
+    @Test
+    public void testGetStudyTimeStamps() throws Exception {
+        StudyConfigurationManager scm = newStudyConfigurationManager();
+        assertEquals(Collections.emptyMap(), scm.getStudyTimeStamps(null));
+
+        StudyConfiguration sc = addFiles(scm, 2);
+        assertEquals(Collections.singletonMap(STUDY_ID, sc.getTimeStamp()), newStudyConfigurationManager().getStudyTimeStamps(null));
+    }
+
+    private StudyConfiguration addFiles(StudyConfigurationManager scm, int numFiles) {
+        StudyConfiguration sc = new StudyConfiguration(STUDY_ID, "study");
+        for (int fileId = 1; fileId <= numFiles; fileId++) {
+            if (fileId > 1) {
+                sc = scm.getStudyConfiguration(STUDY_ID, null).first();
+            }
+            sc.getFileIds().put("file" + fileId, fileId);
+            // First file with many samples, so the deltas are worth it
+            LinkedHashSet<Integer> samples = new LinkedHashSet<>();
+            for (int i = 0; i < (fileId == 1 ? 1000 : 1); i++) {
+                int sampleId = sc.getSampleIds().size() + 1;
+                sc.getSampleIds().put("sample_" + sampleId, sampleId);
+                samples.add(sampleId);
+            }
+            sc.getSamplesInFiles().put(fileId, samples);
+            sc.getIndexedFiles().add(fileId);
+            if (!sc.getBatches().isEmpty()) {
+                sc.getBatches().get(sc.getBatches().size() - 1).addStatus(BatchFileOperation.Status.READY);
+            }
+            sc.getBatches().add(new BatchFileOperation("load", Collections.singletonList(fileId), fileId,
+                    BatchFileOperation.Type.LOAD));
+            scm.updateStudyConfiguration(sc, null);
+        }
+        return sc;
+    }
+
+    private StudyConfigurationManager newStudyConfigurationManager() {
+        return new StudyConfigurationManager(new HBaseStudyConfigurationDBAdaptor(META_TABLE, conf, hBaseManager));
+    }
+
+    private JsonNode toJsonNode(StudyConfiguration studyConfiguration) throws Exception {
+        // Compare as json trees. The order of the fields may change
+        return new ObjectMapper().addMixIn(GenericRecord.class, GenericRecordAvroJsonMixin.class).valueToTree(studyConfiguration);
+    }
+
+    private int countDeltas() throws Exception {
+        byte[] family = new GenomeHelper(conf).getColumnFamily();
+        Get get = new Get(getStudyConfigurationRowKey(STUDY_ID)).addFamily(family)
+                .setFilter(new ColumnPrefixFilter(getDeltaColumnPrefix()));
+        Result result = hBaseManager.act(META_TABLE, (HBaseManager.HBaseTableFunction<Result>) table -> table.get(get));
+        return result.isEmpty() ? 0 : result.getFamilyMap(family).size();
+    }
+}
@@ -40,8 +40,10 @@ import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyConf
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
@@ -80,7 +82,7 @@ public class MongoDBStudyConfigurationDBAdaptor extends StudyConfigurationAdapto
         collection = db.getCollection(collectionName)
                 .withReadPreference(ReadPreference.primary())
                 .withWriteConcern(WriteConcern.ACKNOWLEDGED);
-        mongoLock = new MongoLock(collection, "_lock");
+        mongoLock = new MongoLock(collection, "_lock", credentials.getMongoDbName() + "." + collectionName);
     }
 
     @Override
@@ -159,6 +161,53 @@ public class MongoDBStudyConfigurationDBAdaptor extends StudyConfigurationAdapto
         }
     }
 
+    @Override
+    public QueryResult updateStudyConfiguration(StudyConfiguration studyConfiguration, StudyConfiguration previous,
+                                                QueryOptions options) {
+        if (previous == null || previous.getTimeStamp() == null || previous.getStudyId() != studyConfiguration.getStudyId()) {
+            return updateStudyConfiguration(studyConfiguration, options);
+        }
+        Document studyMongo = studyConfigurationConverter.convertToStorageType(studyConfiguration);
+        Document previousMongo = studyConfigurationConverter.convertToStorageType(previous);
+
+        // Update only the modified fields, if the stored document was not modified since the previous version
+        Document query = new Document("_id", studyConfiguration.getStudyId()).append("timeStamp", previous.getTimeStamp());
+        List<Bson> updates = new ArrayList<>();
+        studyMongo.forEach((key, value) -> {
+            Object previousValue = previousMongo.get(key);
+            if (Objects.equals(value, previousValue)) {
+                return;
+            }
+            if (value instanceof List && previousValue instanceof List
+                    && ((List) value).size() >= ((List) previousValue).size()) {
+                // Update only the modified and new elements. e.g. new batches, or status changes
+                List list = (List) value;
+                List previousList = (List) previousValue;
+                for (int i = 0; i < list.size(); i++) {
+                    if (i >= previousList.size() || !Objects.equals(list.get(i), previousList.get(i))) {
+                        updates.add(set(key + '.' + i, list.get(i)));
+                    }
+                }
+            } else {
+                updates.add(set(key, value));
+            }
+        });
+        for (String key : previousMongo.keySet()) {
+            if (!studyMongo.containsKey(key)) {
+                updates.add(Updates.unset(key));
+            }
+        }
+        if (updates.isEmpty()) {
+            return new QueryResult<>();
+        }
+        QueryResult<UpdateResult> queryResult = collection.update(query, Updates.combine(updates), null);
+        if (queryResult.first().getMatchedCount() == 0) {
+            // Stored document modified since the previous version. Write the whole document
+            return updateStudyConfiguration(studyConfiguration, options);
+        }
+        return queryResult;
+    }
+
     @Override
     public QueryResult updateStudyConfiguration(StudyConfiguration studyConfiguration, QueryOptions options) {
         Document studyMongo = new DocumentToStudyConfigurationConverter().convertToStorageType(studyConfiguration);
@@ -193,6 +242,20 @@ public class MongoDBStudyConfigurationDBAdaptor extends StudyConfigurationAdapto
                 .collect(Collectors.toMap(StudyConfiguration::getStudyName, StudyConfiguration::getStudyId));
     }
 
+    @Override
+    public Map<Integer, Long> getStudyTimeStamps(QueryOptions options) {
+        Map<Integer, Long> timeStamps = new HashMap<>();
+        // Ignore documents without studyName. May be only a lock instead of a real study configuration
+        Document query = new Document("studyName", new Document("$exists", true));
+        for (Document document : collection.find(query, Projections.include("timeStamp"), null).getResult()) {
+            Number timeStamp = document.get("timeStamp", Number.class);
+            if (timeStamp != null) {
+                timeStamps.put(document.getInteger("_id"), timeStamp.longValue());
+            }
+        }
+        return timeStamps;
+    }
+
     @Override
     public void close() {
         if (closeConnection) {
@@ -21,6 +21,7 @@ import com.mongodb.WriteConcern;
 import org.apache.commons.lang3.time.StopWatch;
 import org.bson.conversions.Bson;
 import org.opencb.commons.datastore.mongodb.MongoDBCollection;
+import org.opencb.opencga.storage.core.utils.LocalLeaseLock;
 
 import java.util.Calendar;
 import java.util.Date;
@@ -37,13 +38,19 @@ import static com.mongodb.client.model.Updates.set;
  *
  * see http://stackoverflow.com/questions/31064750/mongodb-implement-a-read-write-lock-mutex
  *
+ * Threads from the same JVM are queued in a {@link LocalLeaseLock} before trying to get the lock from MongoDB, so they
+ * are woken up in order as soon as the lock is released. The document is polled with an exponential backoff.
+ *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
  */
 public class MongoLock {
 
     private static final String LOCK_FIELD = "lock";
     private static final String WRITE_FIELD = "write";
+    private static final long MIN_RETRY_SLEEP = 5;
+    private static final long MAX_RETRY_SLEEP = 100;
     private final String lockWriteField;
+    private final String lockName;
 
     private final MongoDBCollection collection;
 
@@ -52,10 +59,23 @@ public class MongoLock {
     }
 
     public MongoLock(MongoDBCollection collection, String lockField) {
+        this(collection, lockField, "collection@" + Integer.toHexString(System.identityHashCode(collection)));
+    }
+
+    /**
+     * Create a lock over a collection.
+     *
+     * @param collection    Collection with the documents to lock
+     * @param lockField     Field used to store the lock
+     * @param lockName      Unique name of the collection in this JVM, e.g. "database.collection".
+     *                      Used to queue the threads waiting for the same document.
+     */
+    public MongoLock(MongoDBCollection collection, String lockField, String lockName) {
         this.collection = collection;
         this.collection.withReadPreference(ReadPreference.primary())
                 .withWriteConcern(WriteConcern.ACKNOWLEDGED);
         lockWriteField = lockField + '.' + WRITE_FIELD;
+        this.lockName = lockName;
     }
 
     /**
@@ -75,31 +95,69 @@ public class MongoLock {
 
         StopWatch watch = new StopWatch();
         watch.start();
-        long modifiedCount;
-        Date date;
-        do {
-            date = new Date(Calendar.getInstance().getTimeInMillis() + lockDuration);
-            Date now = Calendar.getInstance().getTime();
-
-            Bson query = and(eq("_id", id), or(eq(lockWriteField, null), lt(lockWriteField, now)));
-            Bson update = combine(set(lockWriteField, date));
-
-            modifiedCount = collection.update(query, update, null).first().getModifiedCount();
-
-            if (modifiedCount != 1) {
-                Thread.sleep(100);
-                //Check if the lock is still valid
-                if (watch.getTime() > timeout) {
-                    throw new TimeoutException("Unable to get the lock");
+
+        // Wait in the queue of threads from this JVM. Only the first one will contend for the lock in MongoDB.
+        LocalLeaseLock localLock = getLocalLock(id);
+        localLock.lock(lockDuration, timeout);
+        boolean locked = false;
+        try {
+            long modifiedCount;
+            long retrySleep = MIN_RETRY_SLEEP;
+            Date date;
+            do {
+                date = new Date(Calendar.getInstance().getTimeInMillis() + lockDuration);
+                Date now = Calendar.getInstance().getTime();
+
+                Bson query = and(eq("_id", id), or(eq(lockWriteField, null), lt(lockWriteField, now)));
+                Bson update = combine(set(lockWriteField, date));
+
+                modifiedCount = collection.update(query, update, null).first().getModifiedCount();
+
+                if (modifiedCount != 1) {
+                    localLock.remoteRetry();
+                    localLock.renew(LocalLeaseLock.NO_TOKEN, LocalLeaseLock.NO_TOKEN, lockDuration);
+                    // Exponential backoff, without sleeping beyond the timeout
+                    Thread.sleep(Math.max(1, Math.min(retrySleep, timeout - watch.getTime() + 1)));
+                    retrySleep = Math.min(retrySleep * 2, MAX_RETRY_SLEEP);
+                    //Check if the lock is still valid
+                    if (watch.getTime() > timeout) {
+                        throw new TimeoutException("Unable to get the lock");
+                    }
                 }
+            } while (modifiedCount == 0);
+
+            localLock.setToken(date.getTime(), lockDuration);
+            locked = true;
+            return date.getTime();
+        } finally {
+            if (!locked) {
+                localLock.release();
             }
-        } while (modifiedCount == 0);
+        }
+    }
 
+    /**
+     * Extend the duration of the lock.
+     *
+     * @param id            _id the document to lock
+     * @param lockToken     Lock token
+     * @param lockDuration  New duration in milliseconds of the token, from now.
+     * @return              New lock token. The previous token is no longer valid.
+     * @throws IllegalStateException  if the lockToken does not match with the current lockToken
+     */
+    public long refresh(Object id, long lockToken, long lockDuration) {
+        Date date = new Date(Calendar.getInstance().getTimeInMillis() + lockDuration);
+        Bson query = and(eq("_id", id), eq(lockWriteField, new Date(lockToken)));
+        Bson update = set(lockWriteField, date);
 
+        long matchedCount = collection.update(query, update, null).first().getMatchedCount();
+        if (matchedCount == 0) {
+            throw new IllegalStateException("Lock token " + lockToken + " not found!");
+        }
+        getLocalLock(id).renew(lockToken, date.getTime(), lockDuration);
         return date.getTime();
     }
 
-
     /**
      * Releases the lock.
      *
@@ -108,15 +166,29 @@ public class MongoLock {
      * @throws IllegalStateException  if the lockToken does not match with the current lockToken
      */
     public void unlock(Object id, long lockToken) {
-
-        Date date = new Date(lockToken);
-        Bson query = and(eq("_id", id), eq(lockWriteField, date));
-        Bson update = set(lockWriteField, null);
-
-        long matchedCount = collection.update(query, update, null).first().getMatchedCount();
-        if (matchedCount == 0) {
-            throw new IllegalStateException("Lock token " + lockToken + " not found!");
+        try {
+            Date date = new Date(lockToken);
+            Bson query = and(eq("_id", id), eq(lockWriteField, date));
+            Bson update = set(lockWriteField, null);
+
+            long matchedCount = collection.update(query, update, null).first().getMatchedCount();
+            if (matchedCount == 0) {
+                throw new IllegalStateException("Lock token " + lockToken + " not found!");
+            }
+        } finally {
+            // Notify the next thread waiting for the lock in this JVM
+            getLocalLock(id).unlock(lockToken);
         }
     }
 
+    /**
+     * Get the queue of threads from this JVM waiting for this lock.
+     *
+     * @param id    _id the document to lock
+     * @return      Local lock
+     */
+    public LocalLeaseLock getLocalLock(Object id) {
+        return LocalLeaseLock.get("mongodb:" + lockName + ':' + id + ':' + lockWriteField);
+    }
+
 }
@@ -107,6 +107,8 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
         MERGE_RESUME("merge.resume", false),
         MERGE_IGNORE_OVERLAPPING_VARIANTS("merge.ignore-overlapping-variants", false),   //Do not look for overlapping variants
         MERGE_PARALLEL_WRITE("merge.parallel.write", false),
+        MERGE_PARALLEL_CHROMOSOMES("merge.parallel.chromosomes", 4), //Max number of chromosomes to merge at the same time
+        MERGE_STAGE_RANGES("merge.stage.ranges", 4),       //Number of ranges to split the stage collection, each one with its own cursor
         MERGE_BATCH_SIZE("merge.batch.size", 10);          //Number of files to merge directly from first to second collection
 
         private final String key;
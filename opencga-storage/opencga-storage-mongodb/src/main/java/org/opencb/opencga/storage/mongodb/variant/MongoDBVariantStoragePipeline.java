@@ -68,7 +68,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
@@ -633,14 +637,8 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
                     writeResult = mergeByChromosome(fileIds, batchSize, loadThreads,
                             studyConfiguration, null, studyConfiguration.getIndexedFiles());
                 } else {
-                    writeResult = new MongoDBVariantWriteResult();
-                    for (String chromosome : chromosomesToLoad) {
-                        List<Integer> filesToLoad = chromosomeInFilesToLoad.get(chromosome);
-                        Set<Integer> indexedFiles = new HashSet<>(chromosomeInLoadedFiles.get(chromosome));
-                        MongoDBVariantWriteResult aux = mergeByChromosome(filesToLoad, batchSize, loadThreads,
-                                studyConfiguration, chromosome, indexedFiles);
-                        writeResult.merge(aux);
-                    }
+                    writeResult = mergeByChromosomes(chromosomesToLoad, chromosomeInFilesToLoad, chromosomeInLoadedFiles,
+                            batchSize, loadThreads, studyConfiguration);
                 }
             } catch (Exception e) {
                 getStudyConfigurationManager().atomicSetStatus(getStudyId(), BatchFileOperation.Status.ERROR, MERGE.key(), fileIds);
@@ -693,6 +691,69 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
         });
     }
 
+    /**
+     * Merge a set of chromosomes concurrently. Each chromosome is merged with its own {@link ParallelTaskRunner}.
+     *
+     * The files are split by chromosome, so the variants to merge from each chromosome are disjoint.
+     * The load threads are shared between all the chromosomes being merged at the same time.
+     *
+     * @param chromosomes               Chromosomes to merge
+     * @param chromosomeInFilesToLoad   Files to load that cover each chromosome
+     * @param chromosomeInLoadedFiles   Indexed files that cover each chromosome
+     * @param batchSize                 Batch size
+     * @param loadThreads               Total number of load threads
+     * @param studyConfiguration        StudyConfiguration
+     * @return                          Write Result with the partial result of each chromosome
+     * @throws StorageEngineException   If there is a problem merging any chromosome
+     */
+    private MongoDBVariantWriteResult mergeByChromosomes(Collection<String> chromosomes,
+                                                         ListMultimap<String, Integer> chromosomeInFilesToLoad,
+                                                         ListMultimap<String, Integer> chromosomeInLoadedFiles,
+                                                         int batchSize, int loadThreads, StudyConfiguration studyConfiguration)
+            throws StorageEngineException {
+        int parallelChromosomes = options.getInt(MERGE_PARALLEL_CHROMOSOMES.key(), MERGE_PARALLEL_CHROMOSOMES.defaultValue());
+        parallelChromosomes = Math.max(1, Math.min(parallelChromosomes, Math.min(chromosomes.size(), loadThreads)));
+        int threadsPerChromosome = Math.max(1, loadThreads / parallelChromosomes);
+        logger.info("Merging {} chromosomes, {} at a time with {} threads each", chromosomes.size(), parallelChromosomes,
+                threadsPerChromosome);
+
+        MongoDBVariantWriteResult writeResult = new MongoDBVariantWriteResult();
+        AtomicInteger mergedChromosomes = new AtomicInteger();
+        ExecutorService executor = newDaemonThreadPool(parallelChromosomes);
+        List<Future<MongoDBVariantWriteResult>> futures = new ArrayList<>(chromosomes.size());
+        for (String chromosome : chromosomes) {
+            List<Integer> filesToLoad = chromosomeInFilesToLoad.get(chromosome);
+            Set<Integer> indexedFiles = new HashSet<>(chromosomeInLoadedFiles.get(chromosome));
+            futures.add(executor.submit(() -> {
+                MongoDBVariantWriteResult aux = mergeByChromosome(filesToLoad, batchSize, threadsPerChromosome,
+                        studyConfiguration, chromosome, indexedFiles);
+                writeResult.mergeChromosome(chromosome, aux);
+                logger.info("Chromosome {} merged ({}/{}). Write result: {}", chromosome, mergedChromosomes.incrementAndGet(),
+                        chromosomes.size(), aux);
+                return aux;
+            }));
+        }
+        executor.shutdown();
+
+        try {
+            for (Future<MongoDBVariantWriteResult> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageEngineException("Interrupted while merging chromosomes", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StorageEngineException) {
+                throw (StorageEngineException) e.getCause();
+            }
+            throw new StorageEngineException("Error merging chromosomes", e.getCause());
+        } finally {
+            // Stop any running chromosome in case of failure
+            executor.shutdownNow();
+        }
+        return writeResult;
+    }
+
     private MongoDBVariantWriteResult mergeByChromosome(List<Integer> fileIds, int batchSize, int loadThreads,
             StudyConfiguration studyConfiguration, String chromosomeToLoad, Set<Integer> indexedFiles)
             throws StorageEngineException {
@@ -706,47 +767,91 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
         }
         boolean resume = isResumeMerge(options);
         boolean cleanWhileLoading = options.getBoolean(STAGE_CLEAN_WHILE_LOAD.key(), STAGE_CLEAN_WHILE_LOAD.defaultValue());
-        ProgressLogger progressLogger = new ProgressLogger("Write variants in VARIANTS collection:", reader::countNumVariants, 200);
+        String progressMessage = chromosomeToLoad == null
+                ? "Write variants in VARIANTS collection:"
+                : "Write variants in VARIANTS collection (chr " + chromosomeToLoad + "):";
+        ProgressLogger progressLogger = new ProgressLogger(progressMessage, reader::countNumVariants, 200);
         progressLogger.setApproximateTotalCount(reader.countAproxNumVariants());
 
         boolean ignoreOverlapping = studyConfiguration.getAttributes().getBoolean(MERGE_IGNORE_OVERLAPPING_VARIANTS.key(),
                 MERGE_IGNORE_OVERLAPPING_VARIANTS.defaultValue());
         int release = options.getInt(Options.RELEASE.key(), Options.RELEASE.defaultValue());
-        MongoDBVariantMerger variantMerger = new MongoDBVariantMerger(dbAdaptor, studyConfiguration, fileIds, indexedFiles, resume,
-                ignoreOverlapping, release);
-        MongoDBVariantMergeLoader variantLoader = new MongoDBVariantMergeLoader(
-                dbAdaptor.getVariantsCollection(), stageCollection, dbAdaptor.getStudiesCollection(),
-                studyConfiguration, fileIds, resume, cleanWhileLoading, progressLogger);
 
-        ParallelTaskRunner<Document, MongoDBOperations> ptrMerge;
+        // Split the stage collection in ranges, each one with its own cursor and merger
+        int numRanges = Math.max(1, Math.min(loadThreads, options.getInt(MERGE_STAGE_RANGES.key(), MERGE_STAGE_RANGES.defaultValue())));
+        List<MongoDBVariantStageReader> readers = numRanges > 1 ? reader.split(numRanges) : Collections.singletonList(reader);
+        int threadsPerRange = Math.max(1, loadThreads / readers.size());
+
+        List<MongoDBVariantMergeLoader> variantLoaders = new ArrayList<>(readers.size());
+        List<ParallelTaskRunner<Document, MongoDBOperations>> ptrs = new ArrayList<>(readers.size());
         ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
                 .setReadQueuePutTimeout(20 * 60)
-                .setNumTasks(loadThreads)
+                .setNumTasks(threadsPerRange)
                 .setBatchSize(batchSize)
                 .setAbortOnFail(true).build();
         try {
-            if (isMergeParallelWrite(options)) {
-                ptrMerge = new ParallelTaskRunner<>(reader, variantMerger.then(variantLoader), null, config);
-            } else {
-                ptrMerge = new ParallelTaskRunner<>(reader, variantMerger, variantLoader, config);
+            for (MongoDBVariantStageReader rangeReader : readers) {
+                MongoDBVariantMerger variantMerger = new MongoDBVariantMerger(dbAdaptor, studyConfiguration, fileIds, indexedFiles,
+                        resume, ignoreOverlapping, release);
+                MongoDBVariantMergeLoader variantLoader = new MongoDBVariantMergeLoader(
+                        dbAdaptor.getVariantsCollection(), stageCollection, dbAdaptor.getStudiesCollection(),
+                        studyConfiguration, fileIds, resume, cleanWhileLoading, progressLogger);
+                variantLoaders.add(variantLoader);
+                if (isMergeParallelWrite(options)) {
+                    ptrs.add(new ParallelTaskRunner<>(rangeReader, variantMerger.then(variantLoader), null, config));
+                } else {
+                    ptrs.add(new ParallelTaskRunner<>(rangeReader, variantMerger, variantLoader, config));
+                }
             }
         } catch (RuntimeException e) {
             throw new StorageEngineException("Error while creating ParallelTaskRunner", e);
         }
 
+        if (chromosomeToLoad != null) {
+            logger.info("Merging files {} in chromosome: {}. Other indexed files in chromosome {}: {}",
+                    fileIds, chromosomeToLoad, chromosomeToLoad, indexedFiles);
+        } else {
+            logger.info("Merging files " + fileIds);
+        }
+        if (ptrs.size() > 1) {
+            logger.info("Reading stage collection in {} ranges, with {} threads each", ptrs.size(), threadsPerRange);
+        }
+
+        ExecutorService executor = newDaemonThreadPool(ptrs.size());
+        List<Future<?>> futures = new ArrayList<>(ptrs.size());
+        for (ParallelTaskRunner<Document, MongoDBOperations> ptr : ptrs) {
+            futures.add(executor.submit(() -> {
+                ptr.run();
+                return null;
+            }));
+        }
+        executor.shutdown();
+
+        MongoDBVariantWriteResult writeResult = new MongoDBVariantWriteResult();
         try {
-            if (chromosomeToLoad != null) {
-                logger.info("Merging files {} in chromosome: {}. Other indexed files in chromosome {}: {}",
-                        fileIds, chromosomeToLoad, chromosomeToLoad, indexedFiles);
-            } else {
-                logger.info("Merging files " + fileIds);
+            for (Future<?> future : futures) {
+                future.get();
             }
-            ptrMerge.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageEngineException("Interrupted while executing LoadVariants in ParallelTaskRunner", e);
         } catch (ExecutionException e) {
-            logger.info("Write result: {}", variantLoader.getResult());
-            throw new StorageEngineException("Error while executing LoadVariants in ParallelTaskRunner", e);
+            variantLoaders.forEach(variantLoader -> writeResult.merge(variantLoader.getResult()));
+            logger.info("Write result: {}", writeResult);
+            throw new StorageEngineException("Error while executing LoadVariants in ParallelTaskRunner", e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
-        return variantLoader.getResult();
+        variantLoaders.forEach(variantLoader -> writeResult.merge(variantLoader.getResult()));
+        return writeResult;
+    }
+
+    private static ExecutorService newDaemonThreadPool(int numThreads) {
+        return Executors.newFixedThreadPool(numThreads, r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        }); // Set Daemon for quick shutdown !!!
     }
 
     @Override
@@ -400,16 +400,6 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         return new VariantQueryResult<>(variantsCollection.find(mongoQuery, projection, converter, options), samples);
     }
 
-    @Override
-    public List<VariantQueryResult<Variant>> get(List<Query> queries, QueryOptions options) {
-        List<VariantQueryResult<Variant>> queryResultList = new ArrayList<>(queries.size());
-        for (Query query : queries) {
-            VariantQueryResult<Variant> queryResult = get(query, options);
-            queryResultList.add(queryResult);
-        }
-        return queryResultList;
-    }
-
     @Override
     public VariantQueryResult<Variant> getPhased(String varStr, String studyName, String sampleName, QueryOptions options,
                                                  int windowsSize) {
@@ -783,6 +773,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         List<Bson> pushUpdatesBulkList = new LinkedList<>();
 
         long start = System.nanoTime();
+        Bson notSynchronized = searchIndexNotSynchronized(System.currentTimeMillis());
         DocumentToVariantStatsConverter statsConverter = new DocumentToVariantStatsConverter(studyConfigurationManager);
 //        VariantSource variantSource = queryOptions.get(VariantStorageEngine.VARIANT_SOURCE, VariantSource.class);
         DocumentToVariantConverter variantConverter = getDocumentToVariantConverter(new Query(), options);
@@ -836,7 +827,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
                         new Document(DocumentToVariantConverter.STATS_FIELD,
                                 new Document("$each", cohorts)));
                 pushQueriesBulkList.add(find);
-                pushUpdatesBulkList.add(push);
+                pushUpdatesBulkList.add(combine(push, notSynchronized));
             }
         }
 
@@ -866,13 +857,13 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
                                 .append(DocumentToVariantStatsConverter.COHORT_ID, cohortId)));
 
         // { $pull : { st : {  sid : <studyId>, cid : <cohortId> } } }
-        Document update = new Document(
+        Bson update = combine(new Document(
                 "$pull",
                 new Document(DocumentToVariantConverter.STATS_FIELD,
                         new Document(DocumentToVariantStatsConverter.STUDY_ID, studyConfiguration.getStudyId())
                                 .append(DocumentToVariantStatsConverter.COHORT_ID, cohortId)
                 )
-        );
+        ), searchIndexNotSynchronized(System.currentTimeMillis()));
         logger.debug("deleteStats: query = {}", query);
         logger.debug("deleteStats: update = {}", update);
 
@@ -885,6 +876,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         List<Bson> updates = new LinkedList<>();
 
         StopWatch watch = StopWatch.createStarted();
+        Bson notSynchronized = searchIndexNotSynchronized(System.currentTimeMillis());
         DocumentToVariantConverter variantConverter = getDocumentToVariantConverter(new Query(), queryOptions);
         for (VariantAnnotation variantAnnotation : variantAnnotations) {
             String id;
@@ -902,8 +894,8 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
             Document find = new Document("_id", id);
             DocumentToVariantAnnotationConverter converter = new DocumentToVariantAnnotationConverter();
             Document convertedVariantAnnotation = converter.convertToStorageType(variantAnnotation);
-            Document update = new Document("$set", new Document(DocumentToVariantConverter.ANNOTATION_FIELD + ".0",
-                    convertedVariantAnnotation));
+            Bson update = combine(set(DocumentToVariantConverter.ANNOTATION_FIELD + ".0", convertedVariantAnnotation),
+                    notSynchronized);
             queries.add(find);
             updates.add(update);
         }
@@ -917,20 +909,74 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         Document queryDocument = queryParser.parseQuery(query);
         Document updateDocument = DocumentToVariantAnnotationConverter.convertToStorageType(attribute);
         return variantsCollection.update(queryDocument,
-                set(DocumentToVariantConverter.CUSTOM_ANNOTATION_FIELD + '.' + name, updateDocument),
+                combine(set(DocumentToVariantConverter.CUSTOM_ANNOTATION_FIELD + '.' + name, updateDocument),
+                        searchIndexNotSynchronized(System.currentTimeMillis())),
                 new QueryOptions(MULTI, true));
     }
 
+    @Override
+    public QueryResult updateCustomAnnotations(Map<Variant, AdditionalAttribute> attributes, String name, QueryOptions options) {
+        if (attributes.isEmpty()) {
+            return new QueryResult();
+        }
+        List<Bson> queries = new ArrayList<>(attributes.size());
+        List<Bson> updates = new ArrayList<>(attributes.size());
+        Bson notSynchronized = searchIndexNotSynchronized(System.currentTimeMillis());
+        for (Map.Entry<Variant, AdditionalAttribute> entry : attributes.entrySet()) {
+            queries.add(eq("_id", VariantMongoDBQueryParser.STRING_ID_CONVERTER.buildId(entry.getKey())));
+            updates.add(combine(set(DocumentToVariantConverter.CUSTOM_ANNOTATION_FIELD + '.' + name,
+                    DocumentToVariantAnnotationConverter.convertToStorageType(entry.getValue())), notSynchronized));
+        }
+        return variantsCollection.update(queries, updates, null);
+    }
+
     public QueryResult removeAnnotation(String annotationId, Query query, QueryOptions queryOptions) {
         Document mongoQuery = queryParser.parseQuery(query);
         logger.debug("deleteAnnotation: query = {}", mongoQuery);
 
-        Document update = new Document("$set", new Document(DocumentToVariantConverter.ANNOTATION_FIELD + ".0", null));
+        Bson update = combine(set(DocumentToVariantConverter.ANNOTATION_FIELD + ".0", null),
+                searchIndexNotSynchronized(System.currentTimeMillis()));
         logger.debug("deleteAnnotation: update = {}", update);
         return variantsCollection.update(mongoQuery, update, new QueryOptions(MULTI, true));
     }
 
 
+    @Override
+    public boolean isSearchIndexSyncTracked() {
+        return true;
+    }
+
+    @Override
+    public QueryResult updateSearchIndexSync(List<Variant> variants, long timestamp, QueryOptions options) {
+        if (variants.isEmpty()) {
+            return new QueryResult();
+        }
+        List<String> ids = new ArrayList<>(variants.size());
+        for (Variant variant : variants) {
+            ids.add(VariantMongoDBQueryParser.STRING_ID_CONVERTER.buildId(variant));
+        }
+        String indexField = DocumentToVariantConverter.INDEX_FIELD + '.';
+        // Skip variants modified after the timestamp
+        Bson query = and(in("_id", ids), not(gt(indexField + DocumentToVariantConverter.INDEX_UPDATE_FIELD, timestamp)));
+        Bson update = combine(
+                set(indexField + DocumentToVariantConverter.INDEX_SYNCHRONIZED_FIELD, true),
+                set(indexField + DocumentToVariantConverter.INDEX_TIMESTAMP_FIELD, timestamp));
+        return variantsCollection.update(query, update, new QueryOptions(MULTI, true));
+    }
+
+    /**
+     * Mark the variant as modified, so it is loaded again into the search index.
+     *
+     * @param timestamp Modification time
+     * @return          Update
+     */
+    public static Bson searchIndexNotSynchronized(long timestamp) {
+        String indexField = DocumentToVariantConverter.INDEX_FIELD + '.';
+        return combine(
+                set(indexField + DocumentToVariantConverter.INDEX_SYNCHRONIZED_FIELD, false),
+                set(indexField + DocumentToVariantConverter.INDEX_UPDATE_FIELD, timestamp));
+    }
+
     @Override
     public void close() throws IOException {
         if (closeConnection) {
@@ -1023,6 +1069,8 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
                 .append(DocumentToVariantConverter.START_FIELD, 1)
                 .append(DocumentToVariantConverter.END_FIELD, 1), onBackground);
         variantsCollection.createIndex(new Document(DocumentToVariantConverter.IDS_FIELD, 1), onBackground);
+        variantsCollection.createIndex(new Document(DocumentToVariantConverter.INDEX_FIELD + '.'
+                + DocumentToVariantConverter.INDEX_SYNCHRONIZED_FIELD, 1), onBackgroundSparse);
 
         // Study indices
         ////////////////
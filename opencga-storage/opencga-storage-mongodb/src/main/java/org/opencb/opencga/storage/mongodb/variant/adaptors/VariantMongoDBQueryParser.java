@@ -64,6 +64,7 @@ public class VariantMongoDBQueryParser {
 
     public static final VariantStringIdConverter STRING_ID_CONVERTER = new VariantStringIdConverter();
     protected static Logger logger = LoggerFactory.getLogger(VariantMongoDBQueryParser.class);
+    private static final QueryOptions STUDY_CONFIGURATION_READ_ONLY = new QueryOptions(StudyConfigurationManager.READ_ONLY, true);
     private final StudyConfigurationManager studyConfigurationManager;
     private final ObjectMapper queryMapper;
     //    private final CellBaseUtils cellBaseUtils;
@@ -184,6 +185,16 @@ public class VariantMongoDBQueryParser {
                 builder.and(DocumentToVariantConverter.RELEASE_FIELD).lessThanEquals(release);
             }
 
+            if (isValidParam(query, VARIANTS_TO_INDEX)) {
+                String syncField = DocumentToVariantConverter.INDEX_FIELD + '.' + DocumentToVariantConverter.INDEX_SYNCHRONIZED_FIELD;
+                if (query.getBoolean(VARIANTS_TO_INDEX.key())) {
+                    // Variants loaded before the synchronization was tracked do not have this field
+                    builder.and(syncField).notEquals(true);
+                } else {
+                    builder.and(syncField).is(true);
+                }
+            }
+
             /* ANNOTATION PARAMS */
             parseAnnotationQueryParams(query, builder);
 
@@ -806,7 +817,8 @@ public class VariantMongoDBQueryParser {
                                         study = split[0];
                                         cohort = split[1];
                                         StudyConfiguration studyConfiguration =
-                                                studyConfigurationManager.getStudyConfiguration(study, defaultStudyConfiguration, null);
+                                                studyConfigurationManager.getStudyConfiguration(study, defaultStudyConfiguration,
+                                                        STUDY_CONFIGURATION_READ_ONLY);
                                         cohortId = studyConfigurationManager.getCohortId(cohort, studyConfiguration);
                                     }
                                     return cohortId;
@@ -1376,7 +1388,8 @@ public class VariantMongoDBQueryParser {
                 valueStr = cohortOpValue[2];
 
                 StudyConfiguration studyConfiguration =
-                        studyConfigurationManager.getStudyConfiguration(study, defaultStudyConfiguration, null);
+                        studyConfigurationManager.getStudyConfiguration(study, defaultStudyConfiguration,
+                                STUDY_CONFIGURATION_READ_ONLY);
                 cohortId = studyConfigurationManager.getCohortId(cohort, studyConfiguration);
                 studyId = studyConfiguration.getStudyId();
             } else {
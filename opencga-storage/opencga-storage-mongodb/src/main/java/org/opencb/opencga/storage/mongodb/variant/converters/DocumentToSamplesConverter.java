@@ -24,6 +24,7 @@ import org.bson.Document;
 import org.bson.types.Binary;
 import org.opencb.biodata.models.variant.StudyEntry;
 import org.opencb.commons.datastore.core.ComplexTypeConverter;
+import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.core.QueryResult;
 import org.opencb.commons.utils.CompressionUtils;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
@@ -49,6 +50,7 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
 
     public static final String UNKNOWN_GENOTYPE = "?/?";
     public static final String UNKNOWN_FIELD = ".";
+    private static final QueryOptions STUDY_CONFIGURATION_READ_ONLY = new QueryOptions(StudyConfigurationManager.READ_ONLY, true);
 
     private final Map<Integer, StudyConfiguration> studyConfigurations;
     private final Map<Integer, BiMap<String, Integer>> __studySamplesId; //Inverse map from "sampleIds". Do not use directly, can be null
@@ -174,7 +176,8 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
 
         if (!studyConfigurations.containsKey(studyId) && studyConfigurationManager != null) { // Samples not set as constructor argument,
             // need to query
-            QueryResult<StudyConfiguration> queryResult = studyConfigurationManager.getStudyConfiguration(studyId, null);
+            QueryResult<StudyConfiguration> queryResult =
+                    studyConfigurationManager.getStudyConfiguration(studyId, STUDY_CONFIGURATION_READ_ONLY);
             if (queryResult.first() == null) {
                 logger.warn("DocumentToSamplesConverter.convertToDataModelType StudyConfiguration {studyId: {}} not found! Looking for "
                         + "VariantSource", studyId);
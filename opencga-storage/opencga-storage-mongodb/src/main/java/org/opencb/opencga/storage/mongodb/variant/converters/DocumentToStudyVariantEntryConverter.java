@@ -22,6 +22,7 @@ import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.avro.AlternateCoordinate;
 import org.opencb.biodata.models.variant.avro.FileEntry;
 import org.opencb.biodata.models.variant.avro.VariantType;
+import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.core.QueryResult;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
@@ -54,6 +55,8 @@ public class DocumentToStudyVariantEntryConverter {
     public static final String ALTERNATES_END = "end";
     public static final String ALTERNATES_TYPE = "type";
 
+    private static final QueryOptions STUDY_CONFIGURATION_READ_ONLY = new QueryOptions(StudyConfigurationManager.READ_ONLY, true);
+
     private boolean includeSrc;
     private Map<Integer, List<Integer>> returnedFiles;
 
@@ -228,7 +231,8 @@ public class DocumentToStudyVariantEntryConverter {
             if (studyConfigurationManager == null) {
                 studyIds.put(studyId, Integer.toString(studyId));
             } else {
-                QueryResult<StudyConfiguration> queryResult = studyConfigurationManager.getStudyConfiguration(studyId, null);
+                QueryResult<StudyConfiguration> queryResult =
+                        studyConfigurationManager.getStudyConfiguration(studyId, STUDY_CONFIGURATION_READ_ONLY);
                 if (queryResult.getResult().isEmpty()) {
                     studyIds.put(studyId, Integer.toString(studyId));
                 } else {
@@ -73,6 +73,12 @@ public class DocumentToVariantConverter extends AbstractDocumentConverter implem
     public static final String CHUNK_IDS_FIELD = "chunkIds";
     public static final String RELEASE_FIELD = "_r";
 
+    // Synchronization with the search index
+    public static final String INDEX_FIELD = "_index";
+    public static final String INDEX_SYNCHRONIZED_FIELD = "sync";
+    public static final String INDEX_UPDATE_FIELD = "upd";
+    public static final String INDEX_TIMESTAMP_FIELD = "ts";
+
 //    public static final String ID_FIELD = "id";
 //    public static final String FILES_FIELD = "files";
 //    public static final String EFFECTS_FIELD = "effs";
@@ -17,6 +17,8 @@
 package org.opencb.opencga.storage.mongodb.variant.load;
 
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -76,8 +78,12 @@ public class MongoDBVariantWriteResult {
     /** List of Genotypes seen in all loaded variants. */
     private Set<String> genotypes;
 
+    /** Partial write result of each chromosome, when merging by chromosome. Not used in equals and hashCode. */
+    private Map<String, MongoDBVariantWriteResult> chromosomeResults;
+
     public MongoDBVariantWriteResult() {
         genotypes = new HashSet<>();
+        chromosomeResults = new LinkedHashMap<>();
     }
 
     public MongoDBVariantWriteResult(long newVariants, long updatedVariants, long updatedMissingVariants, long overlappedVariants,
@@ -89,6 +95,7 @@ public class MongoDBVariantWriteResult {
         this.skippedVariants = skippedVariants;
         this.nonInsertedVariants = nonInsertedVariants;
         this.genotypes = new HashSet<>();
+        this.chromosomeResults = new LinkedHashMap<>();
     }
 
 
@@ -106,6 +113,7 @@ public class MongoDBVariantWriteResult {
         this.existingVariantsNanoTime = existingVariantsNanoTime;
         this.fillGapsNanoTime = fillGapsNanoTime;
         this.genotypes = genotypes;
+        this.chromosomeResults = new LinkedHashMap<>();
     }
 
     public void merge(MongoDBVariantWriteResult... others) {
@@ -213,6 +221,26 @@ public class MongoDBVariantWriteResult {
         return this;
     }
 
+    public Map<String, MongoDBVariantWriteResult> getChromosomeResults() {
+        return chromosomeResults;
+    }
+
+    public MongoDBVariantWriteResult setChromosomeResults(Map<String, MongoDBVariantWriteResult> chromosomeResults) {
+        this.chromosomeResults = chromosomeResults;
+        return this;
+    }
+
+    /**
+     * Merge the write result of one chromosome, and keep it as a partial result.
+     *
+     * @param chromosome    Merged chromosome
+     * @param other         Write result of the chromosome
+     */
+    public synchronized void mergeChromosome(String chromosome, MongoDBVariantWriteResult other) {
+        merge(other);
+        chromosomeResults.put(chromosome, other);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
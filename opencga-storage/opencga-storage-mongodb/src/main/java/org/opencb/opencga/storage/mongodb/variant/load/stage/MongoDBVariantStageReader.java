@@ -16,6 +16,8 @@
 
 package org.opencb.opencga.storage.mongodb.variant.load.stage;
 
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.Sorts;
 import org.bson.Document;
 import org.bson.conversions.Bson;
@@ -35,7 +37,7 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import static com.mongodb.client.model.Filters.*;
-import static org.opencb.opencga.storage.mongodb.variant.converters.stage.StageDocumentToVariantConverter.STUDY_FILE_FIELD;
+import static org.opencb.opencga.storage.mongodb.variant.converters.stage.StageDocumentToVariantConverter.*;
 
 /**
  * DataReader for Variant stage collection.
@@ -47,10 +49,13 @@ import static org.opencb.opencga.storage.mongodb.variant.converters.stage.StageD
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
  */
 public class MongoDBVariantStageReader implements DataReader<Document> {
+    private static final Bson VARIANT_PROJECTION = Projections.include(ID_FIELD, END_FIELD, REF_FIELD, ALT_FIELD);
     private final MongoDBCollection stageCollection;
     private final int studyId;
     private Collection<Integer> fileIds;
     private final Collection<String> chromosomes;
+    private String fromId;  // First _id of the range, inclusive
+    private String toId;    // Last _id of the range, exclusive
     private MongoPersistentCursor iterator;
     private Document next = null;   // Pending variant
 
@@ -73,6 +78,118 @@ public class MongoDBVariantStageReader implements DataReader<Document> {
         return this;
     }
 
+    /**
+     * Read only the documents from a range of the stage collection.
+     *
+     * @param fromId    First _id of the range, inclusive. Null to read from the beginning
+     * @param toId      Last _id of the range, exclusive. Null to read until the end
+     * @return          this
+     */
+    public MongoDBVariantStageReader setRange(String fromId, String toId) {
+        this.fromId = fromId;
+        this.toId = toId;
+        return this;
+    }
+
+    public String getFromId() {
+        return fromId;
+    }
+
+    public String getToId() {
+        return toId;
+    }
+
+    /**
+     * Split the stage collection in contiguous ranges of _id with approximately the same number of documents.
+     *
+     * The edges of the ranges are moved forward to the first document not overlapping with the previous one, extending
+     * the overlapping region as in {@link #read(int)}, so overlapping variants are never split in two ranges.
+     * Unsorted readers (i.e. filtering by fileIds) can not be split.
+     *
+     * @param numRanges Number of ranges
+     * @return          List of readers covering the same documents than this reader
+     */
+    public List<MongoDBVariantStageReader> split(int numRanges) {
+        if (numRanges <= 1 || !isSorted()) {
+            return Collections.singletonList(this);
+        }
+        Bson query = getQuery();
+        long count = countNumVariants();
+        List<String> edges = new ArrayList<>(numRanges - 1);
+        for (int i = 1; i < numRanges; i++) {
+            Document first = stageCollection.nativeQuery().find(query, VARIANT_PROJECTION, new QueryOptions())
+                    .sort(Sorts.ascending("_id"))
+                    .skip((int) (count * i / numRanges))
+                    .limit(1)
+                    .first();
+            if (first == null) {
+                break;
+            }
+            String edge = findRangeEdge(query, first.getString("_id"));
+            if (edge == null || toId != null && edge.compareTo(toId) >= 0) {
+                break;
+            } else if (edges.isEmpty() || edges.get(edges.size() - 1).compareTo(edge) < 0) {
+                edges.add(edge);
+            }
+        }
+
+        List<MongoDBVariantStageReader> readers = new ArrayList<>(edges.size() + 1);
+        String from = fromId;
+        for (String edge : edges) {
+            readers.add(copy().setRange(from, edge));
+            from = edge;
+        }
+        readers.add(copy().setRange(from, toId));
+        logger.debug("Split stage reader in ranges with edges {}", edges);
+        return readers;
+    }
+
+    /**
+     * Find the first _id, starting from the given one, that does not overlap with the previous variants.
+     *
+     * @param query Query
+     * @param id    Candidate _id
+     * @return      _id to be used as edge of a range, or null if all the remaining variants are overlapping
+     */
+    private String findRangeEdge(Bson query, String id) {
+        Document previous = stageCollection.nativeQuery().find(and(query, lt("_id", id)), VARIANT_PROJECTION, new QueryOptions())
+                .sort(Sorts.descending("_id"))
+                .limit(1)
+                .first();
+        if (previous == null) {
+            return id;
+        }
+        Variant previousVar = MongoDBVariantStageLoader.STAGE_TO_VARIANT_CONVERTER.convertToDataModelType(previous);
+        String chr = previousVar.getChromosome();
+        int start = previousVar.getStart();
+        int end = previousVar.getEnd();
+        try (MongoCursor<Document> cursor = stageCollection.nativeQuery()
+                .find(and(query, gte("_id", id)), VARIANT_PROJECTION, new QueryOptions())
+                .sort(Sorts.ascending("_id"))
+                .batchSize(20)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                Document document = cursor.next();
+                Variant variant = MongoDBVariantStageLoader.STAGE_TO_VARIANT_CONVERTER.convertToDataModelType(document);
+                if (variant.overlapWith(chr, start, end, true)) {
+                    start = Math.min(start, variant.getStart());
+                    end = Math.max(end, variant.getEnd());
+                } else {
+                    return document.getString("_id");
+                }
+            }
+        }
+        return null;
+    }
+
+    private MongoDBVariantStageReader copy() {
+        return new MongoDBVariantStageReader(stageCollection, studyId, chromosomes).setFileIds(fileIds);
+    }
+
+    private boolean isSorted() {
+        return fileIds == null || fileIds.isEmpty();
+    }
+
     public long countNumVariants() {
         return stageCollection.nativeQuery().count(getQuery());
     }
@@ -99,7 +216,7 @@ public class MongoDBVariantStageReader implements DataReader<Document> {
 
     public QueryOptions getQueryOptions() {
         QueryOptions options = new QueryOptions();
-        if (fileIds == null || fileIds.isEmpty()) {
+        if (isSorted()) {
             options.put(QueryOptions.SORT, Sorts.ascending("_id"));
         }
         return options;
@@ -120,12 +237,18 @@ public class MongoDBVariantStageReader implements DataReader<Document> {
         } else {
             studyFilter = eq(STUDY_FILE_FIELD, String.valueOf(studyId));
         }
-        Bson bson;
-        if (chrFilters.isEmpty()) {
-            bson = studyFilter;
-        } else {
-            bson = and(studyFilter, or(chrFilters)); // Be in any of these chromosomes
+        List<Bson> filters = new ArrayList<>(4);
+        filters.add(studyFilter);
+        if (!chrFilters.isEmpty()) {
+            filters.add(or(chrFilters)); // Be in any of these chromosomes
+        }
+        if (fromId != null) {
+            filters.add(gte("_id", fromId));
+        }
+        if (toId != null) {
+            filters.add(lt("_id", toId));
         }
+        Bson bson = filters.size() == 1 ? studyFilter : and(filters);
         logger.debug("stage filter: " +  bson.toBsonDocument(Document.class, com.mongodb.MongoClient.getDefaultCodecRegistry()));
         return bson;
     }
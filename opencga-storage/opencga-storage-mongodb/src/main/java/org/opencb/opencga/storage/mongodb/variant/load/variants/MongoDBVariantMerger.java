@@ -38,6 +38,7 @@ import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStoragePipeline;
+import org.opencb.opencga.storage.mongodb.variant.adaptors.VariantMongoDBAdaptor;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesConverter;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyVariantEntryConverter;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
@@ -1077,6 +1078,7 @@ public class MongoDBVariantMerger implements ParallelTaskRunner.Task<Document, M
                 updates.add(push(STUDIES_FIELD, studyDocument));
                 // Study is new. Add study
                 updates.add(addToSet(RELEASE_FIELD, release));
+                updates.add(VariantMongoDBAdaptor.searchIndexNotSynchronized(System.currentTimeMillis()));
                 if (newVariant) {
                     Document variantDocument = variantConverter.convertToStorageType(emptyVar);
                     updates.add(addEachToSet(IDS_FIELD, ids));
@@ -1132,6 +1134,7 @@ public class MongoDBVariantMerger implements ParallelTaskRunner.Task<Document, M
                 } else {
                     mergeUpdates.add(pushEach(STUDIES_FIELD + ".$." + FILES_FIELD, fileDocuments));
                 }
+                mergeUpdates.add(VariantMongoDBAdaptor.searchIndexNotSynchronized(System.currentTimeMillis()));
                 mongoDBOps.getExistingStudy().getUpdates().add(combine(mergeUpdates));
 
                 // Add release only if there are files for this variant
@@ -1142,6 +1145,7 @@ public class MongoDBVariantMerger implements ParallelTaskRunner.Task<Document, M
                 mongoDBOps.getExistingStudy().getIds().add(id);
                 mongoDBOps.getExistingStudy().getQueries().add(and(eq("_id", id),
                         eq(STUDIES_FIELD + '.' + STUDYID_FIELD, studyId)));
+                mergeUpdates.add(VariantMongoDBAdaptor.searchIndexNotSynchronized(System.currentTimeMillis()));
                 mongoDBOps.getExistingStudy().getUpdates().add(combine(mergeUpdates));
             } else {
                 mongoDBOps.setMissingVariantsNoFillGaps(mongoDBOps.getMissingVariantsNoFillGaps() + 1);
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.mongodb.metadata;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.opencga.storage.core.metadata.BatchFileOperation;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
+import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
+import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageTest;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class MongoDBStudyConfigurationDBAdaptorTest implements MongoDBVariantStorageTest {
+
+    private static final int STUDY_ID = 1;
+
+    @Before
+    public void setUp() throws Exception {
+        clearDB(VariantStorageBaseTest.DB_NAME);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        closeConnections();
+    }
+
+    @Test
+    public void testUpdateModifiedFields() throws Exception {
+        StudyConfigurationManager scm = newVariantStorageEngine().getStudyConfigurationManager();
+        StudyConfiguration sc = addFiles(scm, 3);
+
+        // Modify an existing batch, and remove an attribute
+        sc.getBatches().get(sc.getBatches().size() - 1).addStatus(BatchFileOperation.Status.READY);
+        sc.getAttributes().remove("file_3");
+        scm.updateStudyConfiguration(sc, null);
+
+        checkStudyConfiguration(sc, newVariantStorageEngine().getStudyConfigurationManager().getStudyConfiguration(STUDY_ID, null).first());
+    }
+
+    @Test
+    public void testRapidUpdates() throws Exception {
+        StudyConfigurationManager scm = newVariantStorageEngine().getStudyConfigurationManager();
+        StudyConfiguration sc = addFiles(scm, 1);
+
+        // Updates within the same millisecond must still be applied in order
+        long timeStamp = sc.getTimeStamp();
+        for (int i = 0; i < 5; i++) {
+            sc.getAttributes().put("update_" + i, i);
+            scm.updateStudyConfiguration(sc, null);
+            assertTrue(sc.getTimeStamp() > timeStamp);
+            timeStamp = sc.getTimeStamp();
+        }
+
+        checkStudyConfiguration(sc, newVariantStorageEngine().getStudyConfigurationManager().getStudyConfiguration(STUDY_ID, null).first());
+    }
+
+    @Test
+    public void testConcurrentUpdate() throws Exception {
+        StudyConfigurationManager scm = newVariantStorageEngine().getStudyConfigurationManager();
+        addFiles(scm, 2);
+        StudyConfiguration outdated = scm.getStudyConfiguration(STUDY_ID, null).first();
+
+        // Update from a different manager
+        StudyConfigurationManager otherScm = newVariantStorageEngine().getStudyConfigurationManager();
+        StudyConfiguration sc = otherScm.getStudyConfiguration(STUDY_ID, null).first();
+        sc.getAttributes().put("other", true);
+        otherScm.updateStudyConfiguration(sc, null);
+
+        // The first manager does not know about the last update. Should write the whole StudyConfiguration
+        outdated.getAttributes().put("outdated", true);
+        scm.updateStudyConfiguration(outdated, null);
+
+        StudyConfiguration read = newVariantStorageEngine().getStudyConfigurationManager().getStudyConfiguration(STUDY_ID, null).first();
+        checkStudyConfiguration(outdated, read);
+        assertFalse(read.getAttributes().containsKey("other"));
+    }
+
+    private StudyConfiguration addFiles(StudyConfigurationManager scm, int numFiles) {
+        StudyConfiguration sc = new StudyConfiguration(STUDY_ID, "study");
+        for (int fileId = 1; fileId <= numFiles; fileId++) {
+            if (fileId > 1) {
+                sc = scm.getStudyConfiguration(STUDY_ID, null).first();
+            }
+            sc.getFileIds().put("file" + fileId, fileId);
+            int sampleId = sc.getSampleIds().size() + 1;
+            sc.getSampleIds().put("sample_" + sampleId, sampleId);
+            sc.getSamplesInFiles().put(fileId, new LinkedHashSet<>(Collections.singletonList(sampleId)));
+            sc.getIndexedFiles().add(fileId);
+            sc.getAttributes().put("file_" + fileId, true);
+            if (!sc.getBatches().isEmpty()) {
+                sc.getBatches().get(sc.getBatches().size() - 1).addStatus(BatchFileOperation.Status.READY);
+            }
+            sc.getBatches().add(new BatchFileOperation("load", Collections.singletonList(fileId), fileId,
+                    BatchFileOperation.Type.LOAD));
+            scm.updateStudyConfiguration(sc, null);
+        }
+        return sc;
+    }
+
+    private void checkStudyConfiguration(StudyConfiguration expected, StudyConfiguration actual) {
+        assertEquals(expected.getTimeStamp(), actual.getTimeStamp());
+        assertEquals(expected.getFileIds(), actual.getFileIds());
+        assertEquals(expected.getSampleIds(), actual.getSampleIds());
+        assertEquals(expected.getSamplesInFiles(), actual.getSamplesInFiles());
+        assertEquals(expected.getIndexedFiles(), actual.getIndexedFiles());
+        assertEquals(expected.getAttributes().keySet(), actual.getAttributes().keySet());
+        assertEquals(expected.getBatches().size(), actual.getBatches().size());
+        for (int i = 0; i < expected.getBatches().size(); i++) {
+            assertEquals(expected.getBatches().get(i).currentStatus(), actual.getBatches().get(i).currentStatus());
+            assertEquals(expected.getBatches().get(i).getStatus().size(), actual.getBatches().get(i).getStatus().size());
+        }
+    }
+}
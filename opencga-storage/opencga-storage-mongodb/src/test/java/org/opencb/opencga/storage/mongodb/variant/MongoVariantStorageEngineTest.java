@@ -854,6 +854,59 @@ public class MongoVariantStorageEngineTest extends VariantStorageEngineTest impl
                 });
     }
 
+    @Test
+    public void mergeChromosomesConcurrently() throws Exception {
+        StudyConfiguration studyConfiguration = new StudyConfiguration(1, "multiRegion");
+        stageAndMergeByChromosome(getVariantStorageEngine(), studyConfiguration, 2);
+
+        StudyConfiguration serialStudyConfiguration = new StudyConfiguration(1, "multiRegion");
+        serialStudyConfiguration.setSampleIds(studyConfiguration.getSampleIds());    // Copy the sampleIds from the first load
+        getVariantStorageEngine("2").getDBAdaptor().getStudyConfigurationManager().updateStudyConfiguration(serialStudyConfiguration, null);
+        stageAndMergeByChromosome(getVariantStorageEngine("2"), serialStudyConfiguration, 1);
+
+        assertEquals(new HashSet<>(Arrays.asList(5, 6)), studyConfiguration.getIndexedFiles());
+        assertEquals(studyConfiguration.getIndexedFiles(), serialStudyConfiguration.getIndexedFiles());
+        checkLoadedVariants();
+        compareCollections(getVariantStorageEngine("2").getDBAdaptor().getVariantsCollection(),
+                getVariantStorageEngine().getDBAdaptor().getVariantsCollection());
+    }
+
+    private void stageAndMergeByChromosome(MongoDBVariantStorageEngine variantStorageEngine, StudyConfiguration studyConfiguration,
+                                           int parallelChromosomes) throws Exception {
+        URI chr1 = getResourceUri("1k.chr1.phase3_shapeit2_mvncall_integrated_v5.20130502.genotypes.vcf.gz");
+        URI chr22 = getResourceUri("10k.chr22.phase3_shapeit2_mvncall_integrated_v5.20130502.genotypes.vcf.gz");
+        ObjectMap options = new ObjectMap()
+                .append(VariantStorageEngine.Options.ANNOTATE.key(), false)
+                .append(VariantStorageEngine.Options.CALCULATE_STATS.key(), false)
+                .append(VariantStorageEngine.Options.LOAD_SPLIT_DATA.key(), true)
+                .append(MongoDBVariantOptions.STAGE.key(), true)
+                .append(MongoDBVariantOptions.MERGE.key(), false);
+
+        // Stage both files, so they are merged in the same batch
+        URI chr1Transformed = runDefaultETL(chr1, variantStorageEngine, studyConfiguration,
+                new ObjectMap(options).append(VariantStorageEngine.Options.FILE_ID.key(), 5)).getTransformResult();
+        URI chr22Transformed = runDefaultETL(chr22, variantStorageEngine, studyConfiguration,
+                new ObjectMap(options).append(VariantStorageEngine.Options.FILE_ID.key(), 6)).getTransformResult();
+
+        variantStorageEngine.getOptions()
+                .append(VariantStorageEngine.Options.FILE_ID.key(), -1)
+                .append(VariantStorageEngine.Options.LOAD_THREADS.key(), 4)
+                .append(MongoDBVariantOptions.STAGE.key(), false)
+                .append(MongoDBVariantOptions.MERGE.key(), true)
+                .append(MongoDBVariantOptions.MERGE_PARALLEL_CHROMOSOMES.key(), parallelChromosomes);
+        List<StoragePipelineResult> results = variantStorageEngine.index(Arrays.asList(chr1Transformed, chr22Transformed), outputUri,
+                false, false, true);
+        for (StoragePipelineResult result : results) {
+            assertTrue(result.isLoadExecuted());
+            assertNull(result.getLoadError());
+        }
+
+        try (VariantDBAdaptor dbAdaptor = variantStorageEngine.getDBAdaptor()) {
+            studyConfiguration.copy(dbAdaptor.getStudyConfigurationManager().getStudyConfiguration(studyConfiguration.getStudyId(), null)
+                    .first());
+        }
+    }
+
     @Test
     public void checkCanLoadSampleBatchTest() throws StorageEngineException {
         StudyConfiguration studyConfiguration = createStudyConfiguration();
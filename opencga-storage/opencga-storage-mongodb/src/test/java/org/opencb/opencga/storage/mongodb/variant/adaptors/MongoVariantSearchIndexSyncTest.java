@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.mongodb.variant.adaptors;
+
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine;
+import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageTest;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.opencb.commons.datastore.mongodb.MongoDBCollection.MULTI;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.VARIANTS_TO_INDEX;
+
+/**
+ * Created on 17/10/17.
+ *
+ * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
+ */
+public class MongoVariantSearchIndexSyncTest extends VariantStorageBaseTest implements MongoDBVariantStorageTest {
+
+    private VariantMongoDBAdaptor dbAdaptor;
+
+    @Before
+    public void setUp() throws Exception {
+        MongoDBVariantStorageEngine variantStorageEngine = getVariantStorageEngine();
+        runDefaultETL(smallInputUri, variantStorageEngine, newStudyConfiguration(),
+                new ObjectMap(VariantStorageEngine.Options.ANNOTATE.key(), false)
+                        .append(VariantStorageEngine.Options.CALCULATE_STATS.key(), false));
+        dbAdaptor = variantStorageEngine.getDBAdaptor();
+    }
+
+    @Test
+    public void testUpdateSearchIndexSync() throws Exception {
+        assertTrue(dbAdaptor.isSearchIndexSyncTracked());
+        long numVariants = dbAdaptor.count(new Query()).first();
+        assertTrue(numVariants > 0);
+        assertEquals(numVariants, countVariantsToIndex(true));
+        assertEquals(0, countVariantsToIndex(false));
+
+        List<Variant> variants = dbAdaptor.get(new Query(), new QueryOptions(QueryOptions.LIMIT, numVariants / 2)).getResult();
+        Thread.sleep(1);
+        dbAdaptor.updateSearchIndexSync(variants, System.currentTimeMillis(), QueryOptions.empty());
+
+        assertEquals(numVariants - variants.size(), countVariantsToIndex(true));
+        assertEquals(variants.size(), countVariantsToIndex(false));
+    }
+
+    @Test
+    public void testUpdateSearchIndexSyncModifiedVariants() throws Exception {
+        long numVariants = dbAdaptor.count(new Query()).first();
+        List<Variant> variants = dbAdaptor.get(new Query(), new QueryOptions(QueryOptions.LIMIT, 10)).getResult();
+
+        // Variants written after the synchronization started are not marked as synchronized
+        dbAdaptor.updateSearchIndexSync(variants, 0, QueryOptions.empty());
+
+        assertEquals(numVariants, countVariantsToIndex(true));
+    }
+
+    @Test
+    public void testVariantsWithoutSyncFlag() throws Exception {
+        long numVariants = dbAdaptor.count(new Query()).first();
+        List<Variant> variants = dbAdaptor.get(new Query(), new QueryOptions()).getResult();
+        Thread.sleep(1);
+        dbAdaptor.updateSearchIndexSync(variants, System.currentTimeMillis(), QueryOptions.empty());
+        assertEquals(0, countVariantsToIndex(true));
+
+        // Variants loaded before the synchronization was tracked have no flags, and are pending to be synchronized
+        dbAdaptor.getVariantsCollection().update(new Document(), Updates.unset(DocumentToVariantConverter.INDEX_FIELD),
+                new QueryOptions(MULTI, true));
+        assertEquals(numVariants, countVariantsToIndex(true));
+        assertEquals(0, countVariantsToIndex(false));
+    }
+
+    private long countVariantsToIndex(boolean toIndex) {
+        return dbAdaptor.count(new Query(VARIANTS_TO_INDEX.key(), toIndex)).first();
+    }
+}
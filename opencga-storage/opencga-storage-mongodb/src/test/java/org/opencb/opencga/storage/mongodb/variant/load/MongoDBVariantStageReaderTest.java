@@ -33,7 +33,9 @@ import org.opencb.opencga.storage.mongodb.variant.load.stage.MongoDBVariantStage
 import org.opencb.opencga.storage.mongodb.variant.load.stage.MongoDBVariantStageReader;
 
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static java.util.Arrays.asList;
 import static org.opencb.opencga.storage.core.variant.VariantStorageBaseTest.DB_NAME;
@@ -120,6 +122,23 @@ public class MongoDBVariantStageReaderTest implements MongoDBVariantStorageTest
         Assert.assertEquals(read.size(), 6);
     }
 
+    @Test
+    public void testReadStageSplit() throws Exception {
+        for (int numRanges = 1; numRanges < 8; numRanges++) {
+            MongoDBVariantStageReader reader = new MongoDBVariantStageReader(collection, 1, Collections.emptyList());
+            List<MongoDBVariantStageReader> readers = reader.split(numRanges);
+            Assert.assertTrue(readers.size() <= numRanges);
+
+            Set<String> ids = new HashSet<>();
+            for (MongoDBVariantStageReader rangeReader : readers) {
+                for (Document document : readAll(rangeReader)) {
+                    Assert.assertTrue(ids.add(document.getString("_id")));
+                }
+            }
+            Assert.assertEquals(6, ids.size());
+        }
+    }
+
     public List<Document> readAll(MongoDBVariantStageReader reader) {
         List<Document> read;
         reader.open();